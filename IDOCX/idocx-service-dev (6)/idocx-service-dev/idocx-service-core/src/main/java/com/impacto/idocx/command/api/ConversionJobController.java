@@ -0,0 +1,61 @@
+package com.impacto.idocx.command.api;
+
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dtos.ConversionJobDto;
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import com.impacto.idocx.command.service.ConversionJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("v1/conversions/jobs")
+public class ConversionJobController {
+
+    private final ConversionJobService conversionJobService;
+
+    @Operation(summary = "Submit conversion job",
+            description = "Queues a PDF conversion and returns the job immediately. Poll the job status and download the result once it is COMPLETED. "
+                    + "Jobs with a higher priority, from 0 to 10, run first; other values are clamped to that range.")
+    @PostMapping
+    public ResponseEntity<GenericResponse<ConversionJobDto>> submitJob(@RequestParam String documentId,
+                                                                       @RequestParam(defaultValue = "JPEG") String format,
+                                                                       @RequestParam(defaultValue = "0") int page,
+                                                                       @RequestParam(defaultValue = "-1") int size,
+                                                                       @RequestParam(required = false) Float dpi,
+                                                                       @RequestParam(required = false) Integer width,
+                                                                       @RequestParam(required = false) Float quality,
+                                                                       @RequestParam(defaultValue = "0") int priority) {
+        return new ResponseEntity<>(conversionJobService.submit(documentId, format, page, size,
+                PageRenderOptions.of(dpi, width, quality), priority), HttpStatus.ACCEPTED);
+    }
+
+    @Operation(summary = "Conversion job status", description = "Returns the status of a conversion job by its ID.")
+    @GetMapping("/{jobId}")
+    public ResponseEntity<GenericResponse<ConversionJobDto>> getJob(@PathVariable String jobId) {
+        return new ResponseEntity<>(conversionJobService.getJob(jobId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Download conversion result", description = "Downloads the result of a completed conversion job.")
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<Resource> downloadResult(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getCompletedJob(jobId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(job.getResultContentType()))
+                .contentLength(job.getResultSize())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getResultFileName() + "\"")
+                .body(conversionJobService.loadResult(job));
+    }
+}
@@ -0,0 +1,33 @@
+package com.impacto.idocx.command.api;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
+import com.impacto.idocx.command.service.FolderDeletionService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("v1/deletions/jobs")
+public class FolderDeletionJobController {
+
+    private final FolderDeletionService folderDeletionService;
+
+    @Operation(summary = "Folder deletion job status",
+            description = "Returns the progress of a folder deletion job by its ID: records removed, files and directories deleted "
+                    + "so far, and files that could not be deleted.")
+    @GetMapping("/{jobId}")
+    public ResponseEntity<GenericResponse<FolderDeletionJobDto>> getJob(@PathVariable String jobId) {
+        return new ResponseEntity<>(new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                folderDeletionService.getJob(jobId)), HttpStatus.OK);
+    }
+}
@@ -1,17 +1,28 @@
 package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.model.PageRenderOptions;
 import com.impacto.idocx.command.service.PDFConversionsService;
+import com.impacto.idocx.command.service.ThumbnailService;
+import com.impacto.idocx.command.utils.BinaryResponseWriter;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -20,15 +31,52 @@ import java.util.List;
 public class PDFConversionsController {
 
     private final PDFConversionsService pdfConversionsService;
+    private final ThumbnailService thumbnailService;
+    private final BinaryResponseWriter binaryResponseWriter;
 
     @Operation(summary = "Converts PDF to Format ",
-            description = "Converts a PDF to specified document format by its ID.")
+            description = "Converts a PDF to specified document format by its ID. Image formats accept an optional DPI, target width and JPEG quality.")
     @PostMapping("/pdf-file")
     public ResponseEntity<GenericResponse<List<byte[]>>> convertPdf(@RequestParam String documentId,
                                                                     @RequestParam(defaultValue = "JPEG") String format,
                                                                     @RequestParam(defaultValue = "0") int page,
-                                                                    @RequestParam(defaultValue = "-1") int size) throws IOException {
-        return new ResponseEntity<>(pdfConversionsService.conversion(documentId, format, page, size), HttpStatus.OK);
+                                                                    @RequestParam(defaultValue = "-1") int size,
+                                                                    @RequestParam(required = false) Float dpi,
+                                                                    @RequestParam(required = false) Integer width,
+                                                                    @RequestParam(required = false) Float quality) throws IOException {
+        return new ResponseEntity<>(pdfConversionsService.conversion(documentId, format, page, size,
+                PageRenderOptions.of(dpi, width, quality)), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Streams PDF pages as images",
+            description = "Renders the requested PDF pages one at a time and streams them as a ZIP archive of JPEG, PNG or TIFF images.")
+    @PostMapping("/pdf-file/stream")
+    public ResponseEntity<StreamingResponseBody> streamPdf(@RequestParam String documentId,
+                                                           @RequestParam(defaultValue = "JPEG") String format,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "-1") int size,
+                                                           @RequestParam(required = false) Float dpi,
+                                                           @RequestParam(required = false) Integer width,
+                                                           @RequestParam(required = false) Float quality) {
+        PageRenderOptions options = PageRenderOptions.of(dpi, width, quality);
+        FileMetadata fileMetadata = pdfConversionsService.getStreamablePdf(documentId, format);
+        StreamingResponseBody body = outputStream -> pdfConversionsService.streamPdfPagesAsZip(fileMetadata, format, page, size, options, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + documentId + "-pages.zip\"")
+                .body(body);
+    }
+
+    @Operation(summary = "PDF page thumbnail",
+            description = "Returns a JPEG thumbnail of a PDF page scaled to the given width in pixels.")
+    @GetMapping("/thumbnail")
+    public ResponseEntity<byte[]> getThumbnail(@RequestParam String documentId,
+                                               @RequestParam(defaultValue = "1") int page,
+                                               @RequestParam(required = false) Integer width) throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePrivate())
+                .body(thumbnailService.getThumbnail(documentId, page, width));
     }
 
     @Operation(summary= "Split PDF",
@@ -56,6 +104,13 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.rotatePDF(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Rotate PDF (binary)",
+            description = "Returns the rotated PDF as the raw response body, with paging details in X-Total-Pages, X-Page-Count and X-Current-Page headers.")
+    @PostMapping(value = "/pdf-rotate", params = "binary=true")
+    public void rotatePDFBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.rotatePDF(documentId, out));
+    }
+
     @Operation(summary = "Compress PDF",
             description = "Compresses the PDF specified by documentId.")
     @PostMapping("/pdf-compress")
@@ -63,6 +118,13 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.compressPDF(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Compress PDF (binary)",
+            description = "Returns the compressed PDF as the raw response body, with paging details in X-Total-Pages, X-Page-Count and X-Current-Page headers.")
+    @PostMapping(value = "/pdf-compress", params = "binary=true")
+    public void compressPDFBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.compressPDF(documentId, out));
+    }
+
     @Operation(summary = "Converts image to PDF",
             description = "Converts the image specified by the document ID to a PDF document.")
     @PostMapping("/image-pdf")
@@ -70,6 +132,13 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.convertImageToPdf(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Converts image to PDF (binary)",
+            description = "Returns the converted PDF as the raw response body instead of base64 in JSON.")
+    @PostMapping(value = "/image-pdf", params = "binary=true")
+    public void convertImageBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.convertImageToPdf(documentId, out));
+    }
+
     @Operation(summary = "Convert TIFF to PDF",
             description = "Converts a TIFF image specified by documentId to PDF format.")
     @PostMapping("/tiff-pdf")
@@ -77,6 +146,13 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.convertTiffToPdf(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Convert TIFF to PDF (binary)",
+            description = "Returns the converted PDF as the raw response body instead of base64 in JSON.")
+    @PostMapping(value = "/tiff-pdf", params = "binary=true")
+    public void convertTIFFToPDFBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.convertTiffToPdf(documentId, out));
+    }
+
     @Operation(summary = "Convert Text to PDF",
             description = "Converts a text file to a PDF document.")
     @PostMapping("/txt-pdf")
@@ -84,6 +160,13 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.convertTextToPdf(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Convert Text to PDF (binary)",
+            description = "Returns the converted PDF as the raw response body instead of base64 in JSON.")
+    @PostMapping(value = "/txt-pdf", params = "binary=true")
+    public void convertTxtToPDFBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.convertTextToPdf(documentId, out));
+    }
+
     @Operation(summary = "Convert XLSX to PDF",
             description = "Converts a XLSX file to a PDF document.")
     @PostMapping("/xlsx-pdf")
@@ -91,10 +174,24 @@ public class PDFConversionsController {
         return new ResponseEntity<>(pdfConversionsService.convertXlsToPdf(documentId), HttpStatus.OK);
     }
 
+    @Operation(summary = "Convert XLSX to PDF (binary)",
+            description = "Returns the converted workbook as the raw response body instead of base64 in JSON.")
+    @PostMapping(value = "/xlsx-pdf", params = "binary=true")
+    public void convertXLSToPDFBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.convertXlsToPdf(documentId, out));
+    }
+
     @Operation(summary = "PDF merger",
             description = "Merging more than One pdf documents.")
     @PostMapping("/pdf-merger")
     public ResponseEntity<GenericResponse<byte[]>> pdfMerger(@RequestParam String documentId) throws IOException {
         return new ResponseEntity<>(pdfConversionsService.mergePdfDocuments(documentId), HttpStatus.OK);
     }
+
+    @Operation(summary = "PDF merger (binary)",
+            description = "Returns the merged PDF as the raw response body instead of base64 in JSON.")
+    @PostMapping(value = "/pdf-merger", params = "binary=true")
+    public void pdfMergerBinary(@RequestParam String documentId, HttpServletResponse response) throws IOException {
+        binaryResponseWriter.write(response, out -> pdfConversionsService.mergePdfDocuments(documentId, out));
+    }
 }
@@ -2,6 +2,8 @@ package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
 import com.impacto.idocx.command.dtos.IdsRequestDto;
 import com.impacto.idocx.command.model.ResourceManagementRequest;
 import com.impacto.idocx.command.service.ResourceManagementService;
@@ -28,7 +30,8 @@ public class ResourceManagementController {
     private final ResourceManagementService resourceManagementService;
 
     @Operation(summary = "Update Resource Status",
-            description = "Updates the status of a resource specified by the given request.")
+            description = "Updates the status of the resources specified by the given request. Returns a result per id: "
+                    + "UPDATED with the resource, NOT_FOUND or FAILED with a message.")
     @PutMapping("/update")
     public ResponseEntity<GenericResponse<?>> updateResourceStatus(@RequestBody ResourceManagementRequest uploadRequest) {
         GenericResponse<?> response = resourceManagementService.updateResourceStatus(uploadRequest);
@@ -36,13 +39,32 @@ public class ResourceManagementController {
     }
 
     @Operation(summary = "Get Resources",
-            description = "Get a list of resources based on action, type, page size, and page number.")
+            description = "Get a list of resources based on action, type, page size, and page number. Passing a cursor (empty for the "
+                    + "first page) pages by nextCursor instead of page number. countMode "
+                    + "(NONE, EXACT, CAPPED, ESTIMATED, CACHED) chooses how the total is counted, NONE by default with a cursor.")
     @GetMapping("/list")
     public ResponseEntity<GenericResponse<List<?>>> getResources(@RequestParam String action,
                                                                  @RequestParam String resourceType,
                                                                  @RequestParam(defaultValue = "10") int pageSize,
-                                                                 @RequestParam(defaultValue = "0") int pageNo
+                                                                 @RequestParam(defaultValue = "0") int pageNo,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Constants.COUNT_MODE countMode
     ) {
+        if (cursor != null || countMode != null) {
+            CursorPage<?> resources = resourceManagementService.getResources(action, resourceType, cursor, pageNo, pageSize,
+                    countMode == null ? Constants.COUNT_MODE.NONE : countMode);
+            GenericResponse<List<?>> response = new GenericResponse<>(
+                    Constants.RESPONSE_STATUS.OK.getValue(),
+                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                    resources.getContent(),
+                    resources.getTotal(),
+                    resources.getContent().size(),
+                    cursor == null || cursor.isEmpty() ? pageNo : 0
+            );
+            response.setNextCursor(resources.getNextCursor());
+            response.setTotalExact(resources.isTotalExact());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
         Page<?> metaDataList = resourceManagementService.getResources(action, resourceType, pageNo, pageSize);
         GenericResponse<List<?>> response = new GenericResponse<>(
                 Constants.RESPONSE_STATUS.OK.getValue(),
@@ -55,7 +77,9 @@ public class ResourceManagementController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
-    @Operation(summary = "Delete Files or Folders", description = "Delete files or folders based on the provided IDs.")
+    @Operation(summary = "Delete Files or Folders",
+            description = "Moves files or folders based on the provided IDs to the trash. They can be restored until the trash "
+                    + "retention has passed and are then deleted for good.")
     @DeleteMapping("/delete-resource")
     public ResponseEntity<GenericResponse<String>> deleteFilesOrFolders(@RequestBody IdsRequestDto idsRequestDto) {
         this.resourceManagementService.deleteResource(idsRequestDto);
@@ -67,4 +91,37 @@ public class ResourceManagementController {
         return new ResponseEntity<>(genericResponse, HttpStatus.OK);
     }
 
+    @Operation(summary = "Restore Files or Folders", description = "Takes deleted files or folders based on the provided IDs back out of the trash.")
+    @PutMapping("/restore")
+    public ResponseEntity<GenericResponse<String>> restoreFilesOrFolders(@RequestBody IdsRequestDto idsRequestDto) {
+        this.resourceManagementService.restoreResource(idsRequestDto);
+        GenericResponse<String> genericResponse = new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                "Successfully restored the :" + idsRequestDto.getType()
+        );
+        return new ResponseEntity<>(genericResponse, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Empty Trash",
+            description = "Deletes trashed files or folders based on the provided IDs for good, without waiting for the retention. "
+                    + "Files are deleted before the response; folders are deleted in the background and the response lists one "
+                    + "deletion job per folder to poll for progress.")
+    @DeleteMapping("/trash")
+    public ResponseEntity<GenericResponse<?>> purgeFilesOrFolders(@RequestBody IdsRequestDto idsRequestDto) {
+        List<FolderDeletionJobDto> jobs = this.resourceManagementService.purgeResource(idsRequestDto);
+        if (!jobs.isEmpty())
+            return new ResponseEntity<>(new GenericResponse<>(
+                    Constants.RESPONSE_STATUS.OK.getValue(),
+                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                    jobs
+            ), HttpStatus.ACCEPTED);
+        GenericResponse<String> genericResponse = new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                "Successfully purged the :" + idsRequestDto.getType()
+        );
+        return new ResponseEntity<>(genericResponse, HttpStatus.OK);
+    }
+
 }
@@ -2,6 +2,10 @@ package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
+import com.impacto.idocx.command.dtos.ContentSearchResultDto;
+import com.impacto.idocx.command.dtos.FacetedSearchResultDto;
+import com.impacto.idocx.command.dtos.SuggestionDto;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.service.SearchService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -25,7 +29,9 @@ public class SearchController {
 
 
     @Operation(summary = "Get Search Results",
-            description = "Retrieve a list of search results based on provided parameters.")
+            description = "Retrieve a list of search results based on provided parameters. Passing a cursor (empty for the first page) "
+                    + "pages by nextCursor instead of page number. countMode "
+                    + "(NONE, EXACT, CAPPED, ESTIMATED, CACHED) chooses how the total is counted, NONE by default with a cursor.")
     @GetMapping
     public ResponseEntity<GenericResponse<List<?>>> getSearchResults(@RequestParam(required = false) String searchOn,
                                                                      @RequestParam(required = false) String field,
@@ -34,7 +40,24 @@ public class SearchController {
                                                                      @RequestParam(required = false) String filter,
                                                                      @RequestParam(required = false) String value,
                                                                      @RequestParam(defaultValue = "0") int page,
-                                                                     @RequestParam(defaultValue = "10") int size) {
+                                                                     @RequestParam(defaultValue = "10") int size,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Constants.COUNT_MODE countMode) {
+        if (cursor != null || countMode != null) {
+            CursorPage<?> results = searchService.search(searchOn, field, operator, workspace, filter, value, cursor, page, size,
+                    countMode == null ? Constants.COUNT_MODE.NONE : countMode);
+            GenericResponse<List<?>> response = new GenericResponse<>(
+                    Constants.RESPONSE_STATUS.OK.getValue(),
+                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                    results.getContent(),
+                    results.getTotal(),
+                    results.getContent().size(),
+                    cursor == null || cursor.isEmpty() ? page : 0
+            );
+            response.setNextCursor(results.getNextCursor());
+            response.setTotalExact(results.isTotalExact());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
         Page<?> dataList = searchService.search(searchOn, field, operator, workspace, filter, value, page, size);
         GenericResponse<List<?>> response = new GenericResponse<>(
                 Constants.RESPONSE_STATUS.OK.getValue(),
@@ -47,4 +70,65 @@ public class SearchController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @Operation(summary = "Get faceted search results",
+            description = "Retrieve a page of search results together with the counts per extension, tag, workspace and "
+                    + "favourite/archive/trash flag of everything the search matched, in one request. With cacheFacets the "
+                    + "counts of a recently run search are reused.")
+    @GetMapping("/facets")
+    public ResponseEntity<GenericResponse<FacetedSearchResultDto>> getFacetedSearchResults(@RequestParam(required = false) String searchOn,
+                                                                                           @RequestParam(required = false) String field,
+                                                                                           @RequestParam(required = false) String operator,
+                                                                                           @RequestParam(required = false) String workspace,
+                                                                                           @RequestParam(required = false) String filter,
+                                                                                           @RequestParam(required = false) String value,
+                                                                                           @RequestParam(defaultValue = "0") int page,
+                                                                                           @RequestParam(defaultValue = "10") int size,
+                                                                                           @RequestParam(defaultValue = "false") boolean cacheFacets) {
+        FacetedSearchResultDto result = searchService.facetedSearch(searchOn, field, operator, workspace, filter, value, page, size, cacheFacets);
+        GenericResponse<FacetedSearchResultDto> response = new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                result,
+                result.getTotal(),
+                result.getResults().size(),
+                page
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Search document content",
+            description = "Full-text search over the text extracted from stored documents and their names, best match first, with highlighted snippets.")
+    @GetMapping("/content")
+    public ResponseEntity<GenericResponse<List<ContentSearchResultDto>>> searchContent(@RequestParam String q,
+                                                                                       @RequestParam(defaultValue = "BOTH") String workspace,
+                                                                                       @RequestParam(defaultValue = "0") int page,
+                                                                                       @RequestParam(defaultValue = "10") int size) {
+        Page<ContentSearchResultDto> results = searchService.searchContent(q, workspace, page, size);
+        GenericResponse<List<ContentSearchResultDto>> response = new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                results.getContent(),
+                results.getTotalElements(),
+                results.getNumberOfElements(),
+                results.getNumber()
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Suggest names",
+            description = "Complete a typed prefix with the most common matching file names, folder names and tags, ignoring case. "
+                    + "type (FILE, FOLDER, TAG) restricts the kind of name suggested.")
+    @GetMapping("/suggest")
+    public ResponseEntity<GenericResponse<List<SuggestionDto>>> suggest(@RequestParam String q,
+                                                                        @RequestParam(defaultValue = "BOTH") Constants.WORKSPACE_TYPE workspace,
+                                                                        @RequestParam(required = false) Constants.SUGGESTION_TYPE type,
+                                                                        @RequestParam(defaultValue = "10") int limit) {
+        List<SuggestionDto> suggestions = searchService.suggest(q, workspace, type, limit);
+        GenericResponse<List<SuggestionDto>> response = new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                suggestions
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
 }
@@ -0,0 +1,63 @@
+package com.impacto.idocx.command.api;
+
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.UploadSessionDto;
+import com.impacto.idocx.command.dtos.UploadSessionRequestDto;
+import com.impacto.idocx.command.service.UploadSessionService;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/workspace/uploads")
+public class UploadSessionController {
+    public static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-Checksum";
+
+    private final UploadSessionService uploadSessionService;
+
+    @Operation(summary = "Open upload session",
+            description = "Starts a resumable upload of a single file. The response tells the client the chunk size and number of chunks to send.")
+    @PostMapping
+    public ResponseEntity<GenericResponse<UploadSessionDto>> openSession(@RequestBody UploadSessionRequestDto uploadSessionRequestDto) {
+        return new ResponseEntity<>(uploadSessionService.openSession(uploadSessionRequestDto), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Upload chunk",
+            description = "Uploads one chunk as the raw request body. The SHA-256 of the chunk, hex encoded, is sent in the X-Chunk-Checksum header. " +
+                    "Chunks can be sent in any order and re-sent after a failure.")
+    @PutMapping(value = "/{sessionId}/chunks/{chunkIndex}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<GenericResponse<UploadSessionDto>> uploadChunk(@PathVariable String sessionId,
+                                                                         @PathVariable int chunkIndex,
+                                                                         @RequestHeader(CHUNK_CHECKSUM_HEADER) String checksum,
+                                                                         HttpServletRequest request) throws IOException {
+        return new ResponseEntity<>(uploadSessionService.writeChunk(sessionId, chunkIndex, checksum, request.getInputStream()), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Upload session status", description = "Returns the upload session including the chunks received so far.")
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<GenericResponse<UploadSessionDto>> getSession(@PathVariable String sessionId) {
+        return new ResponseEntity<>(uploadSessionService.getSession(sessionId), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Commit upload session",
+            description = "Moves the completed upload into the workspace and creates its file metadata. Fails if any chunk is missing.")
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<GenericResponse<FileMetaDataDto>> commit(@PathVariable String sessionId) {
+        return new ResponseEntity<>(uploadSessionService.commit(sessionId), HttpStatus.OK);
+    }
+}
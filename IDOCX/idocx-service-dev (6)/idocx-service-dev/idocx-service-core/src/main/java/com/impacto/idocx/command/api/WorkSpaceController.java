@@ -2,20 +2,23 @@ package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
+import com.impacto.idocx.command.dtos.FileIngestResultDto;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
 import com.impacto.idocx.command.dtos.FolderRequestDto;
+import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.model.FileUploadRequest;
 import com.impacto.idocx.command.service.WorkSpaceStorageService;
+import com.impacto.idocx.command.utils.RangeFileWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
@@ -28,6 +31,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 
 @RestController
@@ -38,45 +42,35 @@ public class WorkSpaceController {
 
     private final ServletContext servletContext;
     private final WorkSpaceStorageService workSpaceStorageService;
+    private final RangeFileWriter rangeFileWriter;
 
-    @Operation(summary= "Upload File", description= "Uploads one or more files to the server.")
+    @Operation(summary= "Upload File", description= "Uploads one or more files to the server. Files are written, hashed and " +
+            "registered in parallel and the result is reported per file; 207 Multi-Status when some of them failed.")
     @PostMapping("/upload")
-    public ResponseEntity<GenericResponse<String>> uploadFile(@ModelAttribute FileUploadRequest uploadRequest) {
-        workSpaceStorageService.store(uploadRequest);
-        GenericResponse<String> response = new GenericResponse<>(
-                Constants.RESPONSE_STATUS.OK.getValue(),
-                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                "File uploaded successfully to : " + uploadRequest.getFilePath()
+    public ResponseEntity<GenericResponse<List<FileIngestResultDto>>> uploadFile(@ModelAttribute FileUploadRequest uploadRequest) {
+        List<FileIngestResultDto> results = workSpaceStorageService.store(uploadRequest);
+        boolean allStored = results.stream().allMatch(result -> result.getStatus() == Constants.INGEST_STATUS.STORED);
+        GenericResponse<List<FileIngestResultDto>> response = new GenericResponse<>(
+                allStored ? Constants.RESPONSE_STATUS.OK.getValue() : Constants.RESPONSE_STATUS.MULTI_STATUS.getValue(),
+                allStored ? Constants.RESPONSE_MESSAGE.SUCCESS.getValue() : Constants.RESPONSE_MESSAGE.ERROR.getValue(),
+                results
         );
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        return new ResponseEntity<>(response, allStored ? HttpStatus.OK : HttpStatus.MULTI_STATUS);
 
     }
 
     @Operation(summary = "Download File by ID",
-            description = "This endpoint allows users to download a file by specifying its ID. ")
+            description = "Downloads a file by its ID. Supports Range requests, including multiple ranges, and conditional GET " +
+                    "through ETag / If-None-Match and Last-Modified / If-Modified-Since.")
     @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String id) throws IOException {
-        try {
-            Resource resource = workSpaceStorageService.loadFileAsResource(id);
-
-            if (resource == null) {
-                return ResponseEntity.notFound().build(); // Resource not found, return 404 status
-            }
-
-            String contentType = servletContext.getMimeType(resource.getFile().getAbsolutePath());
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
-        } catch (IOException e) {
-            e.printStackTrace(); // Replace with a logger in production code
-            return ResponseEntity.internalServerError().body(null);
+    public void downloadFile(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileMetadata fileMetadata = workSpaceStorageService.getFileForDownload(id);
+        String contentType = servletContext.getMimeType(fileMetadata.getFileName());
+        if (contentType == null) {
+            contentType = "application/octet-stream";
         }
-
+        rangeFileWriter.write(request, response, Paths.get(fileMetadata.getDirectoryName()), contentType,
+                fileMetadata.getFileName(), fileMetadata.getContentHash());
     }
 
     @Operation(summary = "Fetch Workspace Folder Structure", description = "Retrieve the folder structure of specific workspace.")
@@ -91,12 +85,31 @@ public class WorkSpaceController {
 
     }
 
-    @Operation(summary = "Fetch File Metadata", description = "Retrieve metadata of files located at the specified file path.")
+    @Operation(summary = "Fetch File Metadata", description = "Retrieve metadata of files located at the specified file path. Passing a "
+            + "cursor (empty for the first page) pages by nextCursor instead of page number. countMode "
+            + "(NONE, EXACT, CAPPED, ESTIMATED, CACHED) chooses how the total is counted, NONE by default with a cursor.")
     @GetMapping("/documents")
     public ResponseEntity<GenericResponse<List<FileMetaDataDto>>> fetchFileMetadata(@RequestParam String filePath,
                                                                                     @RequestParam(defaultValue = "10") int pageSize,
-                                                                                    @RequestParam(defaultValue = "0") int pageNo
+                                                                                    @RequestParam(defaultValue = "0") int pageNo,
+                                                                                    @RequestParam(required = false) String cursor,
+                                                                                    @RequestParam(required = false) Constants.COUNT_MODE countMode
     ) {
+        if (cursor != null || countMode != null) {
+            CursorPage<FileMetaDataDto> files = workSpaceStorageService.getFilesMetadata(filePath, cursor, pageNo, pageSize,
+                    countMode == null ? Constants.COUNT_MODE.NONE : countMode);
+            GenericResponse<List<FileMetaDataDto>> response = new GenericResponse<>(
+                    Constants.RESPONSE_STATUS.OK.getValue(),
+                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                    files.getContent(),
+                    files.getTotal(),
+                    files.getContent().size(),
+                    cursor == null || cursor.isEmpty() ? pageNo : 0
+            );
+            response.setNextCursor(files.getNextCursor());
+            response.setTotalExact(files.isTotalExact());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
         Page<FileMetaDataDto> fileMetaDataDtos = workSpaceStorageService.getFilesMetadata(filePath, pageNo, pageSize);
         GenericResponse<List<FileMetaDataDto>> response = new GenericResponse<>(
                 Constants.RESPONSE_STATUS.OK.getValue(),
@@ -2,7 +2,7 @@ package com.impacto.idocx.command.common;
 
 public class Constants {
     public enum RESPONSE_STATUS {
-        OK(200), ERROR(500), MOVED(301);
+        OK(200), MULTI_STATUS(207), ERROR(500), MOVED(301);
         private final int status;
 
         RESPONSE_STATUS(int i) {
@@ -40,6 +40,20 @@ public class Constants {
         DOCUMENT,
     }
 
+    public enum SUGGESTION_TYPE {
+        FILE,
+        FOLDER,
+        TAG
+    }
+
+    public enum COUNT_MODE {
+        NONE,
+        EXACT,
+        CAPPED,
+        ESTIMATED,
+        CACHED
+    }
+
     public enum RESOURCES_ACTION {
         FAVOURITE,
         ARCHIVE,
@@ -55,4 +69,29 @@ public class Constants {
         TIFF,
         XLSX
     }
+
+    public enum JOB_STATUS {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public enum UPLOAD_STATUS {
+        OPEN,
+        COMMITTING,
+        COMMITTED,
+        FAILED
+    }
+
+    public enum INGEST_STATUS {
+        STORED,
+        FAILED
+    }
+
+    public enum UPDATE_STATUS {
+        UPDATED,
+        NOT_FOUND,
+        FAILED
+    }
 }
@@ -1,5 +1,6 @@
 package com.impacto.idocx.command.common;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -18,10 +19,22 @@ public class GenericResponse<T> {
     long total;
     long count;
     int currentPage;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String nextCursor;
+    // false when total is a capped or estimated lower bound, or -1 when it was not counted; absent means exact
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Boolean totalExact;
 
     public GenericResponse(int status, String message, T data) {
         this.status = status;
         this.message = message;
         this.data = data;
     }
+
+    public GenericResponse(int status, String message, T data, long total, long count, int currentPage) {
+        this(status, message, data);
+        this.total = total;
+        this.count = count;
+        this.currentPage = currentPage;
+    }
 }
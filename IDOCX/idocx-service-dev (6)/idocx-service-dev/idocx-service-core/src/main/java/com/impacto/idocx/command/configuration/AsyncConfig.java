@@ -0,0 +1,62 @@
+package com.impacto.idocx.command.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * The executor Boot would define if there were no other executors: Spring MVC runs async request processing, such
+     * as {@code StreamingResponseBody} downloads, on it, and un-named {@code @Async} methods too. Without it both fall
+     * back to a new thread per task. Sized by the {@code spring.task.execution.*} properties.
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Background thumbnail generation. Work that does not fit in the queue is dropped, the thumbnail is then
+     * rendered on its first request instead.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor thumbnailExecutor(@Value("${idocx.thumbnail.pool-size:2}") int poolSize,
+                                                    @Value("${idocx.thumbnail.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        return executor;
+    }
+
+    /**
+     * Background text extraction for content search. Work that does not fit in the queue runs on the caller rather
+     * than being dropped, since a skipped file would stay missing from search results until its next upload.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor contentIndexExecutor(@Value("${idocx.search.index-pool-size:1}") int poolSize,
+                                                       @Value("${idocx.search.index-queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("content-index-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,64 @@
+package com.impacto.idocx.command.configuration;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} / {@code @CompoundIndex} on the entities once the context is up.
+ * Spring Data no longer does this by itself unless auto-index-creation is switched on. An index that cannot be built,
+ * typically a unique index over existing duplicates, is logged and skipped so that the service still starts.
+ * Disabled with {@code idocx.mongo.create-indexes=false} where indexes are managed outside the application.
+ */
+@Component
+@Log4j2
+public class MongoIndexInitializer {
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public MongoIndexInitializer(Environment environment, MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = environment.getProperty("idocx.mongo.create-indexes", Boolean.class, true);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        if (enabled)
+            createIndexes();
+    }
+
+    public int createIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        int created = 0;
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(Document.class))
+                continue;
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getTypeInformation())) {
+                try {
+                    indexOps.ensureIndex(index);
+                    created++;
+                } catch (DataAccessException e) {
+                    log.error("Could not create index {} on {}: {}", index.getIndexKeys(), entity.getCollection(), e.getMessage());
+                }
+            }
+        }
+        return created;
+    }
+}
@@ -1,5 +1,6 @@
 package com.impacto.idocx.command.configuration;
 
+import com.impacto.idocx.command.utils.BinaryResponseWriter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -15,6 +16,8 @@ public class WebConfig implements WebMvcConfigurer {
         corsRegistry.addMapping("/**")
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("*");
+                .allowedHeaders("*")
+                .exposedHeaders(BinaryResponseWriter.TOTAL_PAGES_HEADER, BinaryResponseWriter.PAGE_COUNT_HEADER,
+                        BinaryResponseWriter.CURRENT_PAGE_HEADER);
     }
 }
@@ -0,0 +1,44 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.ContentBlob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reference counts of content-addressed blobs. Counts are changed with {@code $inc} so that concurrent uploads and
+ * deletes of the same content never lose an update.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentBlobDao {
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Adds a reference, creating the record on first use. Returns the new count.
+     */
+    public long acquire(String hash, long size) {
+        ContentBlob blob = mongoTemplate.findAndModify(new Query(Criteria.where("id").is(hash)),
+                new Update().inc("refCount", 1).setOnInsert("size", size),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), ContentBlob.class);
+        return blob == null ? 1 : blob.getRefCount();
+    }
+
+    /**
+     * Drops a reference and removes the record once nothing points at the blob any more. Returns {@code true} only
+     * to the caller that removed the record, which is then the one that must unlink the blob.
+     */
+    public boolean release(String hash) {
+        Query query = new Query(Criteria.where("id").is(hash).and("refCount").gt(0));
+        ContentBlob blob = mongoTemplate.findAndModify(query, new Update().inc("refCount", -1),
+                FindAndModifyOptions.options().returnNew(true), ContentBlob.class);
+        if (blob == null || blob.getRefCount() > 0)
+            return false;
+        return mongoTemplate.remove(new Query(Criteria.where("id").is(hash).and("refCount").lte(0)), ContentBlob.class)
+                .getDeletedCount() > 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.ConversionJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ConversionJobRepository extends MongoRepository<ConversionJob, String> {
+    List<ConversionJob> findByStatusIn(List<Constants.JOB_STATUS> statuses);
+
+    List<ConversionJob> findByStatusInAndCompletedAtBefore(List<Constants.JOB_STATUS> statuses, LocalDateTime completedBefore);
+}
@@ -0,0 +1,24 @@
+package com.impacto.idocx.command.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset listing. {@code nextCursor} is null on the last page; {@code total} is -1 when it was not
+ * counted and a lower bound when {@code totalExact} is false.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private final List<T> content;
+    private final String nextCursor;
+    private final long total;
+    private final boolean totalExact;
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> converter) {
+        return new CursorPage<>(content.stream().<R>map(converter).toList(), nextCursor, total, totalExact);
+    }
+}
@@ -0,0 +1,81 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.DocumentContent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes the extracted text of files. Searching goes through the text index over {@code fileName} and
+ * {@code text}, ranked by the text score.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentContentDao {
+    private final MongoTemplate mongoTemplate;
+
+    public String findContentHash(String id) {
+        Query query = new Query(Criteria.where("id").is(id));
+        query.fields().include("contentHash");
+        DocumentContent content = mongoTemplate.findOne(query, DocumentContent.class);
+        return content == null ? null : content.getContentHash();
+    }
+
+    public void save(DocumentContent content) {
+        mongoTemplate.save(content);
+    }
+
+    /**
+     * A rename or move keeps the text, only the name and location change, and so does uploading a deleted file again,
+     * which takes it out of the trash. Returns false when the file has no entry.
+     */
+    public boolean updateLocation(String id, String fileName, String filePath) {
+        return mongoTemplate.updateFirst(new Query(Criteria.where("id").is(id)),
+                new Update().set("fileName", fileName).set("filePath", filePath).set("trashed", false),
+                DocumentContent.class).getMatchedCount() > 0;
+    }
+
+    public void remove(Collection<String> ids) {
+        if (!ids.isEmpty())
+            mongoTemplate.remove(new Query(Criteria.where("id").in(ids)), DocumentContent.class);
+    }
+
+    /**
+     * Hides the text of trashed files from search, or shows it again, without extracting it again on restore.
+     */
+    public void setTrashed(Collection<String> ids, boolean trashed) {
+        if (!ids.isEmpty())
+            mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids)), new Update().set("trashed", trashed), DocumentContent.class);
+    }
+
+    /**
+     * One page of matches for {@code terms} in MongoDB text search syntax, best match first. {@code workSpaceType}
+     * may be null to search every workspace.
+     */
+    public Page<DocumentContent> search(String terms, Constants.WORKSPACE_TYPE workSpaceType, PageRequest pageRequest) {
+        long total = mongoTemplate.count(textQuery(terms, workSpaceType), DocumentContent.class);
+        List<DocumentContent> results = mongoTemplate.find(textQuery(terms, workSpaceType).sortByScore().with(pageRequest),
+                DocumentContent.class);
+        return new PageImpl<>(results, pageRequest, total);
+    }
+
+    private static TextQuery textQuery(String terms, Constants.WORKSPACE_TYPE workSpaceType) {
+        TextQuery query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(terms));
+        query.addCriteria(Criteria.where("trashed").ne(true));
+        if (workSpaceType != null)
+            query.addCriteria(Criteria.where("workSpaceType").is(workSpaceType));
+        return query;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,5 +27,7 @@ public interface FileMetadataRepository extends MongoRepository<FileMetadata, St
     Page<FileMetadata> findByIsArchiveTrue(PageRequest page);
 
     Page<FileMetadata> findByIsTrashTrue(PageRequest page);
+
+    List<FileMetadata> findByIsTrashTrueAndTrashedAtBefore(LocalDateTime cutoff, PageRequest page);
 }
 
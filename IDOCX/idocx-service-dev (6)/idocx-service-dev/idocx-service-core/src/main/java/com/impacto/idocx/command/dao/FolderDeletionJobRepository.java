@@ -0,0 +1,15 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.FolderDeletionJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FolderDeletionJobRepository extends MongoRepository<FolderDeletionJob, String> {
+    List<FolderDeletionJob> findByStatusIn(List<Constants.JOB_STATUS> statuses);
+
+    boolean existsByFolderIdAndStatusIn(String folderId, List<Constants.JOB_STATUS> statuses);
+}
@@ -0,0 +1,88 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.FolderMetadataDto;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains the file ids a folder references. Membership changes are single {@code $addToSet} / {@code $pull}
+ * updates, so adding, renaming or trashing a file never reads or rewrites the whole folder document.
+ */
+@Component
+@RequiredArgsConstructor
+public class FolderMetadataDao {
+    private final MongoTemplate mongoTemplate;
+    private final QueryCache queryCache;
+    private final MetadataCache metadataCache;
+
+    /**
+     * Adds the documents to the folder at {@code folderPath}, creating its record if there is none yet. Returns
+     * whether the record was created.
+     */
+    public boolean addDocumentIds(String folderPath, String folderName, Constants.WORKSPACE_TYPE workSpaceType,
+                                  Collection<String> documentIds) {
+        if (documentIds.isEmpty())
+            return false;
+        Update update = new Update()
+                .setOnInsert("folderName", folderName)
+                .setOnInsert("folderNameLower", SearchKeys.normalize(folderName))
+                .setOnInsert("folderNameGrams", SearchKeys.grams(folderName))
+                .setOnInsert("folderPathLower", SearchKeys.normalize(folderPath))
+                .setOnInsert("folderPathGrams", SearchKeys.grams(folderPath))
+                .setOnInsert("workSpaceType", workSpaceType)
+                .setOnInsert("isFavourite", false)
+                .setOnInsert("isArchive", false)
+                .setOnInsert("isTrash", false)
+                .addToSet("documentIds").each(documentIds.toArray());
+        UpdateResult result = mongoTemplate.upsert(new Query(Criteria.where("folderPath").is(folderPath)), update, FolderMetadata.class);
+        queryCache.invalidate(FolderMetadata.class, null);
+        metadataCache.evictFolder(folderPath);
+        return result != null && result.getUpsertedId() != null;
+    }
+
+    public void removeDocumentIds(String folderPath, Collection<String> documentIds) {
+        if (documentIds.isEmpty())
+            return;
+        mongoTemplate.updateFirst(new Query(Criteria.where("folderPath").is(folderPath)),
+                new Update().pullAll("documentIds", documentIds.toArray()), FolderMetadata.class);
+        metadataCache.evictFolder(folderPath);
+    }
+
+    /**
+     * Whether the folder at {@code folderPath}, or one of the folders above it, is in the trash.
+     */
+    public boolean isInTrash(String folderPath) {
+        List<String> paths = new ArrayList<>();
+        for (String path = folderPath; !path.isEmpty(); path = path.substring(0, Math.max(0, path.lastIndexOf('/'))))
+            paths.add(path);
+        return !paths.isEmpty() && mongoTemplate.exists(
+                new Query(Criteria.where("folderPath").in(paths).and("isTrash").is(true)), FolderMetadata.class);
+    }
+
+    /**
+     * The folder tree of a workspace without the referenced ids, only how many documents each folder holds.
+     * Documents themselves are paged per folder on demand.
+     */
+    public List<FolderMetadataDto> findFolderSummaries(String workSpaceType) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("workSpaceType").is(workSpaceType).and("isTrash").is(false).and("isArchive").is(false)),
+                Aggregation.project("folderName", "folderPath", "workSpaceType", "isFavourite", "isArchive", "isTrash")
+                        .and(ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("documentIds").then(List.of())))
+                        .as("documentCount"));
+        return mongoTemplate.aggregate(aggregation, FolderMetadata.class, FolderMetadataDto.class).getMappedResults();
+    }
+}
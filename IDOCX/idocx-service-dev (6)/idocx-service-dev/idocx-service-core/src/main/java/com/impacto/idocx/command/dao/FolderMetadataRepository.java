@@ -7,6 +7,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,4 +25,6 @@ public interface FolderMetadataRepository extends MongoRepository<FolderMetadata
 
     Page<FolderMetadata> findByIsTrashTrue(PageRequest page);
 
+    List<FolderMetadata> findByIsTrashTrueAndTrashedFromIsNotNullAndTrashedAtBefore(LocalDateTime cutoff);
+
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Folder and file paths are materialized paths ({@code root/Workspace/Sub}), so everything below a folder is found by
+ * an anchored prefix query on the path. Renaming or moving a folder rewrites only that subtree, server side, with one
+ * {@code updateMulti} per path field instead of loading and saving the whole workspace; trashing and restoring one
+ * works the same way, and deleting one removes it with one {@code deleteMany} per collection.
+ */
+@Component
+@RequiredArgsConstructor
+public class FolderTreeDao {
+    private final MongoTemplate mongoTemplate;
+    private final QueryCache queryCache;
+    private final MetadataCache metadataCache;
+
+    /**
+     * Moves the folder and everything below it from {@code oldPath} to {@code newPath}. Files stored in the folder
+     * on disk have their {@code directoryName} rebased from {@code oldDirectory} to {@code newDirectory}; blobs in the
+     * content store live elsewhere and are not touched. The extracted text of the files moves with them. Returns the
+     * number of file records that were moved.
+     */
+    public long moveSubtree(String folderId, String oldPath, String newPath, String oldDirectory, String newDirectory) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(folderId)),
+                new Update().set("folderName", newPath.substring(newPath.lastIndexOf('/') + 1)), FolderMetadata.class);
+        mongoTemplate.updateMulti(new Query(subtree("folderPath", oldPath)),
+                rebase("folderPath", oldPath, newPath), FolderMetadata.class);
+        refreshSearchKeys(newPath);
+        mongoTemplate.updateMulti(new Query(subtree("filePath", oldPath)),
+                rebase("filePath", oldPath, newPath), DocumentContent.class);
+        mongoTemplate.updateMulti(new Query(subtree("directoryName", oldDirectory)),
+                rebase("directoryName", oldDirectory, newDirectory), FileMetadata.class);
+        long moved = mongoTemplate.updateMulti(new Query(subtree("filePath", oldPath)),
+                rebase("filePath", oldPath, newPath), FileMetadata.class).getModifiedCount();
+        queryCache.invalidate(FolderMetadata.class, null);
+        queryCache.invalidate(FileMetadata.class, null);
+        metadataCache.clear();
+        return moved;
+    }
+
+    /**
+     * Puts the folder and everything below it in the trash, after its directory was moved from {@code oldDirectory}
+     * to {@code trashDirectory}. Files stored in it are rebased to the new directory, and records that were not in the
+     * trash yet are marked as trashed with the folder, so that restoring it brings back exactly those. Only the folder
+     * itself gets {@code trashedAt}: what went with it is purged with it. Returns the number of file records trashed.
+     */
+    public long trashSubtree(String folderId, String path, String oldDirectory, String trashDirectory, LocalDateTime trashedAt) {
+        mongoTemplate.updateMulti(new Query(subtree("directoryName", oldDirectory)),
+                rebase("directoryName", oldDirectory, trashDirectory), FileMetadata.class);
+        Update trashed = new Update().set("isTrash", true).set("trashedWith", folderId);
+        long files = mongoTemplate.updateMulti(new Query(subtree("filePath", path).and("isTrash").ne(true)),
+                trashed, FileMetadata.class).getModifiedCount();
+        mongoTemplate.updateMulti(new Query(subtree("folderPath", path).and("isTrash").ne(true)), trashed, FolderMetadata.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(folderId)), new Update()
+                .set("isTrash", true).set("trashedAt", trashedAt).set("trashedFrom", oldDirectory), FolderMetadata.class);
+        mongoTemplate.updateMulti(new Query(subtree("filePath", path)), new Update().set("trashed", true), DocumentContent.class);
+        queryCache.invalidate(FolderMetadata.class, null);
+        queryCache.invalidate(FileMetadata.class, null);
+        metadataCache.clear();
+        return files;
+    }
+
+    /**
+     * Takes a folder trashed with {@link #trashSubtree} back out of the trash once its directory is back at
+     * {@code directory}. Records that were already in the trash before the folder stay there.
+     */
+    public void restoreSubtree(String folderId, String trashDirectory, String directory) {
+        mongoTemplate.updateMulti(new Query(subtree("directoryName", trashDirectory)),
+                rebase("directoryName", trashDirectory, directory), FileMetadata.class);
+        Update restored = new Update().set("isTrash", false).unset("trashedWith");
+        mongoTemplate.updateMulti(new Query(Criteria.where("trashedWith").is(folderId)), restored, FileMetadata.class);
+        mongoTemplate.updateMulti(new Query(Criteria.where("trashedWith").is(folderId)), restored, FolderMetadata.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(folderId)), new Update()
+                .set("isTrash", false).unset("trashedAt").unset("trashedFrom").unset("trashedWith"), FolderMetadata.class);
+        queryCache.invalidate(FolderMetadata.class, null);
+        queryCache.invalidate(FileMetadata.class, null);
+        metadataCache.clear();
+    }
+
+    /**
+     * The files stored in the folder or below it, with the fields needed to release their content and suggestions.
+     */
+    public Stream<FileMetadata> streamSubtreeFiles(String path) {
+        return streamFiles(subtree("filePath", path));
+    }
+
+    public Stream<FolderMetadata> streamSubtreeFolders(String path) {
+        return streamFolders(subtree("folderPath", path));
+    }
+
+    /**
+     * The files that went to the trash with the folder, see {@link #trashSubtree}.
+     */
+    public Stream<FileMetadata> streamFilesTrashedWith(String folderId) {
+        return streamFiles(Criteria.where("trashedWith").is(folderId));
+    }
+
+    public Stream<FolderMetadata> streamFoldersTrashedWith(String folderId) {
+        return streamFolders(Criteria.where("trashedWith").is(folderId));
+    }
+
+    private Stream<FileMetadata> streamFiles(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("fileName", "tag", "directoryName", "workSpaceType", "isTrash", "trashedFrom");
+        return mongoTemplate.stream(query, FileMetadata.class);
+    }
+
+    private Stream<FolderMetadata> streamFolders(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("folderName", "workSpaceType", "isTrash");
+        return mongoTemplate.stream(query, FolderMetadata.class);
+    }
+
+    /**
+     * Removes the records of the folder and everything below it, with one {@code deleteMany} per collection on the
+     * path prefix. Returns the number of file records that were removed.
+     */
+    public long deleteSubtree(String path) {
+        mongoTemplate.remove(new Query(subtree("filePath", path)), DocumentContent.class);
+        long removed = mongoTemplate.remove(new Query(subtree("filePath", path)), FileMetadata.class).getDeletedCount();
+        mongoTemplate.remove(new Query(subtree("folderPath", path)), FolderMetadata.class);
+        queryCache.invalidate(FolderMetadata.class, null);
+        queryCache.invalidate(FileMetadata.class, null);
+        metadataCache.clear();
+        return removed;
+    }
+
+    /**
+     * Folder names and paths changed on the server, so their search keys are recomputed here; file names did not
+     * change and keep theirs.
+     */
+    private void refreshSearchKeys(String path) {
+        Query query = new Query(subtree("folderPath", path));
+        query.fields().include("folderName", "folderPath");
+        List<FolderMetadata> folders = mongoTemplate.find(query, FolderMetadata.class);
+        if (folders.isEmpty())
+            return;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FolderMetadata.class);
+        for (FolderMetadata folder : folders) {
+            SearchKeys.apply(folder);
+            bulk.updateOne(new Query(Criteria.where("id").is(folder.getId())), new Update()
+                    .set("folderNameLower", folder.getFolderNameLower())
+                    .set("folderNameGrams", folder.getFolderNameGrams())
+                    .set("folderPathLower", folder.getFolderPathLower())
+                    .set("folderPathGrams", folder.getFolderPathGrams()));
+        }
+        bulk.execute();
+    }
+
+    /**
+     * The path itself or anything below it. Both branches are plain equality or a case-sensitive anchored prefix, so
+     * an index on the field gives tight bounds.
+     */
+    static Criteria subtree(String field, String path) {
+        return new Criteria().orOperator(
+                Criteria.where(field).is(path),
+                Criteria.where(field).regex("^" + SearchKeys.escapeRegex(path + "/")));
+    }
+
+    /**
+     * Replaces the leading {@code oldPrefix} of the field with {@code newPrefix} in an update pipeline, so the new
+     * value is computed by the server from each document's own path.
+     */
+    static AggregationUpdate rebase(String field, String oldPrefix, String newPrefix) {
+        int prefixLength = oldPrefix.codePointCount(0, oldPrefix.length());
+        return AggregationUpdate.update().set(field).toValue(
+                StringOperators.Concat.stringValue(newPrefix)
+                        .concatValueOf(StringOperators.valueOf(field).substringCP(prefixLength, Integer.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,63 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.InvalidCursorException;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pages a query by {@code _id} instead of skip/limit: each page continues after the last id of the previous one, so
+ * page 1000 costs the same index range as page 1. The cursor handed to clients is the opaque URL-safe encoding of
+ * that id. Without a cursor the page number is skipped to, so a client can jump once and continue by cursor. One
+ * extra record is read to tell whether another page follows, and the total is counted as {@link TotalCounter} is
+ * told to.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetPager {
+    private final MongoTemplate mongoTemplate;
+    private final TotalCounter totalCounter;
+
+    public <T> CursorPage<T> page(Criteria criteria, String cursor, int pageNo, int size, Constants.COUNT_MODE countMode,
+                                  Class<T> entityClass, Function<T, String> idOf) {
+        if (size < 1)
+            throw new IllegalArgumentException("Page size must not be less than one");
+        boolean first = cursor == null || cursor.isEmpty();
+        Criteria filter = first ? criteria
+                : new Criteria().andOperator(criteria, Criteria.where("id").gt(decode(cursor)));
+        Query query = new Query(filter).with(Sort.by(Sort.Direction.ASC, "id")).limit(size + 1);
+        if (first)
+            query.skip((long) pageNo * size);
+        List<T> content = new ArrayList<>(mongoTemplate.find(query, entityClass));
+        String nextCursor = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            nextCursor = encode(idOf.apply(content.get(size - 1)));
+        }
+        TotalCounter.Total total = totalCounter.count(new Query(criteria), entityClass, countMode);
+        return new CursorPage<>(content, nextCursor, total.value(), total.exact());
+    }
+
+    static String encode(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(new ObjectId(id).toByteArray());
+    }
+
+    static ObjectId decode(String cursor) {
+        try {
+            return new ObjectId(Base64.getUrlDecoder().decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(ErrorCode.INVALID_CURSOR_EXCEPTION, "Invalid page cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Batched metadata writes for uploads: one query for the records that already exist and one unordered bulk upsert
+ * for all files, however many files the upload has.
+ */
+@Component
+@RequiredArgsConstructor
+public class MetadataBulkDao {
+    private static final List<String> TRASH_FIELDS = List.of("trashedAt", "trashedFrom", "trashedWith");
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryCache queryCache;
+    private final MetadataCache metadataCache;
+
+    public List<FileMetadata> findByFilePathAndFileNames(String filePath, Collection<String> fileNames) {
+        return mongoTemplate.find(new Query(Criteria.where("filePath").is(filePath).and("fileName").in(fileNames)), FileMetadata.class);
+    }
+
+    /**
+     * Upserts every record in one unordered bulk write, matching on the id when it is set and on filePath/fileName
+     * otherwise. Ids of inserted records are set on the passed entities. Returns the error message of each record
+     * that could not be written, keyed by its index; the other writes are not affected by it.
+     */
+    public Map<Integer, String> upsertFiles(List<FileMetadata> files) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FileMetadata.class);
+        for (FileMetadata file : files) {
+            Query query = file.getId() != null
+                    ? new Query(Criteria.where("id").is(file.getId()))
+                    : new Query(Criteria.where("filePath").is(file.getFilePath()).and("fileName").is(file.getFileName()));
+            bulk.upsert(query, toUpdate(file));
+        }
+
+        Map<Integer, String> failures = new HashMap<>();
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            e.getErrors().forEach(error -> failures.put(error.getIndex(), error.getMessage()));
+        }
+        if (result != null)
+            result.getUpserts().forEach(upsert -> files.get(upsert.getIndex()).setId(idOf(upsert.getId())));
+        files.stream().map(FileMetadata::getFilePath).distinct()
+                .forEach(filePath -> queryCache.invalidate(FileMetadata.class, filePath));
+        metadataCache.evict(FileMetadata.class, files.stream().map(FileMetadata::getId).filter(Objects::nonNull).toList());
+        return failures;
+    }
+
+    private Update toUpdate(FileMetadata file) {
+        // converter.write does not run the entity callbacks
+        SearchKeys.apply(file);
+        Document document = new Document();
+        mongoTemplate.getConverter().write(file, document);
+        document.remove("_id");
+        Update update = new Update();
+        document.forEach(update::set);
+        // null fields are left out of the document; a file uploaded again out of the trash drops them
+        for (String field : TRASH_FIELDS)
+            if (!document.containsKey(field))
+                update.unset(field);
+        return update;
+    }
+
+    private static String idOf(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
@@ -0,0 +1,154 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Near-cache of file and folder records by id, and of folder records by folderPath, for the lookups every
+ * conversion, download and rename starts with. Each of the three is a {@link TinyLfuCache} of at most
+ * {@code idocx.metadata-cache.max-entries} records (0 turns caching off), kept for
+ * {@code idocx.metadata-cache.ttl-seconds}; the expiry bounds how long a write made by another instance can go
+ * unseen. Records are cached in their stored form and mapped again on every hit, so callers get an entity of their
+ * own and may change it. Repository saves and deletes are seen through the mapping events; bulk writes call
+ * {@link #evict} or {@link #evictFolder} themselves, and subtree writes {@link #clear}. Requests are counted in
+ * {@code idocx.metadata.cache.requests} by cache and result.
+ */
+@Component
+public class MetadataCache extends AbstractMongoEventListener<Object> {
+    private final MongoTemplate mongoTemplate;
+    private final TinyLfuCache<String, Document> files;
+    private final TinyLfuCache<String, Document> folders;
+    private final TinyLfuCache<String, Document> folderPaths;
+
+    @Autowired
+    public MetadataCache(Environment environment, MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        int maxEntries = environment.getProperty("idocx.metadata-cache.max-entries", Integer.class, 10_000);
+        long ttlNanos = Duration.ofSeconds(environment.getProperty("idocx.metadata-cache.ttl-seconds", Long.class, 60L)).toNanos();
+        this.files = new TinyLfuCache<>(maxEntries, ttlNanos);
+        this.folders = new TinyLfuCache<>(maxEntries, ttlNanos);
+        this.folderPaths = new TinyLfuCache<>(maxEntries, ttlNanos);
+        register(meterRegistry, "file", files);
+        register(meterRegistry, "folder", folders);
+        register(meterRegistry, "folder-path", folderPaths);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String name, TinyLfuCache<String, Document> cache) {
+        FunctionCounter.builder("idocx.metadata.cache.requests", cache, TinyLfuCache::hitCount)
+                .tag("cache", name).tag("result", "hit")
+                .description("Metadata lookups served from the near-cache").register(meterRegistry);
+        FunctionCounter.builder("idocx.metadata.cache.requests", cache, TinyLfuCache::missCount)
+                .tag("cache", name).tag("result", "miss")
+                .description("Metadata lookups that went to Mongo").register(meterRegistry);
+        FunctionCounter.builder("idocx.metadata.cache.evictions", cache, TinyLfuCache::evictionCount)
+                .tag("cache", name).description("Records dropped to keep the near-cache in bounds").register(meterRegistry);
+        Gauge.builder("idocx.metadata.cache.hit.ratio", cache, TinyLfuCache::hitRatio)
+                .tag("cache", name).description("Share of metadata lookups served from the near-cache").register(meterRegistry);
+        Gauge.builder("idocx.metadata.cache.size", cache, TinyLfuCache::size)
+                .tag("cache", name).description("Records held in the near-cache").register(meterRegistry);
+    }
+
+    public Optional<FileMetadata> findFile(String id) {
+        return files.get(id, key -> Optional.ofNullable(mongoTemplate.findById(key, FileMetadata.class)).map(this::toDocument))
+                .map(document -> mongoTemplate.getConverter().read(FileMetadata.class, document));
+    }
+
+    public Optional<FolderMetadata> findFolder(String id) {
+        return folders.get(id, key -> Optional.ofNullable(mongoTemplate.findById(key, FolderMetadata.class)).map(this::toDocument))
+                .map(document -> mongoTemplate.getConverter().read(FolderMetadata.class, document));
+    }
+
+    public Optional<FolderMetadata> findFolderByPath(String folderPath) {
+        return folderPaths.get(folderPath, key -> Optional.ofNullable(
+                        mongoTemplate.findOne(new Query(Criteria.where("folderPath").is(key)), FolderMetadata.class)).map(this::toDocument))
+                .map(document -> mongoTemplate.getConverter().read(FolderMetadata.class, document));
+    }
+
+    private Document toDocument(Object entity) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(entity, document);
+        return document;
+    }
+
+    /**
+     * Drops the records with these ids. Folders are dropped from the folderPath cache too, whatever path they were
+     * cached under.
+     */
+    public void evict(Class<?> entityClass, Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+        if (entityClass == FileMetadata.class) {
+            ids.forEach(files::invalidate);
+        } else if (entityClass == FolderMetadata.class) {
+            ids.forEach(folders::invalidate);
+            folderPaths.invalidateIf(document -> ids.contains(idOf(document.get("_id"))));
+        }
+    }
+
+    /**
+     * Drops the folder at {@code folderPath}, for writes that match it by path.
+     */
+    public void evictFolder(String folderPath) {
+        folderPaths.invalidate(folderPath);
+        folders.invalidateIf(document -> folderPath.equals(document.getString("folderPath")));
+    }
+
+    /**
+     * Drops every record, for writes to a whole subtree.
+     */
+    public void clear() {
+        files.invalidateAll();
+        folders.invalidateAll();
+        folderPaths.invalidateAll();
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (event.getSource() instanceof FileMetadata file && file.getId() != null)
+            evict(FileMetadata.class, List.of(file.getId()));
+        else if (event.getSource() instanceof FolderMetadata folder && folder.getId() != null)
+            evict(FolderMetadata.class, List.of(folder.getId()));
+    }
+
+    /**
+     * Deletes by id drop that record; other deletes, such as {@code deleteAll}, drop the whole cache of the type.
+     */
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        Class<?> type = event.getType();
+        if (type != FileMetadata.class && type != FolderMetadata.class)
+            return;
+        Object id = event.getDocument() == null ? null : event.getDocument().get("_id");
+        if (id instanceof ObjectId || id instanceof String) {
+            evict(type, List.of(idOf(id)));
+        } else if (type == FileMetadata.class) {
+            files.invalidateAll();
+        } else {
+            folders.invalidateAll();
+            folderPaths.invalidateAll();
+        }
+    }
+
+    private static String idOf(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+    }
+}
@@ -0,0 +1,134 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived results computed from a query, such as totals and facet counts, kept for
+ * {@code idocx.query-cache.ttl-seconds}. Results of a query on one filePath are dropped when a file in that folder is
+ * written; results of other queries, such as flag listings and searches, are dropped on any write to their
+ * collection. Repository saves and deletes are seen through the mapping events; bulk writes call {@link #invalidate}
+ * themselves.
+ */
+@Component
+public class QueryCache extends AbstractMongoEventListener<Object> {
+    private final MongoTemplate mongoTemplate;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Load> loading = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QueryCache(Environment environment, MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttlNanos = Duration.ofSeconds(environment.getProperty("idocx.query-cache.ttl-seconds", Long.class, 30L)).toNanos();
+        this.maxEntries = environment.getProperty("idocx.query-cache.max-entries", Integer.class, 10_000);
+    }
+
+    private record Entry(String collection, String filePath, Object value, long expiresAt) {
+    }
+
+    /**
+     * A result being computed. Compared by identity, so that each load only finds its own marker.
+     */
+    private static final class Load {
+        private final String collection;
+        private final String filePath;
+
+        private Load(String collection, String filePath) {
+            this.collection = collection;
+            this.filePath = filePath;
+        }
+    }
+
+    /**
+     * The cached {@code kind} of result for the query, computed by {@code loader} when it is missing or expired. A
+     * computed result is only kept when no write that may change it was seen while it was computed, since it may
+     * have been read before that write.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<?> entityClass, String kind, Query query, Supplier<T> loader) {
+        String collection = mongoTemplate.getCollectionName(entityClass);
+        String key = collection + ':' + kind + ':' + query.getQueryObject().toJson();
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAt() - System.nanoTime() > 0)
+            return (T) cached.value();
+
+        String filePath = filePathOf(query.getQueryObject());
+        Load load = new Load(collection, filePath);
+        loading.put(key, load);
+        T value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            loading.remove(key, load);
+            throw e;
+        }
+        synchronized (this) {
+            if (loading.remove(key, load)) {
+                long now = System.nanoTime();
+                if (entries.size() >= maxEntries)
+                    entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+                if (entries.size() < maxEntries)
+                    entries.put(key, new Entry(collection, filePath, value, now + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The folder a query is limited to, when it compares filePath for equality at the top level or in an $and.
+     */
+    private static String filePathOf(Document query) {
+        if (query.get("filePath") instanceof String filePath)
+            return filePath;
+        if (query.get("$and") instanceof List<?> clauses)
+            for (Object clause : clauses)
+                if (clause instanceof Document document && document.get("filePath") instanceof String filePath)
+                    return filePath;
+        return null;
+    }
+
+    /**
+     * Drops the results a write to {@code filePath} may change: those of that folder and those not limited to a
+     * folder. A null filePath drops every result of the collection.
+     */
+    public void invalidate(Class<?> entityClass, String filePath) {
+        invalidate(mongoTemplate.getCollectionName(entityClass), filePath);
+    }
+
+    private synchronized void invalidate(String collection, String filePath) {
+        entries.values().removeIf(entry -> isChangedBy(entry.collection(), entry.filePath(), collection, filePath));
+        loading.values().removeIf(load -> isChangedBy(load.collection, load.filePath, collection, filePath));
+    }
+
+    private static boolean isChangedBy(String resultCollection, String resultFilePath, String collection, String filePath) {
+        return resultCollection.equals(collection)
+                && (filePath == null || resultFilePath == null || resultFilePath.equals(filePath));
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        invalidate(event.getCollectionName(),
+                event.getSource() instanceof FileMetadata file ? file.getFilePath() : null);
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        invalidate(event.getCollectionName(), null);
+    }
+}
@@ -0,0 +1,55 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Favourite, archive and trash flags of many files or folders at once: one query reads the records and one
+ * multi-document update sets the flag, however many ids are passed.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResourceStatusDao {
+    static final String TRASH_FLAG = "isTrash";
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryCache queryCache;
+    private final MetadataCache metadataCache;
+
+    public <T> List<T> findByIds(Collection<String> ids, Class<T> entityClass) {
+        if (ids.isEmpty())
+            return List.of();
+        return mongoTemplate.find(new Query(Criteria.where("id").in(ids)), entityClass);
+    }
+
+    /**
+     * Sets the flag on those of the records where it differs. Putting records in the trash stamps {@code trashedAt},
+     * from which the trash retention is counted, and hides the text of files from content search; taking them out
+     * clears both again.
+     */
+    public void setFlag(Collection<String> ids, String flag, boolean value, Class<?> entityClass) {
+        if (ids.isEmpty())
+            return;
+        Update update = new Update().set(flag, value);
+        boolean trash = TRASH_FLAG.equals(flag);
+        if (trash && value)
+            update.set("trashedAt", LocalDateTime.now());
+        else if (trash)
+            update.unset("trashedAt").unset("trashedWith");
+        mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids).and(flag).ne(value)), update, entityClass);
+        if (trash && entityClass == FileMetadata.class)
+            mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids)), new Update().set("trashed", value), DocumentContent.class);
+        queryCache.invalidate(entityClass, null);
+        metadataCache.evict(entityClass, ids);
+    }
+}
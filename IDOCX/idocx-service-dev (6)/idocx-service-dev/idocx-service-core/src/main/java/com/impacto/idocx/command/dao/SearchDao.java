@@ -1,13 +1,21 @@
 package com.impacto.idocx.command.dao;
 
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.FacetedSearchResultDto;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.entity.FolderMetadata;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
@@ -16,7 +24,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,9 +35,19 @@ import java.util.Set;
 @Log4j2
 public class SearchDao {
     private final MongoTemplate mongoTemplate;
+    private final KeysetPager keysetPager;
+    private final QueryCache queryCache;
     private static final Map<String, Set<String>> validFieldsPerSearchType = new HashMap<>();
+    private static final Set<String> KEYED_FIELDS = Set.of("fileName", "extension", "tag", "folderName", "folderPath");
+    private static final List<String> FILE_VALUE_FACETS = List.of("extension", "tag", "workSpaceType");
+    private static final List<String> FOLDER_VALUE_FACETS = List.of("workSpaceType");
+    private static final Map<String, String> FLAG_FACETS = new LinkedHashMap<>();
+    static final int FACET_SIZE = 20;
 
     static {
+        FLAG_FACETS.put("favourite", "isFavourite");
+        FLAG_FACETS.put("archive", "isArchive");
+        FLAG_FACETS.put("trash", "isTrash");
         Set<String> folderFields = new HashSet<>(Arrays.asList("id", "folderName", "folderPath", "workSpaceType"));
         validFieldsPerSearchType.put("FOLDER", folderFields);
         Set<String> documentFields = new HashSet<>(Arrays.asList("id", "fileName", "extension", "tag", "workSpaceType"));
@@ -36,6 +56,95 @@ public class SearchDao {
 
     public Page<?> search(String searchOn, String field, String operator, String workspace, String filter, String value, int page, int size) {
         PageRequest pageRequest = PageRequest.of(page, size);
+        Criteria criteria = buildCriteria(searchOn, field, workspace, filter, value);
+        log.info(searchOn);
+
+        if ("FOLDER".equals(searchOn)) {
+            return searchInCollection(criteria, pageRequest, FolderMetadata.class);
+        } else {
+            return searchInCollection(criteria, pageRequest, FileMetadata.class);
+        }
+    }
+
+    /**
+     * The same search paged by cursor; see {@link KeysetPager}.
+     */
+    public CursorPage<?> search(String searchOn, String field, String operator, String workspace, String filter, String value,
+                                String cursor, int pageNo, int size, Constants.COUNT_MODE countMode) {
+        Criteria criteria = buildCriteria(searchOn, field, workspace, filter, value);
+        if ("FOLDER".equals(searchOn)) {
+            return keysetPager.page(criteria, cursor, pageNo, size, countMode, FolderMetadata.class, FolderMetadata::getId);
+        } else {
+            return keysetPager.page(criteria, cursor, pageNo, size, countMode, FileMetadata.class, FileMetadata::getId);
+        }
+    }
+
+    /**
+     * The search page together with the counts per extension, tag, workspace and flag of everything it matched, in one
+     * {@code $facet} aggregation. Each value facet keeps its {@link #FACET_SIZE} most frequent values. With
+     * {@code cacheFacets} the counts come from the {@link QueryCache} when the same search ran recently, and only the
+     * page itself is queried.
+     */
+    public FacetedSearchResultDto facetedSearch(String searchOn, String field, String operator, String workspace, String filter,
+                                                String value, int page, int size, boolean cacheFacets) {
+        Criteria criteria = buildCriteria(searchOn, field, workspace, filter, value);
+        Class<?> entityClass = "FOLDER".equals(searchOn) ? FolderMetadata.class : FileMetadata.class;
+        List<String> valueFacets = "FOLDER".equals(searchOn) ? FOLDER_VALUE_FACETS : FILE_VALUE_FACETS;
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "id"));
+
+        if (cacheFacets) {
+            Query query = Query.query(criteria);
+            Document counts = queryCache.get(entityClass, "facets", query,
+                    () -> aggregateFacets(entityClass, criteria, valueFacets, null));
+            List<?> results = mongoTemplate.find(Query.query(criteria).with(pageRequest), entityClass);
+            return toFacetedResult(results, counts, valueFacets);
+        }
+        Document facets = aggregateFacets(entityClass, criteria, valueFacets, pageRequest);
+        List<?> results = facets.getList("results", Document.class).stream()
+                .map(document -> mongoTemplate.getConverter().read(entityClass, document))
+                .toList();
+        return toFacetedResult(results, facets, valueFacets);
+    }
+
+    private Document aggregateFacets(Class<?> entityClass, Criteria criteria, List<String> valueFacets, PageRequest page) {
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("count")).as("total");
+        for (String facet : valueFacets)
+            facets = facets.and(Aggregation.sortByCount(facet), Aggregation.limit(FACET_SIZE)).as(facet);
+        GroupOperation flags = Aggregation.group();
+        for (Map.Entry<String, String> flag : FLAG_FACETS.entrySet())
+            flags = flags.sum(ConditionalOperators.when(Criteria.where(flag.getValue()).is(true)).then(1).otherwise(0)).as(flag.getKey());
+        facets = facets.and(flags).as("flags");
+        if (page != null)
+            facets = facets.and(Aggregation.sort(page.getSort()), Aggregation.skip(page.getOffset()),
+                    Aggregation.limit(page.getPageSize())).as("results");
+        Document result = mongoTemplate.aggregate(Aggregation.newAggregation(entityClass, Aggregation.match(criteria), facets),
+                Document.class).getUniqueMappedResult();
+        return result == null ? new Document() : result;
+    }
+
+    private static FacetedSearchResultDto toFacetedResult(List<?> results, Document facets, List<String> valueFacets) {
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (String facet : valueFacets) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Document bucket : facets.getList(facet, Document.class, List.of()))
+                if (bucket.get("_id") != null)
+                    values.put(bucket.get("_id").toString(), ((Number) bucket.get("count")).longValue());
+            counts.put(facet, values);
+        }
+        Document flagCounts = first(facets.getList("flags", Document.class, List.of()));
+        Map<String, Long> flags = new LinkedHashMap<>();
+        for (String flag : FLAG_FACETS.keySet())
+            flags.put(flag, flagCounts.get(flag) == null ? 0 : ((Number) flagCounts.get(flag)).longValue());
+        counts.put("flags", flags);
+        Object total = first(facets.getList("total", Document.class, List.of())).get("count");
+        return new FacetedSearchResultDto(results, total == null ? 0 : ((Number) total).longValue(), counts);
+    }
+
+    private static Document first(List<Document> documents) {
+        return documents.isEmpty() ? new Document() : documents.get(0);
+    }
+
+    private Criteria buildCriteria(String searchOn, String field, String workspace, String filter, String value) {
         List<Criteria> criteriaList = new ArrayList<>();
         if (isValidFieldForSearchType(field, searchOn)) {
             log.info("isValid");
@@ -50,14 +159,7 @@ public class SearchDao {
         if (!criteriaList.isEmpty()) {
             criteria = new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
         }
-
-        log.info(searchOn);
-
-        if ("FOLDER".equals(searchOn)) {
-            return searchInCollection(criteria, pageRequest, FolderMetadata.class);
-        } else {
-            return searchInCollection(criteria, pageRequest, FileMetadata.class);
-        }
+        return criteria;
     }
 
     <T> Page<T> searchInCollection(Criteria criteria, PageRequest pageRequest, Class<T> entityClass) {
@@ -73,25 +175,77 @@ public class SearchDao {
         return validFieldsPerSearchType.getOrDefault(searchType, Set.of()).contains(field);
     }
 
-    private static void getFilteredSearch(String field, String filter, String value, List<Criteria> criteriaList) {
-        if (value != null && !value.isEmpty()) {
-            switch (filter) {
-                case "isEqualTo":
-                case "contains":
-                    criteriaList.add(Criteria.where(field).regex(".*" + value + ".*", "i")); // 'i' for case-insensitive
-                    break;
-                case "beginsWith":
-                    criteriaList.add(Criteria.where(field).regex("^" + value, "i"));
-                    break;
-                case "endsWith":
-                    criteriaList.add(Criteria.where(field).regex(value + "$", "i"));
-                    break;
-                case "notContains":
-                    criteriaList.add(Criteria.where(field).not().regex(".*" + value + ".*", "i"));
-                    break;
-                default:
-                    break;
-            }
+    /**
+     * Name fields are matched through their stored search keys (see {@link SearchKeys}) so that every operator but
+     * notContains can use an index: equality on the lower-cased key, a prefix as an anchored regex on it, which the
+     * planner turns into index bounds, and a substring by requiring all of its trigrams before confirming the exact
+     * position on the key. Other fields are compared as they are stored. User input is always matched literally.
+     */
+    static void getFilteredSearch(String field, String filter, String value, List<Criteria> criteriaList) {
+        if (value == null || value.isEmpty() || filter == null)
+            return;
+        if (!KEYED_FIELDS.contains(field)) {
+            getRawFilteredSearch(field, filter, value, criteriaList);
+            return;
+        }
+        String key = field + SearchKeys.LOWER_SUFFIX;
+        String grams = field + SearchKeys.GRAMS_SUFFIX;
+        String normalized = SearchKeys.normalize(value);
+        String literal = SearchKeys.escapeRegex(normalized);
+        switch (filter) {
+            case "isEqualTo":
+                criteriaList.add(Criteria.where(key).is(normalized));
+                break;
+            case "beginsWith":
+                criteriaList.add(Criteria.where(key).regex("^" + literal));
+                break;
+            case "contains":
+                addGramLookup(grams, normalized, criteriaList);
+                if (normalized.length() != SearchKeys.GRAM_LENGTH)
+                    criteriaList.add(Criteria.where(key).regex(literal));
+                break;
+            case "endsWith":
+                addGramLookup(grams, normalized, criteriaList);
+                criteriaList.add(Criteria.where(key).regex(literal + "$"));
+                break;
+            case "notContains":
+                criteriaList.add(Criteria.where(key).not().regex(literal));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A value shorter than a trigram has no grams to look up; it is then matched on the key alone, which scans the
+     * key's index rather than the documents.
+     */
+    private static void addGramLookup(String grams, String normalized, List<Criteria> criteriaList) {
+        if (normalized.length() >= SearchKeys.GRAM_LENGTH)
+            criteriaList.add(Criteria.where(grams).all(SearchKeys.grams(normalized)));
+    }
+
+    private static void getRawFilteredSearch(String field, String filter, String value, List<Criteria> criteriaList) {
+        String stored = "workSpaceType".equals(field) ? value.toUpperCase(Locale.ROOT) : value;
+        String literal = SearchKeys.escapeRegex(stored);
+        switch (filter) {
+            case "isEqualTo":
+                criteriaList.add(Criteria.where(field).is(stored));
+                break;
+            case "contains":
+                criteriaList.add(Criteria.where(field).regex(literal));
+                break;
+            case "beginsWith":
+                criteriaList.add(Criteria.where(field).regex("^" + literal));
+                break;
+            case "endsWith":
+                criteriaList.add(Criteria.where(field).regex(literal + "$"));
+                break;
+            case "notContains":
+                criteriaList.add(Criteria.where(field).not().regex(literal));
+                break;
+            default:
+                break;
         }
     }
-}
\ No newline at end of file
+}
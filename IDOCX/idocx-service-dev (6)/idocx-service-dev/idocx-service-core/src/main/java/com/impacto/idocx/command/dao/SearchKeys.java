@@ -0,0 +1,74 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Derived search keys stored next to the searchable name fields: {@code <field>Lower} holds the lower-cased value for
+ * indexed equality and prefix ranges, {@code <field>Grams} its distinct trigrams for substring lookups through a
+ * multikey index. They are filled on every write of the entity, so searching never has to fold case or scan.
+ */
+public final class SearchKeys {
+    public static final int GRAM_LENGTH = 3;
+    public static final String LOWER_SUFFIX = "Lower";
+    public static final String GRAMS_SUFFIX = "Grams";
+
+    private SearchKeys() {
+    }
+
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The distinct trigrams of the normalized value. Values shorter than a trigram are their own single gram, so that
+     * they can still be found by equality on the array.
+     */
+    public static List<String> grams(String value) {
+        String normalized = normalize(value);
+        if (normalized == null || normalized.isEmpty())
+            return List.of();
+        if (normalized.length() < GRAM_LENGTH)
+            return List.of(normalized);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++)
+            grams.add(normalized.substring(i, i + GRAM_LENGTH));
+        return new ArrayList<>(grams);
+    }
+
+    public static void apply(FileMetadata metadata) {
+        metadata.setFileNameLower(normalize(metadata.getFileName()));
+        metadata.setFileNameGrams(grams(metadata.getFileName()));
+        metadata.setExtensionLower(normalize(metadata.getExtension()));
+        metadata.setExtensionGrams(grams(metadata.getExtension()));
+        metadata.setTagLower(normalize(metadata.getTag()));
+        metadata.setTagGrams(grams(metadata.getTag()));
+    }
+
+    public static void apply(FolderMetadata metadata) {
+        metadata.setFolderNameLower(normalize(metadata.getFolderName()));
+        metadata.setFolderNameGrams(grams(metadata.getFolderName()));
+        metadata.setFolderPathLower(normalize(metadata.getFolderPath()));
+        metadata.setFolderPathGrams(grams(metadata.getFolderPath()));
+    }
+
+    /**
+     * Backslash-escapes regex metacharacters instead of {@link java.util.regex.Pattern#quote}: the planner only turns
+     * a regex into index bounds when the prefix is literal characters, which {@code \Q...\E} is not.
+     */
+    public static String escapeRegex(String literal) {
+        StringBuilder escaped = new StringBuilder(literal.length() + 8);
+        for (char c : literal.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0)
+                escaped.append('\\');
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
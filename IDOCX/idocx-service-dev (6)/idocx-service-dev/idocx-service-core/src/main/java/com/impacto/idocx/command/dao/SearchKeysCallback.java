@@ -0,0 +1,23 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes the search keys of file and folder records on every repository or template save. Writes that bypass
+ * entity conversion (bulk upserts, server-side updates) call {@link SearchKeys} themselves.
+ */
+@Component
+public class SearchKeysCallback implements BeforeConvertCallback<Object> {
+
+    @Override
+    public Object onBeforeConvert(Object entity, String collection) {
+        if (entity instanceof FileMetadata fileMetadata)
+            SearchKeys.apply(fileMetadata);
+        else if (entity instanceof FolderMetadata folderMetadata)
+            SearchKeys.apply(folderMetadata);
+        return entity;
+    }
+}
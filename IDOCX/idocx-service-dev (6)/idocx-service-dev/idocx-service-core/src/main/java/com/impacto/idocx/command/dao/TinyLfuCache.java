@@ -0,0 +1,279 @@
+package com.impacto.idocx.command.dao;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size and time bounded map with the W-TinyLFU policy Caffeine uses. New entries go to a small LRU window (1% of the
+ * size); an entry leaving the window only takes the place of the main region's least recently used entry when it was
+ * asked for more often, as estimated by a {@link FrequencySketch}. A scan reading every record once therefore does not
+ * push out the records read all the time. The main region is a segmented LRU: entries read again while on probation
+ * move to the protected segment, which holds 80% of it. Entries expire {@code ttlNanos} after they were loaded.
+ */
+final class TinyLfuCache<K, V> {
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<V> {
+        private V value;
+        private long expiresAt;
+        private Region region = Region.WINDOW;
+
+        private Node(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maximumSize;
+    private final int windowSize;
+    private final int mainSize;
+    private final int protectedSize;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+    private final Map<K, Node<V>> nodes = new HashMap<>();
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<K, Object> loading = new HashMap<>();
+
+    TinyLfuCache(int maximumSize, long ttlNanos) {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.windowSize = Math.max(1, this.maximumSize / 100);
+        this.mainSize = Math.max(0, this.maximumSize - windowSize);
+        this.protectedSize = mainSize * 4 / 5;
+        this.ttlNanos = ttlNanos;
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+
+    /**
+     * The cached value, or the one {@code loader} finds. A loaded value is only kept when its key was not invalidated
+     * while it was loading, since it may have been read before that write. Each load leaves a marker that
+     * invalidating the key removes; {@link #invalidateIf} and {@link #invalidateAll} cannot tell which keys they
+     * cover and remove them all.
+     */
+    Optional<V> get(K key, Function<? super K, Optional<V>> loader) {
+        Object load = new Object();
+        synchronized (this) {
+            sketch.increment(key);
+            Node<V> node = nodes.get(key);
+            if (node != null && node.expiresAt - System.nanoTime() > 0) {
+                onHit(key, node);
+                hits.increment();
+                return Optional.of(node.value);
+            }
+            if (node != null)
+                remove(key, node);
+            misses.increment();
+            loading.put(key, load);
+        }
+        Optional<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(key, load);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (loading.remove(key, load) && loaded.isPresent())
+                put(key, loaded.get());
+        }
+        return loaded;
+    }
+
+    synchronized void invalidate(K key) {
+        loading.remove(key);
+        Node<V> node = nodes.get(key);
+        if (node != null)
+            remove(key, node);
+    }
+
+    synchronized void invalidateIf(Predicate<? super V> predicate) {
+        loading.clear();
+        Iterator<Map.Entry<K, Node<V>>> iterator = nodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Node<V>> entry = iterator.next();
+            if (predicate.test(entry.getValue().value)) {
+                regionOf(entry.getValue()).remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        loading.clear();
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    double hitRatio() {
+        long hitCount = hitCount();
+        long requests = hitCount + missCount();
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    private void onHit(K key, Node<V> node) {
+        switch (node.region) {
+            case WINDOW -> window.get(key);
+            case PROTECTED -> protectedSegment.get(key);
+            case PROBATION -> {
+                probation.remove(key);
+                node.region = Region.PROTECTED;
+                protectedSegment.put(key, node);
+                if (protectedSegment.size() > protectedSize) {
+                    Map.Entry<K, Node<V>> demoted = removeEldest(protectedSegment);
+                    demoted.getValue().region = Region.PROBATION;
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+        }
+    }
+
+    private void put(K key, V value) {
+        if (maximumSize == 0)
+            return;
+        long expiresAt = System.nanoTime() + ttlNanos;
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            node.value = value;
+            node.expiresAt = expiresAt;
+            return;
+        }
+        node = new Node<>(value, expiresAt);
+        nodes.put(key, node);
+        window.put(key, node);
+        if (window.size() > windowSize)
+            admit(removeEldest(window));
+    }
+
+    /**
+     * Moves the entry leaving the window to probation, if the main region has room or the entry is more frequent
+     * than the one it would push out; otherwise the entry itself is dropped.
+     */
+    private void admit(Map.Entry<K, Node<V>> candidate) {
+        if (probation.size() + protectedSegment.size() >= mainSize) {
+            LinkedHashMap<K, Node<V>> victims = probation.isEmpty() ? protectedSegment : probation;
+            K victim = victims.isEmpty() ? null : victims.keySet().iterator().next();
+            boolean victimExpired = victim != null && victims.get(victim).expiresAt - System.nanoTime() <= 0;
+            if (victim == null || !victimExpired && sketch.frequency(candidate.getKey()) <= sketch.frequency(victim)) {
+                nodes.remove(candidate.getKey());
+                evictions.increment();
+                return;
+            }
+            victims.remove(victim);
+            nodes.remove(victim);
+            evictions.increment();
+        }
+        candidate.getValue().region = Region.PROBATION;
+        probation.put(candidate.getKey(), candidate.getValue());
+    }
+
+    private void remove(K key, Node<V> node) {
+        nodes.remove(key);
+        regionOf(node).remove(key);
+    }
+
+    private LinkedHashMap<K, Node<V>> regionOf(Node<V> node) {
+        return switch (node.region) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            case PROTECTED -> protectedSegment;
+        };
+    }
+
+    private static <K, V> Map.Entry<K, Node<V>> removeEldest(LinkedHashMap<K, Node<V>> region) {
+        Iterator<Map.Entry<K, Node<V>>> iterator = region.entrySet().iterator();
+        Map.Entry<K, Node<V>> eldest = iterator.next();
+        Map.Entry<K, Node<V>> removed = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return removed;
+    }
+
+    /**
+     * Count-min sketch of how often keys were asked for: four rows of saturating 4-bit counters, of which the
+     * smallest is the estimate. All counters are halved once ten times the cache size has been counted, so that
+     * popularity fades and a key that was hot yesterday does not hold its place forever.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAXIMUM_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0xb2d4f0a5, 0x5f3a8e9b, 0x8c1e6d47};
+
+        private final byte[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+            this.rows = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = Math.max(10, 10 * maximumSize);
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (rows[i][index] < MAXIMUM_COUNT)
+                    rows[i][index]++;
+            }
+            if (++additions >= sampleSize)
+                reset();
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAXIMUM_COUNT;
+            for (int i = 0; i < DEPTH; i++)
+                frequency = Math.min(frequency, rows[i][indexOf(hash, i)]);
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int index = hash * SEEDS[row];
+            return (index ^ index >>> 16) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : rows)
+                for (int i = 0; i < row.length; i++)
+                    row[i] >>= 1;
+            additions /= 2;
+        }
+
+        private static int spread(int hash) {
+            hash ^= hash >>> 17;
+            hash *= 0xed5ad4bb;
+            return hash ^ hash >>> 11;
+        }
+    }
+}
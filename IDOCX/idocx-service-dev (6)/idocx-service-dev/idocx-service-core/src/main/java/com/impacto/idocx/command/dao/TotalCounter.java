@@ -0,0 +1,54 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the total of a paged query in the way the caller asked for:
+ * <ul>
+ *     <li>{@code EXACT} runs a full count;</li>
+ *     <li>{@code CAPPED} stops counting after {@code idocx.count.cap} records and reports the cap, not exact, when
+ *     there are more;</li>
+ *     <li>{@code ESTIMATED} reads the collection metadata when the query has no filter; MongoDB has no estimate for a
+ *     filter, so filtered queries are capped instead;</li>
+ *     <li>{@code CACHED} keeps exact totals in the {@link QueryCache}, which drops them on writes that may change
+ *     them.</li>
+ * </ul>
+ */
+@Component
+public class TotalCounter {
+    private final MongoTemplate mongoTemplate;
+    private final QueryCache queryCache;
+    private final long cap;
+
+    @Autowired
+    public TotalCounter(Environment environment, MongoTemplate mongoTemplate, QueryCache queryCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.queryCache = queryCache;
+        this.cap = environment.getProperty("idocx.count.cap", Long.class, 1000L);
+    }
+
+    public record Total(long value, boolean exact) {
+        public static final Total NOT_COUNTED = new Total(-1, false);
+    }
+
+    public Total count(Query query, Class<?> entityClass, Constants.COUNT_MODE mode) {
+        return switch (mode) {
+            case NONE -> Total.NOT_COUNTED;
+            case EXACT -> new Total(mongoTemplate.count(query, entityClass), true);
+            case CAPPED -> capped(query, entityClass);
+            case ESTIMATED -> query.getQueryObject().isEmpty()
+                    ? new Total(mongoTemplate.estimatedCount(entityClass), false) : capped(query, entityClass);
+            case CACHED -> new Total(queryCache.get(entityClass, "count", query, () -> mongoTemplate.count(query, entityClass)), true);
+        };
+    }
+
+    private Total capped(Query query, Class<?> entityClass) {
+        long counted = mongoTemplate.count(Query.of(query).limit((int) Math.min(Integer.MAX_VALUE, cap + 1)), entityClass);
+        return counted > cap ? new Total(cap, false) : new Total(counted, true);
+    }
+}
@@ -0,0 +1,39 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.UploadSession;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Atomic updates for upload sessions. Chunks of one session arrive on parallel connections, so they are recorded
+ * with {@code $addToSet} instead of a read-modify-save of the whole document.
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadSessionDao {
+    private final MongoTemplate mongoTemplate;
+
+    public UploadSession markChunkReceived(String sessionId, int chunkIndex) {
+        Query query = new Query(Criteria.where("id").is(sessionId).and("status").is(Constants.UPLOAD_STATUS.OPEN));
+        return mongoTemplate.findAndModify(query, new Update().addToSet("receivedChunks", chunkIndex),
+                FindAndModifyOptions.options().returnNew(true), UploadSession.class);
+    }
+
+    /**
+     * Moves a session from one status to another only if it is still in the expected one, so that two concurrent
+     * commits cannot both register the file. The time of the move is kept in {@code statusChangedAt}.
+     */
+    public UploadSession transition(String sessionId, Constants.UPLOAD_STATUS from, Constants.UPLOAD_STATUS to) {
+        Query query = new Query(Criteria.where("id").is(sessionId).and("status").is(from));
+        return mongoTemplate.findAndModify(query, new Update().set("status", to).set("statusChangedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), UploadSession.class);
+    }
+}
@@ -0,0 +1,16 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.UploadSession;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends MongoRepository<UploadSession, String> {
+    List<UploadSession> findByStatusInAndCreatedAtBefore(List<Constants.UPLOAD_STATUS> statuses, LocalDateTime createdAt);
+
+    List<UploadSession> findByStatusInAndStatusChangedAtBefore(List<Constants.UPLOAD_STATUS> statuses, LocalDateTime statusChangedAt);
+}
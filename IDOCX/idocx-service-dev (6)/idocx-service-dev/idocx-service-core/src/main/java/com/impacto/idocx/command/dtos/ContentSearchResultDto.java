@@ -0,0 +1,20 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentSearchResultDto {
+    private String id;
+    private String fileName;
+    private String filePath;
+    private Constants.WORKSPACE_TYPE workSpaceType;
+    private float score;
+    private List<String> snippets;
+}
@@ -0,0 +1,27 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversionJobDto {
+    private String id;
+    private String documentId;
+    private String format;
+    private int page;
+    private int size;
+    private int priority;
+    private Constants.JOB_STATUS status;
+    private String resultFileName;
+    private long resultSize;
+    private String errorMessage;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
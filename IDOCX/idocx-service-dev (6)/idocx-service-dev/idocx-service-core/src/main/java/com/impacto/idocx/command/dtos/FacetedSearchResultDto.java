@@ -0,0 +1,21 @@
+package com.impacto.idocx.command.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of search results with the facet counts of everything the search matched: per facet, each value and how
+ * many results have it, most frequent first. The flags facet counts favourite, archived and trashed results.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedSearchResultDto {
+    private List<?> results;
+    private long total;
+    private Map<String, Map<String, Long>> facets;
+}
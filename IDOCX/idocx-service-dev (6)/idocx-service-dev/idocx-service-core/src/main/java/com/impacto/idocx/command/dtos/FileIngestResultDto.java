@@ -0,0 +1,18 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileIngestResultDto {
+    private String fileName;
+    private Constants.INGEST_STATUS status;
+    private String id;
+    private String contentHash;
+    private long size;
+    private String message;
+}
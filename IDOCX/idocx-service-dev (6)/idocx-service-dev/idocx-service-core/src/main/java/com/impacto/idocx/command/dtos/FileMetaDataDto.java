@@ -30,4 +30,7 @@ public class FileMetaDataDto {
     private boolean isFavourite;
     private boolean isArchive;
     private boolean isTrash;
+    private LocalDateTime trashedAt;
+    private String contentHash;
+    private long size;
 }
\ No newline at end of file
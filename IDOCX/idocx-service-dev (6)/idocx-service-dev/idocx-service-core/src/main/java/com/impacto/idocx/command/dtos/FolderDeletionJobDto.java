@@ -0,0 +1,26 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderDeletionJobDto {
+    private String id;
+    private String folderId;
+    private String folderPath;
+    private Constants.JOB_STATUS status;
+    private long documentsRemoved;
+    private long filesDeleted;
+    private long filesFailed;
+    private long directoriesDeleted;
+    private String errorMessage;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -16,4 +18,6 @@ public class FolderMetadataDto {
     private boolean isFavourite;
     private boolean isArchive;
     private boolean isTrash;
+    private LocalDateTime trashedAt;
+    private long documentCount;
 }
\ No newline at end of file
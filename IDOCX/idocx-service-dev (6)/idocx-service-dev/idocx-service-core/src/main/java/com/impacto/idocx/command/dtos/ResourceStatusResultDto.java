@@ -0,0 +1,19 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of a status change for one requested id: the updated file or folder, or why it was not updated.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResourceStatusResultDto {
+    private String id;
+    private Constants.UPDATE_STATUS status;
+    private Object resource;
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A completion of a typed name prefix and how many files or folders carry that name.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    private String value;
+    private Constants.SUGGESTION_TYPE type;
+    private long count;
+}
@@ -0,0 +1,26 @@
+package com.impacto.idocx.command.dtos;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDto {
+    private String id;
+    private String fileName;
+    private String filePath;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+    private List<Integer> receivedChunks;
+    private Constants.UPLOAD_STATUS status;
+    private String documentId;
+    private LocalDateTime createdAt;
+    private LocalDateTime committedAt;
+}
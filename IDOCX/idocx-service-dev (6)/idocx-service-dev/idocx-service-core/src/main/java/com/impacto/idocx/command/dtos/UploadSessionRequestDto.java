@@ -0,0 +1,21 @@
+package com.impacto.idocx.command.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequestDto {
+    private String fileName;
+    private String filePath;
+    private String folderName;
+    private String workspaceType;
+    private String tag;
+    private int version;
+    private String remarks;
+    private boolean passwordProtected;
+    private long totalSize;
+    private Long chunkSize;
+}
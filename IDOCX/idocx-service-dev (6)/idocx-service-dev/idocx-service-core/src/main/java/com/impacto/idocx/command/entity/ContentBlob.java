@@ -0,0 +1,20 @@
+package com.impacto.idocx.command.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One stored blob of the content-addressable store, keyed by the SHA-256 of its bytes. {@code refCount} is the number
+ * of file metadata records whose {@code directoryName} points at the blob.
+ */
+@Document(collection = "contentBlobs")
+@Data
+@NoArgsConstructor
+public class ContentBlob {
+    @Id
+    private String id;
+    private long refCount;
+    private long size;
+}
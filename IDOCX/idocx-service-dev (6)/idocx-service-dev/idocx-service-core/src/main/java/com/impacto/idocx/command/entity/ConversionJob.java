@@ -0,0 +1,36 @@
+package com.impacto.idocx.command.entity;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "conversionJobs")
+@Data
+@NoArgsConstructor
+public class ConversionJob {
+    @Id
+    private String id;
+    private String documentId;
+    private String format;
+    private int page;
+    private int size;
+    private Float dpi;
+    private Integer width;
+    private Float quality;
+    private int priority;
+    @Indexed
+    private Constants.JOB_STATUS status;
+    private String resultPath;
+    private String resultFileName;
+    private String resultContentType;
+    private long resultSize;
+    private String errorMessage;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
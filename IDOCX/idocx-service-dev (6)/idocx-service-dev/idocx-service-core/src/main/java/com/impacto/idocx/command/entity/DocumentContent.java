@@ -0,0 +1,34 @@
+package com.impacto.idocx.command.entity;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
+
+/**
+ * Text extracted from a stored file, kept apart from {@link FileMetadata} so listings never load it. The id is the id
+ * of the file record; {@code contentHash} tells whether the text is still current for the file's content.
+ */
+@Document(collection = "documentContents")
+@Data
+@NoArgsConstructor
+public class DocumentContent {
+    @Id
+    private String id;
+    @TextIndexed(weight = 3)
+    private String fileName;
+    @Indexed
+    private String filePath;
+    private Constants.WORKSPACE_TYPE workSpaceType;
+    private String contentHash;
+    // set while the file is in the trash, which hides it from search
+    private boolean trashed;
+    @TextIndexed
+    private String text;
+    @TextScore
+    private Float score;
+}
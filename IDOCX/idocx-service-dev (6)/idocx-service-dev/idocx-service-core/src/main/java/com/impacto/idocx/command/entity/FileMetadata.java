@@ -1,5 +1,6 @@
 package com.impacto.idocx.command.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.impacto.idocx.command.common.Constants;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,10 +10,23 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+@CompoundIndexes({
+        @CompoundIndex(name = "filePath_fileName", def = "{'filePath': 1, 'fileName': 1}", unique = true),
+        @CompoundIndex(name = "filePath_visible_id", def = "{'filePath': 1, 'isTrash': 1, 'isArchive': 1, '_id': 1}"),
+        @CompoundIndex(name = "favourites_id", def = "{'isFavourite': 1, '_id': 1}", partialFilter = "{'isFavourite': true}"),
+        @CompoundIndex(name = "archived_id", def = "{'isArchive': 1, '_id': 1}", partialFilter = "{'isArchive': true}"),
+        @CompoundIndex(name = "trashed_id", def = "{'isTrash': 1, '_id': 1}", partialFilter = "{'isTrash': true}"),
+        @CompoundIndex(name = "trashedAt", def = "{'trashedAt': 1}", partialFilter = "{'isTrash': true}"),
+        @CompoundIndex(name = "trashedWith", def = "{'trashedWith': 1}", partialFilter = "{'isTrash': true}")
+})
 @Document(collection = "fileMetadata")
 @Data
 @AllArgsConstructor
@@ -21,8 +35,10 @@ public class FileMetadata {
 
     @Id
     private String id;
+    @Indexed
     private String fileName;
     private String filePath;
+    @Indexed
     private String directoryName;
     private String documentId;
     private String extension;
@@ -31,6 +47,7 @@ public class FileMetadata {
     private int version;
     private String remarks;
     private String authorizer;
+    @Indexed
     private Constants.WORKSPACE_TYPE workSpaceType;
     @CreatedDate
     private LocalDateTime createdAt;
@@ -43,6 +60,32 @@ public class FileMetadata {
     private boolean isFavourite;
     private boolean isArchive;
     private boolean isTrash;
+    // trash lifecycle, see TrashService: when it was put in the trash, where its content was before it was moved to
+    // the trash area, and the folder it was trashed with
+    private LocalDateTime trashedAt;
+    private String trashedFrom;
+    private String trashedWith;
+    private String contentHash;
+    private long size;
+    // search keys, see SearchKeys
+    @JsonIgnore
+    @Indexed
+    private String fileNameLower;
+    @JsonIgnore
+    @Indexed
+    private List<String> fileNameGrams;
+    @JsonIgnore
+    @Indexed
+    private String extensionLower;
+    @JsonIgnore
+    @Indexed
+    private List<String> extensionGrams;
+    @JsonIgnore
+    @Indexed
+    private String tagLower;
+    @JsonIgnore
+    @Indexed
+    private List<String> tagGrams;
 
     public FileMetadata(String fileName, String filePath, String directoryName) {
         this.fileName = fileName;
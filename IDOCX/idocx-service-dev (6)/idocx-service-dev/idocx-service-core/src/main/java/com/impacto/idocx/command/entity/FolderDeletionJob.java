@@ -0,0 +1,34 @@
+package com.impacto.idocx.command.entity;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "folderDeletionJobs")
+@Data
+@NoArgsConstructor
+public class FolderDeletionJob {
+    @Id
+    private String id;
+    private String folderId;
+    private String folderPath;
+    // where the folder is on disk, in the trash area once it was trashed
+    private String directory;
+    // paced by the IoThrottle, for folders purged by the trash retention
+    private boolean throttled;
+    @Indexed
+    private Constants.JOB_STATUS status;
+    private long documentsRemoved;
+    private long filesDeleted;
+    private long filesFailed;
+    private long directoriesDeleted;
+    private String errorMessage;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
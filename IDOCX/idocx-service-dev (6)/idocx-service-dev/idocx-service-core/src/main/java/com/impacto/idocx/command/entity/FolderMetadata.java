@@ -1,14 +1,27 @@
 package com.impacto.idocx.command.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.impacto.idocx.command.common.Constants;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+@CompoundIndexes({
+        @CompoundIndex(name = "workSpaceType_visible", def = "{'workSpaceType': 1, 'isTrash': 1, 'isArchive': 1}"),
+        @CompoundIndex(name = "favourites_id", def = "{'isFavourite': 1, '_id': 1}", partialFilter = "{'isFavourite': true}"),
+        @CompoundIndex(name = "archived_id", def = "{'isArchive': 1, '_id': 1}", partialFilter = "{'isArchive': true}"),
+        @CompoundIndex(name = "trashed_id", def = "{'isTrash': 1, '_id': 1}", partialFilter = "{'isTrash': true}"),
+        @CompoundIndex(name = "trashedAt", def = "{'trashedAt': 1}", partialFilter = "{'isTrash': true}"),
+        @CompoundIndex(name = "trashedWith", def = "{'trashedWith': 1}", partialFilter = "{'isTrash': true}")
+})
 @Document(collection = "folderMetadata")
 @Data
 @AllArgsConstructor
@@ -17,11 +30,30 @@ public class FolderMetadata {
     @Id
     private String id;
     private String folderName;
+    @Indexed(unique = true)
     private String folderPath;
     private Constants.WORKSPACE_TYPE workSpaceType;
-    private List<FileMetadata> documents;
+    private List<String> documentIds;
     private boolean isFavourite;
     private boolean isArchive;
     private boolean isTrash;
+    // trash lifecycle, see TrashService: when it was put in the trash, where its content was before it was moved to
+    // the trash area, and the folder it was trashed with
+    private LocalDateTime trashedAt;
+    private String trashedFrom;
+    private String trashedWith;
+    // search keys, see SearchKeys
+    @JsonIgnore
+    @Indexed
+    private String folderNameLower;
+    @JsonIgnore
+    @Indexed
+    private List<String> folderNameGrams;
+    @JsonIgnore
+    @Indexed
+    private String folderPathLower;
+    @JsonIgnore
+    @Indexed
+    private List<String> folderPathGrams;
 
 }
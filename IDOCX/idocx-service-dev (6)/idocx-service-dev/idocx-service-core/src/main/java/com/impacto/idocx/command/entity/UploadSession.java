@@ -0,0 +1,38 @@
+package com.impacto.idocx.command.entity;
+
+import com.impacto.idocx.command.common.Constants;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@CompoundIndex(name = "status_createdAt", def = "{'status': 1, 'createdAt': 1}")
+@Document(collection = "uploadSessions")
+@Data
+@NoArgsConstructor
+public class UploadSession {
+    @Id
+    private String id;
+    private String fileName;
+    private String filePath;
+    private String folderName;
+    private String workspaceType;
+    private String tag;
+    private int version;
+    private String remarks;
+    private boolean passwordProtected;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+    private List<Integer> receivedChunks = new ArrayList<>();
+    private Constants.UPLOAD_STATUS status;
+    private String documentId;
+    private LocalDateTime createdAt;
+    private LocalDateTime statusChangedAt;
+    private LocalDateTime committedAt;
+}
@@ -18,7 +18,11 @@ public enum ErrorCode {
     FAILED_TO_UPDATE_FOLDER_EXCEPTION(12),
     FAILED_TO_COMPRESS_RESOURCE_EXCEPTION(13),
     INVALID_EXCEL_FORMAT_EXCEPTION(14),
-    LIMIT_EXCEEDING_EXCEPTION(15);
+    LIMIT_EXCEEDING_EXCEPTION(15),
+    JOB_QUEUE_FULL_EXCEPTION(16),
+    INVALID_CHUNK_EXCEPTION(17),
+    UPLOAD_SESSION_STATE_EXCEPTION(18),
+    INVALID_CURSOR_EXCEPTION(19);
 
     private final int code;
 
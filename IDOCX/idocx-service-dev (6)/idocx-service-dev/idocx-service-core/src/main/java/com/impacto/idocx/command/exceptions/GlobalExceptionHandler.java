@@ -79,6 +79,26 @@ public class GlobalExceptionHandler {
     }
 
 
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<GenericErrorResponse> handleJobQueueFullException(JobQueueFullException ex) {
+        return createResponseEntity(ex.getErrorCode(), ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(InvalidChunkException.class)
+    public ResponseEntity<GenericErrorResponse> handleInvalidChunkException(InvalidChunkException ex) {
+        return createResponseEntity(ex.getErrorCode(), ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<GenericErrorResponse> handleInvalidCursorException(InvalidCursorException ex) {
+        return createResponseEntity(ex.getErrorCode(), ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UploadSessionStateException.class)
+    public ResponseEntity<GenericErrorResponse> handleUploadSessionStateException(UploadSessionStateException ex) {
+        return createResponseEntity(ex.getErrorCode(), ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
     private static ResponseEntity<GenericErrorResponse> createResponseEntity(ErrorCode errorCode, String message, HttpStatus status) {
         log.error("Timestamp: {}, Error handling: ErrorCode: {}, ErrorMessage: {}, HttpStatus: {}",
                 LocalDateTime.now(), errorCode.getCode(), message, status);
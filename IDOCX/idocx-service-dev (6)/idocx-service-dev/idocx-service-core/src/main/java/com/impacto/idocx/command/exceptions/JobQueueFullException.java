@@ -0,0 +1,13 @@
+package com.impacto.idocx.command.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class JobQueueFullException extends RuntimeException {
+    private final ErrorCode errorCode;
+
+    public JobQueueFullException(ErrorCode errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+}
@@ -0,0 +1,28 @@
+package com.impacto.idocx.command.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Describes a single-file conversion result that has been written to an output stream: what it is, what to call it
+ * when downloaded, and the same paging figures the JSON responses report in {@code total}, {@code count} and
+ * {@code currentPage}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversionOutput {
+    public static final String PDF_CONTENT_TYPE = "application/pdf";
+    public static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private String contentType;
+    private String fileName;
+    private long totalPages;
+    private long pageCount;
+    private int currentPage;
+
+    public static ConversionOutput pdf(String fileName, long totalPages, long pageCount, int currentPage) {
+        return new ConversionOutput(PDF_CONTENT_TYPE, fileName, totalPages, pageCount, currentPage);
+    }
+}
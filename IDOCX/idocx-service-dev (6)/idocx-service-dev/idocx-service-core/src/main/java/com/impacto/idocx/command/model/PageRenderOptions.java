@@ -0,0 +1,68 @@
+package com.impacto.idocx.command.model;
+
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a PDF page is rasterized: either at a fixed DPI or scaled to a target pixel width, with an optional JPEG
+ * quality. Thumbnails trade fidelity for speed by allowing image subsampling and fast scaling hints.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageRenderOptions {
+    public static final float DEFAULT_DPI = 300;
+    private static final float MIN_DPI = 18;
+    private static final float MAX_DPI = 600;
+    private static final int MIN_WIDTH = 16;
+    private static final int MAX_WIDTH = 4096;
+
+    private float dpi;
+    private Integer width;
+    private Float quality;
+    private boolean thumbnail;
+
+    public static PageRenderOptions defaults() {
+        return new PageRenderOptions(DEFAULT_DPI, null, null, false);
+    }
+
+    public static PageRenderOptions withDpi(float dpi) {
+        return new PageRenderOptions(dpi, null, null, false);
+    }
+
+    public static PageRenderOptions thumbnail(int width, Float quality) {
+        return of(null, width, quality, true);
+    }
+
+    /**
+     * Builds options from optional request parameters. A width takes precedence over a DPI; a reduced DPI or an
+     * explicit width switches to the fast thumbnail path.
+     */
+    public static PageRenderOptions of(Float dpi, Integer width, Float quality) {
+        boolean preview = width != null || (dpi != null && dpi < DEFAULT_DPI);
+        return of(dpi, width, quality, preview);
+    }
+
+    private static PageRenderOptions of(Float dpi, Integer width, Float quality, boolean thumbnail) {
+        if (dpi != null && (dpi < MIN_DPI || dpi > MAX_DPI))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "DPI must be between " + (int) MIN_DPI + " and " + (int) MAX_DPI);
+        if (width != null && (width < MIN_WIDTH || width > MAX_WIDTH))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Width must be between " + MIN_WIDTH + " and " + MAX_WIDTH);
+        if (quality != null && (quality <= 0 || quality > 1))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Quality must be greater than 0 and at most 1");
+        return new PageRenderOptions(dpi != null ? dpi : DEFAULT_DPI, width, quality, thumbnail);
+    }
+
+    /**
+     * Identifies the rendered output of these options, e.g. {@code 300dpi} or {@code w150-q80-fast}.
+     */
+    public String variant() {
+        StringBuilder variant = new StringBuilder(width != null ? "w" + width : Math.round(dpi) + "dpi");
+        if (quality != null) variant.append("-q").append(Math.round(quality * 100));
+        if (thumbnail) variant.append("-fast");
+        return variant.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.DocumentContentDao;
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import lombok.extern.log4j.Log4j2;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.xssf.extractor.XSSFExcelExtractor;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Keeps the searchable text of stored files in step with their content. Text is extracted in the background after a
+ * file is registered; a file whose content hash has not changed since it was indexed, such as after a rename, only
+ * has its name and location updated. Extracted text is capped at {@code idocx.search.max-content-chars} so the
+ * entry stays well inside the MongoDB document limit.
+ */
+@Service
+@Log4j2
+public class ContentIndexService {
+    private static final Set<String> PLAIN_TEXT_EXTENSIONS = Set.of(".txt", ".csv", ".md", ".json", ".xml", ".html", ".htm", ".log");
+
+    private final DocumentContentDao documentContentDao;
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final int maxContentChars;
+
+    @Autowired
+    public ContentIndexService(Environment environment, DocumentContentDao documentContentDao, PdfDocumentLoader pdfDocumentLoader) {
+        this.documentContentDao = documentContentDao;
+        this.pdfDocumentLoader = pdfDocumentLoader;
+        this.maxContentChars = environment.getProperty("idocx.search.max-content-chars", Integer.class, 1_000_000);
+    }
+
+    public static boolean isIndexable(String extension) {
+        if (extension == null)
+            return false;
+        String normalized = extension.toLowerCase(Locale.ROOT);
+        return ".pdf".equals(normalized) || ".docx".equals(normalized) || ".xlsx".equals(normalized)
+                || PLAIN_TEXT_EXTENSIONS.contains(normalized);
+    }
+
+    @Async("contentIndexExecutor")
+    public void index(FileMetadata fileMetadata) {
+        if (fileMetadata == null || fileMetadata.getId() == null || !isIndexable(fileMetadata.getExtension()))
+            return;
+        try {
+            reindex(fileMetadata);
+        } catch (Exception e) {
+            log.warn("Could not index content of document {}: {}", fileMetadata.getId(), e.getMessage());
+        }
+    }
+
+    void reindex(FileMetadata fileMetadata) throws IOException {
+        String indexedHash = documentContentDao.findContentHash(fileMetadata.getId());
+        if (indexedHash != null && indexedHash.equals(fileMetadata.getContentHash())
+                && documentContentDao.updateLocation(fileMetadata.getId(), fileMetadata.getFileName(), fileMetadata.getFilePath()))
+            return;
+
+        DocumentContent content = new DocumentContent();
+        content.setId(fileMetadata.getId());
+        content.setFileName(fileMetadata.getFileName());
+        content.setFilePath(fileMetadata.getFilePath());
+        content.setWorkSpaceType(fileMetadata.getWorkSpaceType());
+        content.setContentHash(fileMetadata.getContentHash());
+        content.setText(extractText(Paths.get(fileMetadata.getDirectoryName()), fileMetadata.getExtension()));
+        documentContentDao.save(content);
+    }
+
+    public void remove(Collection<String> documentIds) {
+        documentContentDao.remove(documentIds);
+    }
+
+    String extractText(Path file, String extension) throws IOException {
+        String text;
+        switch (extension.toLowerCase(Locale.ROOT)) {
+            case ".pdf" -> {
+                try (PDDocument document = pdfDocumentLoader.load(file.toFile())) {
+                    text = new PDFTextStripper().getText(document);
+                }
+            }
+            case ".docx" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(in))) {
+                    text = extractor.getText();
+                }
+            }
+            case ".xlsx" -> {
+                try (InputStream in = Files.newInputStream(file);
+                     XSSFExcelExtractor extractor = new XSSFExcelExtractor(new XSSFWorkbook(in))) {
+                    text = extractor.getText();
+                }
+            }
+            default -> text = readPlainText(file);
+        }
+        return text.length() > maxContentChars ? text.substring(0, maxContentChars) : text;
+    }
+
+    private String readPlainText(Path file) throws IOException {
+        // malformed bytes are replaced rather than failing the whole file
+        char[] buffer = new char[(int) Math.min(maxContentChars, Files.size(file))];
+        int read = 0;
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            int n;
+            while (read < buffer.length && (n = reader.read(buffer, read, buffer.length - read)) > 0)
+                read += n;
+        }
+        return new String(buffer, 0, read);
+    }
+}
@@ -0,0 +1,139 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.ContentBlobDao;
+import com.impacto.idocx.command.exceptions.DirectoryCreationException;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.FailedToDeleteResorceException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Optional content-addressable backend for uploaded files. Each distinct content is kept once under
+ * {@code ${file.storage.location}/.cas/ab/cd/<sha-256>} and reference counted, so the same PDF uploaded into many
+ * folders costs one copy on disk. Disabled by default with {@code idocx.storage.cas-enabled}; files stored before it
+ * was switched on keep their per-folder copies and are recognised by {@link #isBlob(Path)} returning {@code false}.
+ */
+@Service
+@Log4j2
+public class ContentStore {
+    private static final int LOCK_STRIPES = 64;
+
+    private final boolean enabled;
+    private final Path casRoot;
+    private final Path tempDirectory;
+    private final ContentBlobDao contentBlobDao;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @Autowired
+    public ContentStore(Environment environment, ContentBlobDao contentBlobDao) {
+        this.enabled = environment.getProperty("idocx.storage.cas-enabled", Boolean.class, false);
+        this.casRoot = Paths.get(environment.getProperty("file.storage.location")).resolve(".cas").normalize().toAbsolutePath();
+        this.tempDirectory = casRoot.resolve("tmp");
+        this.contentBlobDao = contentBlobDao;
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+        if (enabled) {
+            try {
+                Files.createDirectories(tempDirectory);
+            } catch (IOException e) {
+                log.info("Could not initialize the content store. Error: {}", ErrorCode.STORAGE_INITIALIZATION_EXCEPTION);
+                throw new DirectoryCreationException(ErrorCode.STORAGE_INITIALIZATION_EXCEPTION, "Could not initialize content store");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A scratch file on the same file system as the blobs, so that {@link #store} is a rename rather than a copy.
+     */
+    public Path newTempFile() throws IOException {
+        return Files.createTempFile(tempDirectory, "upload-", ".part");
+    }
+
+    public Path blobPath(String hash) {
+        return casRoot.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public boolean isBlob(Path path) {
+        return path.normalize().toAbsolutePath().startsWith(casRoot);
+    }
+
+    public boolean isBlob(String directoryName) {
+        return directoryName != null && isBlob(Paths.get(directoryName));
+    }
+
+    /**
+     * Takes a reference on the blob for {@code hash} and returns its path. {@code source} holds the content; it is
+     * moved into place if this is the first copy and deleted otherwise.
+     */
+    public Path store(Path source, String hash, long size) throws IOException {
+        Path blob = blobPath(hash);
+        synchronized (lockFor(hash)) {
+            contentBlobDao.acquire(hash, size);
+            try {
+                if (Files.exists(blob)) {
+                    Files.delete(source);
+                } else {
+                    Files.createDirectories(blob.getParent());
+                    move(source, blob);
+                }
+            } catch (IOException | RuntimeException e) {
+                contentBlobDao.release(hash);
+                throw e;
+            }
+        }
+        return blob;
+    }
+
+    /**
+     * Drops a reference taken by {@link #store} and unlinks the blob when it was the last one.
+     */
+    public void release(String hash) {
+        Path blob = blobPath(hash);
+        synchronized (lockFor(hash)) {
+            if (!contentBlobDao.release(hash))
+                return;
+            try {
+                Files.deleteIfExists(blob);
+                log.info("Deleted unreferenced blob: {}", blob);
+            } catch (IOException e) {
+                throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION, "Failed to delete the blob: " + blob);
+            }
+        }
+    }
+
+    /**
+     * Releases the blob behind a file metadata {@code directoryName}. Returns {@code false}, doing nothing, when the
+     * path is a plain per-folder copy that the caller still has to delete itself.
+     */
+    public boolean releaseBlob(String directoryName) {
+        if (!isBlob(directoryName))
+            return false;
+        release(Paths.get(directoryName).getFileName().toString());
+        return true;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+}
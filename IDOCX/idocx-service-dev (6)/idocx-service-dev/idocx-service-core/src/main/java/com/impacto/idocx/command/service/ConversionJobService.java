@@ -0,0 +1,306 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.ConversionJobRepository;
+import com.impacto.idocx.command.dtos.ConversionJobDto;
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.DirectoryCreationException;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.JobQueueFullException;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Runs PDF conversions in the background so that long conversions do not hold a request thread. Jobs are persisted
+ * in the {@code conversionJobs} collection, executed highest priority first on a fixed-size pool with a bounded
+ * queue, and their results are written under {@code ${file.storage.location}/.jobs}. Finished jobs are deleted with
+ * their results {@code idocx.jobs.retention-hours} after they completed.
+ */
+@Service
+@Log4j2
+public class ConversionJobService {
+    private static final String JOBS_DIRECTORY = ".jobs";
+    static final int MIN_PRIORITY = 0;
+    static final int MAX_PRIORITY = 10;
+
+    private final ConversionJobRepository conversionJobRepository;
+    private final PDFConversionsService pdfConversionsService;
+    private final ModelMapper modelMapper;
+    private final Path jobsLocation;
+    private final Semaphore queueSlots;
+    private final Duration retention;
+    private final ThreadPoolExecutor jobExecutor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    public ConversionJobService(Environment environment, ConversionJobRepository conversionJobRepository,
+                                PDFConversionsService pdfConversionsService, ModelMapper modelMapper) {
+        this.conversionJobRepository = conversionJobRepository;
+        this.pdfConversionsService = pdfConversionsService;
+        this.modelMapper = modelMapper;
+        this.jobsLocation = Paths.get(environment.getProperty("file.storage.location")).resolve(JOBS_DIRECTORY);
+        this.queueSlots = new Semaphore(environment.getProperty("idocx.jobs.queue-capacity", Integer.class, 100));
+        this.retention = Duration.ofHours(environment.getProperty("idocx.jobs.retention-hours", Long.class, 24L));
+        int poolSize = environment.getProperty("idocx.jobs.pool-size", Integer.class, 2);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("conversion-job-");
+        threadFactory.setDaemon(true);
+        this.jobExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), threadFactory);
+        try {
+            Files.createDirectories(jobsLocation);
+        } catch (IOException e) {
+            log.info("Could not create conversion job directory. Error: {}", ErrorCode.STORAGE_INITIALIZATION_EXCEPTION);
+            throw new DirectoryCreationException(ErrorCode.STORAGE_INITIALIZATION_EXCEPTION, "Could not initialize conversion job storage");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Picks up jobs that were still queued when the service stopped; jobs that were running are marked failed
+     * because their partial output cannot be trusted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        for (ConversionJob job : conversionJobRepository.findByStatusIn(List.of(Constants.JOB_STATUS.QUEUED, Constants.JOB_STATUS.RUNNING))) {
+            if (job.getStatus() == Constants.JOB_STATUS.RUNNING) {
+                markFailed(job, "Interrupted by a service restart");
+            } else if (queueSlots.tryAcquire()) {
+                enqueue(job);
+            } else {
+                markFailed(job, "Conversion queue was full after a service restart");
+            }
+        }
+    }
+
+    /**
+     * Queues a conversion. {@code priority} runs from {@link #MIN_PRIORITY} to {@link #MAX_PRIORITY}, higher first;
+     * values outside that range are clamped to it. A queue slot is taken before the job is saved, so concurrent
+     * submits cannot overfill the queue; the slot is given back when a worker picks the job up.
+     */
+    public GenericResponse<ConversionJobDto> submit(String documentId, String format, int page, int size,
+                                                    PageRenderOptions options, int priority) {
+        pdfConversionsService.validateFormat(format);
+        pdfConversionsService.getFileMetadataById(documentId);
+        if (!queueSlots.tryAcquire())
+            throw new JobQueueFullException(ErrorCode.JOB_QUEUE_FULL_EXCEPTION, "Conversion queue is full, try again later");
+
+        ConversionJobDto jobDto;
+        try {
+            jobDto = enqueue(newJob(documentId, format, page, size, options, priority));
+        } catch (RuntimeException e) {
+            queueSlots.release();
+            throw e;
+        }
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                jobDto);
+    }
+
+    private ConversionJob newJob(String documentId, String format, int page, int size, PageRenderOptions options,
+                                 int priority) {
+        ConversionJob job = new ConversionJob();
+        job.setDocumentId(documentId);
+        job.setFormat(format.toUpperCase());
+        job.setPage(page);
+        job.setSize(size);
+        job.setDpi(options.getWidth() == null ? options.getDpi() : null);
+        job.setWidth(options.getWidth());
+        job.setQuality(options.getQuality());
+        job.setPriority(Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority)));
+        job.setStatus(Constants.JOB_STATUS.QUEUED);
+        job.setSubmittedAt(LocalDateTime.now());
+        return job;
+    }
+
+    /**
+     * Saves the job and hands it to the pool. Called holding a queue slot.
+     */
+    private ConversionJobDto enqueue(ConversionJob job) {
+        ConversionJob savedJob = conversionJobRepository.save(job);
+        // map before handing the job to a worker, which starts updating it straight away
+        ConversionJobDto jobDto = modelMapper.map(savedJob, ConversionJobDto.class);
+        jobExecutor.execute(new PrioritizedJob(savedJob, sequence.getAndIncrement()));
+        return jobDto;
+    }
+
+    /**
+     * Deletes completed and failed jobs older than the retention, result directory first so that a failure leaves
+     * the record to be tried again.
+     */
+    @Scheduled(fixedDelayString = "${idocx.jobs.cleanup-interval-ms:3600000}")
+    public void purgeExpiredJobs() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(retention);
+        for (ConversionJob job : conversionJobRepository.findByStatusInAndCompletedAtBefore(
+                List.of(Constants.JOB_STATUS.COMPLETED, Constants.JOB_STATUS.FAILED), expiredBefore)) {
+            try {
+                FileSystemUtils.deleteRecursively(jobsLocation.resolve(job.getId()));
+                conversionJobRepository.delete(job);
+            } catch (IOException e) {
+                log.warn("Could not delete result of conversion job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    public GenericResponse<ConversionJobDto> getJob(String jobId) {
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                modelMapper.map(findJob(jobId), ConversionJobDto.class));
+    }
+
+    public ConversionJob getCompletedJob(String jobId) {
+        ConversionJob job = findJob(jobId);
+        if (job.getStatus() != Constants.JOB_STATUS.COMPLETED)
+            throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION,
+                    "Result of job " + jobId + " is not available, job is " + job.getStatus());
+        return job;
+    }
+
+    public Resource loadResult(ConversionJob job) {
+        Resource resource = new FileSystemResource(job.getResultPath());
+        if (!resource.exists())
+            throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Result of job " + job.getId() + " no longer exists");
+        return resource;
+    }
+
+    private ConversionJob findJob(String jobId) {
+        return conversionJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Job with id: " + jobId + " not found"));
+    }
+
+    void run(ConversionJob job) {
+        job.setStatus(Constants.JOB_STATUS.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        conversionJobRepository.save(job);
+
+        Path jobDirectory = jobsLocation.resolve(job.getId());
+        Path partFile = jobDirectory.resolve("result.part");
+        try {
+            Files.createDirectories(jobDirectory);
+            String resultFileName;
+            String contentType;
+            try (OutputStream out = Files.newOutputStream(partFile)) {
+                if (pdfConversionsService.isStreamable(job.getFormat())) {
+                    FileMetadata fileMetadata = pdfConversionsService.getFileMetadataById(job.getDocumentId());
+                    pdfConversionsService.streamPdfPagesAsZip(fileMetadata, job.getFormat(), job.getPage(), job.getSize(),
+                            PageRenderOptions.of(job.getDpi(), job.getWidth(), job.getQuality()), out);
+                    resultFileName = job.getDocumentId() + "-pages.zip";
+                    contentType = "application/zip";
+                } else {
+                    List<byte[]> parts = pdfConversionsService.conversion(job.getDocumentId(), job.getFormat(), job.getPage(), job.getSize()).getData();
+                    String extension = job.getFormat().toLowerCase();
+                    if (parts.size() == 1) {
+                        out.write(parts.get(0));
+                        resultFileName = job.getDocumentId() + "." + extension;
+                        contentType = "application/octet-stream";
+                    } else {
+                        writeZip(parts, extension, out);
+                        resultFileName = job.getDocumentId() + "-" + extension + ".zip";
+                        contentType = "application/zip";
+                    }
+                }
+            }
+            Path resultFile = jobDirectory.resolve(resultFileName);
+            Files.move(partFile, resultFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            job.setResultPath(resultFile.toString());
+            job.setResultFileName(resultFileName);
+            job.setResultContentType(contentType);
+            job.setResultSize(Files.size(resultFile));
+            job.setStatus(Constants.JOB_STATUS.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            conversionJobRepository.save(job);
+        } catch (Exception e) {
+            log.error("Conversion job {} failed", job.getId(), e);
+            deleteQuietly(partFile);
+            markFailed(job, e.getMessage());
+        }
+    }
+
+    private static void writeZip(List<byte[]> parts, String extension, OutputStream out) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(out);
+        for (int i = 0; i < parts.size(); i++) {
+            zos.putNextEntry(new ZipEntry("part-" + (i + 1) + "." + extension));
+            zos.write(parts.get(i));
+            zos.closeEntry();
+        }
+        zos.finish();
+    }
+
+    private void markFailed(ConversionJob job, String message) {
+        job.setStatus(Constants.JOB_STATUS.FAILED);
+        job.setErrorMessage(message);
+        job.setCompletedAt(LocalDateTime.now());
+        conversionJobRepository.save(job);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Queue entry ordered by descending priority, then by submission order.
+     */
+    private final class PrioritizedJob implements Runnable, Comparable<PrioritizedJob> {
+        private final ConversionJob job;
+        private final long sequenceNumber;
+
+        private PrioritizedJob(ConversionJob job, long sequenceNumber) {
+            this.job = job;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            queueSlots.release();
+            ConversionJobService.this.run(job);
+        }
+
+        @Override
+        public int compareTo(PrioritizedJob other) {
+            int byPriority = Integer.compare(other.job.getPriority(), job.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.impacto.idocx.command.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs a batch of uploaded files through three stages: writing to disk, hashing and persisting the metadata. Writes
+ * and hashes of different files overlap on their own pools, while persistence runs one file at a time in request
+ * order, because files of one upload share the same folder document. At most {@code idocx.upload.pipeline.max-in-flight}
+ * files of a batch are between the first and the last stage, which bounds the staged data on disk. A failing file
+ * only yields a failed {@link Outcome}; the rest of the batch carries on.
+ */
+@Service
+@Log4j2
+public class FileIngestionPipeline {
+
+    private final ExecutorService writeExecutor;
+    private final ExecutorService digestExecutor;
+    private final ExecutorService persistExecutor;
+    private final int maxInFlight;
+
+    @Autowired
+    public FileIngestionPipeline(Environment environment) {
+        this.writeExecutor = newPool("ingest-write-", environment.getProperty("idocx.upload.pipeline.write-threads", Integer.class, 4));
+        this.digestExecutor = newPool("ingest-digest-", environment.getProperty("idocx.upload.pipeline.digest-threads", Integer.class,
+                Runtime.getRuntime().availableProcessors()));
+        this.persistExecutor = newPool("ingest-persist-", environment.getProperty("idocx.upload.pipeline.persist-threads", Integer.class, 2));
+        this.maxInFlight = Math.max(1, environment.getProperty("idocx.upload.pipeline.max-in-flight", Integer.class, 16));
+    }
+
+    private static ExecutorService newPool(String prefix, int size) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(Math.max(1, size), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdownNow();
+        digestExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface Stage<I, O> {
+        O apply(I input) throws Exception;
+    }
+
+    @Getter
+    public static final class Outcome<R> {
+        private final R value;
+        private final Throwable error;
+
+        private Outcome(R value, Throwable error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Processes {@code items} and returns one outcome per item, in the same order. A stage that fails is responsible
+     * for cleaning up what it was handed; later stages are skipped for that item.
+     */
+    public <T, W, D, R> List<Outcome<R>> process(List<T> items, Stage<T, W> write, Stage<W, D> digest, Stage<D, R> persist) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<Outcome<R>>> outcomes = new ArrayList<>(items.size());
+        CompletableFuture<?> previous = CompletableFuture.completedFuture(null);
+        for (T item : items) {
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<D> digested = CompletableFuture.supplyAsync(() -> run(write, item), writeExecutor)
+                    .thenApplyAsync(written -> run(digest, written), digestExecutor);
+            CompletableFuture<Outcome<R>> persisted = CompletableFuture.allOf(previous, digested)
+                    .handleAsync((ignored, failure) -> {
+                        if (digested.isCompletedExceptionally())
+                            return new Outcome<R>(null, causeOf(digested));
+                        try {
+                            return new Outcome<>(persist.apply(digested.join()), null);
+                        } catch (Exception e) {
+                            return new Outcome<R>(null, e);
+                        }
+                    }, persistExecutor)
+                    .whenComplete((outcome, failure) -> inFlight.release());
+            outcomes.add(persisted);
+            previous = persisted;
+        }
+        return outcomes.stream().map(CompletableFuture::join).toList();
+    }
+
+    private static <I, O> O run(Stage<I, O> stage, I input) {
+        try {
+            return stage.apply(input);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+}
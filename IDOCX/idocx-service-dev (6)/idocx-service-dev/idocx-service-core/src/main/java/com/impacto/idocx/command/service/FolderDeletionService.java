@@ -0,0 +1,266 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.FolderDeletionJobRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderDeletionJob;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Deletes folders in the background so that large trees do not hold a request thread. The records of the folder and
+ * everything below it are removed first, with one {@code deleteMany} per collection on the path prefix, so the folder
+ * disappears from listings straight away. The directory is then walked without collecting the tree, and its files are
+ * deleted in batches of {@code idocx.deletion.batch-size} on a pool of {@code idocx.deletion.pool-size} threads.
+ * Jobs are persisted in the {@code folderDeletionJobs} collection with their progress, and unfinished jobs are run
+ * again after a restart: walking the directory again only deletes what is left. Folders get here from the trash, see
+ * {@link TrashService}; the file deletes of folders purged by the trash retention are paced by the
+ * {@link IoThrottle}, those asked for explicitly run at the speed of the pool.
+ */
+@Service
+@Log4j2
+public class FolderDeletionService {
+    private final FolderDeletionJobRepository folderDeletionJobRepository;
+    private final FolderTreeDao folderTreeDao;
+    private final ContentStore contentStore;
+    private final SuggestionService suggestionService;
+    private final RenderedPageCache renderedPageCache;
+    private final IoThrottle ioThrottle;
+    private final ModelMapper modelMapper;
+    private final int poolSize;
+    private final int batchSize;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService fileExecutor;
+
+    @Autowired
+    public FolderDeletionService(Environment environment, FolderDeletionJobRepository folderDeletionJobRepository,
+                                 FolderTreeDao folderTreeDao, ContentStore contentStore, SuggestionService suggestionService,
+                                 RenderedPageCache renderedPageCache, IoThrottle ioThrottle, ModelMapper modelMapper) {
+        this.folderDeletionJobRepository = folderDeletionJobRepository;
+        this.folderTreeDao = folderTreeDao;
+        this.contentStore = contentStore;
+        this.suggestionService = suggestionService;
+        this.renderedPageCache = renderedPageCache;
+        this.ioThrottle = ioThrottle;
+        this.modelMapper = modelMapper;
+        this.poolSize = environment.getProperty("idocx.deletion.pool-size", Integer.class, 4);
+        this.batchSize = environment.getProperty("idocx.deletion.batch-size", Integer.class, 500);
+        CustomizableThreadFactory jobThreadFactory = new CustomizableThreadFactory("folder-deletion-");
+        jobThreadFactory.setDaemon(true);
+        this.jobExecutor = Executors.newSingleThreadExecutor(jobThreadFactory);
+        CustomizableThreadFactory fileThreadFactory = new CustomizableThreadFactory("folder-deletion-worker-");
+        fileThreadFactory.setDaemon(true);
+        this.fileExecutor = Executors.newFixedThreadPool(poolSize, fileThreadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        fileExecutor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        for (FolderDeletionJob job : folderDeletionJobRepository.findByStatusIn(List.of(Constants.JOB_STATUS.QUEUED, Constants.JOB_STATUS.RUNNING)))
+            jobExecutor.execute(() -> run(job));
+    }
+
+    /**
+     * Queues the deletion of the folder, whose files are stored under {@code directory}. The file deletes of a
+     * {@code throttled} job are paced by the {@link IoThrottle}.
+     */
+    public FolderDeletionJobDto submit(FolderMetadata folderMetadata, Path directory, boolean throttled) {
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderId(folderMetadata.getId());
+        job.setFolderPath(folderMetadata.getFolderPath());
+        job.setDirectory(directory.toString());
+        job.setThrottled(throttled);
+        job.setStatus(Constants.JOB_STATUS.QUEUED);
+        job.setSubmittedAt(LocalDateTime.now());
+        FolderDeletionJob savedJob = folderDeletionJobRepository.save(job);
+        // map before handing the job to the worker, which starts updating it straight away
+        FolderDeletionJobDto jobDto = modelMapper.map(savedJob, FolderDeletionJobDto.class);
+        jobExecutor.execute(() -> run(savedJob));
+        return jobDto;
+    }
+
+    public boolean isPending(String folderId) {
+        return folderDeletionJobRepository.existsByFolderIdAndStatusIn(folderId,
+                List.of(Constants.JOB_STATUS.QUEUED, Constants.JOB_STATUS.RUNNING));
+    }
+
+    public FolderDeletionJobDto getJob(String jobId) {
+        return modelMapper.map(folderDeletionJobRepository.findById(jobId)
+                        .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Job with id: " + jobId + " not found")),
+                FolderDeletionJobDto.class);
+    }
+
+    void run(FolderDeletionJob job) {
+        job.setStatus(Constants.JOB_STATUS.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        // files that failed in an earlier run are tried again
+        job.setFilesFailed(0);
+        folderDeletionJobRepository.save(job);
+        try {
+            job.setDocumentsRemoved(job.getDocumentsRemoved() + removeRecords(job));
+            folderDeletionJobRepository.save(job);
+            // jobs queued before the trash existed have no directory
+            deleteDirectory(job, Paths.get(job.getDirectory() != null ? job.getDirectory() : job.getFolderPath()));
+            if (job.getFilesFailed() > 0) {
+                markFailed(job, job.getFilesFailed() + " files could not be deleted");
+            } else {
+                job.setStatus(Constants.JOB_STATUS.COMPLETED);
+                job.setCompletedAt(LocalDateTime.now());
+                folderDeletionJobRepository.save(job);
+            }
+        } catch (Exception e) {
+            log.error("Deletion of folder {} failed", job.getFolderPath(), e);
+            markFailed(job, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the records below the folder and then gives back the content its files referenced outside the
+     * directory: blobs, and files that were trashed on their own and moved to the trash area. A failure in between
+     * leaves unreferenced content rather than a record pointing at released content. Pages rendered from the files
+     * are dropped from the {@link RenderedPageCache}.
+     */
+    private long removeRecords(FolderDeletionJob job) {
+        String folderPath = job.getFolderPath();
+        List<String> blobs = new ArrayList<>();
+        List<Path> trashedFiles = new ArrayList<>();
+        List<String> fileIds = new ArrayList<>();
+        try (Stream<FileMetadata> files = folderTreeDao.streamSubtreeFiles(folderPath)) {
+            files.forEach(file -> {
+                fileIds.add(file.getId());
+                if (contentStore.isBlob(file.getDirectoryName()))
+                    blobs.add(file.getDirectoryName());
+                else if (file.getTrashedFrom() != null)
+                    trashedFiles.add(Paths.get(file.getDirectoryName()));
+                if (!file.isTrash())
+                    suggestionService.removeFile(file);
+            });
+        }
+        try (Stream<FolderMetadata> folders = folderTreeDao.streamSubtreeFolders(folderPath)) {
+            folders.filter(folder -> !folder.isTrash()).forEach(suggestionService::removeFolder);
+        }
+        long removed = folderTreeDao.deleteSubtree(folderPath);
+        fileIds.forEach(renderedPageCache::invalidate);
+        blobs.forEach(contentStore::releaseBlob);
+        for (Path file : trashedFiles) {
+            pace(job);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete trashed file {}: {}", file, e.getMessage());
+            }
+        }
+        return removed;
+    }
+
+    private void deleteDirectory(FolderDeletionJob job, Path root) throws IOException {
+        if (!Files.exists(root))
+            return;
+        AtomicLong deleted = new AtomicLong(job.getFilesDeleted());
+        AtomicLong failed = new AtomicLong(job.getFilesFailed());
+        List<Path> batch = new ArrayList<>(batchSize);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                batch.add(file);
+                if (batch.size() >= batchSize)
+                    flush(job, batch, deleted, failed);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("Could not visit {}: {}", file, e.getMessage());
+                failed.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                // the files of a directory are all deleted before the directory itself
+                flush(job, batch, deleted, failed);
+                try {
+                    Files.delete(directory);
+                    job.setDirectoriesDeleted(job.getDirectoriesDeleted() + 1);
+                } catch (IOException deleteFailure) {
+                    log.warn("Could not delete directory {}: {}", directory, deleteFailure.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        flush(job, batch, deleted, failed);
+    }
+
+    /**
+     * Deletes the batched files spread over the pool, waits for all of them and records the progress.
+     */
+    private void flush(FolderDeletionJob job, List<Path> batch, AtomicLong deleted, AtomicLong failed) {
+        if (batch.isEmpty())
+            return;
+        int chunkSize = (batch.size() + poolSize - 1) / poolSize;
+        List<CompletableFuture<Void>> chunks = new ArrayList<>(poolSize);
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<Path> chunk = List.copyOf(batch.subList(from, Math.min(batch.size(), from + chunkSize)));
+            chunks.add(CompletableFuture.runAsync(() -> chunk.forEach(file -> {
+                pace(job);
+                try {
+                    Files.deleteIfExists(file);
+                    deleted.incrementAndGet();
+                } catch (IOException e) {
+                    log.warn("Could not delete file {}: {}", file, e.getMessage());
+                    failed.incrementAndGet();
+                }
+            }), fileExecutor));
+        }
+        CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+        batch.clear();
+        job.setFilesDeleted(deleted.get());
+        job.setFilesFailed(failed.get());
+        folderDeletionJobRepository.save(job);
+    }
+
+    private void pace(FolderDeletionJob job) {
+        if (job.isThrottled())
+            ioThrottle.acquire();
+    }
+
+    private void markFailed(FolderDeletionJob job, String message) {
+        job.setStatus(Constants.JOB_STATUS.FAILED);
+        job.setErrorMessage(message);
+        job.setCompletedAt(LocalDateTime.now());
+        folderDeletionJobRepository.save(job);
+    }
+}
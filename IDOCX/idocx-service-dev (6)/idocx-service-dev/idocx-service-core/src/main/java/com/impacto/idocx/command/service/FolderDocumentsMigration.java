@@ -0,0 +1,73 @@
+package com.impacto.idocx.command.service;
+
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Converts folders written before files were referenced by id: the embedded {@code documents} array is replaced by
+ * the ids of the file records stored under the folder's path. Runs at startup unless
+ * {@code idocx.migration.folder-documents.enabled} is false; migrated folders no longer match, so running it again
+ * is a single empty query.
+ */
+@Component
+@Log4j2
+public class FolderDocumentsMigration implements ApplicationRunner {
+    static final String FOLDER_COLLECTION = "folderMetadata";
+    static final String FILE_COLLECTION = "fileMetadata";
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public FolderDocumentsMigration(Environment environment, MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = environment.getProperty("idocx.migration.folder-documents.enabled", Boolean.class, true);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled)
+            migrate();
+    }
+
+    public int migrate() {
+        Query legacyFolders = new Query(Criteria.where("documents").exists(true));
+        legacyFolders.fields().include("folderPath");
+        int migrated = 0;
+        try (Stream<Document> folders = mongoTemplate.stream(legacyFolders, Document.class, FOLDER_COLLECTION)) {
+            for (Document folder : (Iterable<Document>) folders::iterator) {
+                List<String> documentIds = documentIdsUnder(folder.getString("folderPath"));
+                Update update = new Update().unset("documents");
+                if (!documentIds.isEmpty())
+                    update.addToSet("documentIds").each(documentIds.toArray());
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(folder.get("_id"))), update, FOLDER_COLLECTION);
+                migrated++;
+            }
+        }
+        if (migrated > 0)
+            log.info("Migrated {} folders from embedded documents to document ids", migrated);
+        return migrated;
+    }
+
+    private List<String> documentIdsUnder(String folderPath) {
+        Query files = new Query(Criteria.where("filePath").is(folderPath));
+        files.fields().include("_id");
+        return mongoTemplate.find(files, Document.class, FILE_COLLECTION).stream()
+                .map(file -> file.get("_id"))
+                .map(id -> id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id))
+                .toList();
+    }
+}
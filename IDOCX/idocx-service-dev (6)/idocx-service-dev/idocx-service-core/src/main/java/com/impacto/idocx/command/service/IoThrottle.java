@@ -0,0 +1,39 @@
+package com.impacto.idocx.command.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces background disk work nobody is waiting for, the purge of what outlived the trash retention, to at most
+ * {@code idocx.background-io.ops-per-second} file operations per second over all threads, so that it leaves the disk
+ * to requests. Each operation takes the next free slot and waits for it; 0 or less turns the limit off.
+ */
+@Component
+public class IoThrottle {
+    private final long intervalNanos;
+    private long nextSlot;
+
+    @Autowired
+    public IoThrottle(Environment environment) {
+        int opsPerSecond = environment.getProperty("idocx.background-io.ops-per-second", Integer.class, 200);
+        this.intervalNanos = opsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / opsPerSecond : 0;
+    }
+
+    public void acquire() {
+        if (intervalNanos == 0)
+            return;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0)
+            LockSupport.parkNanos(wait);
+    }
+}
@@ -2,7 +2,7 @@ package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
-import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.MetadataCache;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.exceptions.ErrorCode;
 import com.impacto.idocx.command.exceptions.FailedToCompressResourcesException;
@@ -11,8 +11,9 @@ import com.impacto.idocx.command.exceptions.InvalidExcelFormatException;
 import com.impacto.idocx.command.exceptions.LimitExceedingException;
 import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
 import com.impacto.idocx.command.exceptions.UnsupportedException;
+import com.impacto.idocx.command.model.ConversionOutput;
+import com.impacto.idocx.command.model.PageRenderOptions;
 import lombok.RequiredArgsConstructor;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -25,7 +26,6 @@ import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
@@ -47,6 +47,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -54,6 +55,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -64,28 +66,50 @@ public class PDFConversionsService {
     public static final String RANGE = "Range";
     public static final String RANDOM = "Random";
     private static final int MAX_RESOLUTION = 150;
-    public static final int DPI = 300;
+    public static final List<String> STREAMABLE_FORMATS = List.of("JPEG", "PNG", "TIFF");
 
-    private final FileMetadataRepository fileMetadataRepository;
+    private final MetadataCache metadataCache;
+    private final PDFRenderingService pdfRenderingService;
+    private final RenderedPageCache renderedPageCache;
+    private final PdfDocumentLoader pdfDocumentLoader;
 
     public GenericResponse<List<byte[]>> conversion(String documentId, String format, int page, int size) throws IOException {
-        if (!Arrays.stream(Constants.EXTENSIONS.values())
-                .anyMatch(enumValue -> enumValue.name().equals(format.toUpperCase())))
-            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported Extension format: " + format);
+        return conversion(documentId, format, page, size, PageRenderOptions.defaults());
+    }
+
+    public GenericResponse<List<byte[]>> conversion(String documentId, String format, int page, int size, PageRenderOptions options) throws IOException {
+        validateFormat(format);
         return switch (Constants.EXTENSIONS.valueOf(format.toUpperCase())) {
             case ZIP -> convertPdfAsZip(documentId);
             case DOC -> convertPdfToWordBytes(documentId);
             case TXT -> convertPdfPagesToTextFile(documentId, page, size);
             case DOCX -> convertPdfToDocxBytes(documentId);
-            case TIFF -> convertPdfToTiff(documentId, page, size);
+            case TIFF -> convertPdfToTiff(documentId, page, size, options);
             case XLSX -> convertPdfToXlsxBytes(documentId);
-            default -> convertPdfToJpegOrPng(documentId, format.toUpperCase(), page, size);
+            default -> convertPdfToJpegOrPng(documentId, format.toUpperCase(), page, size, options);
         };
     }
 
+    public void validateFormat(String format) {
+        if (!Arrays.stream(Constants.EXTENSIONS.values())
+                .anyMatch(enumValue -> enumValue.name().equals(format.toUpperCase())))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported Extension format: " + format);
+    }
+
+    public boolean isStreamable(String format) {
+        return STREAMABLE_FORMATS.stream().anyMatch(streamable -> streamable.equalsIgnoreCase(format));
+    }
+
     public File getFileById(String documentId) {
-        FileMetadata fileMetadata = fileMetadataRepository.findById(documentId)
+        return toFile(getFileMetadataById(documentId));
+    }
+
+    public FileMetadata getFileMetadataById(String documentId) {
+        return metadataCache.findFile(documentId)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + documentId + " not found"));
+    }
+
+    private static File toFile(FileMetadata fileMetadata) {
         Path filePath = Paths.get(fileMetadata.getDirectoryName());
         return new File(filePath.toUri());
     }
@@ -123,7 +147,7 @@ public class PDFConversionsService {
         File sourceFile = getFileById(documentId);
         List<byte[]> docsFilesAsBytes = new ArrayList<>();
 
-        try (PDDocument pdfDocument = Loader.loadPDF(sourceFile)) {
+        try (PDDocument pdfDocument = pdfDocumentLoader.load(sourceFile)) {
             ByteArrayOutputStream out;
             try (XWPFDocument docxDocument = new XWPFDocument()) {
                 out = new ByteArrayOutputStream();
@@ -146,7 +170,7 @@ public class PDFConversionsService {
         File sourceFile = getFileById(documentId);
         List<byte[]> txtFilesAsBytes = new ArrayList<>();
 
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
             int documentPages = document.getNumberOfPages();
             if (size == -1) size = documentPages;
             int startPage = Math.max(page - 1, 0);
@@ -175,38 +199,111 @@ public class PDFConversionsService {
     }
 
     public GenericResponse<List<byte[]>> convertPdfToJpegOrPng(String documentId, String format, int page, int size) throws IOException {
-        File sourceFile = getFileById(documentId);
+        return convertPdfToJpegOrPng(documentId, format, page, size, PageRenderOptions.defaults());
+    }
+
+    public GenericResponse<List<byte[]>> convertPdfToJpegOrPng(String documentId, String format, int page, int size,
+                                                               PageRenderOptions options) throws IOException {
+        FileMetadata fileMetadata = getFileMetadataById(documentId);
         List<byte[]> images = new ArrayList<>();
 
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            int documentPages = document.getNumberOfPages();
-            if (size == -1) size = documentPages;
-            int startPage = Math.max(page - 1, 0);
-            int endPage = Math.min(startPage + size, documentPages);
+        int documentPages = pdfRenderingService.countPages(toFile(fileMetadata));
+        if (size == -1) size = documentPages;
+        int startPage = Math.max(page - 1, 0);
+        int endPage = Math.min(startPage + size, documentPages);
 
-            for (int pageIndex = startPage; pageIndex < endPage; pageIndex++) {
-                BufferedImage bim = pdfRenderer.renderImageWithDPI(pageIndex, DPI);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(bim, format, baos);
-                images.add(baos.toByteArray());
+        renderCachedPages(fileMetadata, startPage, endPage, format, options, (pageIndex, image) -> images.add(image));
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                images,
+                documentPages,
+                endPage - startPage,
+                page
+        );
+    }
+
+    public FileMetadata getStreamablePdf(String documentId, String format) {
+        if (!isStreamable(format))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported streaming format: " + format);
+        return getFileMetadataById(documentId);
+    }
+
+    /**
+     * Writes each rendered page as its own ZIP entry as soon as it is available, so only the pages currently
+     * being rendered are held in memory regardless of the document size.
+     */
+    public void streamPdfPagesAsZip(FileMetadata fileMetadata, String format, int page, int size, PageRenderOptions options,
+                                    OutputStream outputStream) throws IOException {
+        String imageFormat = format.toUpperCase();
+        ZipOutputStream zos = new ZipOutputStream(outputStream);
+        zos.setLevel(Deflater.BEST_SPEED);
+
+        int documentPages = pdfRenderingService.countPages(toFile(fileMetadata));
+        if (size == -1) size = documentPages;
+        int startPage = Math.max(page - 1, 0);
+        int endPage = Math.min(startPage + size, documentPages);
+
+        renderCachedPages(fileMetadata, startPage, endPage, imageFormat, options,
+                (pageIndex, image) -> {
+                    zos.putNextEntry(new ZipEntry("page-" + (pageIndex + 1) + "." + imageFormat.toLowerCase()));
+                    zos.write(image);
+                    zos.closeEntry();
+                    zos.flush();
+                });
+        zos.finish();
+    }
+
+    /**
+     * Passes pages {@code startPage} (inclusive) to {@code endPage} (exclusive) to {@code pageConsumer} in order,
+     * serving what it can from the {@link RenderedPageCache} and rendering only the pages that are not cached.
+     */
+    public void renderCachedPages(FileMetadata fileMetadata, int startPage, int endPage, String format, PageRenderOptions options,
+                                  PDFRenderingService.PageConsumer pageConsumer) throws IOException {
+        File sourceFile = toFile(fileMetadata);
+        long generation = renderedPageCache.generation(fileMetadata.getId());
+        List<Integer> missingPages = new ArrayList<>();
+        for (int pageIndex = startPage; pageIndex < endPage; pageIndex++) {
+            if (!renderedPageCache.contains(pageKey(fileMetadata, pageIndex, format, options)))
+                missingPages.add(pageIndex);
+        }
+
+        int[] nextPage = {startPage};
+        pdfRenderingService.renderPages(sourceFile, missingPages, format, options, (pageIndex, image) -> {
+            emitCachedPages(fileMetadata, sourceFile, generation, nextPage[0], pageIndex, format, options, pageConsumer);
+            renderedPageCache.put(pageKey(fileMetadata, pageIndex, format, options), generation, image);
+            pageConsumer.accept(pageIndex, image);
+            nextPage[0] = pageIndex + 1;
+        });
+        emitCachedPages(fileMetadata, sourceFile, generation, nextPage[0], endPage, format, options, pageConsumer);
+    }
+
+    private void emitCachedPages(FileMetadata fileMetadata, File sourceFile, long generation, int fromPage, int toPage,
+                                 String format, PageRenderOptions options, PDFRenderingService.PageConsumer pageConsumer) throws IOException {
+        for (int pageIndex = fromPage; pageIndex < toPage; pageIndex++) {
+            RenderedPageCache.PageKey key = pageKey(fileMetadata, pageIndex, format, options);
+            byte[] image = renderedPageCache.get(key);
+            if (image != null) {
+                pageConsumer.accept(pageIndex, image);
+            } else {
+                // evicted since the lookup, render it again
+                pdfRenderingService.renderPages(sourceFile, List.of(pageIndex), format, options, (renderedIndex, renderedImage) -> {
+                    renderedPageCache.put(key, generation, renderedImage);
+                    pageConsumer.accept(renderedIndex, renderedImage);
+                });
             }
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    images,
-                    documentPages,
-                    endPage - startPage,
-                    page
-            );
         }
     }
 
+    private static RenderedPageCache.PageKey pageKey(FileMetadata fileMetadata, int pageIndex, String format, PageRenderOptions options) {
+        return new RenderedPageCache.PageKey(fileMetadata.getId(), fileMetadata.getVersion(), pageIndex, options.variant(), format.toUpperCase());
+    }
+
     public GenericResponse<List<byte[]>> splitPDF(String documentId, String splitType, String splitNumbers) throws IOException {
         File sourceFile = getFileById(documentId);
 
         List<Integer> pagesToExtract = new ArrayList<>();
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
             determinePagesToExtract(splitType, splitNumbers, document, pagesToExtract);
 
             List<byte[]> txtFilesAsBytes = extractTextFromPages(document, pagesToExtract);
@@ -279,6 +376,11 @@ public class PDFConversionsService {
 
 
     public GenericResponse<byte[]> convertImageToPdf(String documentId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, convertImageToPdf(documentId, out));
+    }
+
+    public ConversionOutput convertImageToPdf(String documentId, OutputStream out) throws IOException {
         File sourceFile = getFileById(documentId);
         if (!sourceFile.exists())
             throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File not exist with this documentID. " + documentId);
@@ -288,7 +390,12 @@ public class PDFConversionsService {
             throw new FileReadingException(ErrorCode.FILE_READING_EXCEPTION, "The file could not be opened as an image: " + sourceFile);
         }
 
-        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        writeImageAsPdf(image, out);
+        return ConversionOutput.pdf(documentId + ".pdf", 1, 1, 1);
+    }
+
+    private void writeImageAsPdf(BufferedImage image, OutputStream out) throws IOException {
+        try (PDDocument document = pdfDocumentLoader.newDocument()) {
             PDPage page = new PDPage(new PDRectangle(image.getWidth(), image.getHeight()));
             document.addPage(page);
             PDImageXObject pdImage = LosslessFactory.createFromImage(document, image);
@@ -298,35 +405,29 @@ public class PDFConversionsService {
             }
 
             document.save(out);
-            byte[] pdfBytes = out.toByteArray();
-
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    pdfBytes, 1, 1, 1
-            );
         }
     }
 
     public GenericResponse<byte[]> rotatePDF(String documentId) throws IOException {
-        File sourceFile = getFileById(documentId);
-        byte[] rotatedPdfBytes;
-        int totalOriginalPages;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, rotatePDF(documentId, out));
+    }
 
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
-            totalOriginalPages = document.getNumberOfPages();
+    public ConversionOutput rotatePDF(String documentId, OutputStream out) throws IOException {
+        File sourceFile = getFileById(documentId);
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
+            int totalOriginalPages = document.getNumberOfPages();
             document.getPages().forEach(page -> page.setRotation(90));
-
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                document.save(outputStream);
-                rotatedPdfBytes = outputStream.toByteArray();
-            }
+            document.save(out);
+            return ConversionOutput.pdf(documentId + "-rotated.pdf", totalOriginalPages, 1, 0);
         }
+    }
 
+    private static GenericResponse<byte[]> toResponse(ByteArrayOutputStream out, ConversionOutput output) {
         return new GenericResponse<>(
                 Constants.RESPONSE_STATUS.OK.getValue(),
                 Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                rotatedPdfBytes, totalOriginalPages, 1, 0
+                out.toByteArray(), output.getTotalPages(), output.getPageCount(), output.getCurrentPage()
         );
     }
 
@@ -334,7 +435,7 @@ public class PDFConversionsService {
         File sourceFile = getFileById(documentId);
         List<Integer> pagesToRemove = new ArrayList<>();
         List<byte[]> removedPagesAsBytes = new ArrayList<>();
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
             if (SINGLE.equalsIgnoreCase(removeType)) {
                 extractedRemoveSingle(removeNumber, document, pagesToRemove);
             } else if (RANGE.equalsIgnoreCase(removeType)) {
@@ -364,7 +465,7 @@ public class PDFConversionsService {
 
 
     private byte[] getModifiedDocumentBytes(List<Integer> pagesToRemove, PDDocument originalDocument) throws IOException {
-        try (PDDocument modifiedDocument = new PDDocument(); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+        try (PDDocument modifiedDocument = pdfDocumentLoader.newDocument(); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
             for (int i = 0; i < originalDocument.getNumberOfPages(); i++) {
                 if (!pagesToRemove.contains(i + 1)) {
                     PDPage page = originalDocument.getPage(i);
@@ -398,27 +499,18 @@ public class PDFConversionsService {
 
 
     public GenericResponse<byte[]> compressPDF(String documentId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, compressPDF(documentId, out));
+    }
+
+    public ConversionOutput compressPDF(String documentId, OutputStream out) throws IOException {
         File sourceFile = getFileById(documentId);
-        byte[] compressedPdfBytes;
-        int totalOriginalPages;
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
-            totalOriginalPages = document.getNumberOfPages();
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
+            int totalOriginalPages = document.getNumberOfPages();
             compressImages(document);
-
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                document.save(outputStream); // Save the compressed document to a byte array
-                compressedPdfBytes = outputStream.toByteArray();
-            }
+            document.save(out);
+            return ConversionOutput.pdf(documentId + "-compressed.pdf", totalOriginalPages, 1, 0);
         }
-
-        return new GenericResponse<>(
-                Constants.RESPONSE_STATUS.OK.getValue(),
-                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                compressedPdfBytes,
-                totalOriginalPages,
-                1,
-                0
-        );
     }
 
     public void compressImages(PDDocument document) throws IOException {
@@ -456,6 +548,11 @@ public class PDFConversionsService {
     }
 
     public GenericResponse<byte[]> convertTiffToPdf(String documentId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, convertTiffToPdf(documentId, out));
+    }
+
+    public ConversionOutput convertTiffToPdf(String documentId, OutputStream out) throws IOException {
         File sourceFile = getFileById(documentId);
 
 
@@ -464,31 +561,20 @@ public class PDFConversionsService {
             throw new FileReadingException(ErrorCode.FILE_READING_EXCEPTION, "The file could not be opened as an image: " + sourceFile);
         }
 
-        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            PDPage page = new PDPage(new PDRectangle(image.getWidth(), image.getHeight()));
-            document.addPage(page);
-            PDImageXObject pdImage = LosslessFactory.createFromImage(document, image);
-
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.drawImage(pdImage, 0, 0);
-            }
-
-            document.save(out);
-            byte[] pdfBytes = out.toByteArray();
-
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    pdfBytes, 1, 1, 1
-            );
-        }
+        writeImageAsPdf(image, out);
+        return ConversionOutput.pdf(documentId + ".pdf", 1, 1, 1);
     }
 
 
     public GenericResponse<byte[]> convertTextToPdf(String documentId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, convertTextToPdf(documentId, out));
+    }
+
+    public ConversionOutput convertTextToPdf(String documentId, OutputStream out) throws IOException {
         File sourceFile = getFileById(documentId);
 
-        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (PDDocument document = pdfDocumentLoader.newDocument()) {
             PDPage page = new PDPage(PDRectangle.A4);
             document.addPage(page);
 
@@ -509,36 +595,31 @@ public class PDFConversionsService {
             }
 
             document.save(out);
-            byte[] pdfBytes = out.toByteArray();
-
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    pdfBytes, 1, 1, 1
-            );
+            return ConversionOutput.pdf(documentId + ".pdf", 1, 1, 1);
         }
     }
 
     public GenericResponse<byte[]> convertXlsToPdf(String documentId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, convertXlsToPdf(documentId, out));
+    }
+
+    /**
+     * The workbook is currently written back out as XLSX rather than rendered to PDF, so the binary response is
+     * labelled with the spreadsheet content type.
+     */
+    public ConversionOutput convertXlsToPdf(String documentId, OutputStream out) throws IOException {
         File xlsFile = getFileById(documentId);
 
         try (FileInputStream inputStream = new FileInputStream(xlsFile);
-             Workbook workbook = WorkbookFactory.create(inputStream);
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+             Workbook workbook = WorkbookFactory.create(inputStream)) {
 
             workbookToPdf(workbook, out);
-
-            byte[] pdfBytes = out.toByteArray();
-
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    pdfBytes, 1, 1, 1
-            );
+            return new ConversionOutput(ConversionOutput.XLSX_CONTENT_TYPE, documentId + ".xlsx", 1, 1, 1);
         }
     }
 
-    private void workbookToPdf(Workbook workbook, ByteArrayOutputStream out) throws IOException {
+    private void workbookToPdf(Workbook workbook, OutputStream out) throws IOException {
         if (workbook instanceof XSSFWorkbook) {
             XSSFWorkbook xssfWorkbook = (XSSFWorkbook) workbook;
             xssfWorkbook.write(out);
@@ -551,7 +632,7 @@ public class PDFConversionsService {
         File sourceFile = getFileById(documentId);
         List<byte[]> docxFilesAsBytes = new ArrayList<>();
 
-        try (PDDocument pdfDocument = Loader.loadPDF(sourceFile)) {
+        try (PDDocument pdfDocument = pdfDocumentLoader.load(sourceFile)) {
             try (XWPFDocument docxDocument = new XWPFDocument()) {
 
                 PDFTextStripper stripper = new PDFTextStripper();
@@ -578,43 +659,41 @@ public class PDFConversionsService {
 
 
     public GenericResponse<List<byte[]>> convertPdfToTiff(String documentId, int page, int size) throws IOException {
-        File sourceFile = getFileById(documentId);
-        List<byte[]> images = new ArrayList<>();
+        return convertPdfToTiff(documentId, page, size, PageRenderOptions.defaults());
+    }
 
-        try (PDDocument document = Loader.loadPDF(sourceFile)) {
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            int documentPages = document.getNumberOfPages();
-            if (size == -1) size = documentPages;
-            int startPage = Math.max(page - 1, 0);
-            int endPage = Math.min(startPage + size, documentPages);
+    public GenericResponse<List<byte[]>> convertPdfToTiff(String documentId, int page, int size, PageRenderOptions options) throws IOException {
+        FileMetadata fileMetadata = getFileMetadataById(documentId);
+        List<byte[]> images = new ArrayList<>();
 
-            for (int pageIndex = startPage; pageIndex < endPage; pageIndex++) {
-                BufferedImage bim = pdfRenderer.renderImageWithDPI(pageIndex, DPI);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(bim, "TIFF", baos);
-                byte[] tiffBytes = baos.toByteArray();
-                if (tiffBytes.length <= 50 * 1024 * 1024) { // Less than 50MB
-                    images.add(tiffBytes);
-                } else {
-                    throw new LimitExceedingException(ErrorCode.LIMIT_EXCEEDING_EXCEPTION,"Converted TIFF file exceeds 50MB limit.");
-                }
-            }
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    images,
-                    documentPages,
-                    endPage - startPage,
-                    page
-            );
-        }
+        int documentPages = pdfRenderingService.countPages(toFile(fileMetadata));
+        if (size == -1) size = documentPages;
+        int startPage = Math.max(page - 1, 0);
+        int endPage = Math.min(startPage + size, documentPages);
+
+        renderCachedPages(fileMetadata, startPage, endPage, "TIFF", options,
+                (pageIndex, tiffBytes) -> {
+                    if (tiffBytes.length <= 50 * 1024 * 1024) { // Less than 50MB
+                        images.add(tiffBytes);
+                    } else {
+                        throw new LimitExceedingException(ErrorCode.LIMIT_EXCEEDING_EXCEPTION,"Converted TIFF file exceeds 50MB limit.");
+                    }
+                });
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                images,
+                documentPages,
+                endPage - startPage,
+                page
+        );
     }
 
     public GenericResponse<List<byte[]>> convertPdfToXlsxBytes(String documentId) throws IOException {
         File sourceFile = getFileById(documentId);
         List<byte[]> xlsxFilesAsBytes = new ArrayList<>();
 
-        try (PDDocument pdfDocument = Loader.loadPDF(sourceFile)) {
+        try (PDDocument pdfDocument = pdfDocumentLoader.load(sourceFile)) {
             try (Workbook workbook = new XSSFWorkbook()) {
                 Sheet sheet = workbook.createSheet("PDF_Content");
                 PDFTextStripper pdfStripper = new PDFTextStripper();
@@ -642,33 +721,23 @@ public class PDFConversionsService {
     }
 
     public GenericResponse<byte[]> mergePdfDocuments(String documentIds) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return toResponse(out, mergePdfDocuments(documentIds, out));
+    }
+
+    public ConversionOutput mergePdfDocuments(String documentIds, OutputStream out) throws IOException {
         List<String> documentIdList = Arrays.asList(documentIds.split(","));
         List<File> sourceFiles = new ArrayList<>();
         for (String documentId : documentIdList) {
             sourceFiles.add(getFileById(documentId));
         }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        try {
-            PDFMergerUtility mergerUtility = new PDFMergerUtility();
-            mergerUtility.setDestinationStream(outputStream);
-            for (File sourceFile : sourceFiles) {
-                mergerUtility.addSource(sourceFile);
-            }
-            mergerUtility.mergeDocuments(null);
-
-            byte[] mergedContent = outputStream.toByteArray();
-
-            return new GenericResponse<>(
-                    Constants.RESPONSE_STATUS.OK.getValue(),
-                    Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                    mergedContent
-            );
-        } finally {
-            if (outputStream != null) {
-                outputStream.close();
-            }
+        PDFMergerUtility mergerUtility = new PDFMergerUtility();
+        mergerUtility.setDestinationStream(out);
+        for (File sourceFile : sourceFiles) {
+            mergerUtility.addSource(sourceFile);
         }
+        pdfDocumentLoader.merge(mergerUtility);
+        return ConversionOutput.pdf("merged.pdf", 0, 0, 0);
     }
 }
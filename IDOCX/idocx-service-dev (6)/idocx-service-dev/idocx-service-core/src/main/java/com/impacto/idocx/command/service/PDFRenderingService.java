@@ -0,0 +1,310 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.model.PageRenderOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rasterizes PDF pages on a shared, bounded worker pool. A single request is split across up to
+ * {@code idocx.render.parallelism} workers, but only across pool threads that are free when it starts: a worker
+ * waiting in the pool's queue could never be reached by the consumer, whose other workers are blocked until it
+ * renders its pages. Every worker opens its own {@link PDDocument} because PDFBox documents are not thread-safe.
+ * Rendered pages are always handed back in page order.
+ */
+@Service
+@Log4j2
+public class PDFRenderingService {
+
+    private static final int PAGES_AHEAD_PER_WORKER = 2;
+
+    private final ExecutorService renderExecutor;
+    private final Semaphore freeWorkers;
+    private final int parallelism;
+    private final PdfDocumentLoader pdfDocumentLoader;
+
+    @Autowired
+    public PDFRenderingService(Environment environment, PdfDocumentLoader pdfDocumentLoader) {
+        int poolSize = environment.getProperty("idocx.render.pool-size", Integer.class, Runtime.getRuntime().availableProcessors());
+        this.parallelism = Math.max(1, environment.getProperty("idocx.render.parallelism", Integer.class, 4));
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pdf-render-");
+        threadFactory.setDaemon(true);
+        this.renderExecutor = Executors.newFixedThreadPool(Math.max(1, poolSize), threadFactory);
+        this.freeWorkers = new Semaphore(Math.max(1, poolSize));
+        this.pdfDocumentLoader = pdfDocumentLoader;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderExecutor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(int pageIndex, byte[] image) throws IOException;
+    }
+
+    public int countPages(File sourceFile) throws IOException {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    public void renderPages(File sourceFile, List<Integer> pageIndexes, String format, float dpi, PageConsumer pageConsumer) throws IOException {
+        renderPages(sourceFile, pageIndexes, format, PageRenderOptions.withDpi(dpi), pageConsumer);
+    }
+
+    /**
+     * Renders the given zero-based page indexes and passes each encoded image to {@code pageConsumer} in the
+     * order of {@code pageIndexes}. Workers may only run a small window ahead of the consumer, so memory stays
+     * bounded to a few pages per worker however many pages are requested. When fewer than two pool threads are
+     * free the pages are rendered on the calling thread.
+     */
+    public void renderPages(File sourceFile, List<Integer> pageIndexes, String format, PageRenderOptions options,
+                            PageConsumer pageConsumer) throws IOException {
+        if (pageIndexes.isEmpty()) return;
+        int workers = reserveWorkers(Math.min(parallelism, pageIndexes.size()));
+        if (workers <= 1) {
+            freeWorkers.release(workers);
+            renderSequentially(sourceFile, pageIndexes, format, options, pageConsumer);
+            return;
+        }
+
+        OrderedPageBuffer buffer = new OrderedPageBuffer(workers * PAGES_AHEAD_PER_WORKER);
+        List<StrideTask> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            int firstPosition = worker;
+            tasks.add(new StrideTask(() -> renderStride(sourceFile, pageIndexes, firstPosition, workers, format, options, buffer)));
+        }
+        try {
+            for (StrideTask task : tasks)
+                task.future = renderExecutor.submit(task);
+            for (int position = 0; position < pageIndexes.size(); position++) {
+                pageConsumer.accept(pageIndexes.get(position), buffer.take(position));
+            }
+        } finally {
+            buffer.close();
+            tasks.forEach(StrideTask::cancel);
+        }
+    }
+
+    /**
+     * Takes up to {@code wanted} of the free pool threads without waiting, and returns how many it got.
+     */
+    private int reserveWorkers(int wanted) {
+        int reserved = 0;
+        while (reserved < wanted && freeWorkers.tryAcquire())
+            reserved++;
+        return reserved;
+    }
+
+    private void renderSequentially(File sourceFile, List<Integer> pageIndexes, String format, PageRenderOptions options,
+                                    PageConsumer pageConsumer) throws IOException {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
+            PDFRenderer pdfRenderer = createRenderer(document, options);
+            for (Integer pageIndex : pageIndexes) {
+                pageConsumer.accept(pageIndex, encode(render(pdfRenderer, document, pageIndex, options), format, options.getQuality()));
+            }
+        }
+    }
+
+    private void renderStride(File sourceFile, List<Integer> pageIndexes, int firstPosition, int stride,
+                              String format, PageRenderOptions options, OrderedPageBuffer buffer) {
+        try (PDDocument document = pdfDocumentLoader.load(sourceFile)) {
+            PDFRenderer pdfRenderer = createRenderer(document, options);
+            for (int position = firstPosition; position < pageIndexes.size(); position += stride) {
+                buffer.awaitSlot(position);
+                BufferedImage bim = render(pdfRenderer, document, pageIndexes.get(position), options);
+                buffer.put(position, encode(bim, format, options.getQuality()));
+            }
+        } catch (CancellationException e) {
+            log.debug("Rendering of {} cancelled", sourceFile);
+        } catch (Throwable e) {
+            buffer.fail(e);
+        }
+    }
+
+    /**
+     * Thumbnails let PDFBox subsample embedded images and favour speed over quality when scaling, which is much
+     * cheaper for scanned pages and invisible at preview sizes.
+     */
+    private static PDFRenderer createRenderer(PDDocument document, PageRenderOptions options) {
+        PDFRenderer pdfRenderer = new PDFRenderer(document);
+        if (options.isThumbnail()) {
+            pdfRenderer.setSubsamplingAllowed(true);
+            RenderingHints hints = new RenderingHints(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            hints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            hints.put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            pdfRenderer.setRenderingHints(hints);
+        }
+        return pdfRenderer;
+    }
+
+    private static BufferedImage render(PDFRenderer pdfRenderer, PDDocument document, int pageIndex, PageRenderOptions options) throws IOException {
+        float scale = options.getDpi() / 72f;
+        if (options.getWidth() != null) {
+            PDPage page = document.getPage(pageIndex);
+            PDRectangle cropBox = page.getCropBox();
+            boolean rotated = page.getRotation() % 180 != 0;
+            scale = options.getWidth() / (rotated ? cropBox.getHeight() : cropBox.getWidth());
+        }
+        return pdfRenderer.renderImage(pageIndex, scale, ImageType.RGB);
+    }
+
+    private static byte[] encode(BufferedImage image, String format, Float quality) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // quality only applies to lossy JPEG output, the other formats are written with their defaults
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (quality == null || !"JPEG".equalsIgnoreCase(format) || !writers.hasNext()) {
+            ImageIO.write(image, format, baos);
+            return baos.toByteArray();
+        }
+        ImageWriter writer = writers.next();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(baos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * A stride submitted to the pool, holding one of the reserved threads until it is done. A stride cancelled
+     * before it started gives its thread back itself, since it will never run.
+     */
+    private final class StrideTask implements Runnable {
+        private final Runnable stride;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<?> future;
+
+        private StrideTask(Runnable stride) {
+            this.stride = stride;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) return;
+            try {
+                stride.run();
+            } finally {
+                freeWorkers.release();
+            }
+        }
+
+        private void cancel() {
+            if (claimed.compareAndSet(false, true))
+                freeWorkers.release();
+            if (future != null)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Hands rendered pages from the workers to the consuming thread in order. A worker may only render a page
+     * that lies within {@code capacity} positions of the next page the consumer is waiting for; the page being
+     * waited for is always inside that window, so the workers can never starve the consumer.
+     */
+    private static final class OrderedPageBuffer {
+        private final Map<Integer, byte[]> pages = new HashMap<>();
+        private final int capacity;
+        private int nextPosition;
+        private Throwable failure;
+        private boolean closed;
+
+        private OrderedPageBuffer(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void awaitSlot(int position) throws InterruptedException {
+            while (!closed && position >= nextPosition + capacity) {
+                wait();
+            }
+            if (closed) {
+                throw new CancellationException();
+            }
+        }
+
+        synchronized void put(int position, byte[] image) {
+            pages.put(position, image);
+            notifyAll();
+        }
+
+        synchronized byte[] take(int position) throws IOException {
+            try {
+                while (!pages.containsKey(position)) {
+                    if (failure != null) {
+                        throw rethrow(failure);
+                    }
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for page rendering");
+            }
+            nextPosition = position + 1;
+            notifyAll();
+            return pages.remove(position);
+        }
+
+        synchronized void fail(Throwable throwable) {
+            if (failure == null) {
+                failure = throwable;
+            }
+            notifyAll();
+        }
+
+        synchronized void close() {
+            closed = true;
+            pages.clear();
+            notifyAll();
+        }
+
+        private static IOException rethrow(Throwable failure) {
+            if (failure instanceof IOException ioException) {
+                return ioException;
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            return new IOException("Failed to render page", failure);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.exceptions.DirectoryCreationException;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import lombok.extern.log4j.Log4j2;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Single place where PDF documents are opened, created and merged. Each document keeps at most
+ * {@code idocx.pdf.max-main-memory-bytes} of stream data on the heap and spills the rest to a scratch file under
+ * {@code idocx.pdf.scratch-dir}, so a large scanned PDF costs disk space rather than heap.
+ */
+@Service
+@Log4j2
+public class PdfDocumentLoader {
+
+    private final MemoryUsageSetting memoryUsageSetting;
+
+    @Autowired
+    public PdfDocumentLoader(Environment environment) {
+        long maxMainMemoryBytes = environment.getProperty("idocx.pdf.max-main-memory-bytes", Long.class, 32L * 1024 * 1024);
+        long maxStorageBytes = environment.getProperty("idocx.pdf.max-storage-bytes", Long.class, -1L);
+        Path scratchDir = Paths.get(environment.getProperty("idocx.pdf.scratch-dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "idocx-pdf-scratch").toString()));
+        try {
+            Files.createDirectories(scratchDir);
+        } catch (IOException e) {
+            log.info("Could not create PDF scratch directory {}. Error: {}", scratchDir, ErrorCode.STORAGE_INITIALIZATION_EXCEPTION);
+            throw new DirectoryCreationException(ErrorCode.STORAGE_INITIALIZATION_EXCEPTION, "Could not initialize PDF scratch directory");
+        }
+        this.memoryUsageSetting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes, maxStorageBytes).setTempDir(scratchDir.toFile());
+    }
+
+    public RandomAccessStreamCache.StreamCacheCreateFunction streamCache() {
+        return memoryUsageSetting.streamCache;
+    }
+
+    public PDDocument load(File sourceFile) throws IOException {
+        return Loader.loadPDF(sourceFile, streamCache());
+    }
+
+    public PDDocument newDocument() {
+        return new PDDocument(streamCache());
+    }
+
+    public void merge(PDFMergerUtility mergerUtility) throws IOException {
+        mergerUtility.mergeDocuments(streamCache());
+    }
+
+    public MemoryUsageSetting getMemoryUsageSetting() {
+        return memoryUsageSetting;
+    }
+}
@@ -0,0 +1,307 @@
+package com.impacto.idocx.command.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of encoded page images. Recently used pages live in a byte-bounded, in-heap LRU; every page is
+ * also written under {@code ${file.storage.location}/.cache/pages} so that it survives heap eviction and restarts.
+ * The disk tier is an LRU bounded by {@code idocx.render.cache.max-disk-bytes}; its index is rebuilt from the files
+ * on startup, oldest written first. Entries are keyed by document id, version, page, render variant (DPI or width,
+ * quality) and format and are dropped with {@link #invalidate(String)} whenever the underlying file is replaced or
+ * deleted.
+ */
+@Service
+@Log4j2
+public class RenderedPageCache {
+
+    private static final String CACHE_DIRECTORY = ".cache/pages";
+    private static final Pattern SAFE_DOCUMENT_ID = Pattern.compile("[A-Za-z0-9_-]+");
+    static final int MAX_TRACKED_INVALIDATIONS = 10_000;
+
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final Path cacheLocation;
+    private final LinkedHashMap<PageKey, byte[]> memoryTier = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Path, Long> diskTier = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> invalidations = new HashMap<>();
+    private long clock;
+    private long forgottenBefore;
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    @Autowired
+    public RenderedPageCache(Environment environment, MeterRegistry meterRegistry) {
+        this.maxMemoryBytes = environment.getProperty("idocx.render.cache.max-memory-bytes", Long.class, 64L * 1024 * 1024);
+        this.maxDiskBytes = environment.getProperty("idocx.render.cache.max-disk-bytes", Long.class, 1024L * 1024 * 1024);
+        String storageLocation = environment.getProperty("file.storage.location");
+        boolean diskEnabled = environment.getProperty("idocx.render.cache.disk-enabled", Boolean.class, true);
+        this.cacheLocation = diskEnabled && storageLocation != null ? Paths.get(storageLocation).resolve(CACHE_DIRECTORY) : null;
+
+        this.memoryHits = Counter.builder("idocx.render.cache.requests").tag("result", "hit").tag("tier", "memory")
+                .description("Rendered pages served from the in-heap cache").register(meterRegistry);
+        this.diskHits = Counter.builder("idocx.render.cache.requests").tag("result", "hit").tag("tier", "disk")
+                .description("Rendered pages served from the on-disk cache").register(meterRegistry);
+        this.misses = Counter.builder("idocx.render.cache.requests").tag("result", "miss").tag("tier", "none")
+                .description("Pages that had to be rendered").register(meterRegistry);
+        meterRegistry.gauge("idocx.render.cache.memory.bytes", this, cache -> cache.memoryBytes());
+        meterRegistry.gauge("idocx.render.cache.disk.bytes", this, cache -> cache.diskBytes());
+        if (cacheLocation != null)
+            loadDiskIndex();
+    }
+
+    /**
+     * Indexes the pages already on disk, oldest written first, and trims them to the budget. Temporary files of
+     * writes that were interrupted are deleted.
+     */
+    private void loadDiskIndex() {
+        if (!Files.isDirectory(cacheLocation)) return;
+        record CachedFile(Path path, long size, long modified) {
+        }
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(cacheLocation)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                try {
+                    if (path.getFileName().toString().endsWith(".tmp"))
+                        Files.deleteIfExists(path);
+                    else
+                        files.add(new CachedFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (IOException e) {
+                    log.warn("Could not index cached page {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not index the page cache: {}", e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparingLong(CachedFile::modified));
+        synchronized (diskTier) {
+            files.forEach(file -> {
+                diskTier.put(file.path(), file.size());
+                diskBytes += file.size();
+            });
+            trimDisk();
+        }
+    }
+
+    public record PageKey(String documentId, int version, int pageIndex, String variant, String format) {
+
+        boolean isCacheable() {
+            return documentId != null && SAFE_DOCUMENT_ID.matcher(documentId).matches();
+        }
+
+        String fileName() {
+            return "v" + version + "-p" + pageIndex + "-" + variant + "." + format.toLowerCase();
+        }
+    }
+
+    /**
+     * Returns the current generation of a document. Capture it before rendering and pass it to
+     * {@link #put(PageKey, long, byte[])} so that pages rendered from a file that was replaced meanwhile are dropped.
+     * Generations are stamps of one clock that every invalidation advances; the stamp of the last invalidation is
+     * kept per document, and once {@link #MAX_TRACKED_INVALIDATIONS} documents are tracked they are all forgotten
+     * and pages rendered from an older generation are dropped instead.
+     */
+    public long generation(String documentId) {
+        synchronized (invalidations) {
+            return clock;
+        }
+    }
+
+    private boolean isCurrent(String documentId, long generation) {
+        synchronized (invalidations) {
+            return generation >= forgottenBefore && invalidations.getOrDefault(documentId, Long.MIN_VALUE) <= generation;
+        }
+    }
+
+    public boolean contains(PageKey key) {
+        if (!key.isCacheable()) return false;
+        synchronized (this) {
+            if (memoryTier.containsKey(key)) return true;
+        }
+        return cacheLocation != null && Files.exists(diskPath(key));
+    }
+
+    /**
+     * Returns the cached image or {@code null}. Only hits are counted here; a miss is recorded when the freshly
+     * rendered page is stored with {@link #put(PageKey, long, byte[])}.
+     */
+    public byte[] get(PageKey key) {
+        if (!key.isCacheable()) return null;
+        long generation = generation(key.documentId());
+        synchronized (this) {
+            byte[] image = memoryTier.get(key);
+            if (image != null) {
+                memoryHits.increment();
+                return image;
+            }
+        }
+        if (cacheLocation == null) return null;
+        Path path = diskPath(key);
+        try {
+            byte[] image = Files.readAllBytes(path);
+            synchronized (diskTier) {
+                diskTier.get(path);
+            }
+            diskHits.increment();
+            putInMemory(key, generation, image);
+            return image;
+        } catch (NoSuchFileException e) {
+            synchronized (diskTier) {
+                Long size = diskTier.remove(path);
+                if (size != null) diskBytes -= size;
+            }
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read cached page {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a freshly rendered page, unless the document was invalidated since {@code generation}. The check is
+     * made again once the page is on disk, so that an invalidation running during the write cannot leave it behind.
+     */
+    public void put(PageKey key, long generation, byte[] image) {
+        misses.increment();
+        if (!key.isCacheable() || !isCurrent(key.documentId(), generation)) return;
+        putInMemory(key, generation, image);
+        if (cacheLocation == null || image.length > maxDiskBytes) return;
+        Path target = diskPath(key);
+        try {
+            Files.createDirectories(target.getParent());
+            Path tempFile = Files.createTempFile(target.getParent(), "page-", ".tmp");
+            Files.write(tempFile, image);
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write cached page {}: {}", key, e.getMessage());
+            return;
+        }
+        synchronized (diskTier) {
+            if (!isCurrent(key.documentId(), generation)) {
+                deleteQuietly(target);
+                return;
+            }
+            Long previous = diskTier.put(target, (long) image.length);
+            if (previous != null) diskBytes -= previous;
+            diskBytes += image.length;
+            trimDisk();
+        }
+    }
+
+    /**
+     * Deletes the least recently used pages until the disk tier is within its budget. Called holding the disk
+     * tier's lock.
+     */
+    private void trimDisk() {
+        Iterator<Map.Entry<Path, Long>> eldest = diskTier.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<Path, Long> entry = eldest.next();
+            deleteQuietly(entry.getKey());
+            diskBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every cached page of the document from both tiers.
+     */
+    public void invalidate(String documentId) {
+        if (documentId == null) return;
+        synchronized (invalidations) {
+            clock++;
+            if (invalidations.size() >= MAX_TRACKED_INVALIDATIONS) {
+                invalidations.clear();
+                forgottenBefore = clock;
+            } else {
+                invalidations.put(documentId, clock);
+            }
+        }
+        synchronized (this) {
+            Iterator<Map.Entry<PageKey, byte[]>> iterator = memoryTier.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PageKey, byte[]> entry = iterator.next();
+                if (documentId.equals(entry.getKey().documentId())) {
+                    memoryBytes -= entry.getValue().length;
+                    iterator.remove();
+                }
+            }
+        }
+        if (cacheLocation == null || !SAFE_DOCUMENT_ID.matcher(documentId).matches()) return;
+        Path documentDirectory = cacheLocation.resolve(documentId);
+        synchronized (diskTier) {
+            Iterator<Map.Entry<Path, Long>> iterator = diskTier.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Long> entry = iterator.next();
+                if (entry.getKey().startsWith(documentDirectory)) {
+                    diskBytes -= entry.getValue();
+                    iterator.remove();
+                }
+            }
+        }
+        if (!Files.exists(documentDirectory)) return;
+        try (Stream<Path> paths = Files.walk(documentDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Could not clear cached pages of document {}: {}", documentId, e.getMessage());
+        }
+    }
+
+    public synchronized long memoryBytes() {
+        return memoryBytes;
+    }
+
+    public long diskBytes() {
+        synchronized (diskTier) {
+            return diskBytes;
+        }
+    }
+
+    private synchronized void putInMemory(PageKey key, long generation, byte[] image) {
+        if (image.length > maxMemoryBytes || !isCurrent(key.documentId(), generation)) return;
+        byte[] previous = memoryTier.put(key, image);
+        if (previous != null) memoryBytes -= previous.length;
+        memoryBytes += image.length;
+        Iterator<byte[]> eldest = memoryTier.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete cached page {}: {}", path, e.getMessage());
+        }
+    }
+
+    private Path diskPath(PageKey key) {
+        return cacheLocation.resolve(key.documentId()).resolve(key.fileName());
+    }
+}
@@ -2,35 +2,40 @@ package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
 import com.impacto.idocx.command.dao.FileMetadataRepository;
 import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.KeysetPager;
+import com.impacto.idocx.command.dao.ResourceStatusDao;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
 import com.impacto.idocx.command.dtos.IdsRequestDto;
+import com.impacto.idocx.command.dtos.ResourceStatusResultDto;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.entity.FolderMetadata;
 import com.impacto.idocx.command.exceptions.ErrorCode;
-import com.impacto.idocx.command.exceptions.FailedToDeleteResorceException;
-import com.impacto.idocx.command.exceptions.FileNotFoundException;
 import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
 import com.impacto.idocx.command.exceptions.UnsupportedException;
 import com.impacto.idocx.command.model.ResourceManagementRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static com.impacto.idocx.command.common.Constants.RESOURCES_ACTION.ARCHIVE;
 import static com.impacto.idocx.command.common.Constants.RESOURCES_ACTION.FAVOURITE;
@@ -44,6 +49,11 @@ public class ResourceManagementService {
     private final FileMetadataRepository fileMetadataRepository;
     private final FolderMetadataRepository folderMetadataRepository;
     private final ModelMapper modelMapper;
+    private final KeysetPager keysetPager;
+    private final SuggestionService suggestionService;
+    private final ResourceStatusDao resourceStatusDao;
+    private final TrashService trashService;
+    private final FolderDeletionService folderDeletionService;
 
     public GenericResponse<?> updateResourceStatus(ResourceManagementRequest uploadRequest) {
         if (!Arrays.stream(Constants.RESOURCE_TYPE.values())
@@ -56,90 +66,134 @@ public class ResourceManagementService {
         };
     }
 
-    public GenericResponse<List<FileMetaDataDto>> updateDocumentsStatus(ResourceManagementRequest uploadRequest) {
-        if (!Arrays.stream(Constants.RESOURCES_ACTION.values())
-                .anyMatch(enumValue -> enumValue.name().equals(uploadRequest.getAction().toUpperCase())))
-            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported resource action: " + uploadRequest.getResourceType());
-        Constants.RESOURCES_ACTION resourcesActionAction = Constants.RESOURCES_ACTION.valueOf(uploadRequest.getAction().toUpperCase());
+    public GenericResponse<List<ResourceStatusResultDto>> updateDocumentsStatus(ResourceManagementRequest uploadRequest) {
+        Constants.RESOURCES_ACTION resourcesActionAction = resourcesActionOf(uploadRequest);
         boolean status = uploadRequest.isStatus();
+        return updateStatus(uploadRequest.getIds(), resourcesActionAction, status, FileMetadata.class, FileMetadata::getId, "File",
+                fileMetadata -> movedToTrash(resourcesActionAction, status, fileMetadata.getTrashedFrom(), fileMetadata.getTrashedWith()),
+                fileMetadata -> {
+                    switch (resourcesActionAction) {
+                        case FAVOURITE -> fileMetadata.setFavourite(status);
+                        case ARCHIVE -> fileMetadata.setArchive(status);
+                        case TRASH -> {
+                            if (movedToTrash(resourcesActionAction, status, fileMetadata.getTrashedFrom(), fileMetadata.getTrashedWith()))
+                                trashService.restoreFile(fileMetadata);
+                            else if (status != fileMetadata.isTrash()) {
+                                if (status)
+                                    suggestionService.removeFile(fileMetadata);
+                                else
+                                    suggestionService.addFile(fileMetadata);
+                            }
+                            fileMetadata.setTrash(status);
+                        }
+                    }
+                    return convertToDto(fileMetadata, FileMetaDataDto.class);
+                });
+    }
 
-        List<FileMetaDataDto> fileMetaDataDtos = new ArrayList<>();
-
-        for (String documentId : uploadRequest.getIds()) {
-            FileMetadata fileMetadata = fileMetadataRepository.findById(documentId)
-                    .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + documentId + " not found"));
-            switch (resourcesActionAction) {
-                case FAVOURITE:
-                    fileMetadata.setFavourite(status);
-                    break;
-                case ARCHIVE:
-                    fileMetadata.setArchive(status);
-                    break;
-                case TRASH:
-                    fileMetadata.setTrash(status);
-                    break;
-            }
-            FileMetadata savedMetadata = fileMetadataRepository.save(fileMetadata);
-            FolderMetadata folderMetadata = folderMetadataRepository.findByFolderPath(savedMetadata.getFilePath())
-                    .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Folder with this filePath: " + savedMetadata.getFilePath() + " not found"));
-            folderMetadata.getDocuments().forEach(document -> {
-                if (document.getFileName().equals(savedMetadata.getFileName())) {
-                    document.setFavourite(savedMetadata.isFavourite());
-                    document.setArchive(savedMetadata.isArchive());
-                    document.setTrash(savedMetadata.isTrash());
-                }
-            });
-            folderMetadataRepository.save(folderMetadata);
-            fileMetaDataDtos.add(convertToDto(savedMetadata, FileMetaDataDto.class));
-        }
-        return new GenericResponse<>(
-                Constants.RESPONSE_STATUS.OK.getValue(),
-                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                fileMetaDataDtos
-        );
+    private GenericResponse<List<ResourceStatusResultDto>> updateFoldersStatus(ResourceManagementRequest uploadRequest) {
+        Constants.RESOURCES_ACTION resourcesActionAction = resourcesActionOf(uploadRequest);
+        boolean status = uploadRequest.isStatus();
+        return updateStatus(uploadRequest.getIds(), resourcesActionAction, status, FolderMetadata.class, FolderMetadata::getId, "Folder",
+                folderMetadata -> resourcesActionAction == Constants.RESOURCES_ACTION.TRASH && status
+                        || movedToTrash(resourcesActionAction, status, folderMetadata.getTrashedFrom(), folderMetadata.getTrashedWith()),
+                folderMetadata -> {
+                    switch (resourcesActionAction) {
+                        case FAVOURITE -> folderMetadata.setFavourite(status);
+                        case ARCHIVE -> folderMetadata.setArchive(status);
+                        case TRASH -> {
+                            // a folder goes to the trash with everything below it, as when it is deleted
+                            if (status)
+                                trashService.trashFolder(folderMetadata);
+                            else if (movedToTrash(resourcesActionAction, status, folderMetadata.getTrashedFrom(), folderMetadata.getTrashedWith()))
+                                trashService.restoreFolder(folderMetadata);
+                            else if (folderMetadata.isTrash())
+                                suggestionService.addFolder(folderMetadata);
+                            folderMetadata.setTrash(status);
+                        }
+                    }
+                    return convertToDto(folderMetadata, FolderMetadataDto.class);
+                });
+    }
+
+    /**
+     * A deleted record has its content in the trash area, on its own or inside the directory of a deleted folder;
+     * taking it out of the trash has to move the content back, or is refused until the folder is restored, so it is
+     * restored on its own rather than with the bulk update.
+     */
+    private static boolean movedToTrash(Constants.RESOURCES_ACTION action, boolean status, String trashedFrom, String trashedWith) {
+        return action == Constants.RESOURCES_ACTION.TRASH && !status && (trashedFrom != null || trashedWith != null);
     }
 
-    private GenericResponse<List<FolderMetadataDto>> updateFoldersStatus(ResourceManagementRequest uploadRequest) {
+    private static Constants.RESOURCES_ACTION resourcesActionOf(ResourceManagementRequest uploadRequest) {
         if (!Arrays.stream(Constants.RESOURCES_ACTION.values())
                 .anyMatch(enumValue -> enumValue.name().equals(uploadRequest.getAction().toUpperCase())))
             throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported resource action: " + uploadRequest.getResourceType());
+        return Constants.RESOURCES_ACTION.valueOf(uploadRequest.getAction().toUpperCase());
+    }
 
-        Constants.RESOURCES_ACTION resourcesActionAction = Constants.RESOURCES_ACTION.valueOf(uploadRequest.getAction().toUpperCase());
-        boolean status = uploadRequest.isStatus();
-        List<FolderMetadataDto> folderMetadataDtos = new ArrayList<>();
-
-        for (String folderId : uploadRequest.getIds()) {
-            FolderMetadata folderMetadata = folderMetadataRepository.findById(folderId)
-                    .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Folder with id: " + folderId + " not found"));
-            switch (resourcesActionAction) {
-                case FAVOURITE:
-                    folderMetadata.setFavourite(status);
-                    break;
-                case ARCHIVE:
-                    folderMetadata.setArchive(status);
-                    break;
-                case TRASH:
-                    folderMetadata.setTrash(status);
-                    break;
-            }
-            FolderMetadata savedMetadata = folderMetadataRepository.save(folderMetadata);
-            folderMetadataDtos.add(convertToDto(savedMetadata, FolderMetadataDto.class));
+    /**
+     * Sets the flag of all requested records with one read and one multi-document update, instead of a read and a
+     * save per id. Every distinct id gets a result, in request order: ids without a record are reported as not
+     * found and do not stop the others; if the update itself fails, every found record it covered is reported as
+     * failed. Records matching {@code individually} are left out of the update and changed by {@code applied} alone,
+     * which mirrors the change on the loaded record and returns what is reported for it.
+     */
+    private <T> GenericResponse<List<ResourceStatusResultDto>> updateStatus(List<String> requestedIds, Constants.RESOURCES_ACTION action,
+                                                                            boolean status, Class<T> entityClass, Function<T, String> idOf,
+                                                                            String label, Predicate<T> individually, Function<T, ?> applied) {
+        List<String> ids = requestedIds.stream().distinct().toList();
+        Map<String, T> found = new HashMap<>();
+        resourceStatusDao.findByIds(ids, entityClass).forEach(record -> found.put(idOf.apply(record), record));
+        Set<String> bulk = new HashSet<>();
+        found.forEach((id, record) -> {
+            if (!individually.test(record))
+                bulk.add(id);
+        });
+        String failure = null;
+        try {
+            resourceStatusDao.setFlag(bulk, flagOf(action), status, entityClass);
+        } catch (DataAccessException e) {
+            log.warn("Failed to set {} of {} {} records: {}", flagOf(action), bulk.size(), label.toLowerCase(), e.getMessage());
+            failure = e.getMessage();
+        }
+
+        List<ResourceStatusResultDto> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T record = found.get(id);
+            if (record == null)
+                results.add(new ResourceStatusResultDto(id, Constants.UPDATE_STATUS.NOT_FOUND, null, label + " with id: " + id + " not found"));
+            else if (failure != null && !individually.test(record))
+                results.add(new ResourceStatusResultDto(id, Constants.UPDATE_STATUS.FAILED, null, failure));
+            else
+                results.add(applyTo(id, record, applied));
         }
         return new GenericResponse<>(
                 Constants.RESPONSE_STATUS.OK.getValue(),
                 Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
-                folderMetadataDtos
+                results
         );
     }
 
-    public Page<?> getResources(String resourcesAction, String resourcesType, int pageNo, int pageSize) {
-        if (!(Arrays.stream(Constants.RESOURCES_ACTION.values())
-                .anyMatch(enumValue -> enumValue.name().equals(resourcesAction.toUpperCase())) ||
-                Arrays.stream(Constants.RESOURCE_TYPE.values())
-                        .anyMatch(enumValue -> enumValue.name().equals(resourcesType.toUpperCase())))) {
-            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
-                    "Unsupported resource action or type: " + resourcesAction + ", " + resourcesType);
+    private static <T> ResourceStatusResultDto applyTo(String id, T record, Function<T, ?> applied) {
+        try {
+            return new ResourceStatusResultDto(id, Constants.UPDATE_STATUS.UPDATED, applied.apply(record), null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to update {}: {}", id, e.getMessage());
+            return new ResourceStatusResultDto(id, Constants.UPDATE_STATUS.FAILED, null, e.getMessage());
         }
+    }
+
+    private static String flagOf(Constants.RESOURCES_ACTION action) {
+        return switch (action) {
+            case FAVOURITE -> "isFavourite";
+            case ARCHIVE -> "isArchive";
+            case TRASH -> "isTrash";
+        };
+    }
+
+    public Page<?> getResources(String resourcesAction, String resourcesType, int pageNo, int pageSize) {
+        checkResourceActionAndType(resourcesAction, resourcesType);
         Constants.RESOURCE_TYPE type = Constants.RESOURCE_TYPE.valueOf(resourcesType.toUpperCase());
         Constants.RESOURCES_ACTION action = Constants.RESOURCES_ACTION.valueOf(resourcesAction.toUpperCase());
         switch (type) {
@@ -169,83 +223,106 @@ public class ResourceManagementService {
         }
     }
 
+    /**
+     * The same listing paged by cursor; see {@link KeysetPager}.
+     */
+    public CursorPage<?> getResources(String resourcesAction, String resourcesType, String cursor, int pageNo, int pageSize,
+                                     Constants.COUNT_MODE countMode) {
+        checkResourceActionAndType(resourcesAction, resourcesType);
+        Constants.RESOURCES_ACTION action = Constants.RESOURCES_ACTION.valueOf(resourcesAction.toUpperCase());
+        Criteria flagged = Criteria.where(flagOf(action)).is(true);
+        if (Constants.RESOURCE_TYPE.valueOf(resourcesType.toUpperCase()) == Constants.RESOURCE_TYPE.DOCUMENT)
+            return keysetPager.page(flagged, cursor, pageNo, pageSize, countMode, FileMetadata.class, FileMetadata::getId)
+                    .map(entity -> convertToDto(entity, FileMetaDataDto.class));
+        return keysetPager.page(flagged, cursor, pageNo, pageSize, countMode, FolderMetadata.class, FolderMetadata::getId)
+                .map(entity -> convertToDto(entity, FolderMetadataDto.class));
+    }
+
+    private static void checkResourceActionAndType(String resourcesAction, String resourcesType) {
+        if (!(Arrays.stream(Constants.RESOURCES_ACTION.values())
+                .anyMatch(enumValue -> enumValue.name().equals(resourcesAction.toUpperCase())) ||
+                Arrays.stream(Constants.RESOURCE_TYPE.values())
+                        .anyMatch(enumValue -> enumValue.name().equals(resourcesType.toUpperCase())))) {
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
+                    "Unsupported resource action or type: " + resourcesAction + ", " + resourcesType);
+        }
+    }
+
     public <S, T> T convertToDto(S source, Class<T> targetClass) {
         return modelMapper.map(source, targetClass);
     }
 
+    /**
+     * Moves files or folders to the trash, see {@link TrashService}. They are deleted for good once the retention
+     * has passed, or by {@link #purgeResource}.
+     */
     public void deleteResource(IdsRequestDto idsRequestDto) {
         checkForFileOrFolderDeletion(idsRequestDto);
     }
 
     private void checkForFileOrFolderDeletion(IdsRequestDto idsRequestDto) {
-        if (Constants.RESOURCE_TYPE.FOLDER.name().equalsIgnoreCase(idsRequestDto.getType())) {
+        if (isFolderRequest(idsRequestDto))
             idsRequestDto.getIds().forEach(this::trashFolder);
-        } else {
+        else
             idsRequestDto.getIds().forEach(this::trashFile);
-        }
     }
 
     void trashFolder(String id) {
         log.info("Processing folder with ID: {}", id);
-        FolderMetadata folderMetadata = folderMetadataRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Folder with id: " + id + " not found"));
-        deleteFileOrFolder(folderMetadata.getFolderPath(), true);
-        folderMetadataRepository.delete(folderMetadata);
-        deleteRelatedDocuments(folderMetadata);
+        trashService.trashFolder(findFolder(id));
     }
 
     void trashFile(String id) {
         log.info("Processing file with ID: {}", id);
-        FileMetadata fileMetadata = fileMetadataRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + id + " not found"));
-        deleteFileOrFolder(fileMetadata.getDirectoryName(), false);
-        fileMetadataRepository.delete(fileMetadata);
-        FolderMetadata folderMetadata = folderMetadataRepository.findByFolderPath(fileMetadata.getFilePath()).orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "folder not found"));
-        folderMetadata.getDocuments().removeIf(document -> document.getDirectoryName().equals(fileMetadata.getDirectoryName()));
-        folderMetadataRepository.save(folderMetadata);
+        trashService.trashFile(findFile(id));
+    }
 
+    public void restoreResource(IdsRequestDto idsRequestDto) {
+        if (isFolderRequest(idsRequestDto))
+            idsRequestDto.getIds().forEach(id -> trashService.restoreFolder(findFolder(id)));
+        else
+            idsRequestDto.getIds().forEach(id -> trashService.restoreFile(findFile(id)));
     }
 
-    private void deleteRelatedDocuments(FolderMetadata folderMetadata) {
-        log.info("Deleting related documents in folder: {}", folderMetadata.getFolderPath());
-        folderMetadata.getDocuments().forEach(file -> {
-            FileMetadata fileMetadata = fileMetadataRepository.findByFileName(file.getFileName()).orElseThrow(() -> new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "File not found for file name : " + file.getFileName()));
-            fileMetadataRepository.delete(fileMetadata);
-        });
+    /**
+     * Deletes trashed files or folders for good without waiting for the retention. Folders are deleted in the
+     * background, see {@link FolderDeletionService}; the returned jobs report their progress, and the list is empty
+     * when files were purged.
+     */
+    public List<FolderDeletionJobDto> purgeResource(IdsRequestDto idsRequestDto) {
+        if (isFolderRequest(idsRequestDto))
+            return idsRequestDto.getIds().stream().map(this::purgeFolder).toList();
+        idsRequestDto.getIds().forEach(this::purgeFile);
+        return List.of();
     }
 
-    public void deleteFileOrFolder(String pathStr, boolean isFolder) {
-        log.info("Deleting {} at path: {}", isFolder ? "folder" : "file", pathStr);
-        Path path = Paths.get(pathStr);
-        File file = path.toFile();
+    private FolderDeletionJobDto purgeFolder(String id) {
+        FolderMetadata folderMetadata = findFolder(id);
+        if (!folderMetadata.isTrash())
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Folder with id: " + id + " is not in the trash");
+        if (folderDeletionService.isPending(id))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Folder with id: " + id + " is already being deleted");
+        return trashService.purgeFolder(folderMetadata);
+    }
 
-        if (!file.exists()) {
-            throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File or folder does not exist: " + pathStr);
-        }
+    private void purgeFile(String id) {
+        FileMetadata fileMetadata = findFile(id);
+        if (!fileMetadata.isTrash())
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "File with id: " + id + " is not in the trash");
+        trashService.purgeFile(fileMetadata);
+    }
 
-        try {
-            iteratingAndDeletingResources(pathStr, isFolder, file, path);
-        } catch (IOException e) {
-            throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION, "Error during deletion: " + e.getMessage());
-        }
+    private static boolean isFolderRequest(IdsRequestDto idsRequestDto) {
+        return Constants.RESOURCE_TYPE.FOLDER.name().equalsIgnoreCase(idsRequestDto.getType());
     }
 
-    private static void iteratingAndDeletingResources(String pathStr, boolean isFolder, File file, Path path) throws IOException {
-        if (file.isDirectory() && isFolder) {
-            Files.walk(path)
-                    .sorted(Comparator.reverseOrder())
-                    .map(Path::toFile)
-                    .forEach(f -> {
-                        if (!f.delete()) {
-                            throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION, "Failed to delete " + f.getAbsolutePath()); // Consider using a specific exception
-                        }
-                    });
-        } else if (!file.isDirectory() || !isFolder) {
-            if (!file.delete()) {
-                throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION, "Failed to delete the file: " + pathStr);
-            }
-        }
-        log.info("Successfully deleted {} the path: {}", isFolder ? "folder" : "file", pathStr);
+    private FileMetadata findFile(String id) {
+        return fileMetadataRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + id + " not found"));
     }
 
+    private FolderMetadata findFolder(String id) {
+        return folderMetadataRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Folder with id: " + id + " not found"));
+    }
 }
@@ -0,0 +1,97 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.SearchKeys;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Fills the search keys of file and folder records written before they existed, in bulk batches. Runs at startup
+ * unless {@code idocx.migration.search-keys.enabled} is false; records that have their keys no longer match, so
+ * running it again is a single empty query.
+ */
+@Component
+@Log4j2
+public class SearchKeysMigration implements ApplicationRunner {
+    static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public SearchKeysMigration(Environment environment, MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = environment.getProperty("idocx.migration.search-keys.enabled", Boolean.class, true);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled)
+            migrate();
+    }
+
+    public int migrate() {
+        int migrated = backfill(FileMetadata.class, "fileNameLower", file -> {
+            SearchKeys.apply(file);
+            return new Update()
+                    .set("fileNameLower", file.getFileNameLower())
+                    .set("fileNameGrams", file.getFileNameGrams())
+                    .set("extensionLower", file.getExtensionLower())
+                    .set("extensionGrams", file.getExtensionGrams())
+                    .set("tagLower", file.getTagLower())
+                    .set("tagGrams", file.getTagGrams());
+        }, FileMetadata::getId, "fileName", "extension", "tag");
+        migrated += backfill(FolderMetadata.class, "folderPathLower", folder -> {
+            SearchKeys.apply(folder);
+            return new Update()
+                    .set("folderNameLower", folder.getFolderNameLower())
+                    .set("folderNameGrams", folder.getFolderNameGrams())
+                    .set("folderPathLower", folder.getFolderPathLower())
+                    .set("folderPathGrams", folder.getFolderPathGrams());
+        }, FolderMetadata::getId, "folderName", "folderPath");
+        if (migrated > 0)
+            log.info("Filled search keys of {} records", migrated);
+        return migrated;
+    }
+
+    private <T> int backfill(Class<T> type, String marker, Function<T, Update> keys, Function<T, String> id, String... fields) {
+        Query missing = new Query(Criteria.where(marker).exists(false));
+        missing.fields().include(fields);
+        int migrated = 0;
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<T> records = mongoTemplate.stream(missing, type)) {
+            for (T record : (Iterable<T>) records::iterator) {
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    migrated += write(type, batch, keys, id);
+                    batch.clear();
+                }
+            }
+        }
+        return migrated + write(type, batch, keys, id);
+    }
+
+    private <T> int write(Class<T> type, List<T> batch, Function<T, Update> keys, Function<T, String> id) {
+        if (batch.isEmpty())
+            return 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+        batch.forEach(record -> bulk.updateOne(new Query(Criteria.where("id").is(id.apply(record))), keys.apply(record)));
+        bulk.execute();
+        return batch.size();
+    }
+}
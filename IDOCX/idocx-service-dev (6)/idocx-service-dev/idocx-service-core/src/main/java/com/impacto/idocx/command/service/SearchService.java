@@ -1,18 +1,129 @@
 package com.impacto.idocx.command.service;
 
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.CursorPage;
+import com.impacto.idocx.command.dao.DocumentContentDao;
 import com.impacto.idocx.command.dao.SearchDao;
+import com.impacto.idocx.command.dtos.ContentSearchResultDto;
+import com.impacto.idocx.command.dtos.FacetedSearchResultDto;
+import com.impacto.idocx.command.dtos.SuggestionDto;
+import com.impacto.idocx.command.entity.DocumentContent;
 import com.impacto.idocx.command.entity.FileMetadata;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 public class SearchService {
+    static final int MAX_SNIPPETS = 3;
+    static final int SNIPPET_RADIUS = 60;
+
     private final SearchDao searchDao;
+    private final DocumentContentDao documentContentDao;
+    private final SuggestionService suggestionService;
 
     public Page<?> search(String searchOn, String field, String operator, String workspace, String filter, String value, int page, int size) {
         return searchDao.search(searchOn,field, operator, workspace, filter, value, page, size);
 
     }
+
+    public CursorPage<?> search(String searchOn, String field, String operator, String workspace, String filter, String value,
+                                String cursor, int pageNo, int size, Constants.COUNT_MODE countMode) {
+        return searchDao.search(searchOn, field, operator, workspace, filter, value, cursor, pageNo, size, countMode);
+    }
+
+    public FacetedSearchResultDto facetedSearch(String searchOn, String field, String operator, String workspace, String filter,
+                                                String value, int page, int size, boolean cacheFacets) {
+        return searchDao.facetedSearch(searchOn, field, operator, workspace, filter, value, page, size, cacheFacets);
+    }
+
+    public List<SuggestionDto> suggest(String prefix, Constants.WORKSPACE_TYPE workspace, Constants.SUGGESTION_TYPE type, int limit) {
+        return suggestionService.suggest(prefix, workspace, type, limit);
+    }
+
+    /**
+     * Full-text search over the extracted content and names of files, best match first. {@code terms} uses the
+     * MongoDB text search syntax: words, {@code "exact phrases"} and {@code -excluded} words.
+     */
+    public Page<ContentSearchResultDto> searchContent(String terms, String workspace, int page, int size) {
+        Constants.WORKSPACE_TYPE workSpaceType = workspace == null || "BOTH".equalsIgnoreCase(workspace)
+                ? null : Constants.WORKSPACE_TYPE.valueOf(workspace.toUpperCase(Locale.ROOT));
+        Pattern highlight = highlightPattern(terms);
+        return documentContentDao.search(terms, workSpaceType, PageRequest.of(page, size))
+                .map(content -> toResult(content, highlight));
+    }
+
+    private static ContentSearchResultDto toResult(DocumentContent content, Pattern highlight) {
+        return new ContentSearchResultDto(content.getId(), content.getFileName(), content.getFilePath(),
+                content.getWorkSpaceType(), content.getScore() == null ? 0 : content.getScore(),
+                snippets(content.getText(), highlight));
+    }
+
+    /**
+     * Matches the searched words at the start of a word, so that a stemmed hit such as "invoices" for "invoice" is
+     * still highlighted. Excluded words are left out. Returns null when nothing can be highlighted.
+     */
+    static Pattern highlightPattern(String terms) {
+        String words = Arrays.stream(terms.split("\\s+"))
+                .filter(word -> !word.startsWith("-"))
+                .map(word -> word.replaceAll("[^\\p{L}\\p{N}]", ""))
+                .filter(word -> word.length() > 1)
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|"));
+        return words.isEmpty() ? null
+                : Pattern.compile("(?<![\\p{L}\\p{N}])(?:" + words + ")[\\p{L}\\p{N}]*", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Up to {@link #MAX_SNIPPETS} passages around matches, with the matched words in {@code <em>} and the rest
+     * HTML-escaped. Overlapping passages are merged.
+     */
+    static List<String> snippets(String text, Pattern highlight) {
+        List<String> snippets = new ArrayList<>();
+        if (text == null || highlight == null)
+            return snippets;
+        Matcher matcher = highlight.matcher(text);
+        int searchFrom = 0;
+        while (snippets.size() < MAX_SNIPPETS && matcher.find(searchFrom)) {
+            int start = Math.max(0, matcher.start() - SNIPPET_RADIUS);
+            int end = Math.min(text.length(), matcher.end() + SNIPPET_RADIUS);
+            // extend over further matches that fall inside the passage
+            while (matcher.find() && matcher.start() < end)
+                end = Math.min(text.length(), matcher.end() + SNIPPET_RADIUS);
+            snippets.add(highlight(text, start, end, highlight));
+            searchFrom = end;
+        }
+        return snippets;
+    }
+
+    private static String highlight(String text, int start, int end, Pattern highlight) {
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0)
+            snippet.append("...");
+        Matcher matcher = highlight.matcher(text).region(start, end);
+        int last = start;
+        while (matcher.find()) {
+            snippet.append(escape(text.substring(last, matcher.start())))
+                    .append("<em>").append(escape(matcher.group())).append("</em>");
+            last = matcher.end();
+        }
+        snippet.append(escape(text.substring(last, end)));
+        if (end < text.length())
+            snippet.append("...");
+        return snippet.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
 }
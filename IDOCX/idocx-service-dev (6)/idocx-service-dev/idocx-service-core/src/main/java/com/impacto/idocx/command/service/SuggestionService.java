@@ -0,0 +1,144 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.SuggestionDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Type-ahead suggestions for file names, folder names and tags. The names of all records that are not in the trash
+ * are loaded into one in-memory {@link SuggestionTrie} per workspace and kind at startup, and the write paths keep
+ * them current, so a suggestion never queries MongoDB. Disabled with {@code idocx.search.suggest.enabled=false}.
+ */
+@Service
+@Log4j2
+public class SuggestionService implements ApplicationRunner {
+    private static final List<Constants.WORKSPACE_TYPE> WORKSPACES =
+            List.of(Constants.WORKSPACE_TYPE.AUTOWORKSPACE, Constants.WORKSPACE_TYPE.MANUALWORKSPACE);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int topK;
+    private final Map<Constants.WORKSPACE_TYPE, Map<Constants.SUGGESTION_TYPE, SuggestionTrie>> tries =
+            new EnumMap<>(Constants.WORKSPACE_TYPE.class);
+
+    @Autowired
+    public SuggestionService(Environment environment, MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = environment.getProperty("idocx.search.suggest.enabled", Boolean.class, true);
+        this.topK = environment.getProperty("idocx.search.suggest.top-k", Integer.class, 10);
+        for (Constants.WORKSPACE_TYPE workspace : WORKSPACES) {
+            Map<Constants.SUGGESTION_TYPE, SuggestionTrie> byType = new EnumMap<>(Constants.SUGGESTION_TYPE.class);
+            for (Constants.SUGGESTION_TYPE type : Constants.SUGGESTION_TYPE.values())
+                byType.put(type, new SuggestionTrie(topK));
+            tries.put(workspace, byType);
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled)
+            rebuild();
+    }
+
+    /**
+     * Reloads every trie from the stored records. Writes made while it runs may be missed until the next rebuild.
+     */
+    public void rebuild() {
+        tries.values().forEach(byType -> byType.values().forEach(SuggestionTrie::clear));
+        Query files = new Query(Criteria.where("isTrash").ne(true));
+        files.fields().include("fileName", "tag", "workSpaceType");
+        int loaded = 0;
+        try (Stream<FileMetadata> records = mongoTemplate.stream(files, FileMetadata.class)) {
+            for (FileMetadata file : (Iterable<FileMetadata>) records::iterator) {
+                addFile(file);
+                loaded++;
+            }
+        }
+        Query folders = new Query(Criteria.where("isTrash").ne(true));
+        folders.fields().include("folderName", "workSpaceType");
+        try (Stream<FolderMetadata> records = mongoTemplate.stream(folders, FolderMetadata.class)) {
+            for (FolderMetadata folder : (Iterable<FolderMetadata>) records::iterator) {
+                addFolder(folder);
+                loaded++;
+            }
+        }
+        log.info("Loaded the names of {} files and folders for suggestions", loaded);
+    }
+
+    public void addFile(FileMetadata file) {
+        Map<Constants.SUGGESTION_TYPE, SuggestionTrie> byType = triesOf(file.getWorkSpaceType());
+        if (byType == null)
+            return;
+        byType.get(Constants.SUGGESTION_TYPE.FILE).add(file.getFileName());
+        byType.get(Constants.SUGGESTION_TYPE.TAG).add(file.getTag());
+    }
+
+    public void removeFile(FileMetadata file) {
+        Map<Constants.SUGGESTION_TYPE, SuggestionTrie> byType = triesOf(file.getWorkSpaceType());
+        if (byType == null)
+            return;
+        byType.get(Constants.SUGGESTION_TYPE.FILE).remove(file.getFileName());
+        byType.get(Constants.SUGGESTION_TYPE.TAG).remove(file.getTag());
+    }
+
+    public void addFolder(FolderMetadata folder) {
+        Map<Constants.SUGGESTION_TYPE, SuggestionTrie> byType = triesOf(folder.getWorkSpaceType());
+        if (byType != null)
+            byType.get(Constants.SUGGESTION_TYPE.FOLDER).add(folder.getFolderName());
+    }
+
+    public void removeFolder(FolderMetadata folder) {
+        Map<Constants.SUGGESTION_TYPE, SuggestionTrie> byType = triesOf(folder.getWorkSpaceType());
+        if (byType != null)
+            byType.get(Constants.SUGGESTION_TYPE.FOLDER).remove(folder.getFolderName());
+    }
+
+    /**
+     * Up to {@code limit} names starting with {@code prefix}, ignoring case, most common first. A null workspace or
+     * {@code BOTH} merges the workspaces and a null type suggests every kind of name.
+     */
+    public List<SuggestionDto> suggest(String prefix, Constants.WORKSPACE_TYPE workspace, Constants.SUGGESTION_TYPE type, int limit) {
+        if (prefix == null || prefix.isEmpty() || limit <= 0)
+            return List.of();
+        int perTrie = Math.min(limit, topK);
+        Map<String, SuggestionDto> merged = new LinkedHashMap<>();
+        for (Constants.WORKSPACE_TYPE searched : WORKSPACES) {
+            if (workspace != null && workspace != Constants.WORKSPACE_TYPE.BOTH && workspace != searched)
+                continue;
+            for (Map.Entry<Constants.SUGGESTION_TYPE, SuggestionTrie> trie : tries.get(searched).entrySet()) {
+                if (type != null && type != trie.getKey())
+                    continue;
+                for (SuggestionTrie.Suggestion suggestion : trie.getValue().suggest(prefix, perTrie))
+                    merged.merge(trie.getKey() + ":" + SuggestionTrie.normalize(suggestion.value()),
+                            new SuggestionDto(suggestion.value(), trie.getKey(), suggestion.count()),
+                            (found, more) -> new SuggestionDto(found.getValue(), found.getType(), found.getCount() + more.getCount()));
+            }
+        }
+        List<SuggestionDto> suggestions = new ArrayList<>(merged.values());
+        suggestions.sort(Comparator.comparingLong(SuggestionDto::getCount).reversed()
+                .thenComparing(suggestion -> SuggestionTrie.normalize(suggestion.getValue())));
+        return suggestions.size() > limit ? suggestions.subList(0, limit) : suggestions;
+    }
+
+    private Map<Constants.SUGGESTION_TYPE, SuggestionTrie> triesOf(Constants.WORKSPACE_TYPE workspace) {
+        return enabled && workspace != null ? tries.get(workspace) : null;
+    }
+}
@@ -0,0 +1,213 @@
+package com.impacto.idocx.command.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed (radix) trie of names, matched case-insensitively. Each name counts how many records carry it, and every
+ * node keeps the {@code topK} most frequent names below it, so a lookup is a walk down the prefix plus a copy of that
+ * list, however many names share the prefix. Adding or removing a name recomputes the lists along its path only.
+ */
+class SuggestionTrie {
+    private static final Comparator<Node> RANKING = Comparator.comparingLong((Node node) -> node.count).reversed()
+            .thenComparing(node -> node.key);
+
+    private final int topK;
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    record Suggestion(String value, long count) {
+    }
+
+    private static final class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(4);
+        // set on nodes that end a name: the normalized name, as first added, and how many records carry it
+        private String key;
+        private String value;
+        private long count;
+        private List<Node> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(String name) {
+        if (name == null || name.isEmpty())
+            return;
+        String key = normalize(name);
+        lock.writeLock().lock();
+        try {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int depth = 0;
+            while (depth < key.length()) {
+                Node child = node.children.get(key.charAt(depth));
+                if (child == null) {
+                    child = new Node(key.substring(depth));
+                    node.children.put(key.charAt(depth), child);
+                    depth = key.length();
+                } else {
+                    int common = commonPrefix(child.label, key, depth);
+                    if (common < child.label.length())
+                        child = split(node, child, common);
+                    depth += common;
+                }
+                node = child;
+                path.add(node);
+            }
+            if (node.count++ == 0) {
+                node.key = key;
+                node.value = name;
+            }
+            refresh(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String name) {
+        if (name == null || name.isEmpty())
+            return;
+        String key = normalize(name);
+        lock.writeLock().lock();
+        try {
+            List<Node> path = find(key);
+            if (path == null)
+                return;
+            Node node = path.get(path.size() - 1);
+            if (node.count == 0)
+                return;
+            if (--node.count == 0) {
+                node.key = null;
+                node.value = null;
+                prune(path);
+            }
+            refresh(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int depth = 0;
+            while (depth < key.length()) {
+                Node child = node.children.get(key.charAt(depth));
+                if (child == null)
+                    return List.of();
+                int common = commonPrefix(child.label, key, depth);
+                if (common < child.label.length() && depth + common < key.length())
+                    return List.of();
+                depth += common;
+                node = child;
+            }
+            return node.top.stream().limit(limit).map(top -> new Suggestion(top.value, top.count)).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.top = List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The nodes from the root to the node that ends exactly at {@code key}, or null when there is none.
+     */
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int depth = 0;
+        while (depth < key.length()) {
+            node = node.children.get(key.charAt(depth));
+            if (node == null || !key.startsWith(node.label, depth))
+                return null;
+            depth += node.label.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i))
+            i++;
+        return i;
+    }
+
+    /**
+     * Splits the edge to {@code child} after {@code at} characters and returns the new node in between.
+     */
+    private static Node split(Node parent, Node child, int at) {
+        Node middle = new Node(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        middle.children.put(child.label.charAt(0), child);
+        middle.top = child.top;
+        parent.children.put(middle.label.charAt(0), middle);
+        return middle;
+    }
+
+    /**
+     * Removes the emptied end of {@code path} and merges a remaining node that no longer branches into its only child,
+     * keeping the trie compressed. The path is cut to the nodes that are still in the trie.
+     */
+    private static void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            Node parent = path.get(i - 1);
+            if (node.count == 0 && node.children.isEmpty()) {
+                parent.children.remove(node.label.charAt(0));
+                path.remove(i);
+            } else if (node.count == 0 && node.children.size() == 1) {
+                Node only = node.children.values().iterator().next();
+                only.label = node.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+                path.set(i, only);
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void refresh(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            List<Node> candidates = new ArrayList<>();
+            if (node.count > 0)
+                candidates.add(node);
+            for (Node child : node.children.values())
+                candidates.addAll(child.top);
+            candidates.sort(RANKING);
+            node.top = candidates.size() > topK ? List.copyOf(candidates.subList(0, topK)) : List.copyOf(candidates);
+        }
+    }
+}
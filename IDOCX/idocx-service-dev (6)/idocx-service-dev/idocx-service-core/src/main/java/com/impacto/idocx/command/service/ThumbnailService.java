@@ -0,0 +1,61 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Small JPEG previews of PDF pages for list views. Thumbnails are rendered at the requested pixel width on the
+ * fast rendering path and cached like any other rendered page; first pages are pre-generated on upload.
+ */
+@Service
+@Log4j2
+public class ThumbnailService {
+    public static final String THUMBNAIL_FORMAT = "JPEG";
+
+    private final PDFConversionsService pdfConversionsService;
+    private final int defaultWidth;
+    private final float quality;
+
+    @Autowired
+    public ThumbnailService(Environment environment, PDFConversionsService pdfConversionsService) {
+        this.pdfConversionsService = pdfConversionsService;
+        this.defaultWidth = environment.getProperty("idocx.thumbnail.width", Integer.class, 150);
+        this.quality = environment.getProperty("idocx.thumbnail.quality", Float.class, 0.8f);
+    }
+
+    public byte[] getThumbnail(String documentId, int page, Integer width) throws IOException {
+        FileMetadata fileMetadata = pdfConversionsService.getFileMetadataById(documentId);
+        try {
+            return renderThumbnail(fileMetadata, Math.max(page - 1, 0), width != null ? width : defaultWidth);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Page " + page + " of document " + documentId + " not found");
+        }
+    }
+
+    @Async("thumbnailExecutor")
+    public void pregenerate(FileMetadata fileMetadata) {
+        if (fileMetadata == null || fileMetadata.getId() == null || !".pdf".equalsIgnoreCase(fileMetadata.getExtension()))
+            return;
+        try {
+            renderThumbnail(fileMetadata, 0, defaultWidth);
+        } catch (Exception e) {
+            log.warn("Could not pre-generate thumbnail for document {}: {}", fileMetadata.getId(), e.getMessage());
+        }
+    }
+
+    private byte[] renderThumbnail(FileMetadata fileMetadata, int pageIndex, int width) throws IOException {
+        byte[][] thumbnail = new byte[1][];
+        pdfConversionsService.renderCachedPages(fileMetadata, pageIndex, pageIndex + 1, THUMBNAIL_FORMAT,
+                PageRenderOptions.thumbnail(width, quality), (renderedIndex, image) -> thumbnail[0] = image);
+        return thumbnail[0];
+    }
+}
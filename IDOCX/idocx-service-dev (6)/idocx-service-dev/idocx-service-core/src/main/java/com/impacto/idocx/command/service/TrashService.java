@@ -0,0 +1,330 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.DocumentContentDao;
+import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.FolderMetadataDao;
+import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dao.ResourceStatusDao;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.FailedToDeleteResorceException;
+import com.impacto.idocx.command.exceptions.FailedToUpdateResourcesException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Deleting a file or folder puts it in the trash: its content is renamed into {@code ${file.storage.location}/.trash}
+ * and the records are flagged, so deleting is as cheap as restoring, which renames it back. Records of a trashed
+ * folder are rebased to the new location with one update per collection, see {@link FolderTreeDao#trashSubtree}.
+ * Space is only reclaimed by {@link #purgeExpired}, which runs every {@code idocx.trash.purge-interval-ms} and purges
+ * what has been in the trash longer than {@code idocx.trash.retention-hours}: files in batches of
+ * {@code idocx.trash.purge-batch-size}, folders through the {@link FolderDeletionService}, both paced by the
+ * {@link IoThrottle}. Purges asked for explicitly are not paced.
+ */
+@Service
+@Log4j2
+public class TrashService {
+    static final String TRASH_DIRECTORY = ".trash";
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final FolderMetadataRepository folderMetadataRepository;
+    private final FolderMetadataDao folderMetadataDao;
+    private final FolderTreeDao folderTreeDao;
+    private final ResourceStatusDao resourceStatusDao;
+    private final DocumentContentDao documentContentDao;
+    private final ContentStore contentStore;
+    private final ContentIndexService contentIndexService;
+    private final SuggestionService suggestionService;
+    private final FolderDeletionService folderDeletionService;
+    private final RenderedPageCache renderedPageCache;
+    private final IoThrottle ioThrottle;
+    private final Path rootLocation;
+    private final Path trashLocation;
+    private final long retentionHours;
+    private final int purgeBatchSize;
+
+    @Autowired
+    public TrashService(Environment environment, FileMetadataRepository fileMetadataRepository,
+                        FolderMetadataRepository folderMetadataRepository, FolderMetadataDao folderMetadataDao,
+                        FolderTreeDao folderTreeDao, ResourceStatusDao resourceStatusDao, DocumentContentDao documentContentDao,
+                        ContentStore contentStore, ContentIndexService contentIndexService, SuggestionService suggestionService,
+                        FolderDeletionService folderDeletionService, RenderedPageCache renderedPageCache,
+                        IoThrottle ioThrottle) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.folderMetadataRepository = folderMetadataRepository;
+        this.folderMetadataDao = folderMetadataDao;
+        this.folderTreeDao = folderTreeDao;
+        this.resourceStatusDao = resourceStatusDao;
+        this.documentContentDao = documentContentDao;
+        this.contentStore = contentStore;
+        this.contentIndexService = contentIndexService;
+        this.suggestionService = suggestionService;
+        this.folderDeletionService = folderDeletionService;
+        this.renderedPageCache = renderedPageCache;
+        this.ioThrottle = ioThrottle;
+        this.rootLocation = Paths.get(environment.getProperty("file.storage.location")).normalize().toAbsolutePath();
+        this.trashLocation = rootLocation.resolve(TRASH_DIRECTORY);
+        this.retentionHours = environment.getProperty("idocx.trash.retention-hours", Long.class, 720L);
+        this.purgeBatchSize = environment.getProperty("idocx.trash.purge-batch-size", Integer.class, 100);
+    }
+
+    /**
+     * Whether the stored content is in the trash area.
+     */
+    public boolean isInTrash(String directoryName) {
+        return directoryName != null && Paths.get(directoryName).normalize().toAbsolutePath().startsWith(trashLocation);
+    }
+
+    public void trashFile(FileMetadata fileMetadata) {
+        // already in the trash, on its own or inside the directory of its folder
+        if (fileMetadata.getTrashedFrom() != null || fileMetadata.getTrashedWith() != null)
+            return;
+        String directoryName = fileMetadata.getDirectoryName();
+        Path content = Paths.get(directoryName);
+        // blobs are shared with other files and stay where they are
+        if (!contentStore.isBlob(directoryName) && Files.exists(content)) {
+            Path trashed = trashLocation.resolve("files").resolve(fileMetadata.getId());
+            try {
+                move(content, trashed);
+            } catch (IOException e) {
+                throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION,
+                        "Failed to move the file " + directoryName + " to the trash: " + e.getMessage());
+            }
+            fileMetadata.setDirectoryName(pathOf(trashed));
+        }
+        boolean wasTrashed = fileMetadata.isTrash();
+        fileMetadata.setTrash(true);
+        fileMetadata.setTrashedFrom(directoryName);
+        fileMetadata.setTrashedWith(null);
+        if (fileMetadata.getTrashedAt() == null)
+            fileMetadata.setTrashedAt(LocalDateTime.now());
+        fileMetadataRepository.save(fileMetadata);
+        if (!wasTrashed) {
+            documentContentDao.setTrashed(List.of(fileMetadata.getId()), true);
+            suggestionService.removeFile(fileMetadata);
+        }
+    }
+
+    /**
+     * Takes a file out of the trash. A file that went to the trash with its folder lies inside the folder's trashed
+     * directory and is only restored with it.
+     */
+    public void restoreFile(FileMetadata fileMetadata) {
+        if (!fileMetadata.isTrash())
+            return;
+        if (fileMetadata.getTrashedWith() != null)
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
+                    "The folder of file with id: " + fileMetadata.getId() + " is in the trash, restore it first");
+        String trashedFrom = fileMetadata.getTrashedFrom();
+        if (trashedFrom == null) {
+            resourceStatusDao.setFlag(List.of(fileMetadata.getId()), "isTrash", false, FileMetadata.class);
+            fileMetadata.setTrash(false);
+        } else {
+            if (!trashedFrom.equals(fileMetadata.getDirectoryName())) {
+                Path original = Paths.get(trashedFrom);
+                if (!Files.isDirectory(original.getParent()))
+                    throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
+                            "The folder of file with id: " + fileMetadata.getId() + " is in the trash, restore it first");
+                try {
+                    move(Paths.get(fileMetadata.getDirectoryName()), original);
+                } catch (IOException e) {
+                    throw new FailedToUpdateResourcesException(ErrorCode.FAILED_TO_UPDATE_FILE_EXCEPTION,
+                            "Failed to restore the file " + trashedFrom + ": " + e.getMessage());
+                }
+            }
+            fileMetadata.setDirectoryName(trashedFrom);
+            fileMetadata.setTrash(false);
+            fileMetadata.setTrashedAt(null);
+            fileMetadata.setTrashedFrom(null);
+            fileMetadata.setTrashedWith(null);
+            fileMetadataRepository.save(fileMetadata);
+            documentContentDao.setTrashed(List.of(fileMetadata.getId()), false);
+        }
+        suggestionService.addFile(fileMetadata);
+    }
+
+    /**
+     * Renames the folder's directory into the trash area and flags everything below it that was not in the trash yet.
+     */
+    public void trashFolder(FolderMetadata folderMetadata) {
+        if (folderMetadata.getTrashedFrom() != null || folderMetadata.getTrashedWith() != null)
+            return;
+        Path directory = directoryOf(folderMetadata.getFolderPath());
+        Path trashed = folderTrashOf(folderMetadata);
+        if (Files.exists(directory)) {
+            try {
+                move(directory, trashed);
+            } catch (IOException e) {
+                throw new FailedToDeleteResorceException(ErrorCode.FAILED_TO_DELETE_RESOURCE_EXCEPTION,
+                        "Failed to move the folder " + folderMetadata.getFolderPath() + " to the trash: " + e.getMessage());
+            }
+        }
+        try (Stream<FileMetadata> files = folderTreeDao.streamSubtreeFiles(folderMetadata.getFolderPath())) {
+            files.filter(file -> !file.isTrash()).forEach(suggestionService::removeFile);
+        }
+        try (Stream<FolderMetadata> folders = folderTreeDao.streamSubtreeFolders(folderMetadata.getFolderPath())) {
+            folders.filter(folder -> !folder.isTrash()).forEach(suggestionService::removeFolder);
+        }
+        folderTreeDao.trashSubtree(folderMetadata.getId(), folderMetadata.getFolderPath(), pathOf(directory), pathOf(trashed),
+                LocalDateTime.now());
+    }
+
+    public void restoreFolder(FolderMetadata folderMetadata) {
+        if (!folderMetadata.isTrash())
+            return;
+        if (folderMetadata.getTrashedWith() != null && !folderMetadata.getId().equals(folderMetadata.getTrashedWith()))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
+                    "The parent of folder with id: " + folderMetadata.getId() + " is in the trash, restore it first");
+        if (folderMetadata.getTrashedFrom() == null) {
+            resourceStatusDao.setFlag(List.of(folderMetadata.getId()), "isTrash", false, FolderMetadata.class);
+            folderMetadata.setTrash(false);
+            suggestionService.addFolder(folderMetadata);
+            return;
+        }
+        Path directory = directoryOf(folderMetadata.getFolderPath());
+        Path trashed = folderTrashOf(folderMetadata);
+        if (!Files.isDirectory(directory.getParent()))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION,
+                    "The parent of folder with id: " + folderMetadata.getId() + " is in the trash, restore it first");
+        if (Files.exists(trashed)) {
+            try {
+                move(trashed, directory);
+            } catch (IOException e) {
+                throw new FailedToUpdateResourcesException(ErrorCode.FAILED_TO_UPDATE_FOLDER_EXCEPTION,
+                        "Failed to restore the folder " + folderMetadata.getFolderPath() + ": " + e.getMessage());
+            }
+        }
+        List<String> restoredIds = new ArrayList<>();
+        try (Stream<FileMetadata> files = folderTreeDao.streamFilesTrashedWith(folderMetadata.getId())) {
+            files.forEach(file -> {
+                restoredIds.add(file.getId());
+                suggestionService.addFile(file);
+            });
+        }
+        try (Stream<FolderMetadata> folders = folderTreeDao.streamFoldersTrashedWith(folderMetadata.getId())) {
+            folders.forEach(suggestionService::addFolder);
+        }
+        // a folder that was already in the trash when it was deleted is not trashed with itself
+        if (!folderMetadata.getId().equals(folderMetadata.getTrashedWith()))
+            suggestionService.addFolder(folderMetadata);
+        folderTreeDao.restoreSubtree(folderMetadata.getId(), pathOf(trashed), pathOf(directory));
+        documentContentDao.setTrashed(restoredIds, false);
+    }
+
+    /**
+     * Deletes the file for good: its record first, then its content.
+     */
+    public void purgeFile(FileMetadata fileMetadata) {
+        purgeFile(fileMetadata, false);
+    }
+
+    private void purgeFile(FileMetadata fileMetadata, boolean throttled) {
+        fileMetadataRepository.delete(fileMetadata);
+        folderMetadataDao.removeDocumentIds(fileMetadata.getFilePath(), List.of(fileMetadata.getId()));
+        contentIndexService.remove(List.of(fileMetadata.getId()));
+        renderedPageCache.invalidate(fileMetadata.getId());
+        if (throttled)
+            ioThrottle.acquire();
+        if (contentStore.releaseBlob(fileMetadata.getDirectoryName()))
+            return;
+        try {
+            Files.deleteIfExists(Paths.get(fileMetadata.getDirectoryName()));
+        } catch (IOException e) {
+            log.warn("Could not delete file {}: {}", fileMetadata.getDirectoryName(), e.getMessage());
+        }
+    }
+
+    public FolderDeletionJobDto purgeFolder(FolderMetadata folderMetadata) {
+        return purgeFolder(folderMetadata, false);
+    }
+
+    private FolderDeletionJobDto purgeFolder(FolderMetadata folderMetadata, boolean throttled) {
+        Path directory = folderMetadata.getTrashedFrom() != null ? folderTrashOf(folderMetadata)
+                : directoryOf(folderMetadata.getFolderPath());
+        return folderDeletionService.submit(folderMetadata, directory, throttled);
+    }
+
+    @Scheduled(fixedDelayString = "${idocx.trash.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        int files = purgeFilesTrashedBefore(cutoff);
+        int folders = 0;
+        // only folders whose directory was moved to the trash; a folder that was only flagged still holds live files
+        for (FolderMetadata folderMetadata : folderMetadataRepository.findByIsTrashTrueAndTrashedFromIsNotNullAndTrashedAtBefore(cutoff)) {
+            if (folderDeletionService.isPending(folderMetadata.getId()))
+                continue;
+            purgeFolder(folderMetadata, true);
+            folders++;
+        }
+        if (files > 0 || folders > 0)
+            log.info("Purged {} files and queued {} folders from the trash", files, folders);
+    }
+
+    /**
+     * Purges expired files one batch at a time. A file that cannot be purged is left for the next run, which also
+     * ends this one so that it does not keep reading the same batch.
+     */
+    int purgeFilesTrashedBefore(LocalDateTime cutoff) {
+        int purged = 0;
+        List<FileMetadata> batch;
+        do {
+            batch = fileMetadataRepository.findByIsTrashTrueAndTrashedAtBefore(cutoff, PageRequest.of(0, purgeBatchSize));
+            for (FileMetadata fileMetadata : batch) {
+                try {
+                    purgeFile(fileMetadata, true);
+                    purged++;
+                } catch (RuntimeException e) {
+                    log.warn("Could not purge file {}: {}", fileMetadata.getId(), e.getMessage());
+                    return purged;
+                }
+            }
+        } while (batch.size() == purgeBatchSize);
+        return purged;
+    }
+
+    private Path directoryOf(String folderPath) {
+        return rootLocation.resolve(folderPath).normalize();
+    }
+
+    private Path folderTrashOf(FolderMetadata folderMetadata) {
+        return trashLocation.resolve("folders").resolve(folderMetadata.getId());
+    }
+
+    /**
+     * The path as the {@code directoryName} of files stores it.
+     */
+    private static String pathOf(Path path) {
+        return path.toString().replace("\\", "/");
+    }
+
+    /**
+     * A rename within the storage root, atomic where the file system supports it.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+}
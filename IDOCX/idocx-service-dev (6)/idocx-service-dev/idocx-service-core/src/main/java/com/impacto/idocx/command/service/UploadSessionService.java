@@ -0,0 +1,343 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.UploadSessionDao;
+import com.impacto.idocx.command.dao.UploadSessionRepository;
+import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.UploadSessionDto;
+import com.impacto.idocx.command.dtos.UploadSessionRequestDto;
+import com.impacto.idocx.command.entity.UploadSession;
+import com.impacto.idocx.command.exceptions.DirectoryCreationException;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.FileStorageException;
+import com.impacto.idocx.command.exceptions.InvalidChunkException;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import com.impacto.idocx.command.exceptions.UploadSessionStateException;
+import com.impacto.idocx.command.model.FileUploadRequest;
+import lombok.extern.log4j.Log4j2;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads for large documents. A session preallocates its target file under
+ * {@code ${file.storage.location}/.uploads}; every chunk is streamed from the request straight into its slot with
+ * positional writes and recorded once it matches the SHA-256 the client sent. Chunks may arrive in any order, and a
+ * chunk that failed verification may be sent again. The file is moved into the workspace and its {@link com.impacto.idocx.command.entity.FileMetadata}
+ * created only when the session is committed.
+ */
+@Service
+@Log4j2
+public class UploadSessionService {
+    private static final String UPLOADS_DIRECTORY = ".uploads";
+    private static final int TRANSFER_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_CHUNKS = 10_000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionDao uploadSessionDao;
+    private final WorkSpaceStorageService workSpaceStorageService;
+    private final ModelMapper modelMapper;
+    private final Path uploadsLocation;
+    private final long defaultChunkSize;
+    private final long maxChunkSize;
+    private final Duration sessionTtl;
+    private final Map<String, ReadWriteLock> sessionLocks = new ConcurrentHashMap<>();
+    private final Set<String> chunksInFlight = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public UploadSessionService(Environment environment, UploadSessionRepository uploadSessionRepository, UploadSessionDao uploadSessionDao,
+                                WorkSpaceStorageService workSpaceStorageService, ModelMapper modelMapper) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadSessionDao = uploadSessionDao;
+        this.workSpaceStorageService = workSpaceStorageService;
+        this.modelMapper = modelMapper;
+        this.uploadsLocation = Paths.get(environment.getProperty("file.storage.location")).resolve(UPLOADS_DIRECTORY);
+        this.defaultChunkSize = environment.getProperty("idocx.upload.chunk-size", Long.class, 8L * 1024 * 1024);
+        this.maxChunkSize = environment.getProperty("idocx.upload.max-chunk-size", Long.class, 64L * 1024 * 1024);
+        this.sessionTtl = Duration.ofHours(environment.getProperty("idocx.upload.session-ttl-hours", Long.class, 24L));
+        try {
+            Files.createDirectories(uploadsLocation);
+        } catch (IOException e) {
+            log.info("Could not create upload session directory. Error: {}", ErrorCode.STORAGE_INITIALIZATION_EXCEPTION);
+            throw new DirectoryCreationException(ErrorCode.STORAGE_INITIALIZATION_EXCEPTION, "Could not initialize upload session storage");
+        }
+    }
+
+    public GenericResponse<UploadSessionDto> openSession(UploadSessionRequestDto request) {
+        validateRequest(request);
+        workSpaceStorageService.ensureNotInTrash(request.getFilePath());
+        long chunkSize = request.getChunkSize() == null ? defaultChunkSize : request.getChunkSize();
+
+        UploadSession session = new UploadSession();
+        session.setFileName(request.getFileName());
+        session.setFilePath(request.getFilePath());
+        session.setFolderName(request.getFolderName());
+        session.setWorkspaceType(request.getWorkspaceType());
+        session.setTag(request.getTag());
+        session.setVersion(request.getVersion());
+        session.setRemarks(request.getRemarks());
+        session.setPasswordProtected(request.isPasswordProtected());
+        session.setTotalSize(request.getTotalSize());
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks((int) ((request.getTotalSize() + chunkSize - 1) / chunkSize));
+        session.setStatus(Constants.UPLOAD_STATUS.OPEN);
+        session.setCreatedAt(LocalDateTime.now());
+        UploadSession savedSession = uploadSessionRepository.save(session);
+
+        try (RandomAccessFile target = new RandomAccessFile(stagingFile(savedSession.getId()).toFile(), "rw")) {
+            target.setLength(savedSession.getTotalSize());
+        } catch (IOException e) {
+            uploadSessionRepository.delete(savedSession);
+            throw new FileStorageException(ErrorCode.FILE_STORAGE_EXCEPTION, "Could not allocate space for upload of " + request.getFileName());
+        }
+        return response(savedSession);
+    }
+
+    private void validateRequest(UploadSessionRequestDto request) {
+        if (request.getFileName() == null || request.getFileName().isBlank()
+                || !request.getFileName().equals(Paths.get(request.getFileName()).getFileName().toString()))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Invalid file name: " + request.getFileName());
+        if (request.getFilePath() == null || request.getWorkspaceType() == null)
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "File path and workspace type are required");
+        if (Arrays.stream(Constants.WORKSPACE_TYPE.values()).noneMatch(type -> type.name().equalsIgnoreCase(request.getWorkspaceType())))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Unsupported workspace type: " + request.getWorkspaceType());
+        if (request.getTotalSize() <= 0)
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Total size must be positive");
+        if (request.getChunkSize() != null && (request.getChunkSize() <= 0 || request.getChunkSize() > maxChunkSize))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Chunk size must be between 1 and " + maxChunkSize + " bytes");
+        long chunkSize = request.getChunkSize() == null ? defaultChunkSize : request.getChunkSize();
+        if ((request.getTotalSize() + chunkSize - 1) / chunkSize > MAX_CHUNKS)
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "An upload may have at most " + MAX_CHUNKS + " chunks, use a larger chunk size");
+    }
+
+    /**
+     * Writes one chunk at {@code chunkIndex * chunkSize}. The chunk is streamed straight into its slot while its
+     * SHA-256 is computed, and recorded only once its length and checksum match. A chunk that was already received
+     * is not written again, so a bad resend never overwrites good bytes, and the same chunk cannot be written by two
+     * requests at once. Recording it holds the read side of the session lock, which {@link #commit} takes for
+     * writing, so no chunk is recorded after the commit started.
+     */
+    public GenericResponse<UploadSessionDto> writeChunk(String sessionId, int chunkIndex, String checksum, InputStream body) throws IOException {
+        String chunkKey = sessionId + "." + chunkIndex;
+        if (!chunksInFlight.add(chunkKey))
+            throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Chunk " + chunkIndex + " is already being uploaded");
+        try {
+            UploadSession session = findOpenSession(sessionId);
+            if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks())
+                throw new InvalidChunkException(ErrorCode.INVALID_CHUNK_EXCEPTION,
+                        "Chunk " + chunkIndex + " is outside of 0.." + (session.getTotalChunks() - 1));
+            if (checksum == null || checksum.isBlank())
+                throw new InvalidChunkException(ErrorCode.INVALID_CHUNK_EXCEPTION, "Chunk checksum is required");
+            if (session.getReceivedChunks().contains(chunkIndex))
+                return response(session);
+
+            long position = chunkIndex * session.getChunkSize();
+            long expectedLength = Math.min(session.getChunkSize(), session.getTotalSize() - position);
+            receive(sessionId, chunkIndex, checksum, body, position, expectedLength);
+            Lock lock = lockOf(sessionId).readLock();
+            lock.lock();
+            try {
+                findOpenSession(sessionId);
+                UploadSession updatedSession = uploadSessionDao.markChunkReceived(sessionId, chunkIndex);
+                if (updatedSession == null)
+                    throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Upload session " + sessionId + " is no longer open");
+                return response(updatedSession);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            chunksInFlight.remove(chunkKey);
+        }
+    }
+
+    /**
+     * Streams the chunk into the staging file at {@code position} and checks its length and SHA-256.
+     */
+    private void receive(String sessionId, int chunkIndex, String checksum, InputStream body, long position, long expectedLength) throws IOException {
+        MessageDigest digest = newDigest();
+        long written = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_BYTES);
+        ReadableByteChannel source = Channels.newChannel(body);
+        try (FileChannel target = FileChannel.open(stagingFile(sessionId), StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (written + buffer.remaining() > expectedLength)
+                    throw new InvalidChunkException(ErrorCode.INVALID_CHUNK_EXCEPTION,
+                            "Chunk " + chunkIndex + " is larger than the expected " + expectedLength + " bytes");
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    written += target.write(buffer, position + written);
+                }
+                buffer.clear();
+            }
+        } catch (NoSuchFileException e) {
+            throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Upload session " + sessionId + " is no longer open");
+        }
+
+        if (written != expectedLength)
+            throw new InvalidChunkException(ErrorCode.INVALID_CHUNK_EXCEPTION,
+                    "Chunk " + chunkIndex + " has " + written + " bytes, expected " + expectedLength);
+        String actualChecksum = HexFormat.of().formatHex(digest.digest());
+        if (!actualChecksum.equalsIgnoreCase(checksum.trim()))
+            throw new InvalidChunkException(ErrorCode.INVALID_CHUNK_EXCEPTION, "Checksum mismatch for chunk " + chunkIndex);
+    }
+
+    public GenericResponse<UploadSessionDto> getSession(String sessionId) {
+        return response(findSession(sessionId));
+    }
+
+    /**
+     * Registers the assembled file. Storing it moves the staging file away, so a failed commit cannot be retried:
+     * the session is marked FAILED, its staging file deleted, and the upload has to start over.
+     */
+    public GenericResponse<FileMetaDataDto> commit(String sessionId) {
+        UploadSession session;
+        Lock lock = lockOf(sessionId).writeLock();
+        lock.lock();
+        try {
+            session = findSession(sessionId);
+            if (session.getReceivedChunks().size() < session.getTotalChunks())
+                throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Upload session " + sessionId + " is missing "
+                        + (session.getTotalChunks() - session.getReceivedChunks().size()) + " chunks");
+            if (uploadSessionDao.transition(sessionId, Constants.UPLOAD_STATUS.OPEN, Constants.UPLOAD_STATUS.COMMITTING) == null)
+                throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Upload session " + sessionId + " is " + findSession(sessionId).getStatus());
+        } finally {
+            lock.unlock();
+        }
+
+        FileMetaDataDto fileMetaDataDto;
+        try {
+            fileMetaDataDto = workSpaceStorageService.storeUploadedFile(toFileUploadRequest(session), session.getFileName(), stagingFile(sessionId));
+        } catch (RuntimeException e) {
+            uploadSessionDao.transition(sessionId, Constants.UPLOAD_STATUS.COMMITTING, Constants.UPLOAD_STATUS.FAILED);
+            deleteStagedFiles(sessionId);
+            sessionLocks.remove(sessionId);
+            throw e;
+        }
+
+        session.setStatus(Constants.UPLOAD_STATUS.COMMITTED);
+        session.setStatusChangedAt(LocalDateTime.now());
+        session.setDocumentId(fileMetaDataDto.getId());
+        session.setCommittedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+        sessionLocks.remove(sessionId);
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                fileMetaDataDto);
+    }
+
+    /**
+     * Drops sessions that were never committed so that abandoned uploads do not keep their preallocated space: open
+     * sessions created before the TTL, and failed commits or commits interrupted by a restart that have been in that
+     * state for longer than the TTL.
+     */
+    @Scheduled(fixedDelayString = "${idocx.upload.cleanup-interval-ms:3600000}")
+    public void purgeExpiredSessions() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(sessionTtl);
+        List<UploadSession> expired = new ArrayList<>(uploadSessionRepository.findByStatusInAndCreatedAtBefore(
+                List.of(Constants.UPLOAD_STATUS.OPEN), expiredBefore));
+        expired.addAll(uploadSessionRepository.findByStatusInAndStatusChangedAtBefore(
+                List.of(Constants.UPLOAD_STATUS.COMMITTING, Constants.UPLOAD_STATUS.FAILED), expiredBefore));
+        for (UploadSession session : expired) {
+            if (deleteStagedFiles(session.getId())) {
+                uploadSessionRepository.delete(session);
+                sessionLocks.remove(session.getId());
+            }
+        }
+    }
+
+    /**
+     * Deletes the staging file of the session.
+     */
+    private boolean deleteStagedFiles(String sessionId) {
+        try {
+            Files.deleteIfExists(stagingFile(sessionId));
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not delete staged upload {}: {}", sessionId, e.getMessage());
+            return false;
+        }
+    }
+
+    private ReadWriteLock lockOf(String sessionId) {
+        return sessionLocks.computeIfAbsent(sessionId, id -> new ReentrantReadWriteLock());
+    }
+
+    private static FileUploadRequest toFileUploadRequest(UploadSession session) {
+        FileUploadRequest fileUploadRequest = new FileUploadRequest();
+        fileUploadRequest.setFilePath(session.getFilePath());
+        fileUploadRequest.setFileName(session.getFileName());
+        fileUploadRequest.setFolderName(session.getFolderName());
+        fileUploadRequest.setWorkspaceType(session.getWorkspaceType());
+        fileUploadRequest.setTag(session.getTag());
+        fileUploadRequest.setVersion(session.getVersion());
+        fileUploadRequest.setRemarks(session.getRemarks());
+        fileUploadRequest.setPasswordProtected(session.isPasswordProtected());
+        return fileUploadRequest;
+    }
+
+    private UploadSession findSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Upload session with id: " + sessionId + " not found"));
+    }
+
+    private UploadSession findOpenSession(String sessionId) {
+        UploadSession session = findSession(sessionId);
+        if (session.getStatus() != Constants.UPLOAD_STATUS.OPEN)
+            throw new UploadSessionStateException(ErrorCode.UPLOAD_SESSION_STATE_EXCEPTION, "Upload session " + sessionId + " is " + session.getStatus());
+        return session;
+    }
+
+    Path stagingFile(String sessionId) {
+        return uploadsLocation.resolve(sessionId + ".part");
+    }
+
+    private GenericResponse<UploadSessionDto> response(UploadSession session) {
+        UploadSessionDto sessionDto = modelMapper.map(session, UploadSessionDto.class);
+        sessionDto.setReceivedChunks(session.getReceivedChunks().stream().sorted().toList());
+        return new GenericResponse<>(
+                Constants.RESPONSE_STATUS.OK.getValue(),
+                Constants.RESPONSE_MESSAGE.SUCCESS.getValue(),
+                sessionDto);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.CursorPage;
 import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.FolderMetadataDao;
 import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dao.KeysetPager;
+import com.impacto.idocx.command.dao.MetadataBulkDao;
+import com.impacto.idocx.command.dao.MetadataCache;
+import com.impacto.idocx.command.dtos.FileIngestResultDto;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
 import com.impacto.idocx.command.dtos.FolderRequestDto;
@@ -16,28 +23,35 @@ import com.impacto.idocx.command.exceptions.FileReadingException;
 import com.impacto.idocx.command.exceptions.FileStorageException;
 import com.impacto.idocx.command.exceptions.FolderAlreadyExistsException;
 import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
 import com.impacto.idocx.command.model.FileUploadRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -49,13 +63,43 @@ public class WorkSpaceStorageService {
     private final FileMetadataRepository fileMetadataRepository;
     private final FolderMetadataRepository folderMetadatarepository;
     private final ModelMapper modelMapper;
+    private final RenderedPageCache renderedPageCache;
+    private final ThumbnailService thumbnailService;
+    private final ContentStore contentStore;
+    private final FileIngestionPipeline fileIngestionPipeline;
+    private final MetadataBulkDao metadataBulkDao;
+    private final FolderMetadataDao folderMetadataDao;
+    private final FolderTreeDao folderTreeDao;
+    private final ContentIndexService contentIndexService;
+    private final KeysetPager keysetPager;
+    private final SuggestionService suggestionService;
+    private final TrashService trashService;
+    private final MetadataCache metadataCache;
 
     @Autowired
-    public WorkSpaceStorageService(Environment environment, FileMetadataRepository fileMetadataRepository, FolderMetadataRepository folderMetadatarepository, ModelMapper modelMapper) {
+    public WorkSpaceStorageService(Environment environment, FileMetadataRepository fileMetadataRepository, FolderMetadataRepository folderMetadatarepository,
+                                   ModelMapper modelMapper, RenderedPageCache renderedPageCache, ThumbnailService thumbnailService,
+                                   ContentStore contentStore, FileIngestionPipeline fileIngestionPipeline,
+                                   MetadataBulkDao metadataBulkDao, FolderMetadataDao folderMetadataDao,
+                                   FolderTreeDao folderTreeDao, ContentIndexService contentIndexService, KeysetPager keysetPager,
+                                   SuggestionService suggestionService, TrashService trashService,
+                                   MetadataCache metadataCache) {
         this.rootLocation = Paths.get(environment.getProperty("file.storage.location"));
         this.fileMetadataRepository = fileMetadataRepository;
         this.folderMetadatarepository = folderMetadatarepository;
         this.modelMapper = modelMapper;
+        this.renderedPageCache = renderedPageCache;
+        this.thumbnailService = thumbnailService;
+        this.contentStore = contentStore;
+        this.fileIngestionPipeline = fileIngestionPipeline;
+        this.metadataBulkDao = metadataBulkDao;
+        this.folderMetadataDao = folderMetadataDao;
+        this.folderTreeDao = folderTreeDao;
+        this.contentIndexService = contentIndexService;
+        this.keysetPager = keysetPager;
+        this.suggestionService = suggestionService;
+        this.trashService = trashService;
+        this.metadataCache = metadataCache;
         try {
             Files.createDirectories(rootLocation);
         } catch (IOException e) {
@@ -74,49 +118,265 @@ public class WorkSpaceStorageService {
         }
     }
 
-    public void store(FileUploadRequest fileUploadRequest) {
+    /**
+     * Refuses to write into a folder that is in the trash, or below one. Its directory was moved to the trash area, so
+     * writing would create it again and attach live files to the trashed records, which restoring and purging the
+     * folder would then trip over.
+     */
+    public void ensureNotInTrash(String folderPath) {
+        if (folderPath != null && folderMetadataDao.isInTrash(folderPath))
+            throw new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "Folder " + folderPath + " is in the trash, restore it first");
+    }
+
+    /**
+     * Stores every file of the request through the {@link FileIngestionPipeline} and reports the outcome per file;
+     * a file that cannot be stored does not stop the others. The metadata of all files is written in one batch once
+     * their content is in place.
+     */
+    public List<FileIngestResultDto> store(FileUploadRequest fileUploadRequest) {
+        List<MultipartFile> files = fileUploadRequest.getFiles();
+        if (files == null || files.isEmpty()) {
+            log.info("File not found in the request. Error: {}", ErrorCode.FILE_NOT_FOUND_EXCEPTION);
+            throw new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "There is no files in the request");
+        }
         String filePath = fileUploadRequest.getFilePath();
+        ensureNotInTrash(filePath);
         createDirectory(filePath);
-        for (MultipartFile file : fileUploadRequest.getFiles()) {
-            if (file.isEmpty()) {
-                log.info("File not found in the request. Error: {}", ErrorCode.FILE_NOT_FOUND_EXCEPTION);
-                throw new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "There is no files in the request");
-            }
-            try {
-                Path destinationFile = getDestinationFile(filePath, file);
-                Files.copy(file.getInputStream(), destinationFile, StandardCopyOption.REPLACE_EXISTING);
-                String directoryName = destinationFile.toString().replace("\\", "/");
-                processFileMetadata(fileUploadRequest, file, directoryName);
-            } catch (IOException e) {
-                throw new FileStorageException(ErrorCode.FILE_STORAGE_EXCEPTION, "Failed to store file.");
+        List<FileIngestionPipeline.Outcome<StagedUpload>> outcomes = fileIngestionPipeline.process(files,
+                file -> writeStagedUpload(filePath, file),
+                this::digestStagedUpload,
+                staged -> placeStagedUpload(filePath, staged));
+        registerFiles(fileUploadRequest, outcomes.stream()
+                .filter(FileIngestionPipeline.Outcome::isSuccess)
+                .map(FileIngestionPipeline.Outcome::getValue)
+                .toList());
+
+        List<FileIngestResultDto> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            String fileName = files.get(i).getOriginalFilename();
+            FileIngestionPipeline.Outcome<StagedUpload> outcome = outcomes.get(i);
+            String failure = outcome.isSuccess() ? outcome.getValue().failure : outcome.getError().getMessage();
+            if (failure == null) {
+                FileMetadata metadata = outcome.getValue().metadata;
+                results.add(new FileIngestResultDto(fileName, Constants.INGEST_STATUS.STORED, metadata.getId(),
+                        metadata.getContentHash(), metadata.getSize(), Constants.RESPONSE_MESSAGE.SUCCESS.getValue()));
+            } else {
+                log.warn("Failed to store {} in {}: {}", fileName, filePath, failure);
+                results.add(new FileIngestResultDto(fileName, Constants.INGEST_STATUS.FAILED, null, null, 0, failure));
             }
         }
+        return results;
+    }
+
+    /**
+     * A file of an upload on its way through the ingestion pipeline and into the metadata batch.
+     */
+    private static final class StagedUpload {
+        private final String fileName;
+        private final Path stagedFile;
+        private String contentHash;
+        private long size;
+        private String directoryName;
+        private FileMetadata metadata;
+        private String failure;
+
+        private StagedUpload(String fileName, Path stagedFile) {
+            this.fileName = fileName;
+            this.stagedFile = stagedFile;
+        }
+    }
+
+    private StagedUpload writeStagedUpload(String filePath, MultipartFile file) throws IOException {
+        if (file.isEmpty())
+            throw new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "File is empty: " + file.getOriginalFilename());
+        // staged next to its final location, so placing it is a rename
+        Path stagedFile = contentStore.isEnabled() ? contentStore.newTempFile()
+                : Files.createTempFile(rootLocation.resolve(filePath), ".ingest-", ".part");
+        try {
+            file.transferTo(stagedFile.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        }
+        return new StagedUpload(file.getOriginalFilename(), stagedFile);
+    }
+
+    private StagedUpload digestStagedUpload(StagedUpload upload) throws IOException {
+        try {
+            upload.contentHash = contentHashOf(upload.stagedFile);
+            upload.size = Files.size(upload.stagedFile);
+            return upload;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload.stagedFile);
+            throw e;
+        }
+    }
+
+    private StagedUpload placeStagedUpload(String filePath, StagedUpload upload) throws IOException {
+        try {
+            Path destinationFile = placeContent(filePath, upload.fileName, upload.stagedFile, upload.contentHash, upload.size);
+            upload.directoryName = destinationFile.toString().replace("\\", "/");
+            return upload;
+        } finally {
+            Files.deleteIfExists(upload.stagedFile);
+        }
+    }
+
+    /**
+     * SHA-256 of the stored bytes; it is the strong ETag for downloads, so it has to change whenever the content does.
+     */
+    private static String contentHashOf(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Moves finished content to where the metadata will point: the shared blob when the content store is enabled,
+     * otherwise the file's own place under its folder.
+     */
+    private Path placeContent(String filePath, String fileName, Path stagedFile, String contentHash, long size) throws IOException {
+        if (contentStore.isEnabled())
+            return contentStore.store(stagedFile, contentHash, size);
+        Path destinationFile = getDestinationFile(filePath, fileName);
+        Files.move(stagedFile, destinationFile, StandardCopyOption.REPLACE_EXISTING);
+        return destinationFile;
     }
 
-    private void processFileMetadata(FileUploadRequest fileUploadRequest, MultipartFile file, String directoryName) {
-        String fileName = file.getOriginalFilename();
-        fileMetadataRepository.findByFileNameAndFilePath(fileName, fileUploadRequest.getFilePath()).ifPresentOrElse(metadata -> {
-            if (!directoryName.equals(metadata.getDirectoryName())) {
-                metadata.setDirectoryName(directoryName);
-                fileMetadataRepository.save(metadata);
+    /**
+     * Registers a file that was assembled by a chunked upload session. The staged file is moved into place rather
+     * than copied, and only read once more to compute its content hash.
+     */
+    public FileMetaDataDto storeUploadedFile(FileUploadRequest fileUploadRequest, String fileName, Path stagedFile) {
+        String filePath = fileUploadRequest.getFilePath();
+        ensureNotInTrash(filePath);
+        createDirectory(filePath);
+        StagedUpload upload = new StagedUpload(fileName, stagedFile);
+        try {
+            upload.contentHash = contentHashOf(stagedFile);
+            upload.size = Files.size(stagedFile);
+            upload.directoryName = placeContent(filePath, fileName, stagedFile, upload.contentHash, upload.size)
+                    .toString().replace("\\", "/");
+        } catch (IOException e) {
+            throw new FileStorageException(ErrorCode.FILE_STORAGE_EXCEPTION, "Failed to store file.");
+        }
+        registerFiles(fileUploadRequest, List.of(upload));
+        if (upload.failure != null)
+            throw new FileStorageException(ErrorCode.FILE_STORAGE_EXCEPTION, "Failed to store file: " + upload.failure);
+        return convertToDto(upload.metadata, FileMetaDataDto.class);
+    }
+
+    /**
+     * Writes the metadata of placed uploads with one lookup, one bulk upsert and one {@code $addToSet} of the file
+     * ids on the folder. When a name occurs more than once the last upload wins, as it did on disk. Uploads whose
+     * record could not be written get a {@code failure} and give their content reference back.
+     */
+    private void registerFiles(FileUploadRequest fileUploadRequest, List<StagedUpload> uploads) {
+        if (uploads.isEmpty())
+            return;
+        String filePath = fileUploadRequest.getFilePath();
+        Map<String, StagedUpload> latest = new LinkedHashMap<>();
+        uploads.forEach(upload -> latest.put(upload.fileName, upload));
+        Map<String, FileMetadata> existing = new HashMap<>();
+        metadataBulkDao.findByFilePathAndFileNames(filePath, latest.keySet())
+                .forEach(metadata -> existing.put(metadata.getFileName(), metadata));
+
+        List<StagedUpload> kept = new ArrayList<>(latest.values());
+        List<FileMetadata> records = new ArrayList<>(kept.size());
+        List<String> previousDirectoryNames = new ArrayList<>(kept.size());
+        List<Boolean> revived = new ArrayList<>(kept.size());
+        for (StagedUpload upload : kept) {
+            FileMetadata metadata = existing.get(upload.fileName);
+            previousDirectoryNames.add(metadata == null ? null : metadata.getDirectoryName());
+            revived.add(metadata != null && metadata.isTrash());
+            if (metadata == null)
+                metadata = createFileMetaData(fileUploadRequest, upload.fileName, upload.directoryName);
+            else if (metadata.isTrash())
+                takeOutOfTrash(metadata);
+            metadata.setDirectoryName(upload.directoryName);
+            metadata.setContentHash(upload.contentHash);
+            metadata.setSize(upload.size);
+            records.add(metadata);
+        }
+
+        Map<Integer, String> failures = metadataBulkDao.upsertFiles(records);
+        List<String> documentIds = new ArrayList<>();
+        for (int i = 0; i < kept.size(); i++) {
+            StagedUpload upload = kept.get(i);
+            FileMetadata metadata = records.get(i);
+            if (failures.containsKey(i)) {
+                upload.failure = failures.get(i);
+                contentStore.releaseBlob(upload.directoryName);
+                continue;
+            }
+            upload.metadata = metadata;
+            documentIds.add(metadata.getId());
+            if (existing.containsKey(upload.fileName)) {
+                renderedPageCache.invalidate(metadata.getId());
+                releasePreviousContent(previousDirectoryNames.get(i), upload.directoryName);
+                if (revived.get(i))
+                    suggestionService.addFile(metadata);
+            } else {
+                suggestionService.addFile(metadata);
             }
-        }, () -> fileMetadataRepository.save(createFileMetaData(fileUploadRequest, file, directoryName)));
-
-        folderMetadatarepository.findByFolderPath(fileUploadRequest.getFilePath()).ifPresentOrElse(folderMetadata -> {
-            if (folderMetadata.getDocuments() == null)
-                folderMetadata.setDocuments(new ArrayList<>());
-            boolean documentExists = folderMetadata.getDocuments().stream()
-                    .anyMatch(doc -> fileName.equals(doc.getFileName()));
-            if (!documentExists) {
-                folderMetadata.getDocuments().add(createFileMetaData(fileUploadRequest, file, directoryName));
-                folderMetadatarepository.save(folderMetadata);
+            thumbnailService.pregenerate(metadata);
+            contentIndexService.index(metadata);
+        }
+        Constants.WORKSPACE_TYPE workSpaceType = Constants.WORKSPACE_TYPE.valueOf(fileUploadRequest.getWorkspaceType().toUpperCase());
+        if (folderMetadataDao.addDocumentIds(filePath, fileUploadRequest.getFolderName(), workSpaceType, documentIds)) {
+            FolderMetadata folder = new FolderMetadata();
+            folder.setFolderName(fileUploadRequest.getFolderName());
+            folder.setWorkSpaceType(workSpaceType);
+            suggestionService.addFolder(folder);
+        }
+
+        for (StagedUpload upload : uploads) {
+            StagedUpload winner = latest.get(upload.fileName);
+            if (upload == winner)
+                continue;
+            // replaced by a later file of the same name in this upload
+            upload.metadata = winner.metadata;
+            upload.failure = winner.failure;
+            contentStore.releaseBlob(upload.directoryName);
+        }
+    }
+
+    /**
+     * Uploading a file that is in the trash under the same name brings its record back with the new content.
+     */
+    private static void takeOutOfTrash(FileMetadata metadata) {
+        metadata.setTrash(false);
+        metadata.setTrashedAt(null);
+        metadata.setTrashedFrom(null);
+        metadata.setTrashedWith(null);
+    }
+
+    /**
+     * A re-upload under the same name replaces the content the record pointed at: a blob loses one reference, and a
+     * per-folder copy left over from before the content store was enabled, or moved to the trash, is no longer needed.
+     */
+    private void releasePreviousContent(String previousDirectoryName, String directoryName) {
+        if (previousDirectoryName == null || contentStore.releaseBlob(previousDirectoryName))
+            return;
+        if ((contentStore.isEnabled() || trashService.isInTrash(previousDirectoryName)) && !previousDirectoryName.equals(directoryName)) {
+            try {
+                Files.deleteIfExists(Paths.get(previousDirectoryName));
+            } catch (IOException e) {
+                log.warn("Could not delete replaced file {}: {}", previousDirectoryName, e.getMessage());
             }
-        }, () -> folderMetadatarepository.save(createFolder(fileUploadRequest, Arrays.asList(createFileMetaData(fileUploadRequest, file, directoryName)))));
+        }
     }
 
-    private FileMetadata createFileMetaData(FileUploadRequest fileUploadRequest, MultipartFile file, String directoryName) {
-        FileMetadata metadata = new FileMetadata(file.getOriginalFilename(), fileUploadRequest.getFilePath(), directoryName);
-        metadata.setExtension(createExtension(file.getOriginalFilename()));
+    private FileMetadata createFileMetaData(FileUploadRequest fileUploadRequest, String fileName, String directoryName) {
+        FileMetadata metadata = new FileMetadata(fileName, fileUploadRequest.getFilePath(), directoryName);
+        metadata.setExtension(createExtension(fileName));
         metadata.setTag(fileUploadRequest.getTag());
         metadata.setVersion(fileUploadRequest.getVersion());
         metadata.setRemarks(fileUploadRequest.getRemarks());
@@ -125,15 +385,6 @@ public class WorkSpaceStorageService {
         return metadata;
     }
 
-    private static FolderMetadata createFolder(FileUploadRequest fileUploadRequest, List<FileMetadata> fileMetadataList) {
-        FolderMetadata folderMetadata = new FolderMetadata();
-        folderMetadata.setFolderName(fileUploadRequest.getFolderName());
-        folderMetadata.setFolderPath(fileUploadRequest.getFilePath());
-        folderMetadata.setWorkSpaceType(Constants.WORKSPACE_TYPE.valueOf(fileUploadRequest.getWorkspaceType().toUpperCase()));
-        folderMetadata.setDocuments(fileMetadataList);
-        return folderMetadata;
-    }
-
     public String createExtension(String originalFilename) {
         int dotIndex = originalFilename.lastIndexOf('.');
         if (dotIndex > 0 && dotIndex < originalFilename.length() - 1) {
@@ -143,35 +394,23 @@ public class WorkSpaceStorageService {
         }
     }
 
-    public Resource loadFileAsResource(String documentId) {
-        try {
-            FileMetadata fileMetadata = this.fileMetadataRepository.findById(documentId)
-                    .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + documentId + " not found"));
-
-            Path filePath = Paths.get(fileMetadata.getDirectoryName());
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new FileReadingException(ErrorCode.FILE_READING_EXCEPTION, "Could not read file: " + filePath);
-            }
-        } catch (MalformedURLException ex) {
-            throw new FileReadingException(ErrorCode.FILE_READING_EXCEPTION, "Error while reading file: ");
-        }
+    public FileMetadata getFileForDownload(String documentId) {
+        FileMetadata fileMetadata = metadataCache.findFile(documentId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + documentId + " not found"));
+        Path filePath = Paths.get(fileMetadata.getDirectoryName());
+        if (!Files.isRegularFile(filePath) || !Files.isReadable(filePath))
+            throw new FileReadingException(ErrorCode.FILE_READING_EXCEPTION, "Could not read file: " + filePath);
+        return fileMetadata;
     }
 
-    public Path getDestinationFile(String directoryName, MultipartFile file) {
+    public Path getDestinationFile(String directoryName, String fileName) {
         return this.rootLocation.resolve(directoryName)
-                .resolve(Paths.get(file.getOriginalFilename()))
+                .resolve(Paths.get(fileName))
                 .normalize().toAbsolutePath();
     }
 
     public List<FolderMetadataDto> getAllFolderStructure(String workSpaceName) {
-        List<FolderMetadata> allByWorkSpaceType = folderMetadatarepository.findByWorkSpaceTypeAndIsTrashFalseAndIsArchiveFalse(workSpaceName.toUpperCase());
-        return allByWorkSpaceType.stream()
-                .map(folderMetadata -> modelMapper.map(folderMetadata, FolderMetadataDto.class))
-                .toList();
+        return folderMetadataDao.findFolderSummaries(workSpaceName.toUpperCase());
     }
 
     public Page<FileMetaDataDto> getFilesMetadata(String filePath, int pageNo, int pageSize) {
@@ -179,104 +418,81 @@ public class WorkSpaceStorageService {
                 .map(fileMetadata -> convertToDto(fileMetadata, FileMetaDataDto.class));
     }
 
+    public CursorPage<FileMetaDataDto> getFilesMetadata(String filePath, String cursor, int pageNo, int pageSize,
+                                                        Constants.COUNT_MODE countMode) {
+        Criteria visible = Criteria.where("filePath").is(filePath).and("isTrash").is(false).and("isArchive").is(false);
+        return keysetPager.page(visible, cursor, pageNo, pageSize, countMode, FileMetadata.class, FileMetadata::getId)
+                .map(fileMetadata -> convertToDto(fileMetadata, FileMetaDataDto.class));
+    }
+
     private <S, T> T convertToDto(S source, Class<T> targetClass) {
         return modelMapper.map(source, targetClass);
     }
 
     public FolderMetadataDto updateFolderName(String id, String newFolderName) {
-        FolderMetadata folderMetadata = folderMetadatarepository.findById(id)
+        FolderMetadata folderMetadata = metadataCache.findFolder(id)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "Folder with id: " + id + " not found"));
-        updateDirectory(folderMetadata, newFolderName);
-        updateRelatedMetadata(folderMetadata, newFolderName);
+        String oldPath = folderMetadata.getFolderPath();
+        String newPath = constructNewPath(oldPath, newFolderName);
+        updateDirectory(oldPath, newPath);
+        folderTreeDao.moveSubtree(folderMetadata.getId(), oldPath, newPath, storedDirectoryOf(oldPath), storedDirectoryOf(newPath));
+        suggestionService.removeFolder(folderMetadata);
+        folderMetadata.setFolderPath(newPath);
         folderMetadata.setFolderName(newFolderName);
+        suggestionService.addFolder(folderMetadata);
         return convertToDto(folderMetadata, FolderMetadataDto.class);
     }
 
-    private void updateDirectory(FolderMetadata folderMetadata, String newFolderName) {
-        String oldPath = folderMetadata.getFolderPath();
-        String newPath = constructNewPath(oldPath, newFolderName);
+    private void updateDirectory(String oldPath, String newPath) {
         try {
             Files.move(rootLocation.resolve(oldPath), rootLocation.resolve(newPath));
         } catch (IOException e) {
             throw new FailedToUpdateResourcesException(ErrorCode.FAILED_TO_UPDATE_FILE_EXCEPTION,
                     "Failed to rename directory from " + oldPath + " to " + newPath);
         }
-        folderMetadata.setFolderPath(newPath);
-    }
-
-    private String constructNewPath(String oldPath, String newFolderName) {
-        return oldPath.substring(0, oldPath.lastIndexOf("/") + 1) + newFolderName;
-    }
-
-    private void updateRelatedMetadata(FolderMetadata folderMetadata, String newFolderName) {
-        if (folderMetadata.getDocuments() != null) {
-            List<FileMetadata> fileMetadatas = fileMetadataRepository.findAllByWorkSpaceType(String.valueOf(folderMetadata.getWorkSpaceType()));
-            for (FileMetadata metadata : fileMetadatas) {
-                if (metadata.getFilePath().contains(folderMetadata.getFolderName())) {
-                    updateFileMetadata(metadata, folderMetadata.getFolderName(), newFolderName);
-                }
-            }
-            fileMetadataRepository.saveAll(fileMetadatas);
-        }
-
-        List<FolderMetadata> folderMetadatas = folderMetadatarepository.findAllByWorkSpaceType(String.valueOf(folderMetadata.getWorkSpaceType()));
-        for (FolderMetadata metadata : folderMetadatas) {
-            if (metadata.getFolderPath().contains(folderMetadata.getFolderName())) {
-                updateFolderMetadata(metadata, folderMetadata.getFolderName(), newFolderName);
-            }
-        }
-        folderMetadatarepository.saveAll(folderMetadatas);
     }
 
-    private void updateFileMetadata(FileMetadata metadata, String oldName, String newName) {
-        metadata.setFilePath(metadata.getFilePath().replace(oldName, newName));
-        metadata.setDirectoryName(metadata.getDirectoryName().replace(oldName, newName));
+    /**
+     * A folder as it appears at the start of the directoryName of the files stored in it, see getDestinationFile.
+     */
+    private String storedDirectoryOf(String folderPath) {
+        return rootLocation.resolve(folderPath).normalize().toAbsolutePath().toString().replace("\\", "/");
     }
 
-    private void updateFolderMetadata(FolderMetadata metadata, String oldName, String newName) {
-        metadata.setFolderPath(metadata.getFolderPath().replace(oldName, newName));
-        if (metadata.getDocuments() != null)
-            metadata.getDocuments().forEach(doc -> updateFileMetadata(doc, oldName, newName));
-        if (metadata.getFolderName().equals(oldName))
-            metadata.setFolderName(newName);
-
+    private String constructNewPath(String oldPath, String newFolderName) {
+        return oldPath.substring(0, oldPath.lastIndexOf("/") + 1) + newFolderName;
     }
 
-
     public FileMetaDataDto updateFileName(String id, String newFileName) {
-        FileMetadata fileMetadata = fileMetadataRepository.findById(id)
+        FileMetadata fileMetadata = metadataCache.findFile(id)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + id + " not found"));
 
-        String newDirectoryName = fileMetadata.getFilePath() + "/" + newFileName;
+        // a blob is named by its content, so renaming only touches the metadata
+        boolean isBlob = contentStore.isBlob(fileMetadata.getDirectoryName());
+        String newDirectoryName = isBlob ? fileMetadata.getDirectoryName() : fileMetadata.getFilePath() + "/" + newFileName;
 
-        Path oldFilePath = Paths.get(fileMetadata.getFilePath(), fileMetadata.getFileName());
-        Path newFilePath = Paths.get(fileMetadata.getFilePath(), newFileName);
-        if (!Files.exists(oldFilePath)) {
-            throw new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "File not found " + oldFilePath);
+        if (!isBlob) {
+            Path oldFilePath = Paths.get(fileMetadata.getFilePath(), fileMetadata.getFileName());
+            Path newFilePath = Paths.get(fileMetadata.getFilePath(), newFileName);
+            if (!Files.exists(oldFilePath)) {
+                throw new FileNotFoundException(ErrorCode.FILE_NOT_FOUND_EXCEPTION, "File not found " + oldFilePath);
 
-        }
-        try {
-            Files.move(oldFilePath, newFilePath, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            throw new FailedToUpdateResourcesException(ErrorCode.FAILED_TO_UPDATE_FILE_EXCEPTION,
-                    "Failed to update file name from " + fileMetadata.getFileName() + " to " + newFileName);
+            }
+            try {
+                Files.move(oldFilePath, newFilePath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new FailedToUpdateResourcesException(ErrorCode.FAILED_TO_UPDATE_FILE_EXCEPTION,
+                        "Failed to update file name from " + fileMetadata.getFileName() + " to " + newFileName);
+            }
         }
 
-        folderMetadatarepository.findByFolderPath(fileMetadata.getFilePath())
-                .ifPresent(folderMetadata -> {
-                    folderMetadata.getDocuments().stream()
-                            .filter(document -> document.getFileName().equals(fileMetadata.getFileName()) &&
-                                    document.getFilePath().equals(fileMetadata.getFilePath()))
-                            .findFirst()
-                            .ifPresent(document -> {
-                                document.setFileName(newFileName);
-                                document.setDirectoryName(newDirectoryName);
-                            });
-                    folderMetadatarepository.save(folderMetadata);
-                });
+        suggestionService.removeFile(fileMetadata);
         fileMetadata.setFileName(newFileName);
         fileMetadata.setDirectoryName(newDirectoryName);
-        return convertToDto(fileMetadataRepository.save(fileMetadata), FileMetaDataDto.class);
+        FileMetadata saved = fileMetadataRepository.save(fileMetadata);
+        suggestionService.addFile(saved);
+        contentIndexService.index(saved);
+        return convertToDto(saved, FileMetaDataDto.class);
     }
 
     public FolderMetadataDto generateDirectory(FolderRequestDto folderRequestDto) {
@@ -284,7 +500,8 @@ public class WorkSpaceStorageService {
     }
 
     private FolderMetadataDto checkIfPathAlreadyExists(String path, String folderName) {
-        Optional<FolderMetadata> folderMetadata = folderMetadatarepository.findByFolderPath(path);
+        ensureNotInTrash(path);
+        Optional<FolderMetadata> folderMetadata = metadataCache.findFolderByPath(path);
         if (folderMetadata.isPresent()) {
             throw new FolderAlreadyExistsException(ErrorCode.FOLDER_ALREADY_EXISTS_EXCEPTION, "Folder already exists cannot create folder on same path");
         }
@@ -293,7 +510,9 @@ public class WorkSpaceStorageService {
         folderMetadata1.setFolderPath(path);
         folderMetadata1.setWorkSpaceType(Constants.WORKSPACE_TYPE.MANUALWORKSPACE);
         folderMetadata1.setFolderName(folderName);
-        return this.convertToDto(folderMetadatarepository.save(folderMetadata1), FolderMetadataDto.class);
+        FolderMetadata saved = folderMetadatarepository.save(folderMetadata1);
+        suggestionService.addFolder(saved);
+        return this.convertToDto(saved, FolderMetadataDto.class);
 
     }
 }
@@ -0,0 +1,64 @@
+package com.impacto.idocx.command.utils;
+
+import com.impacto.idocx.command.model.ConversionOutput;
+import com.impacto.idocx.command.service.PdfDocumentLoader;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Sends a conversion result as the raw response body instead of base64 inside a {@code GenericResponse}. The result
+ * is spooled to the PDF scratch directory first so that {@code Content-Length} is known up front and nothing is
+ * written to the client if the conversion fails; the paging figures travel in {@code X-*} headers.
+ */
+@Service
+@Log4j2
+public class BinaryResponseWriter {
+    public static final String TOTAL_PAGES_HEADER = "X-Total-Pages";
+    public static final String PAGE_COUNT_HEADER = "X-Page-Count";
+    public static final String CURRENT_PAGE_HEADER = "X-Current-Page";
+
+    private final Path spoolDirectory;
+
+    @Autowired
+    public BinaryResponseWriter(PdfDocumentLoader pdfDocumentLoader) {
+        this.spoolDirectory = pdfDocumentLoader.getMemoryUsageSetting().getTempDir().toPath();
+    }
+
+    @FunctionalInterface
+    public interface ConversionWriter {
+        ConversionOutput writeTo(OutputStream out) throws IOException;
+    }
+
+    public void write(HttpServletResponse response, ConversionWriter writer) throws IOException {
+        Path spoolFile = Files.createTempFile(spoolDirectory, "idocx-out-", ".part");
+        try {
+            ConversionOutput output;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spoolFile))) {
+                output = writer.writeTo(out);
+            }
+
+            response.setContentType(output.getContentType());
+            response.setContentLengthLong(Files.size(spoolFile));
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + output.getFileName() + "\"");
+            response.setHeader(TOTAL_PAGES_HEADER, String.valueOf(output.getTotalPages()));
+            response.setHeader(PAGE_COUNT_HEADER, String.valueOf(output.getPageCount()));
+            response.setHeader(CURRENT_PAGE_HEADER, String.valueOf(output.getCurrentPage()));
+            Files.copy(spoolFile, response.getOutputStream());
+        } finally {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                log.warn("Could not delete {}: {}", spoolFile, e.getMessage());
+            }
+        }
+    }
+}
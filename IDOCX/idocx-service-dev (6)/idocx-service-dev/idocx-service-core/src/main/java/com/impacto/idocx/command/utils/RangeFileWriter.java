@@ -0,0 +1,190 @@
+package com.impacto.idocx.command.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves a stored file with conditional GET and byte range support. {@code If-None-Match} / {@code If-Modified-Since}
+ * are answered with 304, a single range with 206 and several ranges with a {@code multipart/byteranges} body.
+ * File bytes never pass through the heap: when Tomcat advertises sendfile the transfer is handed to the connector,
+ * otherwise {@link FileChannel#transferTo} copies straight from the file channel to the response.
+ */
+@Service
+public class RangeFileWriter {
+    static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    private static final String CRLF = "\r\n";
+
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file, String contentType,
+                      String fileName, String contentHash) throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String eTag = eTag(contentHash, length, lastModified);
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        List<long[]> ranges;
+        try {
+            ranges = requestedRanges(request, eTag, lastModified, length);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            send(request, response, file, 0, length);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            send(request, response, file, start, end - start + 1);
+        } else {
+            sendMultipart(request, response, file, contentType, ranges, length);
+        }
+    }
+
+    /**
+     * The stored SHA-256 gives a strong validator; files uploaded before hashes were recorded fall back to a weak
+     * one built from size and modification time.
+     */
+    static String eTag(String contentHash, long length, long lastModified) {
+        if (contentHash != null && !contentHash.isEmpty())
+            return "\"" + contentHash + "\"";
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private static List<long[]> requestedRanges(HttpServletRequest request, String eTag, long lastModified, long length) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, eTag, lastModified))
+            return List.of();
+
+        List<HttpRange> httpRanges = HttpRange.parseRanges(rangeHeader);
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(length);
+            long end = httpRange.getRangeEnd(length);
+            if (start >= length || start > end)
+                throw new IllegalArgumentException("Range " + httpRange + " is outside of the file");
+            total += end - start + 1;
+            ranges.add(new long[]{start, end});
+        }
+        // overlapping ranges must not turn one download into many copies of the file
+        if (ranges.size() > 1 && total > length)
+            throw new IllegalArgumentException("The sum of all ranges exceeds the file length");
+        return ranges;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null)
+            return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return !eTag.startsWith("W/") && ifRange.equals(eTag);
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && lastModified / 1000 <= date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private void sendMultipart(HttpServletRequest request, HttpServletResponse response, Path file, String contentType,
+                               List<long[]> ranges, long length) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] header = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], length) + CRLF + CRLF)
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range[1] - range[0] + 1;
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (isHead(request)) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(source, target, ranges.get(i)[0], ranges.get(i)[1] - ranges.get(i)[0] + 1);
+            }
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response, Path file, long start, long count) throws IOException {
+        if (isHead(request)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(source, Channels.newChannel(response.getOutputStream()), start, count);
+        }
+        response.flushBuffer();
+    }
+
+    private static void transfer(FileChannel source, WritableByteChannel target, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = source.transferTo(position, end - position, target);
+            if (transferred <= 0)
+                throw new IOException("File was truncated while it was being sent");
+            position += transferred;
+        }
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+}
@@ -0,0 +1,84 @@
+package com.impacto.idocx.command.api;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dtos.ConversionJobDto;
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import com.impacto.idocx.command.service.ConversionJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class ConversionJobControllerTest {
+    public static final String DOCUMENT_ID = "123";
+    public static final String JOB_ID = "job-1";
+    public static final String SUCCESS = "Success";
+
+    @Mock
+    private ConversionJobService conversionJobService;
+
+    @InjectMocks
+    private ConversionJobController conversionJobController;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testSubmitJob_Accepted() {
+        ConversionJobDto jobDto = new ConversionJobDto();
+        jobDto.setId(JOB_ID);
+        jobDto.setStatus(Constants.JOB_STATUS.QUEUED);
+        GenericResponse<ConversionJobDto> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, jobDto);
+        when(conversionJobService.submit(eq(DOCUMENT_ID), eq("TIFF"), eq(1), eq(-1), eq(PageRenderOptions.defaults()), eq(3)))
+                .thenReturn(response);
+
+        ResponseEntity<GenericResponse<ConversionJobDto>> entity = conversionJobController.submitJob(DOCUMENT_ID, "TIFF", 1, -1, null, null, null, 3);
+
+        assertEquals(HttpStatus.ACCEPTED, entity.getStatusCode());
+        assertEquals(response, entity.getBody());
+    }
+
+    @Test
+    void testGetJob_Success() {
+        GenericResponse<ConversionJobDto> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, new ConversionJobDto());
+        when(conversionJobService.getJob(JOB_ID)).thenReturn(response);
+
+        ResponseEntity<GenericResponse<ConversionJobDto>> entity = conversionJobController.getJob(JOB_ID);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals(response, entity.getBody());
+    }
+
+    @Test
+    void testDownloadResult_Success() {
+        ConversionJob job = new ConversionJob();
+        job.setId(JOB_ID);
+        job.setResultFileName("123-pages.zip");
+        job.setResultContentType("application/zip");
+        job.setResultSize(3);
+        Resource resource = new ByteArrayResource(new byte[]{1, 2, 3});
+        when(conversionJobService.getCompletedJob(JOB_ID)).thenReturn(job);
+        when(conversionJobService.loadResult(job)).thenReturn(resource);
+
+        ResponseEntity<Resource> entity = conversionJobController.downloadResult(JOB_ID);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals(resource, entity.getBody());
+        assertEquals(3, entity.getHeaders().getContentLength());
+        assertEquals("attachment; filename=\"123-pages.zip\"", entity.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+    }
+}
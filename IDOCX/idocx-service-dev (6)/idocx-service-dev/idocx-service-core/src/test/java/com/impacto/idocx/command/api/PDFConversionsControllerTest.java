@@ -1,22 +1,44 @@
 package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.model.ConversionOutput;
+import com.impacto.idocx.command.model.PageRenderOptions;
 import com.impacto.idocx.command.service.PDFConversionsService;
+import com.impacto.idocx.command.service.PdfDocumentLoader;
+import com.impacto.idocx.command.service.ThumbnailService;
+import com.impacto.idocx.command.utils.BinaryResponseWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class PDFConversionsControllerTest {
@@ -28,6 +50,12 @@ class PDFConversionsControllerTest {
     @Mock
     private PDFConversionsService pdfEditConversionService;
 
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Spy
+    private BinaryResponseWriter binaryResponseWriter = new BinaryResponseWriter(new PdfDocumentLoader(new MockEnvironment()));
+
     @InjectMocks
     private PDFConversionsController pdfController;
 
@@ -42,15 +70,43 @@ class PDFConversionsControllerTest {
         int size = -1;
 
         GenericResponse<List<byte[]>> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, null);
-        when(pdfEditConversionService.conversion(anyString(), anyString(), anyInt(), anyInt())).thenReturn(response);
+        when(pdfEditConversionService.conversion(anyString(), anyString(), anyInt(), anyInt(), any(PageRenderOptions.class))).thenReturn(response);
 
-        ResponseEntity<GenericResponse<List<byte[]>>> entity = pdfController.convertPdf(JPEG, DOCUMENT_ID, page, size);
+        ResponseEntity<GenericResponse<List<byte[]>>> entity = pdfController.convertPdf(JPEG, DOCUMENT_ID, page, size, null, null, null);
 
         assertNotNull(entity);
         assertEquals(HttpStatus.OK, entity.getStatusCode());
         assertEquals(response, entity.getBody());
     }
 
+    @Test
+    void testStreamPdf_Success() throws IOException {
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setId(DOCUMENT_ID);
+        when(pdfEditConversionService.getStreamablePdf(DOCUMENT_ID, JPEG)).thenReturn(fileMetadata);
+
+        ResponseEntity<StreamingResponseBody> entity = pdfController.streamPdf(DOCUMENT_ID, JPEG, 1, 5, null, 150, null);
+
+        assertNotNull(entity.getBody());
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals("application/zip", entity.getHeaders().getContentType().toString());
+
+        entity.getBody().writeTo(new ByteArrayOutputStream());
+        verify(pdfEditConversionService).streamPdfPagesAsZip(eq(fileMetadata), eq(JPEG), eq(1), eq(5), eq(PageRenderOptions.of(null, 150, null)), any());
+    }
+
+    @Test
+    void testGetThumbnail_Success() throws IOException {
+        byte[] thumbnail = {1, 2, 3};
+        when(thumbnailService.getThumbnail(DOCUMENT_ID, 1, 150)).thenReturn(thumbnail);
+
+        ResponseEntity<byte[]> entity = pdfController.getThumbnail(DOCUMENT_ID, 1, 150);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals("image/jpeg", entity.getHeaders().getContentType().toString());
+        assertEquals(thumbnail, entity.getBody());
+    }
+
     @Test
     void testEditSplitPDF_Success() throws IOException {
 
@@ -168,4 +224,37 @@ class PDFConversionsControllerTest {
         assertEquals(response, entity.getBody());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void testRotatePDFBinary_WritesBodyAndPagingHeaders() throws IOException {
+        byte[] pdf = {'%', 'P', 'D', 'F'};
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(pdf);
+            return ConversionOutput.pdf(DOCUMENT_ID + "-rotated.pdf", 3, 1, 0);
+        }).when(pdfEditConversionService).rotatePDF(eq(DOCUMENT_ID), any(OutputStream.class));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        pdfController.rotatePDFBinary(DOCUMENT_ID, response);
+
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals(pdf.length, response.getContentLengthLong());
+        assertArrayEquals(pdf, response.getContentAsByteArray());
+        assertEquals("attachment; filename=\"123-rotated.pdf\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals("3", response.getHeader(BinaryResponseWriter.TOTAL_PAGES_HEADER));
+        assertEquals("1", response.getHeader(BinaryResponseWriter.PAGE_COUNT_HEADER));
+        assertEquals("0", response.getHeader(BinaryResponseWriter.CURRENT_PAGE_HEADER));
+    }
+
+    @Test
+    void testPdfMergerBinary_FailureLeavesResponseUntouched() throws IOException {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(new byte[]{1, 2});
+            throw new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: 456 not found");
+        }).when(pdfEditConversionService).mergePdfDocuments(eq(DOCUMENT_ID), any(OutputStream.class));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThrows(ResourceNotFoundException.class, () -> pdfController.pdfMergerBinary(DOCUMENT_ID, response));
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertNull(response.getContentType());
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
 import com.impacto.idocx.command.dtos.IdsRequestDto;
 import com.impacto.idocx.command.model.ResourceManagementRequest;
 import com.impacto.idocx.command.service.ResourceManagementService;
@@ -113,6 +114,51 @@ class ResourceManagementControllerTest {
         verify(mockResourceManagementService, times(1)).deleteResource(idsRequestDto);
     }
 
+    @Test
+    void restoreFilesOrFoldersSuccess() throws Exception {
+        IdsRequestDto idsRequestDto = new IdsRequestDto(List.of("file1"), "FILE");
+
+        mockMvc.perform(put("/v1/restore")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mockObjectMapper.writeValueAsString(idsRequestDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value("Successfully restored the :FILE"));
+
+        verify(mockResourceManagementService).restoreResource(idsRequestDto);
+    }
+
+    @Test
+    void purgeFilesReturnsOk() throws Exception {
+        IdsRequestDto idsRequestDto = new IdsRequestDto(List.of("file1"), "FILE");
+        doReturn(List.of()).when(mockResourceManagementService).purgeResource(idsRequestDto);
+
+        mockMvc.perform(delete("/v1/trash")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mockObjectMapper.writeValueAsString(idsRequestDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value("Successfully purged the :FILE"));
+    }
+
+    @Test
+    void purgeFoldersReturnsDeletionJobs() throws Exception {
+        IdsRequestDto idsRequestDto = new IdsRequestDto();
+        idsRequestDto.setType("FOLDER");
+        idsRequestDto.setIds(List.of("folder1"));
+        FolderDeletionJobDto job = new FolderDeletionJobDto();
+        job.setId("job1");
+        job.setFolderId("folder1");
+        job.setStatus(Constants.JOB_STATUS.QUEUED);
+
+        doReturn(List.of(job)).when(mockResourceManagementService).purgeResource(idsRequestDto);
+
+        mockMvc.perform(delete("/v1/trash")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mockObjectMapper.writeValueAsString(idsRequestDto)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.data[0].id").value("job1"))
+                .andExpect(jsonPath("$.data[0].status").value("QUEUED"));
+    }
+
     @Test
     void testGetResources() throws Exception {
         Page<FileMetaDataDto> mockPage = new PageImpl<>(Collections.singletonList(createFileMetaDataDtoTest("testDoc")));
@@ -1,5 +1,9 @@
 package com.impacto.idocx.command.api;
 
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.ContentSearchResultDto;
+import com.impacto.idocx.command.dtos.FacetedSearchResultDto;
+import com.impacto.idocx.command.dtos.SuggestionDto;
 import com.impacto.idocx.command.service.SearchService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +19,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
@@ -73,4 +78,55 @@ class SearchControllerTest {
         assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
 
     }
+
+    @Test
+    void testGetFacetedSearchResults() throws Exception {
+        FacetedSearchResultDto result = new FacetedSearchResultDto(List.of("value"), 12,
+                Map.of("extension", Map.of(".pdf", 12L)));
+        doReturn(result).when(mockSearchService).facetedSearch("DOCUMENT", "fileName", null, "BOTH", "contains", "rep", 0, 10, true);
+
+        final MockHttpServletResponse response = mockMvc.perform(get("/api/v1/search/facets")
+                        .param("searchOn", "DOCUMENT")
+                        .param("field", "fileName")
+                        .param("workspace", "BOTH")
+                        .param("filter", "contains")
+                        .param("value", "rep")
+                        .param("cacheFacets", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).contains("\"total\":12").contains("\".pdf\":12");
+    }
+
+    @Test
+    void testSearchContent() throws Exception {
+        ContentSearchResultDto hit = new ContentSearchResultDto("1", "march.pdf", "root/Invoices",
+                Constants.WORKSPACE_TYPE.AUTOWORKSPACE, 1.5f, List.of("<em>Invoice</em> 42"));
+        doReturn(new PageImpl<>(List.of(hit))).when(mockSearchService).searchContent("invoice", "BOTH", 0, 10);
+
+        final MockHttpServletResponse response = mockMvc.perform(get("/api/v1/search/content")
+                        .param("q", "invoice")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).contains("march.pdf").contains("<em>Invoice</em> 42");
+    }
+
+    @Test
+    void testSuggest() throws Exception {
+        doReturn(List.of(new SuggestionDto("Invoice.pdf", Constants.SUGGESTION_TYPE.FILE, 3)))
+                .when(mockSearchService).suggest("inv", Constants.WORKSPACE_TYPE.BOTH, Constants.SUGGESTION_TYPE.FILE, 5);
+
+        final MockHttpServletResponse response = mockMvc.perform(get("/api/v1/search/suggest")
+                        .param("q", "inv")
+                        .param("type", "FILE")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentAsString()).contains("\"value\":\"Invoice.pdf\"").contains("\"count\":3");
+    }
 }
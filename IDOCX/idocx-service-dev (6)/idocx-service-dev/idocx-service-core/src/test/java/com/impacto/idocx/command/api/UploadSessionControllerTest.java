@@ -0,0 +1,75 @@
+package com.impacto.idocx.command.api;
+
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.UploadSessionDto;
+import com.impacto.idocx.command.dtos.UploadSessionRequestDto;
+import com.impacto.idocx.command.service.UploadSessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class UploadSessionControllerTest {
+    public static final String SESSION_ID = "upload-1";
+    public static final String SUCCESS = "Success";
+
+    @Mock
+    private UploadSessionService uploadSessionService;
+
+    @InjectMocks
+    private UploadSessionController uploadSessionController;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testOpenSession_Created() {
+        UploadSessionRequestDto request = new UploadSessionRequestDto();
+        GenericResponse<UploadSessionDto> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, new UploadSessionDto());
+        when(uploadSessionService.openSession(request)).thenReturn(response);
+
+        ResponseEntity<GenericResponse<UploadSessionDto>> entity = uploadSessionController.openSession(request);
+
+        assertEquals(HttpStatus.CREATED, entity.getStatusCode());
+        assertEquals(response, entity.getBody());
+    }
+
+    @Test
+    void testUploadChunk_PassesRequestBodyStream() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/chunks/0");
+        request.setContent(new byte[]{1, 2, 3});
+        GenericResponse<UploadSessionDto> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, new UploadSessionDto());
+        when(uploadSessionService.writeChunk(eq(SESSION_ID), eq(0), eq("abc"), any(InputStream.class))).thenReturn(response);
+
+        ResponseEntity<GenericResponse<UploadSessionDto>> entity = uploadSessionController.uploadChunk(SESSION_ID, 0, "abc", request);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals(response, entity.getBody());
+    }
+
+    @Test
+    void testCommit_Success() {
+        GenericResponse<FileMetaDataDto> response = new GenericResponse<>(HttpStatus.OK.value(), SUCCESS, new FileMetaDataDto());
+        when(uploadSessionService.commit(SESSION_ID)).thenReturn(response);
+
+        ResponseEntity<GenericResponse<FileMetaDataDto>> entity = uploadSessionController.commit(SESSION_ID);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals(response, entity.getBody());
+    }
+}
@@ -2,29 +2,39 @@ package com.impacto.idocx.command.api;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
+import com.impacto.idocx.command.dtos.FileIngestResultDto;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
 import com.impacto.idocx.command.model.FileUploadRequest;
 import com.impacto.idocx.command.service.WorkSpaceStorageService;
+import com.impacto.idocx.command.utils.RangeFileWriter;
 import jakarta.servlet.ServletContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -33,6 +43,9 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -44,12 +57,17 @@ class WorkSpaceControllerTest {
     public static final String FILE = "file";
     public static final String FILE_CONTENT = "File Content..!";
     public static final String AUTOWORKSPACE = "AUTOWORKSPACE";
-    private static final String FILE_UPLOADED_SUCCESSFUL_MESSAGE = "File uploaded successfully to : ";
+    private static final String SUCCESS = "success";
     private static final String DIRECTORY_PATH = "ABC/DEF/IJK";
+    private static final String CONTENT_HASH = "5d41402abc4b2a76b9719d911017c592";
     @Mock
     private WorkSpaceStorageService workSpaceStorageService;
+    @Spy
+    private RangeFileWriter rangeFileWriter = new RangeFileWriter();
     @InjectMocks
     private WorkSpaceController workSpaceController;
+    @TempDir
+    Path tempDir;
     @Mock
     private ServletContext servletContext;
     private List<MultipartFile> files;
@@ -70,42 +88,158 @@ class WorkSpaceControllerTest {
         fileUploadRequest.setFilePath(DIRECTORY_PATH);
         fileUploadRequest.setWorkspaceType(AUTOWORKSPACE);
 
-        doNothing().when(workSpaceStorageService).store(fileUploadRequest);
-        ResponseEntity<GenericResponse<String>> responseEntity = workSpaceController.uploadFile(fileUploadRequest);
-        GenericResponse<String> responseBody = responseEntity.getBody();
+        List<FileIngestResultDto> results = List.of(
+                new FileIngestResultDto("test1.txt", Constants.INGEST_STATUS.STORED, "1", CONTENT_HASH, 15, SUCCESS),
+                new FileIngestResultDto("test2.txt", Constants.INGEST_STATUS.STORED, "2", CONTENT_HASH, 15, SUCCESS));
+        when(workSpaceStorageService.store(fileUploadRequest)).thenReturn(results);
+        ResponseEntity<GenericResponse<List<FileIngestResultDto>>> responseEntity = workSpaceController.uploadFile(fileUploadRequest);
+        GenericResponse<List<FileIngestResultDto>> responseBody = responseEntity.getBody();
 
         assertEquals(HttpStatus.OK.value(), responseEntity.getStatusCodeValue());
         assertNotNull(responseEntity.getBody());
         assertEquals(Constants.RESPONSE_STATUS.OK.getValue(), responseBody.getStatus());
         assertEquals(Constants.RESPONSE_MESSAGE.SUCCESS.getValue(), responseBody.getMessage());
-        assertEquals(FILE_UPLOADED_SUCCESSFUL_MESSAGE + DIRECTORY_PATH, responseBody.getData());
+        assertEquals(results, responseBody.getData());
         verify(workSpaceStorageService, times(1)).store(any());
     }
 
+    @Test
+    void testUploadFileReportsPartialFailure() {
+        FileUploadRequest fileUploadRequest = new FileUploadRequest();
+        fileUploadRequest.setFiles(files);
+        fileUploadRequest.setFilePath(DIRECTORY_PATH);
+        List<FileIngestResultDto> results = List.of(
+                new FileIngestResultDto("test1.txt", Constants.INGEST_STATUS.STORED, "1", CONTENT_HASH, 15, SUCCESS),
+                new FileIngestResultDto("test2.txt", Constants.INGEST_STATUS.FAILED, null, null, 0, "File is empty: test2.txt"));
+        when(workSpaceStorageService.store(fileUploadRequest)).thenReturn(results);
+
+        ResponseEntity<GenericResponse<List<FileIngestResultDto>>> responseEntity = workSpaceController.uploadFile(fileUploadRequest);
+
+        assertEquals(HttpStatus.MULTI_STATUS, responseEntity.getStatusCode());
+        assertEquals(Constants.RESPONSE_STATUS.MULTI_STATUS.getValue(), responseEntity.getBody().getStatus());
+        assertEquals(results, responseEntity.getBody().getData());
+    }
+
+    private FileMetadata storedFile(String content) throws IOException {
+        Path file = Files.writeString(tempDir.resolve("test1.txt"), content);
+        FileMetadata fileMetadata = new FileMetadata("test1.txt", DIRECTORY_PATH, file.toString());
+        fileMetadata.setContentHash(CONTENT_HASH);
+        when(workSpaceStorageService.getFileForDownload(DOCUMENT)).thenReturn(fileMetadata);
+        when(servletContext.getMimeType("test1.txt")).thenReturn(MediaType.TEXT_PLAIN_VALUE);
+        return fileMetadata;
+    }
+
     @Test
     void TestDownloadFile1() throws Exception {
-        String path = DIRECTORY_PATH + "/" + file1.getOriginalFilename();
-        Path filePath = Paths.get(path);
-        Resource resource = new UrlResource(filePath.toUri());
+        storedFile(FILE_CONTENT);
+        MockHttpServletResponse response = new MockHttpServletResponse();
 
-        when(workSpaceStorageService.loadFileAsResource(anyString())).thenReturn(resource);
-        when(servletContext.getMimeType(anyString())).thenReturn("application/pdf");
-        ResponseEntity<Resource> responseEntity = workSpaceController.downloadFile(path);
+        workSpaceController.downloadFile(DOCUMENT, new MockHttpServletRequest("GET", "/download"), response);
 
-        assertNotNull(responseEntity.getBody());
-        assertEquals(HttpStatus.OK.value(), responseEntity.getStatusCodeValue());
-        verify(workSpaceStorageService, times(1)).loadFileAsResource(anyString());
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(FILE_CONTENT, response.getContentAsString());
+        assertEquals(FILE_CONTENT.length(), response.getContentLengthLong());
+        assertEquals("\"" + CONTENT_HASH + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
     }
 
     @Test
-    void TestDownloadFile2() throws IOException {
-        String path = DIRECTORY_PATH + "/" + file1.getOriginalFilename();
+    void TestDownloadFile2() {
+        when(workSpaceStorageService.getFileForDownload(DOCUMENT))
+                .thenThrow(new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND_EXCEPTION, "File with id: " + DOCUMENT + " not found"));
 
-        when(workSpaceStorageService.loadFileAsResource(anyString())).thenReturn(null);
-        ResponseEntity<Resource> responseEntity = workSpaceController.downloadFile(path);
+        assertThrows(ResourceNotFoundException.class, () -> workSpaceController.downloadFile(DOCUMENT,
+                new MockHttpServletRequest("GET", "/download"), new MockHttpServletResponse()));
+    }
+
+    @Test
+    void TestDownloadFileNotModified() throws Exception {
+        storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + CONTENT_HASH + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
 
-        assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
-        assertEquals(null, responseEntity.getBody());
+    @Test
+    void TestDownloadFileSingleRange() throws Exception {
+        storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-11");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals("Content", response.getContentAsString());
+        assertEquals("bytes 5-11/" + FILE_CONTENT.length(), response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(7, response.getContentLengthLong());
+    }
+
+    @Test
+    void TestDownloadFileMultipleRanges() throws Exception {
+        storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3,-3");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString();
+        assertEquals(body.length(), response.getContentLengthLong());
+        assertTrue(body.contains("Content-Range: bytes 0-3/15\r\n\r\nFile"));
+        assertTrue(body.contains("Content-Range: bytes 12-14/15\r\n\r\n..!"));
+    }
+
+    @Test
+    void TestDownloadFileIfRangeMismatchReturnsWholeFile() throws Exception {
+        storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-11");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(FILE_CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void TestDownloadFileUnsatisfiableRange() throws Exception {
+        storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-200");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus());
+        assertEquals("bytes */" + FILE_CONTENT.length(), response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void TestDownloadFileUsesSendfileWhenSupported() throws Exception {
+        FileMetadata fileMetadata = storedFile(FILE_CONTENT);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        workSpaceController.downloadFile(DOCUMENT, request, response);
+
+        assertEquals(Paths.get(fileMetadata.getDirectoryName()).toAbsolutePath().toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(5L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(15L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
     }
 
     @Test
@@ -136,7 +270,7 @@ class WorkSpaceControllerTest {
     void testFetchFileMetadata() {
         Page<FileMetaDataDto> mockPage = new PageImpl<>(Collections.singletonList(new FileMetaDataDto()), PageRequest.of(0, 10), 1);
         when(workSpaceStorageService.getFilesMetadata(anyString(), anyInt(), anyInt())).thenReturn(mockPage);
-        ResponseEntity<GenericResponse<List<FileMetaDataDto>>> responseEntity = workSpaceController.fetchFileMetadata("sampleFilePath", 10, 0);
+        ResponseEntity<GenericResponse<List<FileMetaDataDto>>> responseEntity = workSpaceController.fetchFileMetadata("sampleFilePath", 10, 0, null, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         GenericResponse<List<FileMetaDataDto>> responseBody = responseEntity.getBody();
         assertNotNull(responseBody);
@@ -146,6 +280,36 @@ class WorkSpaceControllerTest {
         assertEquals(1, responseBody.getData().size());
     }
 
+    @Test
+    void testFetchFileMetadataByCursor() {
+        CursorPage<FileMetaDataDto> mockPage = new CursorPage<>(List.of(new FileMetaDataDto()), "next", -1, false);
+        when(workSpaceStorageService.getFilesMetadata("sampleFilePath", "", 0, 1, Constants.COUNT_MODE.NONE)).thenReturn(mockPage);
+
+        GenericResponse<List<FileMetaDataDto>> responseBody = workSpaceController.fetchFileMetadata("sampleFilePath", 1, 0, "", null).getBody();
+
+        assertNotNull(responseBody);
+        assertEquals("next", responseBody.getNextCursor());
+        assertEquals(-1, responseBody.getTotal());
+        assertEquals(false, responseBody.getTotalExact());
+        assertEquals(1, responseBody.getCount());
+        verify(workSpaceStorageService, never()).getFilesMetadata(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testFetchFileMetadataWithCountMode() {
+        CursorPage<FileMetaDataDto> mockPage = new CursorPage<>(List.of(new FileMetaDataDto()), null, 1000, false);
+        when(workSpaceStorageService.getFilesMetadata("sampleFilePath", null, 2, 10, Constants.COUNT_MODE.CAPPED)).thenReturn(mockPage);
+
+        GenericResponse<List<FileMetaDataDto>> responseBody = workSpaceController.fetchFileMetadata("sampleFilePath", 10, 2, null,
+                Constants.COUNT_MODE.CAPPED).getBody();
+
+        assertNotNull(responseBody);
+        assertNull(responseBody.getNextCursor());
+        assertEquals(1000, responseBody.getTotal());
+        assertEquals(false, responseBody.getTotalExact());
+        assertEquals(2, responseBody.getCurrentPage());
+    }
+
     @Test
     void testUpdateFolderName() {
         String folderId = "sampleFolderId";
@@ -0,0 +1,28 @@
+package com.impacto.idocx.command.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncConfigTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+            .withUserConfiguration(AsyncConfig.class)
+            .withPropertyValues("spring.task.execution.pool.core-size=3", "spring.task.execution.pool.max-size=5");
+
+    @Test
+    void testApplicationTaskExecutorIsKeptNextToTheNamedExecutors() {
+        contextRunner.run(context -> {
+            ThreadPoolTaskExecutor executor = context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                    ThreadPoolTaskExecutor.class);
+            assertEquals(3, executor.getCorePoolSize());
+            assertEquals(5, executor.getMaxPoolSize());
+            assertEquals(executor, context.getBean("taskExecutor"));
+            assertEquals(3, context.getBeansOfType(ThreadPoolTaskExecutor.class).size());
+        });
+    }
+}
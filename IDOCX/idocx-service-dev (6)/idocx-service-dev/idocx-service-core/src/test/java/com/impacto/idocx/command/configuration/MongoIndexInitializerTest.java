@@ -0,0 +1,97 @@
+package com.impacto.idocx.command.configuration;
+
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.entity.UploadSession;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MongoIndexInitializerTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private IndexOperations indexOperations;
+    private final List<Document> created = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+        mappingContext.setInitialEntitySet(Set.of(FileMetadata.class, FolderMetadata.class, UploadSession.class, ConversionJob.class));
+        mappingContext.initialize();
+        lenient().when(mongoTemplate.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        lenient().when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOperations);
+        lenient().doAnswer(invocation -> {
+            IndexDefinition index = invocation.getArgument(0);
+            created.add(new Document("keys", index.getIndexKeys()).append("options", index.getIndexOptions()));
+            return "index";
+        }).when(indexOperations).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    void testCreatesDeclaredIndexes() {
+        int count = new MongoIndexInitializer(new MockEnvironment(), mongoTemplate).createIndexes();
+
+        assertEquals(created.size(), count);
+        assertTrue(hasIndex(new Document("filePath", 1).append("fileName", 1), true));
+        assertTrue(hasIndex(new Document("filePath", 1).append("isTrash", 1).append("isArchive", 1).append("_id", 1), false));
+        assertTrue(hasIndex(new Document("folderPath", 1), true));
+        assertTrue(hasIndex(new Document("workSpaceType", 1).append("isTrash", 1).append("isArchive", 1), false));
+        assertTrue(hasIndex(new Document("status", 1).append("createdAt", 1), false));
+        assertTrue(created.stream().anyMatch(index -> new Document("isTrash", true).equals(
+                ((Document) index.get("options")).get("partialFilterExpression"))));
+    }
+
+    @Test
+    void testSkipsIndexThatCannotBeBuilt() {
+        doAnswer(invocation -> {
+            throw new DuplicateKeyException("duplicate key");
+        }).when(indexOperations).ensureIndex(any(IndexDefinition.class));
+
+        int count = new MongoIndexInitializer(new MockEnvironment(), mongoTemplate).createIndexes();
+
+        assertEquals(0, count);
+    }
+
+    @Test
+    void testDisabledDoesNothing() {
+        MockEnvironment environment = new MockEnvironment().withProperty("idocx.mongo.create-indexes", "false");
+
+        new MongoIndexInitializer(environment, mongoTemplate).onStartup();
+
+        verifyNoInteractions(indexOperations);
+    }
+
+    private boolean hasIndex(Document keys, boolean unique) {
+        return created.stream().anyMatch(index -> keys.equals(index.get("keys"))
+                && unique == Boolean.TRUE.equals(((Document) index.get("options")).get("unique")));
+    }
+}
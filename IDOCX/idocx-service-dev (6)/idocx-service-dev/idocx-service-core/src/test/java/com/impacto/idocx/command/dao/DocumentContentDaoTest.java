@@ -0,0 +1,79 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentContentDaoTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    private DocumentContentDao documentContentDao;
+
+    @BeforeEach
+    void setUp() {
+        documentContentDao = new DocumentContentDao(mongoTemplate);
+    }
+
+    @Test
+    void testSearchRanksByTextScoreWithinWorkspace() {
+        DocumentContent hit = new DocumentContent();
+        when(mongoTemplate.count(any(Query.class), eq(DocumentContent.class))).thenReturn(11L);
+        when(mongoTemplate.find(any(Query.class), eq(DocumentContent.class))).thenReturn(List.of(hit));
+
+        Page<DocumentContent> page = documentContentDao.search("invoice", Constants.WORKSPACE_TYPE.AUTOWORKSPACE, PageRequest.of(1, 10));
+
+        assertEquals(11, page.getTotalElements());
+        assertEquals(List.of(hit), page.getContent());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(DocumentContent.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals("invoice", ((Document) filter.get("$text")).get("$search"));
+        assertEquals(Constants.WORKSPACE_TYPE.AUTOWORKSPACE, filter.get("workSpaceType"));
+        assertEquals(new Document("$meta", "textScore"), query.getValue().getSortObject().get("score"));
+        assertEquals(10, query.getValue().getSkip());
+    }
+
+    @Test
+    void testUpdateLocationReportsMissingEntry() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(DocumentContent.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertFalse(documentContentDao.updateLocation("1", "a.pdf", "root/Workspace"));
+    }
+
+    @Test
+    void testFindContentHashOfMissingEntry() {
+        assertNull(documentContentDao.findContentHash("1"));
+    }
+
+    @Test
+    void testRemoveSkipsEmptyIds() {
+        documentContentDao.remove(List.of());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
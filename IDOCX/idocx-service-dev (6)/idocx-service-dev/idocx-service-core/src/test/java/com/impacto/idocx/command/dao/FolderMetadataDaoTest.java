@@ -0,0 +1,101 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.FolderMetadataDto;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FolderMetadataDaoTest {
+    private static final String FOLDER_PATH = "abc/Workspace";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private QueryCache queryCache;
+    @Mock
+    private MetadataCache metadataCache;
+    private FolderMetadataDao folderMetadataDao;
+
+    @BeforeEach
+    void setUp() {
+        folderMetadataDao = new FolderMetadataDao(mongoTemplate, queryCache, metadataCache);
+    }
+
+    @Test
+    void testAddDocumentIdsUpsertsWithAddToSet() {
+        folderMetadataDao.addDocumentIds(FOLDER_PATH, "Workspace", Constants.WORKSPACE_TYPE.AUTOWORKSPACE, List.of("1", "2"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(FolderMetadata.class));
+        assertEquals(FOLDER_PATH, query.getValue().getQueryObject().get("folderPath"));
+        Document updateObject = update.getValue().getUpdateObject();
+        Document addToSet = (Document) updateObject.get("$addToSet");
+        assertTrue(addToSet.get("documentIds").toString().contains("$each"));
+        assertEquals("Workspace", ((Document) updateObject.get("$setOnInsert")).get("folderName"));
+    }
+
+    @Test
+    void testAddDocumentIdsSkipsEmptyBatch() {
+        folderMetadataDao.addDocumentIds(FOLDER_PATH, "Workspace", Constants.WORKSPACE_TYPE.AUTOWORKSPACE, List.of());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void testIsInTrashLooksAtTheFolderAndItsAncestors() {
+        when(mongoTemplate.exists(any(Query.class), eq(FolderMetadata.class))).thenReturn(true);
+
+        assertTrue(folderMetadataDao.isInTrash("root/Invoices/2024"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).exists(query.capture(), eq(FolderMetadata.class));
+        assertEquals(new Document("folderPath", new Document("$in", List.of("root/Invoices/2024", "root/Invoices", "root")))
+                .append("isTrash", true), query.getValue().getQueryObject());
+    }
+
+    @Test
+    void testRemoveDocumentIdsPullsIds() {
+        folderMetadataDao.removeDocumentIds(FOLDER_PATH, List.of("1"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(FolderMetadata.class));
+        assertTrue(update.getValue().getUpdateObject().containsKey("$pullAll"));
+        verify(metadataCache).evictFolder(FOLDER_PATH);
+    }
+
+    @Test
+    void testFindFolderSummariesReturnsMappedResults() {
+        FolderMetadataDto summary = new FolderMetadataDto();
+        summary.setFolderPath(FOLDER_PATH);
+        summary.setDocumentCount(3);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(FolderMetadata.class), eq(FolderMetadataDto.class)))
+                .thenReturn(new AggregationResults<>(List.of(summary), new Document()));
+
+        List<FolderMetadataDto> summaries = folderMetadataDao.findFolderSummaries("AUTOWORKSPACE");
+
+        assertEquals(List.of(summary), summaries);
+    }
+}
@@ -0,0 +1,141 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FolderTreeDaoTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private QueryCache queryCache;
+    @Mock
+    private MetadataCache metadataCache;
+    private FolderTreeDao folderTreeDao;
+
+    @BeforeEach
+    void setUp() {
+        folderTreeDao = new FolderTreeDao(mongoTemplate, queryCache, metadataCache);
+    }
+
+    @Test
+    void testMoveSubtreeRewritesOnlyTheSubtree() {
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), any(Class.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        long moved = folderTreeDao.moveSubtree("id", "abc/Old", "abc/New", "/data/abc/Old", "/data/abc/New");
+
+        assertEquals(2, moved);
+        ArgumentCaptor<Update> rename = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), rename.capture(), eq(FolderMetadata.class));
+        assertEquals("New", ((Document) rename.getValue().getUpdateObject().get("$set")).get("folderName"));
+
+        ArgumentCaptor<Query> folderQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(folderQuery.capture(), any(AggregationUpdate.class), eq(FolderMetadata.class));
+        assertTrue(folderQuery.getValue().getQueryObject().toJson().contains("abc/Old"));
+
+        ArgumentCaptor<Query> fileQueries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).updateMulti(fileQueries.capture(), any(AggregationUpdate.class), eq(FileMetadata.class));
+        List<String> queries = fileQueries.getAllValues().stream().map(query -> query.getQueryObject().toJson()).toList();
+        assertTrue(queries.get(0).contains("directoryName"));
+        assertTrue(queries.get(1).contains("filePath"));
+    }
+
+    @Test
+    void testSubtreeMatchesPathAndDescendantsOnly() {
+        Document query = FolderTreeDao.subtree("filePath", "abc/Old").getCriteriaObject();
+        List<?> branches = (List<?>) query.get("$or");
+
+        assertEquals("abc/Old", ((Document) branches.get(0)).get("filePath"));
+        Pattern prefix = (Pattern) ((Document) branches.get(1)).get("filePath");
+        assertTrue(prefix.matcher("abc/Old/Sub").find());
+        assertFalse(prefix.matcher("abc/Older").find());
+        assertFalse(prefix.matcher("x/abc/Old/Sub").find());
+    }
+
+    @Test
+    void testEscapeKeepsPrefixLiteral() {
+        String escaped = SearchKeys.escapeRegex("a.b (1)/");
+
+        assertEquals("a\\.b \\(1\\)/", escaped);
+        assertTrue(Pattern.compile("^" + escaped).matcher("a.b (1)/c").find());
+        assertFalse(Pattern.compile("^" + escaped).matcher("axb (1)/c").find());
+    }
+
+    @Test
+    void testRebaseConcatenatesNewPrefixWithRemainder() {
+        String pipeline = FolderTreeDao.rebase("filePath", "abc/Old", "abc/New").toPipeline(Aggregation.DEFAULT_CONTEXT).toString();
+
+        assertTrue(pipeline.contains("$concat"));
+        assertTrue(pipeline.contains("abc/New"));
+        assertTrue(pipeline.contains("$substrCP"));
+    }
+
+    @Test
+    void testDeleteSubtreeRemovesEachCollectionOnce() {
+        when(mongoTemplate.remove(any(Query.class), any(Class.class))).thenReturn(DeleteResult.acknowledged(3));
+
+        long removed = folderTreeDao.deleteSubtree("abc/Old");
+
+        assertEquals(3, removed);
+        ArgumentCaptor<Query> fileQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(fileQuery.capture(), eq(FileMetadata.class));
+        assertEquals(new Query(FolderTreeDao.subtree("filePath", "abc/Old")).getQueryObject().toJson(), fileQuery.getValue().getQueryObject().toJson());
+        verify(mongoTemplate).remove(any(Query.class), eq(FolderMetadata.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(DocumentContent.class));
+        verify(queryCache).invalidate(FileMetadata.class, null);
+        verify(queryCache).invalidate(FolderMetadata.class, null);
+        verify(metadataCache).clear();
+    }
+
+    @Test
+    void testTrashSubtreeFlagsOnlyWhatWasNotInTheTrash() {
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(FileMetadata.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+        LocalDateTime now = LocalDateTime.now();
+
+        long trashed = folderTreeDao.trashSubtree("folder", "abc/Old", "/data/abc/Old", "/data/.trash/folders/folder", now);
+
+        assertEquals(2, trashed);
+        ArgumentCaptor<Query> fileQuery = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> fileUpdate = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateMulti(fileQuery.capture(), fileUpdate.capture(), eq(FileMetadata.class));
+        assertTrue(fileUpdate.getAllValues().get(0) instanceof AggregationUpdate);
+        assertEquals(new Document("isTrash", new Document("$ne", true)).toJson(),
+                new Document("isTrash", fileQuery.getAllValues().get(1).getQueryObject().get("isTrash")).toJson());
+        assertEquals(new Update().set("isTrash", true).set("trashedWith", "folder"), fileUpdate.getAllValues().get(1));
+        verify(mongoTemplate).updateFirst(any(Query.class),
+                eq(new Update().set("isTrash", true).set("trashedAt", now).set("trashedFrom", "/data/abc/Old")), eq(FolderMetadata.class));
+        verify(mongoTemplate).updateMulti(any(Query.class), eq(new Update().set("trashed", true)), eq(DocumentContent.class));
+        verify(queryCache).invalidate(FileMetadata.class, null);
+    }
+}
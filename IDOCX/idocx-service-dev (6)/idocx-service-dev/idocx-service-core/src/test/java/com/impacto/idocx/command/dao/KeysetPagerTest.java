@@ -0,0 +1,102 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.InvalidCursorException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KeysetPagerTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private TotalCounter totalCounter;
+    @InjectMocks
+    private KeysetPager keysetPager;
+
+    @Test
+    void testFirstPageReadsOneExtraRecordForTheNextCursor() {
+        List<FileMetadata> files = List.of(file(), file(), file());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(FileMetadata.class))).thenReturn(files);
+        when(totalCounter.count(any(Query.class), eq(FileMetadata.class), eq(Constants.COUNT_MODE.NONE)))
+                .thenReturn(TotalCounter.Total.NOT_COUNTED);
+
+        CursorPage<FileMetadata> page = keysetPager.page(Criteria.where("isTrash").is(true), "", 0, 2, Constants.COUNT_MODE.NONE,
+                FileMetadata.class, FileMetadata::getId);
+
+        assertEquals(files.subList(0, 2), page.getContent());
+        assertEquals(files.get(1).getId(), KeysetPager.decode(page.getNextCursor()).toHexString());
+        assertEquals(-1, page.getTotal());
+        assertFalse(page.isTotalExact());
+        assertEquals(3, query.getValue().getLimit());
+        assertEquals(0, query.getValue().getSkip());
+        assertEquals(new Document("isTrash", true), query.getValue().getQueryObject());
+        assertEquals(new Document("id", 1), query.getValue().getSortObject());
+    }
+
+    @Test
+    void testPageNumberIsSkippedToWithoutACursor() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(FileMetadata.class))).thenReturn(List.of());
+        when(totalCounter.count(any(Query.class), eq(FileMetadata.class), eq(Constants.COUNT_MODE.NONE)))
+                .thenReturn(TotalCounter.Total.NOT_COUNTED);
+
+        keysetPager.page(new Criteria(), null, 3, 10, Constants.COUNT_MODE.NONE, FileMetadata.class, FileMetadata::getId);
+
+        assertEquals(30, query.getValue().getSkip());
+    }
+
+    @Test
+    void testNextPageContinuesAfterTheCursor() {
+        ObjectId last = new ObjectId();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(FileMetadata.class))).thenReturn(List.of(file()));
+        when(totalCounter.count(new Query(Criteria.where("isTrash").is(true)), FileMetadata.class, Constants.COUNT_MODE.EXACT))
+                .thenReturn(new TotalCounter.Total(11, true));
+
+        CursorPage<FileMetadata> page = keysetPager.page(Criteria.where("isTrash").is(true),
+                KeysetPager.encode(last.toHexString()), 5, 10, Constants.COUNT_MODE.EXACT, FileMetadata.class, FileMetadata::getId);
+
+        assertNull(page.getNextCursor());
+        assertEquals(11, page.getTotal());
+        assertTrue(page.isTotalExact());
+        assertEquals(0, query.getValue().getSkip());
+        assertEquals(List.of(new Document("isTrash", true), new Document("id", new Document("$gt", last))),
+                query.getValue().getQueryObject().get("$and"));
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThrows(InvalidCursorException.class, () -> keysetPager.page(new Criteria(), "not a cursor", 0, 10, Constants.COUNT_MODE.NONE,
+                FileMetadata.class, FileMetadata::getId));
+        assertThrows(InvalidCursorException.class, () -> KeysetPager.decode("AAAA"));
+    }
+
+    private static FileMetadata file() {
+        FileMetadata file = new FileMetadata();
+        file.setId(new ObjectId().toHexString());
+        return file;
+    }
+}
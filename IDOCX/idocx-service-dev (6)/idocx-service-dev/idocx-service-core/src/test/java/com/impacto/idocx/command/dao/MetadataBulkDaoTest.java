@@ -0,0 +1,114 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MetadataBulkDaoTest {
+    private static final String FILE_PATH = "abc/Workspace";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private QueryCache queryCache;
+    @Mock
+    private MetadataCache metadataCache;
+    @Mock
+    private BulkOperations bulkOperations;
+    private MetadataBulkDao metadataBulkDao;
+
+    @BeforeEach
+    void setUp() {
+        metadataBulkDao = new MetadataBulkDao(mongoTemplate, queryCache, metadataCache);
+    }
+
+    private void mockBulk() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FileMetadata.class)).thenReturn(bulkOperations);
+    }
+
+    @Test
+    void testUpsertFilesIssuesOneUnorderedBulk() {
+        mockBulk();
+        FileMetadata existing = new FileMetadata("a.txt", FILE_PATH, "/storage/a.txt");
+        existing.setId(new ObjectId().toHexString());
+        FileMetadata created = new FileMetadata("b.txt", FILE_PATH, "/storage/b.txt");
+        ObjectId insertedId = new ObjectId();
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(1, 1, 0, 1,
+                List.of(new BulkWriteUpsert(1, new BsonObjectId(insertedId))), Collections.emptyList()));
+
+        Map<Integer, String> failures = metadataBulkDao.upsertFiles(new ArrayList<>(List.of(existing, created)));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(insertedId.toHexString(), created.getId());
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(queries.capture(), updates.capture());
+        verify(bulkOperations, times(1)).execute();
+        assertTrue(queries.getAllValues().get(0).getQueryObject().containsKey("id"));
+        assertEquals("b.txt", queries.getAllValues().get(1).getQueryObject().get("fileName"));
+        assertNull(updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("_id"));
+        assertEquals("/storage/b.txt", updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("directoryName"));
+    }
+
+    @Test
+    void testUpsertFilesReportsFailedRecordsOnly() {
+        mockBulk();
+        FileMetadata first = new FileMetadata("a.txt", FILE_PATH, "/storage/a.txt");
+        FileMetadata second = new FileMetadata("b.txt", FILE_PATH, "/storage/b.txt");
+        ObjectId insertedId = new ObjectId();
+        BulkWriteResult partial = BulkWriteResult.acknowledged(1, 0, 0, 0,
+                List.of(new BulkWriteUpsert(1, new BsonObjectId(insertedId))), Collections.emptyList());
+        MongoBulkWriteException cause = new MongoBulkWriteException(partial,
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 0)), null, new ServerAddress(), Collections.emptySet());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", cause));
+
+        Map<Integer, String> failures = metadataBulkDao.upsertFiles(new ArrayList<>(List.of(first, second)));
+
+        assertEquals(Map.of(0, "E11000 duplicate key"), failures);
+        assertNull(first.getId());
+        assertEquals(insertedId.toHexString(), second.getId());
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MetadataCacheTest {
+    private static final String ID = new ObjectId().toHexString();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    private MeterRegistry meterRegistry;
+    private MetadataCache metadataCache;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        lenient().when(mongoTemplate.getConverter()).thenReturn(converter);
+        meterRegistry = new SimpleMeterRegistry();
+        metadataCache = new MetadataCache(new MockEnvironment(), mongoTemplate, meterRegistry);
+    }
+
+    private FileMetadata storedFile() {
+        FileMetadata file = new FileMetadata("a.pdf", "root/Invoices", "/data/root/Invoices/a.pdf");
+        file.setId(ID);
+        when(mongoTemplate.findById(ID, FileMetadata.class)).thenReturn(file);
+        return file;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AfterDeleteEvent<Object> deleted(Class<?> type, Document query) {
+        return new AfterDeleteEvent<>(query, (Class<Object>) type, "fileMetadata");
+    }
+
+    private FolderMetadata storedFolder() {
+        FolderMetadata folder = new FolderMetadata();
+        folder.setId(ID);
+        folder.setFolderName("Invoices");
+        folder.setFolderPath("root/Invoices");
+        return folder;
+    }
+
+    @Test
+    void testFileIsReadFromMongoOnce() {
+        storedFile();
+
+        FileMetadata first = metadataCache.findFile(ID).orElseThrow();
+        first.setFileName("changed.pdf");
+        FileMetadata second = metadataCache.findFile(ID).orElseThrow();
+
+        verify(mongoTemplate).findById(ID, FileMetadata.class);
+        assertNotSame(first, second);
+        assertEquals(ID, second.getId());
+        assertEquals("a.pdf", second.getFileName());
+        assertEquals(1, meterRegistry.get("idocx.metadata.cache.requests").tags("cache", "file", "result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("idocx.metadata.cache.requests").tags("cache", "file", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testMissingFileIsNotCached() {
+        assertTrue(metadataCache.findFile(ID).isEmpty());
+        assertTrue(metadataCache.findFile(ID).isEmpty());
+
+        verify(mongoTemplate, times(2)).findById(ID, FileMetadata.class);
+    }
+
+    @Test
+    void testSaveAndDeleteDropTheFile() {
+        FileMetadata file = storedFile();
+        metadataCache.findFile(ID);
+
+        metadataCache.onAfterSave(new AfterSaveEvent<>(file, new Document(), "fileMetadata"));
+        metadataCache.findFile(ID);
+        metadataCache.onAfterDelete(deleted(FileMetadata.class, new Document("_id", ID)));
+        metadataCache.findFile(ID);
+
+        verify(mongoTemplate, times(3)).findById(ID, FileMetadata.class);
+    }
+
+    @Test
+    void testWriteByPathDropsTheFolderByIdAndByPath() {
+        FolderMetadata folder = storedFolder();
+        when(mongoTemplate.findById(ID, FolderMetadata.class)).thenReturn(folder);
+        when(mongoTemplate.findOne(any(Query.class), any())).thenReturn(folder);
+        metadataCache.findFolder(ID);
+        assertEquals(Optional.of("Invoices"), metadataCache.findFolderByPath("root/Invoices").map(FolderMetadata::getFolderName));
+
+        metadataCache.evictFolder("root/Invoices");
+        metadataCache.findFolder(ID);
+        metadataCache.findFolderByPath("root/Invoices");
+
+        verify(mongoTemplate, times(2)).findById(ID, FolderMetadata.class);
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), any());
+    }
+
+    @Test
+    void testEvictingAFolderByIdDropsItsPath() {
+        FolderMetadata folder = storedFolder();
+        when(mongoTemplate.findOne(any(Query.class), any())).thenReturn(folder);
+        metadataCache.findFolderByPath("root/Invoices");
+
+        metadataCache.evict(FolderMetadata.class, List.of(ID));
+        metadataCache.findFolderByPath("root/Invoices");
+
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), any());
+    }
+}
@@ -0,0 +1,212 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.configuration.MongoIndexInitializer;
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.entity.UploadSession;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs every repository finder and DAO query against a real MongoDB and fails when the winning plan of any of them
+ * contains a COLLSCAN. The commands are captured as the driver sends them and replayed through {@code explain}, so
+ * the check follows the finders rather than a hand-written copy of their queries.
+ * Needs a server: {@code mvn test -Didocx.test.mongodb-uri=mongodb://localhost:27017}. A throwaway database is
+ * created and dropped.
+ */
+@EnabledIfSystemProperty(named = "idocx.test.mongodb-uri", matches = ".+")
+class MongoIndexPlanTest {
+    private static final Set<String> EXPLAINABLE = Set.of("find", "aggregate", "count", "update", "delete", "findAndModify");
+
+    private static final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static QueryCache queryCache;
+    private static MetadataCache metadataCache;
+    private static TotalCounter totalCounter;
+
+    @BeforeAll
+    static void connect() {
+        CommandListener recorder = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if (EXPLAINABLE.contains(event.getCommandName()))
+                    commands.add(event.getCommand().clone());
+            }
+        };
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(System.getProperty("idocx.test.mongodb-uri")))
+                .addCommandListener(recorder)
+                .build();
+        mongoClient = MongoClients.create(settings);
+        mongoTemplate = new MongoTemplate(mongoClient, "idocx-index-plan-" + UUID.randomUUID());
+        List.of(FileMetadata.class, FolderMetadata.class, UploadSession.class, ConversionJob.class)
+                .forEach(type -> mongoTemplate.getConverter().getMappingContext().getPersistentEntity(type));
+        new MongoIndexInitializer(new MockEnvironment(), mongoTemplate).createIndexes();
+        queryCache = new QueryCache(new MockEnvironment(), mongoTemplate);
+        metadataCache = new MetadataCache(new MockEnvironment(), mongoTemplate, new SimpleMeterRegistry());
+        totalCounter = new TotalCounter(new MockEnvironment(), mongoTemplate, queryCache);
+
+        FileMetadata file = new FileMetadata("a.pdf", "root/Workspace", "/data/root/Workspace/a.pdf");
+        file.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
+        mongoTemplate.save(file);
+        FolderMetadata folder = new FolderMetadata();
+        folder.setFolderName("Workspace");
+        folder.setFolderPath("root/Workspace");
+        folder.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
+        mongoTemplate.save(folder);
+    }
+
+    @AfterAll
+    static void dropDatabase() {
+        if (mongoTemplate != null)
+            mongoTemplate.getDb().drop();
+        if (mongoClient != null)
+            mongoClient.close();
+    }
+
+    @BeforeEach
+    void clearCommands() {
+        commands.clear();
+    }
+
+    @Test
+    void testFileMetadataFindersUseIndexes() {
+        FileMetadataRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(FileMetadataRepository.class);
+        PageRequest page = PageRequest.of(0, 10);
+
+        repository.findByFileNameAndFilePath("a.pdf", "root/Workspace");
+        repository.findAllByFilePath("root/Workspace", page);
+        repository.findAllByFilePathAndIsTrashFalseAndIsArchiveFalse("root/Workspace", page);
+        repository.findAllByWorkSpaceType("AUTOWORKSPACE");
+        repository.findByFileName("a.pdf");
+        repository.findByIsFavouriteTrue(page);
+        repository.findByIsArchiveTrue(page);
+        repository.findByIsTrashTrue(page);
+        new MetadataBulkDao(mongoTemplate, queryCache, metadataCache).findByFilePathAndFileNames("root/Workspace", List.of("a.pdf"));
+
+        assertNoCollectionScans();
+    }
+
+    @Test
+    void testFolderMetadataFindersUseIndexes() {
+        FolderMetadataRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(FolderMetadataRepository.class);
+        PageRequest page = PageRequest.of(0, 10);
+
+        repository.findAllByWorkSpaceType("AUTOWORKSPACE");
+        repository.findByWorkSpaceTypeAndIsTrashFalseAndIsArchiveFalse("AUTOWORKSPACE");
+        repository.findByFolderPath("root/Workspace");
+        repository.findByIsFavouriteTrue(page);
+        repository.findByIsArchiveTrue(page);
+        repository.findByIsTrashTrue(page);
+        new FolderMetadataDao(mongoTemplate, queryCache, metadataCache).findFolderSummaries("AUTOWORKSPACE");
+
+        assertNoCollectionScans();
+    }
+
+    @Test
+    void testSubtreeMoveUsesIndexes() {
+        new FolderTreeDao(mongoTemplate, queryCache, metadataCache).moveSubtree("missing", "root/Other", "root/Renamed",
+                "/data/root/Other", "/data/root/Renamed");
+
+        assertNoCollectionScans();
+    }
+
+    @Test
+    void testNameSearchUsesIndexes() {
+        SearchDao searchDao = new SearchDao(mongoTemplate, new KeysetPager(mongoTemplate, totalCounter), queryCache);
+
+        for (String filter : List.of("isEqualTo", "beginsWith", "contains", "endsWith")) {
+            searchDao.search("DOCUMENT", "fileName", null, "BOTH", filter, "A.pd", 0, 10);
+            searchDao.search("FOLDER", "folderName", null, "BOTH", filter, "Work", 0, 10);
+        }
+        searchDao.facetedSearch("DOCUMENT", "fileName", null, "BOTH", "beginsWith", "a", 0, 10, false);
+
+        assertNoCollectionScans();
+    }
+
+    @Test
+    void testKeysetPagesUseIndexes() {
+        KeysetPager pager = new KeysetPager(mongoTemplate, totalCounter);
+        String after = KeysetPager.encode(new ObjectId().toHexString());
+
+        pager.page(Criteria.where("filePath").is("root/Workspace").and("isTrash").is(false).and("isArchive").is(false),
+                after, 0, 10, Constants.COUNT_MODE.CAPPED, FileMetadata.class, FileMetadata::getId);
+        for (String flag : List.of("isFavourite", "isArchive", "isTrash")) {
+            pager.page(Criteria.where(flag).is(true), after, 0, 10, Constants.COUNT_MODE.NONE, FileMetadata.class, FileMetadata::getId);
+            pager.page(Criteria.where(flag).is(true), after, 0, 10, Constants.COUNT_MODE.NONE, FolderMetadata.class, FolderMetadata::getId);
+        }
+
+        assertNoCollectionScans();
+    }
+
+    @Test
+    void testUploadSessionAndJobFindersUseIndexes() {
+        MongoRepositoryFactory factory = new MongoRepositoryFactory(mongoTemplate);
+
+        factory.getRepository(UploadSessionRepository.class)
+                .findByStatusInAndCreatedAtBefore(List.of(Constants.UPLOAD_STATUS.OPEN), LocalDateTime.now());
+        factory.getRepository(ConversionJobRepository.class).findByStatusIn(List.of(Constants.JOB_STATUS.QUEUED));
+
+        assertNoCollectionScans();
+    }
+
+    private void assertNoCollectionScans() {
+        List<BsonDocument> recorded = new ArrayList<>(commands);
+        assertFalse(recorded.isEmpty(), "no queries were recorded");
+        for (BsonDocument command : recorded) {
+            Document explain = mongoTemplate.getDb().runCommand(
+                    new Document("explain", explainable(command)).append("verbosity", "queryPlanner"));
+            assertFalse(containsCollectionScan(explain), "COLLSCAN for " + command.toJson() + "\n" + explain.toJson());
+        }
+    }
+
+    /**
+     * Strips the session and routing fields the driver adds, which {@code explain} does not accept.
+     */
+    private static BsonDocument explainable(BsonDocument command) {
+        BsonDocument copy = command.clone();
+        copy.keySet().removeIf(key -> key.startsWith("$") || key.equals("lsid") || key.equals("txnNumber"));
+        return copy;
+    }
+
+    private static boolean containsCollectionScan(Object node) {
+        if (node instanceof Document document) {
+            if ("COLLSCAN".equals(document.get("stage")))
+                return true;
+            return document.values().stream().anyMatch(MongoIndexPlanTest::containsCollectionScan);
+        }
+        if (node instanceof List<?> list)
+            return list.stream().anyMatch(MongoIndexPlanTest::containsCollectionScan);
+        return false;
+    }
+}
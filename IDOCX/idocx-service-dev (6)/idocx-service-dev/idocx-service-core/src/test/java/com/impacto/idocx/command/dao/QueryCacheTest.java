@@ -0,0 +1,104 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class QueryCacheTest {
+    private static final Query IN_FOLDER = new Query(Criteria.where("filePath").is("root/A").and("isTrash").is(false));
+    private static final Query TRASHED = new Query(Criteria.where("isTrash").is(true));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    private QueryCache queryCache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        queryCache = new QueryCache(new MockEnvironment(), mongoTemplate);
+        lenient().when(mongoTemplate.getCollectionName(FileMetadata.class)).thenReturn("fileMetadata");
+        lenient().when(mongoTemplate.getCollectionName(FolderMetadata.class)).thenReturn("folderMetadata");
+    }
+
+    private int load(Query query) {
+        return queryCache.get(FileMetadata.class, "count", query, loads::incrementAndGet);
+    }
+
+    @Test
+    void testResultIsReusedUntilItsFolderIsWritten() {
+        assertEquals(1, load(IN_FOLDER));
+        queryCache.invalidate(FileMetadata.class, "root/B");
+        assertEquals(1, load(IN_FOLDER));
+        queryCache.invalidate(FileMetadata.class, "root/A");
+        assertEquals(2, load(IN_FOLDER));
+    }
+
+    @Test
+    void testKindsAreCachedSeparately() {
+        assertEquals(1, load(IN_FOLDER));
+        assertEquals(2, (int) queryCache.get(FileMetadata.class, "facets", IN_FOLDER, loads::incrementAndGet));
+    }
+
+    @Test
+    void testResultsNotLimitedToAFolderAreDroppedOnAnyWrite() {
+        FileMetadata file = new FileMetadata("a.pdf", "root/B", null);
+
+        assertEquals(1, load(TRASHED));
+        queryCache.onAfterSave(new AfterSaveEvent<>(file, new Document(), "fileMetadata"));
+        assertEquals(2, load(TRASHED));
+        queryCache.onAfterDelete(new AfterDeleteEvent<Object>(new Document(), Object.class, "fileMetadata"));
+        assertEquals(3, load(TRASHED));
+    }
+
+    @Test
+    void testWritesToAnotherCollectionKeepResults() {
+        assertEquals(1, load(TRASHED));
+        queryCache.invalidate(FolderMetadata.class, null);
+        assertEquals(1, load(TRASHED));
+    }
+
+    @Test
+    void testResultComputedDuringAWriteIsNotKept() {
+        queryCache.get(FileMetadata.class, "count", IN_FOLDER, () -> {
+            queryCache.invalidate(FileMetadata.class, "root/A");
+            return loads.incrementAndGet();
+        });
+
+        assertEquals(2, load(IN_FOLDER));
+    }
+
+    @Test
+    void testResultComputedDuringAWriteElsewhereIsKept() {
+        queryCache.get(FileMetadata.class, "count", IN_FOLDER, () -> {
+            queryCache.invalidate(FileMetadata.class, "root/B");
+            return loads.incrementAndGet();
+        });
+
+        assertEquals(1, load(IN_FOLDER));
+    }
+
+    @Test
+    void testExpiredResultsAreReloaded() {
+        queryCache = new QueryCache(new MockEnvironment().withProperty("idocx.query-cache.ttl-seconds", "0"), mongoTemplate);
+
+        assertEquals(1, load(TRASHED));
+        assertEquals(2, load(TRASHED));
+    }
+}
@@ -0,0 +1,85 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceStatusDaoTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private QueryCache queryCache;
+    @Mock
+    private MetadataCache metadataCache;
+    private ResourceStatusDao resourceStatusDao;
+
+    @BeforeEach
+    void setUp() {
+        resourceStatusDao = new ResourceStatusDao(mongoTemplate, queryCache, metadataCache);
+    }
+
+    @Test
+    void testSetFlagUpdatesAllIdsAtOnce() {
+        resourceStatusDao.setFlag(List.of("1", "2"), "isFavourite", true, FolderMetadata.class);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(FolderMetadata.class));
+        assertEquals(new Document("id", new Document("$in", List.of("1", "2"))).append("isFavourite", new Document("$ne", true)),
+                query.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("isFavourite", true)), update.getValue().getUpdateObject());
+        verify(queryCache).invalidate(FolderMetadata.class, null);
+        verify(metadataCache).evict(FolderMetadata.class, List.of("1", "2"));
+    }
+
+    @Test
+    void testTrashingFilesStampsTheTimeAndHidesTheirText() {
+        resourceStatusDao.setFlag(List.of("1"), "isTrash", true, FileMetadata.class);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(FileMetadata.class));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(true, set.get("isTrash"));
+        assertNotNull(set.get("trashedAt"));
+        verify(mongoTemplate).updateMulti(any(Query.class), eq(new Update().set("trashed", true)), eq(DocumentContent.class));
+    }
+
+    @Test
+    void testRestoringFilesClearsTheTrashFields() {
+        resourceStatusDao.setFlag(List.of("1"), "isTrash", false, FileMetadata.class);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(FileMetadata.class));
+        assertEquals(new Document("trashedAt", 1).append("trashedWith", 1), update.getValue().getUpdateObject().get("$unset"));
+        verify(mongoTemplate).updateMulti(any(Query.class), eq(new Update().set("trashed", false)), eq(DocumentContent.class));
+    }
+
+    @Test
+    void testNoIdsDoesNothing() {
+        resourceStatusDao.setFlag(List.of(), "isFavourite", true, FolderMetadata.class);
+
+        assertTrue(resourceStatusDao.findByIds(List.of(), FolderMetadata.class).isEmpty());
+        verifyNoInteractions(mongoTemplate, queryCache);
+    }
+}
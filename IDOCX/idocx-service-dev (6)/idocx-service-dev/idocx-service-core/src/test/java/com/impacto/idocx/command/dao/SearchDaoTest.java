@@ -1,16 +1,32 @@
 package com.impacto.idocx.command.dao;
 
+import com.impacto.idocx.command.dtos.FacetedSearchResultDto;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.entity.FolderMetadata;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.mongodb.core.MongoTemplate;
-
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -32,7 +48,7 @@ class SearchDaoTest {
 
     @Test
     void testSearchInFoldersByValidField() {
-        FolderMetadata folderMetadata = new FolderMetadata("1", "Test Folder", "/test/path", null, null, false, false, false);
+        FolderMetadata folderMetadata = new FolderMetadata("1", "Test Folder", "/test/path", null, null, false, false, false, null, null, null, null, null, null, null);
         when(mongoTemplate.find(any(), eq(FolderMetadata.class))).thenReturn(List.of(folderMetadata));
         when(mongoTemplate.count(any(), eq(FolderMetadata.class))).thenReturn(1L);
 
@@ -62,7 +78,7 @@ class SearchDaoTest {
 
     @Test
     void testSearchDocumentsWithContainsFilter() {
-        FileMetadata fileMetadata = new FileMetadata("1", "Test Document", "/test/path/document", "TestDir", "DOC123", "pdf", false, "Tag1", 1, "Remarks", "Authorizer", null, null, null, null, null, false, false, false);
+        FileMetadata fileMetadata = new FileMetadata("1", "Test Document", "/test/path/document", "TestDir", "DOC123", "pdf", false, "Tag1", 1, "Remarks", "Authorizer", null, null, null, null, null, false, false, false, null, null, null, null, 0, null, null, null, null, null, null);
         when(mongoTemplate.find(any(), eq(FileMetadata.class))).thenReturn(List.of(fileMetadata));
         when(mongoTemplate.count(any(), eq(FileMetadata.class))).thenReturn(1L);
 
@@ -74,4 +90,96 @@ class SearchDaoTest {
         verify(mongoTemplate, times(1)).find(any(), eq(FileMetadata.class));
     }
 
+    @Test
+    void testNameOperatorsUseSearchKeys() {
+        assertEquals(new Document("fileNameLower", "invoice.pdf"), criteria("fileName", "isEqualTo", "Invoice.PDF"));
+        assertEquals("^inv\\.\\(", criteria("fileName", "beginsWith", "Inv.(").get("fileNameLower").toString());
+        assertEquals(new Document("fileNameGrams", new Document("$all", List.of("inv"))), criteria("fileName", "contains", "INV"));
+
+        Document contains = criteria("tag", "contains", "a.b(c");
+        assertEquals(List.of("a.b", ".b(", "b(c"), ((Document) contains.get("tagGrams")).get("$all"));
+        assertEquals("a\\.b\\(c", contains.get("tagLower").toString());
+
+        Document endsWith = criteria("folderName", "endsWith", "Docs");
+        assertEquals("docs$", endsWith.get("folderNameLower").toString());
+        assertEquals(List.of("doc", "ocs"), ((Document) endsWith.get("folderNameGrams")).get("$all"));
+    }
+
+    @Test
+    void testShortContainsFallsBackToKeyOnly() {
+        Document contains = criteria("extension", "contains", "PD");
+
+        assertFalse(contains.containsKey("extensionGrams"));
+        assertEquals("pd", contains.get("extensionLower").toString());
+    }
+
+    @Test
+    void testRawFieldsAreMatchedLiterally() {
+        assertEquals(new Document("workSpaceType", "AUTOWORKSPACE"), criteria("workSpaceType", "isEqualTo", "autoworkspace"));
+        assertEquals("^\\.\\*", criteria("id", "beginsWith", ".*").get("id").toString());
+    }
+
+    @Test
+    void testFacetedSearchReturnsPageAndCountsFromOneAggregation() {
+        ArgumentCaptor<TypedAggregation<?>> aggregation = ArgumentCaptor.forClass(TypedAggregation.class);
+        Document facets = new Document("total", List.of(new Document("count", 12)))
+                .append("extension", List.of(new Document("_id", ".pdf").append("count", 9), new Document("_id", null).append("count", 3)))
+                .append("tag", List.of())
+                .append("workSpaceType", List.of(new Document("_id", "AUTOWORKSPACE").append("count", 12)))
+                .append("flags", List.of(new Document("favourite", 2).append("archive", 0).append("trash", 1)))
+                .append("results", List.of(new Document("_id", "1").append("fileName", "a.pdf")));
+        when(mongoTemplate.aggregate(aggregation.capture(), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(facets), new Document()));
+        when(mongoTemplate.getConverter()).thenReturn(converter());
+
+        FacetedSearchResultDto result = searchDao.facetedSearch("DOCUMENT", "fileName", null, "BOTH", "contains", "a", 1, 5, false);
+
+        assertEquals(12, result.getTotal());
+        assertEquals("a.pdf", ((FileMetadata) result.getResults().get(0)).getFileName());
+        assertEquals(Map.of(".pdf", 9L), result.getFacets().get("extension"));
+        assertEquals(Map.of(), result.getFacets().get("tag"));
+        assertEquals(Map.of("AUTOWORKSPACE", 12L), result.getFacets().get("workSpaceType"));
+        assertEquals(Map.of("favourite", 2L, "archive", 0L, "trash", 1L), result.getFacets().get("flags"));
+        List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(2, pipeline.size());
+        Document facet = (Document) pipeline.get(1).get("$facet");
+        assertEquals(List.of("total", "extension", "tag", "workSpaceType", "flags", "results"), new ArrayList<>(facet.keySet()));
+        assertEquals(List.of(new Document("$sort", new Document("id", 1)), new Document("$skip", 5L), new Document("$limit", 5L)),
+                facet.get("results"));
+    }
+
+    @Test
+    void testCachedFacetsAreAggregatedOncePerSearch() {
+        SearchDao cachingDao = new SearchDao(mongoTemplate, null, new QueryCache(new MockEnvironment(), mongoTemplate));
+        when(mongoTemplate.getCollectionName(FolderMetadata.class)).thenReturn("folderMetadata");
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("total", List.of(new Document("count", 1)))), new Document()));
+        when(mongoTemplate.find(any(Query.class), eq(FolderMetadata.class))).thenReturn(List.of(new FolderMetadata()));
+
+        FacetedSearchResultDto first = cachingDao.facetedSearch("FOLDER", "folderName", null, "BOTH", "isEqualTo", "Docs", 0, 10, true);
+        FacetedSearchResultDto second = cachingDao.facetedSearch("FOLDER", "folderName", null, "BOTH", "isEqualTo", "Docs", 0, 10, true);
+
+        assertEquals(1, second.getTotal());
+        assertEquals(List.of("workSpaceType", "flags"), new ArrayList<>(first.getFacets().keySet()));
+        verify(mongoTemplate, times(1)).aggregate(any(TypedAggregation.class), eq(Document.class));
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(FolderMetadata.class));
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static Document criteria(String field, String filter, String value) {
+        List<Criteria> criteriaList = new ArrayList<>();
+        SearchDao.getFilteredSearch(field, filter, value, criteriaList);
+        Document merged = new Document();
+        criteriaList.forEach(criteria -> merged.putAll(criteria.getCriteriaObject()));
+        return merged;
+    }
 }
@@ -0,0 +1,47 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SearchKeysTest {
+
+    @Test
+    void testGramsAreDistinctLowerCaseTrigrams() {
+        assertEquals(List.of("aba", "bab"), SearchKeys.grams("ABABA"));
+        assertEquals(List.of("ab"), SearchKeys.grams("Ab"));
+        assertEquals(List.of(), SearchKeys.grams(""));
+        assertEquals(List.of(), SearchKeys.grams(null));
+    }
+
+    @Test
+    void testEscapeRegex() {
+        assertEquals("a\\.b \\(1\\)\\[x\\]\\$", SearchKeys.escapeRegex("a.b (1)[x]$"));
+    }
+
+    @Test
+    void testCallbackFillsKeysOfFilesAndFolders() {
+        SearchKeysCallback callback = new SearchKeysCallback();
+        FileMetadata file = new FileMetadata("Report.PDF", "root", "/data/root/Report.PDF");
+        file.setTag("Q1");
+        FolderMetadata folder = new FolderMetadata();
+        folder.setFolderName("Invoices");
+        folder.setFolderPath("root/Invoices");
+
+        assertSame(file, callback.onBeforeConvert(file, "fileMetadata"));
+        callback.onBeforeConvert(folder, "folderMetadata");
+
+        assertEquals("report.pdf", file.getFileNameLower());
+        assertEquals(List.of("rep", "epo", "por", "ort", "rt.", "t.p", ".pd", "pdf"), file.getFileNameGrams());
+        assertEquals(List.of("q1"), file.getTagGrams());
+        assertNull(file.getExtensionLower());
+        assertEquals("invoices", folder.getFolderNameLower());
+        assertEquals("root/invoices", folder.getFolderPathLower());
+    }
+}
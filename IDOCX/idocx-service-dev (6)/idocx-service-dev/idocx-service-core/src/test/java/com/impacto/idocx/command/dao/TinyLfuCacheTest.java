@@ -0,0 +1,133 @@
+package com.impacto.idocx.command.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Optional<String> load(String key) {
+        loads.incrementAndGet();
+        return Optional.of("value of " + key);
+    }
+
+    @Test
+    void testValueIsLoadedOnce() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+
+        assertEquals(Optional.of("value of a"), cache.get("a", this::load));
+        assertEquals(Optional.of("value of a"), cache.get("a", this::load));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+
+        for (int i = 0; i < 1000; i++)
+            cache.get("key-" + i, this::load);
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(900, cache.evictionCount());
+    }
+
+    @Test
+    void testScanDoesNotEvictFrequentlyReadKeys() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+        for (int round = 0; round < 5; round++)
+            for (int i = 0; i < 10; i++)
+                cache.get("hot-" + i, this::load);
+
+        for (int i = 0; i < 1000; i++)
+            cache.get("scan-" + i, this::load);
+        loads.set(0);
+        for (int i = 0; i < 10; i++)
+            cache.get("hot-" + i, this::load);
+
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void testExpiredValuesAreReloaded() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 0);
+
+        cache.get("a", this::load);
+        cache.get("a", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testValueLoadedDuringAnInvalidationIsNotKept() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+
+        cache.get("a", key -> {
+            cache.invalidate(key);
+            return load(key);
+        });
+        cache.get("a", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testInvalidatingAnotherKeyDuringALoadKeepsTheValue() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+
+        cache.get("a", key -> {
+            cache.invalidate("b");
+            return load(key);
+        });
+        cache.get("a", this::load);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testFailedLoadIsNotCached() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", key -> {
+            throw new IllegalStateException("down");
+        }));
+        cache.get("a", this::load);
+        cache.get("a", this::load);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testInvalidateIfDropsMatchingValues() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, TimeUnit.MINUTES.toNanos(1));
+        cache.get("a", this::load);
+        cache.get("b", this::load);
+
+        cache.invalidateIf(value -> value.endsWith("a"));
+
+        assertEquals(1, cache.size());
+        cache.get("b", this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testZeroSizeCachesNothing() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(0, TimeUnit.MINUTES.toNanos(1));
+
+        cache.get("a", this::load);
+        cache.get("a", this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,78 @@
+package com.impacto.idocx.command.dao;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.entity.FileMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TotalCounterTest {
+    private static final Query IN_FOLDER = new Query(Criteria.where("filePath").is("root/A").and("isTrash").is(false));
+    private static final Query TRASHED = new Query(Criteria.where("isTrash").is(true));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    private TotalCounter totalCounter;
+
+    @BeforeEach
+    void setUp() {
+        totalCounter = new TotalCounter(new MockEnvironment().withProperty("idocx.count.cap", "100"), mongoTemplate,
+                new QueryCache(new MockEnvironment(), mongoTemplate));
+        lenient().when(mongoTemplate.getCollectionName(FileMetadata.class)).thenReturn("fileMetadata");
+    }
+
+    @Test
+    void testNoneAndExact() {
+        when(mongoTemplate.count(IN_FOLDER, FileMetadata.class)).thenReturn(250L);
+
+        assertEquals(TotalCounter.Total.NOT_COUNTED, totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.NONE));
+        assertEquals(new TotalCounter.Total(250, true), totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.EXACT));
+        verify(mongoTemplate, times(1)).count(any(Query.class), eq(FileMetadata.class));
+    }
+
+    @Test
+    void testCappedStopsCountingAtTheCap() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.count(query.capture(), eq(FileMetadata.class))).thenReturn(101L, 42L);
+
+        assertEquals(new TotalCounter.Total(100, false), totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.CAPPED));
+        assertEquals(new TotalCounter.Total(42, true), totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.CAPPED));
+        assertEquals(101, query.getValue().getLimit());
+        assertEquals(IN_FOLDER.getQueryObject(), query.getValue().getQueryObject());
+        assertEquals(0, IN_FOLDER.getLimit());
+    }
+
+    @Test
+    void testEstimatedUsesCollectionMetadataOnlyWithoutFilter() {
+        when(mongoTemplate.estimatedCount(FileMetadata.class)).thenReturn(5_000_000L);
+        when(mongoTemplate.count(any(Query.class), eq(FileMetadata.class))).thenReturn(3L);
+
+        assertEquals(new TotalCounter.Total(5_000_000, false), totalCounter.count(new Query(), FileMetadata.class, Constants.COUNT_MODE.ESTIMATED));
+        assertEquals(new TotalCounter.Total(3, true), totalCounter.count(TRASHED, FileMetadata.class, Constants.COUNT_MODE.ESTIMATED));
+    }
+
+    @Test
+    void testCachedTotalIsCountedOnce() {
+        when(mongoTemplate.count(IN_FOLDER, FileMetadata.class)).thenReturn(7L);
+
+        assertEquals(new TotalCounter.Total(7, true), totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.CACHED));
+        assertEquals(new TotalCounter.Total(7, true), totalCounter.count(IN_FOLDER, FileMetadata.class, Constants.COUNT_MODE.CACHED));
+        verify(mongoTemplate, times(1)).count(IN_FOLDER, FileMetadata.class);
+    }
+}
@@ -0,0 +1,153 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.DocumentContentDao;
+import com.impacto.idocx.command.entity.DocumentContent;
+import com.impacto.idocx.command.entity.FileMetadata;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ContentIndexServiceTest {
+    private static final String ID = "1";
+
+    @Mock
+    private DocumentContentDao documentContentDao;
+    @TempDir
+    Path tempDir;
+    private ContentIndexService contentIndexService;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment().withProperty("idocx.search.max-content-chars", "20");
+        contentIndexService = new ContentIndexService(environment, documentContentDao, new PdfDocumentLoader(new MockEnvironment()));
+    }
+
+    @Test
+    void testIndexExtractsAndSavesText() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("notes.txt"), "Invoice 42 for March");
+        FileMetadata metadata = fileMetadata(file, ".txt", "hash");
+
+        contentIndexService.index(metadata);
+
+        ArgumentCaptor<DocumentContent> saved = ArgumentCaptor.forClass(DocumentContent.class);
+        verify(documentContentDao).save(saved.capture());
+        assertEquals(ID, saved.getValue().getId());
+        assertEquals("Invoice 42 for March", saved.getValue().getText());
+        assertEquals("hash", saved.getValue().getContentHash());
+        assertEquals(Constants.WORKSPACE_TYPE.AUTOWORKSPACE, saved.getValue().getWorkSpaceType());
+    }
+
+    @Test
+    void testIndexOnlyMovesEntryWhenContentIsUnchanged() throws IOException {
+        FileMetadata metadata = fileMetadata(tempDir.resolve("missing.txt"), ".txt", "hash");
+        when(documentContentDao.findContentHash(ID)).thenReturn("hash");
+        when(documentContentDao.updateLocation(ID, metadata.getFileName(), metadata.getFilePath())).thenReturn(true);
+
+        contentIndexService.index(metadata);
+
+        verify(documentContentDao, never()).save(any());
+    }
+
+    @Test
+    void testIndexReextractsWhenContentChanged() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("notes.txt"), "new text");
+        when(documentContentDao.findContentHash(ID)).thenReturn("old");
+
+        contentIndexService.index(fileMetadata(file, ".txt", "new"));
+
+        verify(documentContentDao).save(any(DocumentContent.class));
+    }
+
+    @Test
+    void testIndexSkipsUnsupportedFilesAndSwallowsFailures() {
+        contentIndexService.index(fileMetadata(tempDir.resolve("image.png"), ".png", "hash"));
+        verifyNoInteractions(documentContentDao);
+
+        contentIndexService.index(fileMetadata(tempDir.resolve("missing.pdf"), ".pdf", "hash"));
+        verify(documentContentDao, never()).save(any());
+    }
+
+    @Test
+    void testExtractTextIsCappedForPlainText() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("long.txt"), "a".repeat(100));
+
+        assertEquals(20, contentIndexService.extractText(file, ".TXT").length());
+    }
+
+    @Test
+    void testExtractTextFromPdfAndDocx() throws IOException {
+        Path pdf = tempDir.resolve("doc.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.beginText();
+                stream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                stream.newLineAtOffset(50, 700);
+                stream.showText("Invoice 42");
+                stream.endText();
+            }
+            document.save(pdf.toFile());
+        }
+        Path docx = tempDir.resolve("doc.docx");
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(docx)) {
+            document.createParagraph().createRun().setText("Quarterly report");
+            document.write(out);
+        }
+
+        assertTrue(contentIndexService.extractText(pdf, ".pdf").contains("Invoice 42"));
+        assertTrue(contentIndexService.extractText(docx, ".docx").contains("Quarterly report"));
+    }
+
+    @Test
+    void testIsIndexable() {
+        assertTrue(ContentIndexService.isIndexable(".PDF"));
+        assertTrue(ContentIndexService.isIndexable(".csv"));
+        assertFalse(ContentIndexService.isIndexable(".png"));
+        assertFalse(ContentIndexService.isIndexable(null));
+    }
+
+    @Test
+    void testRemoveDelegatesToDao() {
+        contentIndexService.remove(List.of(ID));
+
+        verify(documentContentDao).remove(List.of(ID));
+    }
+
+    private FileMetadata fileMetadata(Path file, String extension, String contentHash) {
+        FileMetadata metadata = new FileMetadata(file.getFileName().toString(), "root/Workspace", file.toString());
+        metadata.setId(ID);
+        metadata.setExtension(extension);
+        metadata.setContentHash(contentHash);
+        metadata.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
+        return metadata;
+    }
+}
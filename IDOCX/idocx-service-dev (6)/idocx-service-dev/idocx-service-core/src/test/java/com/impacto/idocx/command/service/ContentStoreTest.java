@@ -0,0 +1,101 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.ContentBlobDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ContentStoreTest {
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String CONTENT = "test";
+
+    @Mock
+    private ContentBlobDao contentBlobDao;
+    @TempDir
+    Path tempDir;
+    private ContentStore contentStore;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.storage.cas-enabled", "true");
+        contentStore = new ContentStore(environment, contentBlobDao);
+    }
+
+    @Test
+    void testBlobPathIsShardedByHashPrefix() {
+        assertEquals(tempDir.toAbsolutePath().resolve(".cas/9f/86/" + HASH), contentStore.blobPath(HASH));
+        assertTrue(contentStore.isBlob(contentStore.blobPath(HASH)));
+        assertFalse(contentStore.isBlob(tempDir.resolve("folder/test.txt")));
+    }
+
+    @Test
+    void testStoreMovesFirstCopyAndDropsDuplicates() throws IOException {
+        Path first = Files.writeString(contentStore.newTempFile(), CONTENT);
+        Path second = Files.writeString(contentStore.newTempFile(), CONTENT);
+
+        Path blob = contentStore.store(first, HASH, CONTENT.length());
+        assertEquals(blob, contentStore.store(second, HASH, CONTENT.length()));
+
+        assertEquals(CONTENT, Files.readString(blob));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+    }
+
+    @Test
+    void testStoreDropsReferenceWhenContentIsMissing() {
+        Path missing = tempDir.resolve("missing.part");
+
+        assertThrows(NoSuchFileException.class, () -> contentStore.store(missing, HASH, CONTENT.length()));
+
+        verify(contentBlobDao).acquire(HASH, CONTENT.length());
+        verify(contentBlobDao).release(HASH);
+    }
+
+    @Test
+    void testReleaseBlobKeepsSharedBlob() throws IOException {
+        Path blob = contentStore.store(Files.writeString(contentStore.newTempFile(), CONTENT), HASH, CONTENT.length());
+        when(contentBlobDao.release(HASH)).thenReturn(false);
+
+        assertTrue(contentStore.releaseBlob(blob.toString()));
+
+        assertTrue(Files.exists(blob));
+    }
+
+    @Test
+    void testReleaseBlobUnlinksLastReference() throws IOException {
+        Path blob = contentStore.store(Files.writeString(contentStore.newTempFile(), CONTENT), HASH, CONTENT.length());
+        when(contentBlobDao.release(HASH)).thenReturn(true);
+
+        assertTrue(contentStore.releaseBlob(blob.toString()));
+
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    void testReleaseBlobIgnoresPerFolderCopies() {
+        assertFalse(contentStore.releaseBlob(tempDir.resolve("folder/test.txt").toString()));
+
+        verify(contentBlobDao, never()).release(anyString());
+    }
+}
@@ -0,0 +1,255 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.ConversionJobRepository;
+import com.impacto.idocx.command.dtos.ConversionJobDto;
+import com.impacto.idocx.command.entity.ConversionJob;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.JobQueueFullException;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.modelmapper.ModelMapper;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversionJobServiceTest {
+    public static final String DOCUMENT_ID = "doc-1";
+    public static final byte[] RESULT = {1, 2, 3};
+
+    @TempDir
+    Path tempDir;
+
+    private ConversionJobRepository conversionJobRepository;
+    private PDFConversionsService pdfConversionsService;
+    private ConversionJobService conversionJobService;
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        conversionJobRepository = mock(ConversionJobRepository.class);
+        when(conversionJobRepository.save(any(ConversionJob.class))).thenAnswer(invocation -> {
+            ConversionJob job = invocation.getArgument(0);
+            if (job.getId() == null) job.setId("job-" + ids.incrementAndGet());
+            jobs.put(job.getId(), job);
+            return job;
+        });
+        when(conversionJobRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+
+        pdfConversionsService = mock(PDFConversionsService.class);
+        when(pdfConversionsService.isStreamable(anyString())).thenAnswer(invocation -> List.of("JPEG", "PNG", "TIFF")
+                .contains(invocation.<String>getArgument(0).toUpperCase()));
+        when(pdfConversionsService.getFileMetadataById(anyString())).thenReturn(new FileMetadata());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (conversionJobService != null) conversionJobService.shutdown();
+    }
+
+    private ConversionJobService createService(int queueCapacity) {
+        conversionJobService = new ConversionJobService(new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.jobs.pool-size", "1")
+                .withProperty("idocx.jobs.queue-capacity", String.valueOf(queueCapacity)),
+                conversionJobRepository, pdfConversionsService, new ModelMapper());
+        return conversionJobService;
+    }
+
+    private ConversionJob awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            ConversionJob job = jobs.get(jobId);
+            if (job.getStatus() == Constants.JOB_STATUS.COMPLETED || job.getStatus() == Constants.JOB_STATUS.FAILED) return job;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + jobId + " did not finish");
+    }
+
+    @Test
+    void testSubmitWritesResultToDisk() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(5).write(RESULT);
+            return null;
+        }).when(pdfConversionsService).streamPdfPagesAsZip(any(), anyString(), anyInt(), anyInt(), any(), any());
+
+        GenericResponse<ConversionJobDto> response = createService(10).submit(DOCUMENT_ID, "png", 1, -1, PageRenderOptions.defaults(), 0);
+        assertEquals(Constants.JOB_STATUS.QUEUED, response.getData().getStatus());
+
+        ConversionJob job = awaitFinished(response.getData().getId());
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        assertEquals("application/zip", job.getResultContentType());
+        assertArrayEquals(RESULT, Files.readAllBytes(Paths.get(job.getResultPath())));
+        assertTrue(conversionJobService.loadResult(conversionJobService.getCompletedJob(job.getId())).exists());
+    }
+
+    @Test
+    void testSubmitNonImageFormatWritesSingleFile() throws Exception {
+        when(pdfConversionsService.conversion(DOCUMENT_ID, "DOCX", 0, -1))
+                .thenReturn(new GenericResponse<>(200, "success", List.of(RESULT)));
+
+        GenericResponse<ConversionJobDto> response = createService(10).submit(DOCUMENT_ID, "docx", 0, -1, PageRenderOptions.defaults(), 0);
+
+        ConversionJob job = awaitFinished(response.getData().getId());
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        assertEquals(DOCUMENT_ID + ".docx", job.getResultFileName());
+        assertArrayEquals(RESULT, Files.readAllBytes(Paths.get(job.getResultPath())));
+    }
+
+    @Test
+    void testHigherPriorityJobsRunFirst() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> executedPages = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            int page = invocation.getArgument(2);
+            if (page == 0) release.await(5, TimeUnit.SECONDS);
+            executedPages.add(page);
+            return null;
+        }).when(pdfConversionsService).streamPdfPagesAsZip(any(), anyString(), anyInt(), anyInt(), any(), any());
+
+        createService(10);
+        conversionJobService.submit(DOCUMENT_ID, "png", 0, 1, PageRenderOptions.defaults(), 0);
+        String low = conversionJobService.submit(DOCUMENT_ID, "png", 1, 1, PageRenderOptions.defaults(), 1).getData().getId();
+        String high = conversionJobService.submit(DOCUMENT_ID, "png", 2, 1, PageRenderOptions.defaults(), 5).getData().getId();
+        release.countDown();
+
+        awaitFinished(low);
+        awaitFinished(high);
+        assertEquals(List.of(0, 2, 1), executedPages);
+    }
+
+    @Test
+    void testSubmitRejectedWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(pdfConversionsService)
+                .streamPdfPagesAsZip(any(), anyString(), anyInt(), anyInt(), any(), any());
+
+        createService(1);
+        String running = conversionJobService.submit(DOCUMENT_ID, "png", 0, 1, PageRenderOptions.defaults(), 0).getData().getId();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (jobs.get(running).getStatus() != Constants.JOB_STATUS.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        conversionJobService.submit(DOCUMENT_ID, "png", 1, 1, PageRenderOptions.defaults(), 0);
+
+        assertThrows(JobQueueFullException.class,
+                () -> conversionJobService.submit(DOCUMENT_ID, "png", 2, 1, PageRenderOptions.defaults(), 0));
+        release.countDown();
+    }
+
+    @Test
+    void testConcurrentSubmitsDoNotOverfillTheQueue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(pdfConversionsService)
+                .streamPdfPagesAsZip(any(), anyString(), anyInt(), anyInt(), any(), any());
+        createService(2);
+        String running = conversionJobService.submit(DOCUMENT_ID, "png", 0, 1, PageRenderOptions.defaults(), 0).getData().getId();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (jobs.get(running).getStatus() != Constants.JOB_STATUS.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread submitter = new Thread(() -> {
+                try {
+                    start.await();
+                    conversionJobService.submit(DOCUMENT_ID, "png", 1, 1, PageRenderOptions.defaults(), 0);
+                    accepted.incrementAndGet();
+                } catch (JobQueueFullException | InterruptedException ignored) {
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        start.countDown();
+        for (Thread submitter : submitters)
+            submitter.join();
+        release.countDown();
+
+        assertEquals(2, accepted.get());
+        assertEquals(3, jobs.size());
+    }
+
+    @Test
+    void testPriorityIsClamped() {
+        createService(10);
+
+        assertEquals(ConversionJobService.MAX_PRIORITY, conversionJobService
+                .submit(DOCUMENT_ID, "png", 0, 1, PageRenderOptions.defaults(), 1000).getData().getPriority());
+        assertEquals(ConversionJobService.MIN_PRIORITY, conversionJobService
+                .submit(DOCUMENT_ID, "png", 0, 1, PageRenderOptions.defaults(), -5).getData().getPriority());
+    }
+
+    @Test
+    void testPurgeExpiredJobsDeletesResultsAndRecords() throws IOException {
+        createService(10);
+        ConversionJob job = new ConversionJob();
+        job.setId("old");
+        Path result = Files.createDirectories(tempDir.resolve(".jobs").resolve("old")).resolve("old.zip");
+        Files.write(result, RESULT);
+        when(conversionJobRepository.findByStatusInAndCompletedAtBefore(eq(List.of(Constants.JOB_STATUS.COMPLETED,
+                Constants.JOB_STATUS.FAILED)), any(LocalDateTime.class))).thenReturn(List.of(job));
+
+        conversionJobService.purgeExpiredJobs();
+
+        assertFalse(Files.exists(result.getParent()));
+        verify(conversionJobRepository).delete(job);
+    }
+
+    @Test
+    void testFailedJobRecordsError() throws Exception {
+        doAnswer(invocation -> {
+            throw new IOException("broken pdf");
+        }).when(pdfConversionsService).streamPdfPagesAsZip(any(), anyString(), anyInt(), anyInt(), any(), any());
+
+        String jobId = createService(10).submit(DOCUMENT_ID, "png", 0, -1, PageRenderOptions.defaults(), 0).getData().getId();
+
+        ConversionJob job = awaitFinished(jobId);
+        assertEquals(Constants.JOB_STATUS.FAILED, job.getStatus());
+        assertEquals("broken pdf", job.getErrorMessage());
+        assertFalse(Files.exists(tempDir.resolve(".jobs").resolve(jobId).resolve("result.part")));
+        assertThrows(ResourceNotFoundException.class, () -> conversionJobService.getCompletedJob(jobId));
+    }
+
+    @Test
+    void testGetJobNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> createService(10).getJob("missing"));
+    }
+}
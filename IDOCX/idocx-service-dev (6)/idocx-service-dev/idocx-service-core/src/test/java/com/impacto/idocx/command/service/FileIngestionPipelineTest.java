@@ -0,0 +1,94 @@
+package com.impacto.idocx.command.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileIngestionPipelineTest {
+    private static final int MAX_IN_FLIGHT = 3;
+
+    private FileIngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new FileIngestionPipeline(new MockEnvironment()
+                .withProperty("idocx.upload.pipeline.write-threads", "4")
+                .withProperty("idocx.upload.pipeline.max-in-flight", String.valueOf(MAX_IN_FLIGHT)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void testPersistsInRequestOrder() {
+        List<Integer> items = IntStream.range(0, 20).boxed().toList();
+        List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        List<FileIngestionPipeline.Outcome<Integer>> outcomes = pipeline.process(items,
+                item -> {
+                    Thread.sleep((20 - item) % 5);
+                    return item;
+                },
+                written -> written * 10,
+                digested -> {
+                    persisted.add(digested);
+                    return digested + 1;
+                });
+
+        assertEquals(IntStream.range(0, 20).map(i -> i * 10).boxed().toList(), persisted);
+        assertEquals(IntStream.range(0, 20).map(i -> i * 10 + 1).boxed().toList(),
+                outcomes.stream().map(FileIngestionPipeline.Outcome::getValue).toList());
+    }
+
+    @Test
+    void testFailureOfOneItemDoesNotStopTheBatch() {
+        List<FileIngestionPipeline.Outcome<String>> outcomes = pipeline.process(List.of("a", "bad", "c"),
+                item -> {
+                    if (item.equals("bad"))
+                        throw new IOException("cannot write " + item);
+                    return item;
+                },
+                written -> written.toUpperCase(),
+                digested -> digested);
+
+        assertTrue(outcomes.get(0).isSuccess());
+        assertEquals("A", outcomes.get(0).getValue());
+        assertFalse(outcomes.get(1).isSuccess());
+        assertEquals("cannot write bad", outcomes.get(1).getError().getMessage());
+        assertEquals("C", outcomes.get(2).getValue());
+    }
+
+    @Test
+    void testBoundsItemsInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+
+        pipeline.process(IntStream.range(0, 30).boxed().toList(),
+                item -> {
+                    maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return item;
+                },
+                written -> written,
+                digested -> {
+                    Thread.sleep(1);
+                    inFlight.decrementAndGet();
+                    return digested;
+                });
+
+        assertTrue(maxObserved.get() <= MAX_IN_FLIGHT, "observed " + maxObserved.get() + " items in flight");
+    }
+}
@@ -0,0 +1,190 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.FolderDeletionJobRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderDeletionJob;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.modelmapper.ModelMapper;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FolderDeletionServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private FolderDeletionJobRepository folderDeletionJobRepository;
+    private FolderTreeDao folderTreeDao;
+    private ContentStore contentStore;
+    private SuggestionService suggestionService;
+    private RenderedPageCache renderedPageCache;
+    private IoThrottle ioThrottle;
+    private FolderDeletionService folderDeletionService;
+
+    @BeforeEach
+    void setUp() {
+        folderDeletionJobRepository = mock(FolderDeletionJobRepository.class);
+        when(folderDeletionJobRepository.save(any(FolderDeletionJob.class))).thenAnswer(invocation -> {
+            FolderDeletionJob job = invocation.getArgument(0);
+            if (job.getId() == null) job.setId("job");
+            return job;
+        });
+        folderTreeDao = mock(FolderTreeDao.class);
+        when(folderTreeDao.streamSubtreeFiles(anyString())).thenAnswer(invocation -> Stream.empty());
+        when(folderTreeDao.streamSubtreeFolders(anyString())).thenAnswer(invocation -> Stream.empty());
+        contentStore = mock(ContentStore.class);
+        suggestionService = mock(SuggestionService.class);
+        renderedPageCache = mock(RenderedPageCache.class);
+        ioThrottle = mock(IoThrottle.class);
+        folderDeletionService = new FolderDeletionService(new MockEnvironment()
+                .withProperty("idocx.deletion.pool-size", "2")
+                .withProperty("idocx.deletion.batch-size", "2"),
+                folderDeletionJobRepository, folderTreeDao, contentStore, suggestionService, renderedPageCache,
+                ioThrottle, new ModelMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        folderDeletionService.shutdown();
+    }
+
+    @Test
+    void testRunDeletesRecordsThenTheDirectoryTree() throws IOException {
+        Path folder = tempDir.resolve("root/Invoices");
+        Files.createDirectories(folder.resolve("2024/March"));
+        for (int i = 0; i < 3; i++)
+            Files.writeString(folder.resolve("file" + i + ".txt"), "text");
+        Files.writeString(folder.resolve("2024/a.txt"), "text");
+        Files.writeString(folder.resolve("2024/March/b.txt"), "text");
+
+        FileMetadata stored = new FileMetadata("a.txt", "root/Invoices/2024", folder.resolve("2024/a.txt").toString());
+        stored.setId("stored");
+        FileMetadata blob = new FileMetadata("c.pdf", "root/Invoices", "/data/.cas/ab/cd/abcd");
+        blob.setId("blob");
+        blob.setTrash(true);
+        when(contentStore.isBlob(blob.getDirectoryName())).thenReturn(true);
+        when(folderTreeDao.streamSubtreeFiles(folder.toString())).thenAnswer(invocation -> Stream.of(stored, blob));
+        FolderMetadata subfolder = new FolderMetadata();
+        subfolder.setFolderName("2024");
+        when(folderTreeDao.streamSubtreeFolders(folder.toString())).thenAnswer(invocation -> Stream.of(subfolder));
+        when(folderTreeDao.deleteSubtree(folder.toString())).thenReturn(2L);
+
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderPath(folder.toString());
+        folderDeletionService.run(job);
+
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        assertFalse(Files.exists(folder));
+        assertEquals(5, job.getFilesDeleted());
+        assertEquals(0, job.getFilesFailed());
+        assertEquals(3, job.getDirectoriesDeleted());
+        assertEquals(2, job.getDocumentsRemoved());
+        verify(contentStore).releaseBlob(blob.getDirectoryName());
+        verify(contentStore, never()).releaseBlob(stored.getDirectoryName());
+        // the trashed file was no longer suggested
+        verify(suggestionService).removeFile(stored);
+        verify(suggestionService, never()).removeFile(blob);
+        verify(suggestionService).removeFolder(subfolder);
+        verify(renderedPageCache).invalidate("stored");
+        verify(renderedPageCache).invalidate("blob");
+    }
+
+    @Test
+    void testRunCompletesWhenTheDirectoryIsAlreadyGone() {
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderPath(tempDir.resolve("missing").toString());
+
+        folderDeletionService.run(job);
+
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        verify(folderTreeDao).deleteSubtree(job.getFolderPath());
+    }
+
+    @Test
+    void testRunFailsWhenRecordsCannotBeRemoved() {
+        when(folderTreeDao.deleteSubtree(anyString())).thenThrow(new IllegalStateException("connection lost"));
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderPath(tempDir.toString());
+
+        folderDeletionService.run(job);
+
+        assertEquals(Constants.JOB_STATUS.FAILED, job.getStatus());
+        assertEquals("connection lost", job.getErrorMessage());
+    }
+
+    @Test
+    void testRunDeletesTheTrashedDirectoryAndFilesTrashedOnTheirOwn() throws IOException {
+        Path trashed = tempDir.resolve(".trash/folders/folder");
+        Files.createDirectories(trashed);
+        Files.writeString(trashed.resolve("a.txt"), "text");
+        Path trashedFile = tempDir.resolve(".trash/files/file");
+        Files.createDirectories(trashedFile.getParent());
+        Files.writeString(trashedFile, "text");
+        FileMetadata alone = new FileMetadata("b.txt", "root/Invoices", trashedFile.toString());
+        alone.setTrash(true);
+        alone.setTrashedFrom(tempDir.resolve("root/Invoices/b.txt").toString());
+        when(folderTreeDao.streamSubtreeFiles("root/Invoices")).thenAnswer(invocation -> Stream.of(alone));
+
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderPath("root/Invoices");
+        job.setDirectory(trashed.toString());
+        folderDeletionService.run(job);
+
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        assertFalse(Files.exists(trashed));
+        assertFalse(Files.exists(trashedFile));
+        verify(folderTreeDao).deleteSubtree("root/Invoices");
+        // a purge asked for explicitly is not paced
+        verify(ioThrottle, never()).acquire();
+    }
+
+    @Test
+    void testThrottledRunPacesEveryFileDelete() throws IOException {
+        Path trashed = tempDir.resolve(".trash/folders/folder");
+        Files.createDirectories(trashed);
+        for (int i = 0; i < 3; i++)
+            Files.writeString(trashed.resolve("file" + i + ".txt"), "text");
+
+        FolderDeletionJob job = new FolderDeletionJob();
+        job.setFolderPath("root/Invoices");
+        job.setDirectory(trashed.toString());
+        job.setThrottled(true);
+        folderDeletionService.run(job);
+
+        assertEquals(Constants.JOB_STATUS.COMPLETED, job.getStatus());
+        verify(ioThrottle, times(3)).acquire();
+    }
+
+    @Test
+    void testSubmitQueuesAJob() {
+        FolderMetadata folder = new FolderMetadata();
+        folder.setId("folder");
+        folder.setFolderPath("root/Invoices");
+
+        FolderDeletionJobDto job = folderDeletionService.submit(folder, tempDir.resolve("missing"), false);
+
+        assertEquals("job", job.getId());
+        assertEquals("folder", job.getFolderId());
+        assertEquals(Constants.JOB_STATUS.QUEUED, job.getStatus());
+    }
+}
@@ -0,0 +1,60 @@
+package com.impacto.idocx.command.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FolderDocumentsMigrationTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void testMigrateReplacesEmbeddedDocumentsWithIds() {
+        ObjectId fileId = new ObjectId();
+        Document folder = new Document("_id", new ObjectId()).append("folderPath", "abc/Workspace");
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(FolderDocumentsMigration.FOLDER_COLLECTION)))
+                .thenReturn(Stream.of(folder));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(FolderDocumentsMigration.FILE_COLLECTION)))
+                .thenReturn(List.of(new Document("_id", fileId)));
+
+        int migrated = new FolderDocumentsMigration(new MockEnvironment(), mongoTemplate).migrate();
+
+        assertEquals(1, migrated);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(FolderDocumentsMigration.FOLDER_COLLECTION));
+        Document updateObject = update.getValue().getUpdateObject();
+        assertTrue(((Document) updateObject.get("$unset")).containsKey("documents"));
+        assertTrue(updateObject.get("$addToSet").toString().contains(fileId.toHexString()));
+    }
+
+    @Test
+    void testRunDoesNothingWhenDisabled() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("idocx.migration.folder-documents.enabled", "false");
+
+        new FolderDocumentsMigration(environment, mongoTemplate).run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
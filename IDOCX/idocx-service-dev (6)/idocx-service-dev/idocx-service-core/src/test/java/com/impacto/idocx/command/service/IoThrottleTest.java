@@ -0,0 +1,34 @@
+package com.impacto.idocx.command.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IoThrottleTest {
+
+    @Test
+    void testAcquirePacesOperations() {
+        IoThrottle ioThrottle = new IoThrottle(new MockEnvironment().withProperty("idocx.background-io.ops-per-second", "100"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++)
+            ioThrottle.acquire();
+
+        // the first operation goes straight away, each further one waits 10 ms
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 45);
+    }
+
+    @Test
+    void testZeroTurnsTheLimitOff() {
+        IoThrottle ioThrottle = new IoThrottle(new MockEnvironment().withProperty("idocx.background-io.ops-per-second", "0"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++)
+            ioThrottle.acquire();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+}
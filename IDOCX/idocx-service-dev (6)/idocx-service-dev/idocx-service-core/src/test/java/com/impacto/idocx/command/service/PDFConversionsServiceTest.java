@@ -2,10 +2,15 @@ package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
-import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.MetadataCache;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.exceptions.FailedToCompressResourcesException;
 import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import com.impacto.idocx.command.model.ConversionOutput;
+import com.impacto.idocx.command.model.PageRenderOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -20,11 +25,15 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.exceptions.misusing.PotentialStubbingProblem;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
@@ -34,6 +43,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
@@ -42,7 +53,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -61,7 +74,18 @@ class PDFConversionsServiceTest {
     public static final String PATH_THAT_DOES_NOT_EXIST_FILE_PDF = "/path/that/does/not/exist/file.pdf";
     public static final String PATH = "/path/to/directory";
     @Mock
-    private FileMetadataRepository fileMetadataRepository;
+    private MetadataCache metadataCache;
+
+    @Spy
+    private PdfDocumentLoader pdfDocumentLoader = new PdfDocumentLoader(new MockEnvironment());
+
+    @Spy
+    private PDFRenderingService pdfRenderingService = new PDFRenderingService(new MockEnvironment(), pdfDocumentLoader);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private RenderedPageCache renderedPageCache = new RenderedPageCache(new MockEnvironment(), meterRegistry);
 
     @InjectMocks
     private PDFConversionsService pdfEditConversionService;
@@ -81,7 +105,7 @@ class PDFConversionsServiceTest {
     @Test
     void testConvertImageToPdfAndReturnResponse_FileNotFound() {
         String documentId = "nonexistent";
-        when(fileMetadataRepository.findById(documentId)).thenReturn(Optional.empty());
+        when(metadataCache.findFile(documentId)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> pdfEditConversionService.convertImageToPdf(documentId));
     }
@@ -92,7 +116,7 @@ class PDFConversionsServiceTest {
         String documentId = "existing";
         FileMetadata mockFileMetadata = new FileMetadata();
         mockFileMetadata.setDirectoryName(SRC_TEST_RESOURCES_TEST_IMAGE_PNG);
-        when(fileMetadataRepository.findById(documentId)).thenReturn(Optional.of(mockFileMetadata));
+        when(metadataCache.findFile(documentId)).thenReturn(Optional.of(mockFileMetadata));
 
         assertThrows(ResourceNotFoundException.class, () -> pdfEditConversionService.convertImageToPdf(documentId));
     }
@@ -112,7 +136,7 @@ class PDFConversionsServiceTest {
         mockMetadata.setId(documentId);
         mockMetadata.setDirectoryName(tempFile.getPath());
 
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(mockMetadata));
+        when(metadataCache.findFile(anyString())).thenReturn(Optional.of(mockMetadata));
 
         try {
             GenericResponse<List<byte[]>> response = pdfEditConversionService.convertPdfAsZip(documentId);
@@ -128,7 +152,7 @@ class PDFConversionsServiceTest {
     @Test
     void testConvertPdfAsZipThrowsFailedToCompressResourcesException() {
 
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(new FileMetadata() {
+        when(metadataCache.findFile(anyString())).thenReturn(Optional.of(new FileMetadata() {
             @Override
             public String getDirectoryName() {
                 return PATH_THAT_DOES_NOT_EXIST_FILE_PDF;
@@ -147,7 +171,7 @@ class PDFConversionsServiceTest {
         fileMetadata.setFileName("sample.pdf");
         fileMetadata.setDirectoryName(PATH);
 
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(fileMetadata));
+        when(metadataCache.findFile(anyString())).thenReturn(Optional.of(fileMetadata));
 
         File response = pdfEditConversionService.getFileById("1");
 
@@ -156,8 +180,8 @@ class PDFConversionsServiceTest {
 
 
     @Test
-    void testConvertPdfToWordBytes_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testConvertPdfToWordBytes_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.convertPdfToWordBytes(DOCUMENT_ID)).isInstanceOf(ResourceNotFoundException.class);
     }
@@ -178,7 +202,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.convertPdfToWordBytes(ID);
         assertNotNull(result);
@@ -206,7 +230,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.convertPdfToJpegOrPng(ID, "jpeg", 1, 2);
         assertNotNull(result);
@@ -233,7 +257,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.conversion(ID, format, page, size);
         assertNotNull(result);
@@ -258,7 +282,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         // Run the test
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.splitPDF(ID, "single", "3");
@@ -283,7 +307,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.splitPDF(ID, "range", "3-6");
         assertNotNull(result);
@@ -307,7 +331,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.splitPDF(ID, "random", "3,6");
         assertNotNull(result);
@@ -317,15 +341,15 @@ class PDFConversionsServiceTest {
     }
 
     @Test
-    void testSplitPDFAndConvertPagesToText_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testSplitPDFAndConvertPagesToText_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.splitPDF(DOCUMENT_ID, "splitType", "splitNumbers")).isInstanceOf(ResourceNotFoundException.class);
     }
 
     @Test
-    void testConvertImageToPdfAndReturnResponse_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testConvertImageToPdfAndReturnResponse_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.convertImageToPdf(DOCUMENT_ID)).isInstanceOf(ResourceNotFoundException.class);
     }
@@ -345,7 +369,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<byte[]> result = pdfEditConversionService
                 .rotatePDF(ID);
@@ -371,7 +395,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result1 = pdfEditConversionService.conversion(ID, "ZIP", 0, 0);
         final GenericResponse<List<byte[]>> result2 = pdfEditConversionService.conversion(ID, "png", 0, 0);
@@ -406,7 +430,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setFilePath(FILE_PATH);
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(fileMetadata1));
+        when(metadataCache.findFile(anyString())).thenReturn(Optional.of(fileMetadata1));
 
         GenericResponse<byte[]> response = pdfEditConversionService.compressPDF(ID1);
 
@@ -416,7 +440,7 @@ class PDFConversionsServiceTest {
         assertNotNull(response.getData());
 
 
-        verify(fileMetadataRepository).findById(ID1);
+        verify(metadataCache).findFile(ID1);
 
 
     }
@@ -460,7 +484,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         // Run the test
         final GenericResponse<byte[]> result = pdfEditConversionService.rotatePDF(ID);
@@ -483,7 +507,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         fileMetadata1.setDirectoryName(imageFile.getAbsolutePath());
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
         final GenericResponse<byte[]> response = pdfEditConversionService.convertImageToPdf(ID);
 
         assertEquals(Constants.RESPONSE_STATUS.OK.getValue(), response.getStatus());
@@ -492,8 +516,8 @@ class PDFConversionsServiceTest {
     }
 
     @Test
-    void testRotatePDFAndReturnResponse_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testRotatePDFAndReturnResponse_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.rotatePDF(DOCUMENT_ID)).isInstanceOf(ResourceNotFoundException.class);
     }
@@ -505,7 +529,7 @@ class PDFConversionsServiceTest {
         mockFileMetadata.setFilePath(temporaryFile.getAbsolutePath());
         mockFileMetadata.setDirectoryName(temporaryFile.getParent());
         mockFileMetadata.setDocumentId(DOCUMENT_ID);
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(mockFileMetadata));
+        when(metadataCache.findFile(anyString())).thenReturn(Optional.of(mockFileMetadata));
         assertThrows(PotentialStubbingProblem.class, () -> pdfEditConversionService.rotatePDF(null));
     }
 
@@ -524,7 +548,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.removePagesFromPDF(ID, "single", "6");
         assertNotNull(result);
@@ -548,7 +572,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.removePagesFromPDF(ID, "range", "6-8");
         assertNotNull(result);
@@ -572,7 +596,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.removePagesFromPDF(ID, "random", "6,8");
         assertNotNull(result);
@@ -582,16 +606,16 @@ class PDFConversionsServiceTest {
     }
 
     @Test
-    void testRemovePagesFromPDF_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testRemovePagesFromPDF_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.removePagesFromPDF(DOCUMENT_ID, "removeType", "removeNumber")).isInstanceOf(ResourceNotFoundException.class);
     }
 
 
     @Test
-    void testCompressPDFAndReturnResponse_FileMetadataRepositoryReturnsAbsent() {
-        when(fileMetadataRepository.findById(DOCUMENT_ID)).thenReturn(Optional.empty());
+    void testCompressPDFAndReturnResponse_MetadataCacheReturnsAbsent() {
+        when(metadataCache.findFile(DOCUMENT_ID)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> pdfEditConversionService.compressPDF(DOCUMENT_ID)).isInstanceOf(ResourceNotFoundException.class);
     }
@@ -610,7 +634,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(xlsFile.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(anyString())).thenReturn(fileMetadata);
+        when(metadataCache.findFile(anyString())).thenReturn(fileMetadata);
 
         // Execute
         GenericResponse<byte[]> response = pdfEditConversionService.convertXlsToPdf("id");
@@ -634,7 +658,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         fileMetadata1.setDirectoryName(tiffFile.getAbsolutePath());
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
         final GenericResponse<byte[]> response = pdfEditConversionService.convertTiffToPdf(ID);
 
         assertNotNull(response);
@@ -659,7 +683,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDocumentId(DOCUMENT_ID);
 
         final Optional<FileMetadata> fileMetadata=Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(anyString())).thenReturn(fileMetadata);
+        when(metadataCache.findFile(anyString())).thenReturn(fileMetadata);
 
         GenericResponse<List<byte[]>> result=pdfEditConversionService.convertPdfToDocxBytes(DOCUMENT_ID);
 
@@ -682,7 +706,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDocumentId(DOCUMENT_ID);
 
         final Optional<FileMetadata> fileMetadata=Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(anyString())).thenReturn(fileMetadata);
+        when(metadataCache.findFile(anyString())).thenReturn(fileMetadata);
 
         final GenericResponse<byte[]> response = pdfEditConversionService.convertTextToPdf(DOCUMENT_ID);
 
@@ -708,7 +732,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.convertPdfToTiff(ID, 1, 2);
         assertNotNull(result);
@@ -717,6 +741,66 @@ class PDFConversionsServiceTest {
         assertNotNull(result.getData());
     }
 
+    @Test
+    void testStreamPdfPagesAsZip() throws Exception {
+        File file = tempDir.resolve(TEST_PDF).toFile();
+
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            doc.addPage(new PDPage());
+            doc.addPage(new PDPage());
+            doc.save(file);
+        }
+
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setId(ID);
+        fileMetadata.setDirectoryName(file.getAbsolutePath());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pdfEditConversionService.streamPdfPagesAsZip(fileMetadata, "png", 2, -1, PageRenderOptions.defaults(), outputStream);
+
+        List<String> entryNames = new java.util.ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entryNames.add(entry.getName());
+                assertNotNull(ImageIO.read(zis));
+            }
+        }
+        assertEquals(List.of("page-2.png", "page-3.png"), entryNames);
+    }
+
+    @Test
+    void testConvertPdfToJpegOrPng_ServesCachedPages() throws Exception {
+        File file = tempDir.resolve(TEST_PDF).toFile();
+
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            doc.addPage(new PDPage());
+            doc.save(file);
+        }
+
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setId(ID);
+        fileMetadata.setDirectoryName(file.getAbsolutePath());
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
+
+        GenericResponse<List<byte[]>> first = pdfEditConversionService.convertPdfToJpegOrPng(ID, "PNG", 1, 1);
+        GenericResponse<List<byte[]>> second = pdfEditConversionService.convertPdfToJpegOrPng(ID, "PNG", 1, 2);
+
+        assertEquals(1, first.getData().size());
+        assertEquals(2, second.getData().size());
+        assertArrayEquals(first.getData().get(0), second.getData().get(0));
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2, meterRegistry.get("idocx.render.cache.requests").tag("result", "miss").counter().count());
+        verify(pdfRenderingService).renderPages(any(File.class), eq(List.of(1)), eq("PNG"), any(PageRenderOptions.class), any());
+    }
+
+    @Test
+    void testGetStreamablePdf_UnsupportedFormat() {
+        assertThrows(UnsupportedException.class, () -> pdfEditConversionService.getStreamablePdf(ID, "DOCX"));
+    }
+
     @Test
     void testConvertToXlsx() throws Exception {
 
@@ -734,7 +818,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<List<byte[]>> result = pdfEditConversionService.convertPdfToXlsxBytes(ID);
         assertNotNull(result);
@@ -759,7 +843,7 @@ class PDFConversionsServiceTest {
         fileMetadata1.setDirectoryName(file.getAbsolutePath());
         fileMetadata1.setDocumentId(DOCUMENT_ID);
         final Optional<FileMetadata> fileMetadata = Optional.of(fileMetadata1);
-        when(fileMetadataRepository.findById(ID)).thenReturn(fileMetadata);
+        when(metadataCache.findFile(ID)).thenReturn(fileMetadata);
 
         final GenericResponse<byte[]> result = pdfEditConversionService.mergePdfDocuments(ID);
         assertNotNull(result);
@@ -767,4 +851,46 @@ class PDFConversionsServiceTest {
         assertEquals(Constants.RESPONSE_MESSAGE.SUCCESS.getValue(), result.getMessage());
         assertNotNull(result.getData());
     }
+
+    @Test
+    void testRotatePdfWritesToOutputStream() throws Exception {
+        File file = tempDir.resolve(TEST_PDF).toFile();
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            doc.addPage(new PDPage());
+            doc.save(file);
+        }
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setDirectoryName(file.getAbsolutePath());
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionOutput output = pdfEditConversionService.rotatePDF(ID, out);
+
+        assertEquals("application/pdf", output.getContentType());
+        assertEquals(2, output.getTotalPages());
+        try (PDDocument rotated = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(2, rotated.getNumberOfPages());
+            assertEquals(90, rotated.getPage(0).getRotation());
+        }
+    }
+
+    @Test
+    void testConvertXlsToPdfReportsSpreadsheetContentType() throws Exception {
+        File file = tempDir.resolve("test.xlsx").toFile();
+        try (Workbook workbook = new XSSFWorkbook(); FileOutputStream fos = new FileOutputStream(file)) {
+            workbook.createSheet("Sheet1").createRow(0).createCell(0).setCellValue("value");
+            workbook.write(fos);
+        }
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setDirectoryName(file.getAbsolutePath());
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionOutput output = pdfEditConversionService.convertXlsToPdf(ID, out);
+
+        assertEquals(ConversionOutput.XLSX_CONTENT_TYPE, output.getContentType());
+        assertEquals(ID + ".xlsx", output.getFileName());
+        assertTrue(out.size() > 0);
+    }
 }
@@ -0,0 +1,146 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.exceptions.ErrorCode;
+import com.impacto.idocx.command.exceptions.LimitExceedingException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PDFRenderingServiceTest {
+    public static final int PAGES = 7;
+    public static final float DPI = 72;
+
+    @TempDir
+    Path tempDir;
+
+    private PDFRenderingService pdfRenderingService;
+    private File sourceFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("idocx.render.pool-size", "4")
+                .withProperty("idocx.render.parallelism", "3");
+        pdfRenderingService = new PDFRenderingService(environment, new PdfDocumentLoader(environment));
+        sourceFile = writePdf("pages.pdf", PAGES);
+    }
+
+    private File writePdf(String name, int pages) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage(new PDRectangle(100 + 10 * i, 50)));
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    @AfterEach
+    void tearDown() {
+        pdfRenderingService.shutdown();
+    }
+
+    private static List<Integer> pageRange(int startPage, int endPage) {
+        return IntStream.range(startPage, endPage).boxed().toList();
+    }
+
+    @Test
+    void testRenderPagesReturnsPagesInOrder() throws IOException {
+        List<Integer> renderedPages = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+
+        pdfRenderingService.renderPages(sourceFile, pageRange(0, PAGES), "PNG", DPI, (pageIndex, image) -> {
+            renderedPages.add(pageIndex);
+            BufferedImage bim = ImageIO.read(new ByteArrayInputStream(image));
+            widths.add(bim.getWidth());
+        });
+
+        assertEquals(pageRange(0, PAGES), renderedPages);
+        for (int i = 0; i < PAGES; i++) {
+            assertEquals(100 + 10 * i, widths.get(i));
+        }
+    }
+
+    @Test
+    void testRenderPagesWithFewerPoolThreadsThanParallelism() throws IOException {
+        File longFile = writePdf("long.pdf", 20);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("idocx.render.pool-size", "2")
+                .withProperty("idocx.render.parallelism", "4");
+        PDFRenderingService smallPool = new PDFRenderingService(environment, new PdfDocumentLoader(environment));
+        ExecutorService requests = Executors.newFixedThreadPool(3);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                List<Future<List<Integer>>> renders = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    renders.add(requests.submit(() -> {
+                        List<Integer> renderedPages = new ArrayList<>();
+                        smallPool.renderPages(longFile, pageRange(0, 20), "PNG", DPI,
+                                (pageIndex, image) -> renderedPages.add(pageIndex));
+                        return renderedPages;
+                    }));
+                }
+                for (Future<List<Integer>> render : renders)
+                    assertEquals(pageRange(0, 20), render.get());
+            });
+        } finally {
+            requests.shutdownNow();
+            smallPool.shutdown();
+        }
+    }
+
+    @Test
+    void testRenderPagesSequentiallyForSinglePage() throws IOException {
+        List<Integer> renderedPages = new ArrayList<>();
+
+        pdfRenderingService.renderPages(sourceFile, List.of(4), "JPEG", DPI, (pageIndex, image) -> renderedPages.add(pageIndex));
+
+        assertEquals(List.of(4), renderedPages);
+    }
+
+    @Test
+    void testCountPages() throws IOException {
+        assertEquals(PAGES, pdfRenderingService.countPages(sourceFile));
+    }
+
+    @Test
+    void testRenderPagesPropagatesWorkerFailure() {
+        File missingFile = tempDir.resolve("missing.pdf").toFile();
+
+        assertThrows(IOException.class, () -> pdfRenderingService.renderPages(missingFile, pageRange(0, PAGES),
+                "PNG", DPI, (pageIndex, image) -> {
+                }));
+    }
+
+    @Test
+    void testRenderPagesPropagatesConsumerFailure() {
+        assertThrows(LimitExceedingException.class, () -> pdfRenderingService.renderPages(sourceFile, pageRange(0, PAGES),
+                "PNG", DPI, (pageIndex, image) -> {
+                    throw new LimitExceedingException(ErrorCode.LIMIT_EXCEEDING_EXCEPTION, "limit");
+                }));
+    }
+}
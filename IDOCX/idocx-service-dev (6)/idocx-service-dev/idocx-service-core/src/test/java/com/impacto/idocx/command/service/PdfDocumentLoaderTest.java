@@ -0,0 +1,88 @@
+package com.impacto.idocx.command.service;
+
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfDocumentLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path scratchDir;
+    private PdfDocumentLoader pdfDocumentLoader;
+
+    @BeforeEach
+    void setUp() {
+        scratchDir = tempDir.resolve("scratch");
+        pdfDocumentLoader = new PdfDocumentLoader(new MockEnvironment()
+                .withProperty("idocx.pdf.max-main-memory-bytes", "4096")
+                .withProperty("idocx.pdf.scratch-dir", scratchDir.toString()));
+    }
+
+    @Test
+    void testMemoryUsageSettingFromEnvironment() {
+        assertEquals(4096, pdfDocumentLoader.getMemoryUsageSetting().getMaxMainMemoryBytes());
+        assertEquals(scratchDir.toFile(), pdfDocumentLoader.getMemoryUsageSetting().getTempDir());
+        assertTrue(Files.isDirectory(scratchDir));
+    }
+
+    @Test
+    void testLargeStreamsSpillToScratchFile() throws IOException {
+        try (PDDocument document = pdfDocumentLoader.newDocument()) {
+            PDStream stream = new PDStream(document);
+            try (OutputStream out = stream.createOutputStream()) {
+                out.write(new byte[256 * 1024]);
+            }
+            try (Stream<Path> scratchFiles = Files.list(scratchDir)) {
+                assertTrue(scratchFiles.findAny().isPresent());
+            }
+        }
+    }
+
+    @Test
+    void testLoadAndMerge() throws IOException {
+        File first = createPdf("first.pdf", 2);
+        File second = createPdf("second.pdf", 3);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PDFMergerUtility mergerUtility = new PDFMergerUtility();
+        mergerUtility.setDestinationStream(outputStream);
+        mergerUtility.addSource(first);
+        mergerUtility.addSource(second);
+        pdfDocumentLoader.merge(mergerUtility);
+
+        File merged = tempDir.resolve("merged.pdf").toFile();
+        Files.write(merged.toPath(), outputStream.toByteArray());
+        try (PDDocument document = pdfDocumentLoader.load(merged)) {
+            assertEquals(5, document.getNumberOfPages());
+        }
+    }
+
+    private File createPdf(String name, int pages) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
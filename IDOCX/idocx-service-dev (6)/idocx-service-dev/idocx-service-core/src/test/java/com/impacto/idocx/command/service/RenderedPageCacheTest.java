@@ -0,0 +1,151 @@
+package com.impacto.idocx.command.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderedPageCacheTest {
+    public static final String DOCUMENT_ID = "65f1c0ffee";
+    public static final byte[] IMAGE = {1, 2, 3, 4};
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RenderedPageCache renderedPageCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        renderedPageCache = cache(1024);
+    }
+
+    private RenderedPageCache cache(long maxDiskBytes) {
+        return new RenderedPageCache(new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.render.cache.max-memory-bytes", "10")
+                .withProperty("idocx.render.cache.max-disk-bytes", String.valueOf(maxDiskBytes)), meterRegistry);
+    }
+
+    private static RenderedPageCache.PageKey key(int pageIndex) {
+        return new RenderedPageCache.PageKey(DOCUMENT_ID, 1, pageIndex, "300dpi", "PNG");
+    }
+
+    @Test
+    void testPutAndGetFromMemory() {
+        renderedPageCache.put(key(0), renderedPageCache.generation(DOCUMENT_ID), IMAGE);
+
+        assertTrue(renderedPageCache.contains(key(0)));
+        assertArrayEquals(IMAGE, renderedPageCache.get(key(0)));
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("tier", "memory").counter().count());
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testEvictedPageIsServedFromDisk() {
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.put(key(0), generation, IMAGE);
+        renderedPageCache.put(key(1), generation, IMAGE);
+        renderedPageCache.put(key(2), generation, IMAGE);
+
+        assertEquals(8, renderedPageCache.memoryBytes());
+        assertArrayEquals(IMAGE, renderedPageCache.get(key(0)));
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("tier", "disk").counter().count());
+    }
+
+    @Test
+    void testInvalidateRemovesBothTiers() {
+        renderedPageCache.put(key(0), renderedPageCache.generation(DOCUMENT_ID), IMAGE);
+
+        renderedPageCache.invalidate(DOCUMENT_ID);
+
+        assertFalse(renderedPageCache.contains(key(0)));
+        assertNull(renderedPageCache.get(key(0)));
+        assertEquals(0, renderedPageCache.memoryBytes());
+        assertEquals(0, renderedPageCache.diskBytes());
+        assertFalse(Files.exists(tempDir.resolve(".cache/pages").resolve(DOCUMENT_ID)));
+    }
+
+    @Test
+    void testDiskTierEvictsLeastRecentlyUsedPages() {
+        renderedPageCache = cache(8);
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.put(key(0), generation, IMAGE);
+        renderedPageCache.put(key(1), generation, IMAGE);
+        renderedPageCache.put(key(2), generation, IMAGE);
+
+        assertEquals(8, renderedPageCache.diskBytes());
+        assertNull(renderedPageCache.get(key(0)));
+        assertArrayEquals(IMAGE, renderedPageCache.get(key(1)));
+    }
+
+    @Test
+    void testDiskTierIsIndexedAndTrimmedOnStartup() {
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.put(key(0), generation, IMAGE);
+        renderedPageCache.put(key(1), generation, IMAGE);
+        renderedPageCache.put(key(2), generation, IMAGE);
+
+        RenderedPageCache restarted = cache(8);
+
+        assertEquals(8, restarted.diskBytes());
+        restarted.invalidate(DOCUMENT_ID);
+        assertEquals(0, restarted.diskBytes());
+    }
+
+    @Test
+    void testPutIgnoresPagesRenderedBeforeInvalidation() {
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.invalidate(DOCUMENT_ID);
+
+        renderedPageCache.put(key(0), generation, IMAGE);
+
+        assertFalse(renderedPageCache.contains(key(0)));
+        assertFalse(Files.exists(tempDir.resolve(".cache/pages").resolve(DOCUMENT_ID)));
+    }
+
+    @Test
+    void testInvalidatingAnotherDocumentKeepsTheGeneration() {
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.invalidate("another");
+
+        renderedPageCache.put(key(0), generation, IMAGE);
+
+        assertTrue(renderedPageCache.contains(key(0)));
+    }
+
+    @Test
+    void testForgottenInvalidationsStillDropOlderPages() {
+        long generation = renderedPageCache.generation(DOCUMENT_ID);
+        renderedPageCache.invalidate(DOCUMENT_ID);
+        for (int i = 0; i < RenderedPageCache.MAX_TRACKED_INVALIDATIONS; i++)
+            renderedPageCache.invalidate("document" + i);
+
+        renderedPageCache.put(key(0), generation, IMAGE);
+        assertFalse(renderedPageCache.contains(key(0)));
+
+        renderedPageCache.put(key(0), renderedPageCache.generation(DOCUMENT_ID), IMAGE);
+        assertTrue(renderedPageCache.contains(key(0)));
+    }
+
+    @Test
+    void testUnsafeDocumentIdIsNotCached() {
+        RenderedPageCache.PageKey key = new RenderedPageCache.PageKey("../escape", 1, 0, "300dpi", "PNG");
+
+        renderedPageCache.put(key, renderedPageCache.generation("../escape"), IMAGE);
+
+        assertFalse(renderedPageCache.contains(key));
+        assertFalse(Files.exists(tempDir.resolve(".cache/escape")));
+    }
+}
@@ -2,16 +2,23 @@ package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
 import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.CursorPage;
 import com.impacto.idocx.command.dao.FileMetadataRepository;
 import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.KeysetPager;
+import com.impacto.idocx.command.dao.ResourceStatusDao;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.FolderDeletionJobDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
 import com.impacto.idocx.command.dtos.IdsRequestDto;
+import com.impacto.idocx.command.dtos.ResourceStatusResultDto;
 import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.exceptions.ErrorCode;
 import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
 import com.impacto.idocx.command.exceptions.UnsupportedException;
 import com.impacto.idocx.command.model.ResourceManagementRequest;
+import org.assertj.core.api.InstanceOfAssertFactories;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
@@ -19,16 +26,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.mongodb.core.query.Criteria;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -37,10 +45,12 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -55,8 +65,6 @@ class ResourceManagementServiceTest {
     public static final String ID_2 = "id2";
     public static final String TRASH = "trash";
     public static final String FILE_TXT = "test.txt";
-    public static final String TEST_FILE_SHOULD_EXIST_BEFORE_DELETION_ATTEMPT = "Test file should exist before deletion attempt.";
-    public static final String TEST_FILE_SHOULD_BE_DELETED_AFTER_METHOD_CALL = "Test file should be deleted after method call.";
     public static final boolean TRUE = true;
     public static final int STATUS100 = 100;
     public static final String UNSUPPORTED_ACTION = "UNSUPPORTED_ACTION";
@@ -66,6 +74,16 @@ class ResourceManagementServiceTest {
     private FolderMetadataRepository folderMetadataRepository;
     @Mock
     private ModelMapper mockModelMapper;
+    @Mock
+    private KeysetPager keysetPager;
+    @Mock
+    private SuggestionService suggestionService;
+    @Mock
+    private ResourceStatusDao resourceStatusDao;
+    @Mock
+    private TrashService trashService;
+    @Mock
+    private FolderDeletionService folderDeletionService;
     @InjectMocks
     private ResourceManagementService resourceManagementService;
     private List<String> ids;
@@ -82,41 +100,138 @@ class ResourceManagementServiceTest {
         ResourceManagementRequest trash1 = new ResourceManagementRequest(TRASH, DOCUMENT, ids, TRUE);
         ResourceManagementRequest trash2 = new ResourceManagementRequest(TRASH, FOLDER, ids, TRUE);
 
-        FileMetadata fileMetadata = new FileMetadata(DOCUMENT, DIRECTORY_PATH + DOCUMENT, DIRECTORY_PATH);
-        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, List.of(fileMetadata));
+        FileMetadata fileMetadata1 = new FileMetadata(DOCUMENT, DIRECTORY_PATH + DOCUMENT, DIRECTORY_PATH);
+        fileMetadata1.setId(ID_1);
+        FileMetadata fileMetadata2 = new FileMetadata(DOCUMENT, DIRECTORY_PATH + DOCUMENT, DIRECTORY_PATH);
+        fileMetadata2.setId(ID_2);
+        FolderMetadata folderMetadata1 = createFolderMetadataTest(FOLDER, List.of(fileMetadata1));
+        folderMetadata1.setId(ID_1);
+        FolderMetadata folderMetadata2 = createFolderMetadataTest(FOLDER, List.of(fileMetadata2));
+        folderMetadata2.setId(ID_2);
         FileMetaDataDto fileMetaDataDto = createFileMetaDataDtoTest(DOCUMENT);
         FolderMetadataDto folderMetadataDto = createFolderMetadataDtoTest(FOLDER);
-        List<FileMetaDataDto> fileMetaDataDtos = Arrays.asList(fileMetaDataDto, fileMetaDataDto);
-        List<FolderMetadataDto> folderMetadataDtos = Arrays.asList(folderMetadataDto, folderMetadataDto);
-
-        GenericResponse<List<FileMetaDataDto>> expectedFileDtoResponse = new GenericResponse<>(STATUS100, SUCCESS, fileMetaDataDtos);
-        GenericResponse<List<FolderMetadataDto>> expectedFolderDtoResponse = new GenericResponse<>(STATUS100, SUCCESS, folderMetadataDtos);
-
-        when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(fileMetadata));
-        when(fileMetadataRepository.save(any())).thenReturn(fileMetadata);
-        when(folderMetadataRepository.findByFolderPath(anyString())).thenReturn(Optional.of(folderMetadata));
-        when(folderMetadataRepository.findById(anyString())).thenReturn(Optional.of(folderMetadata));
-        when(folderMetadataRepository.save(any())).thenReturn(folderMetadata);
-        when(resourceManagementService.convertToDto(fileMetadata, FileMetaDataDto.class)).thenReturn(fileMetaDataDto);
-        when(resourceManagementService.convertToDto(folderMetadata, FolderMetadataDto.class)).thenReturn(folderMetadataDto);
+        List<ResourceStatusResultDto> expectedFileResults = List.of(
+                new ResourceStatusResultDto(ID_1, Constants.UPDATE_STATUS.UPDATED, fileMetaDataDto, null),
+                new ResourceStatusResultDto(ID_2, Constants.UPDATE_STATUS.UPDATED, fileMetaDataDto, null));
+        List<ResourceStatusResultDto> expectedFolderResults = List.of(
+                new ResourceStatusResultDto(ID_1, Constants.UPDATE_STATUS.UPDATED, folderMetadataDto, null),
+                new ResourceStatusResultDto(ID_2, Constants.UPDATE_STATUS.UPDATED, folderMetadataDto, null));
+
+        when(resourceStatusDao.findByIds(ids, FileMetadata.class)).thenReturn(List.of(fileMetadata1, fileMetadata2));
+        when(resourceStatusDao.findByIds(ids, FolderMetadata.class)).thenReturn(List.of(folderMetadata1, folderMetadata2));
+        when(mockModelMapper.map(any(FileMetadata.class), eq(FileMetaDataDto.class))).thenReturn(fileMetaDataDto);
+        when(mockModelMapper.map(any(FolderMetadata.class), eq(FolderMetadataDto.class))).thenReturn(folderMetadataDto);
 
         GenericResponse<?> actualResponse = resourceManagementService.updateResourceStatus(favourite1);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFileDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFileResults);
+        assertTrue(fileMetadata1.isFavourite());
 
         actualResponse = resourceManagementService.updateResourceStatus(favourite2);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFolderDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFolderResults);
 
         actualResponse = resourceManagementService.updateResourceStatus(archive1);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFileDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFileResults);
 
         actualResponse = resourceManagementService.updateResourceStatus(archive2);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFolderDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFolderResults);
 
         actualResponse = resourceManagementService.updateResourceStatus(trash1);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFileDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFileResults);
+        verify(suggestionService).removeFile(fileMetadata1);
 
         actualResponse = resourceManagementService.updateResourceStatus(trash2);
-        assertThat(actualResponse.getData()).isEqualTo(expectedFolderDtoResponse.getData());
+        assertThat(actualResponse.getData()).isEqualTo(expectedFolderResults);
+        // folders go to the trash with their subtree, not by their flag alone
+        verify(trashService).trashFolder(folderMetadata1);
+        verify(trashService).trashFolder(folderMetadata2);
+        assertTrue(folderMetadata2.isTrash());
+
+        // one multi-document update per request, no record is saved on its own
+        verify(resourceStatusDao).setFlag(Set.of(ID_1, ID_2), "isFavourite", true, FileMetadata.class);
+        verify(resourceStatusDao).setFlag(Set.of(), "isTrash", true, FolderMetadata.class);
+        verify(resourceStatusDao, times(6)).setFlag(any(), anyString(), eq(true), any());
+        verify(fileMetadataRepository, never()).save(any());
+        verify(folderMetadataRepository, never()).save(any());
+        // flags live on the file record only, the folder is not rewritten for a file
+        verify(folderMetadataRepository, never()).findByFolderPath(anyString());
+    }
+
+    @Test
+    void testUpdateResourceStatusReportsEachId() {
+        ids = Arrays.asList(ID_1, ID_2, ID_1);
+        FileMetadata fileMetadata = new FileMetadata(DOCUMENT, DIRECTORY_PATH + DOCUMENT, DIRECTORY_PATH);
+        fileMetadata.setId(ID_1);
+        FileMetaDataDto fileMetaDataDto = createFileMetaDataDtoTest(DOCUMENT);
+        when(resourceStatusDao.findByIds(List.of(ID_1, ID_2), FileMetadata.class)).thenReturn(List.of(fileMetadata));
+        when(mockModelMapper.map(fileMetadata, FileMetaDataDto.class)).thenReturn(fileMetaDataDto);
+
+        GenericResponse<?> actualResponse = resourceManagementService.updateResourceStatus(
+                new ResourceManagementRequest(ARCHIVE, DOCUMENT, ids, TRUE));
+
+        // a missing id does not stop the others and a repeated id is updated once
+        assertThat(actualResponse.getData()).isEqualTo(List.of(
+                new ResourceStatusResultDto(ID_1, Constants.UPDATE_STATUS.UPDATED, fileMetaDataDto, null),
+                new ResourceStatusResultDto(ID_2, Constants.UPDATE_STATUS.NOT_FOUND, null, "File with id: " + ID_2 + " not found")));
+        verify(resourceStatusDao).setFlag(Set.of(ID_1), "isArchive", true, FileMetadata.class);
+    }
+
+    @Test
+    void testUpdateResourceStatusReportsFailedUpdate() {
+        ids = List.of(ID_1);
+        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, List.of());
+        folderMetadata.setId(ID_1);
+        when(resourceStatusDao.findByIds(ids, FolderMetadata.class)).thenReturn(List.of(folderMetadata));
+        doThrow(new DataAccessResourceFailureException("timed out")).when(resourceStatusDao)
+                .setFlag(Set.of(ID_1), "isArchive", true, FolderMetadata.class);
+
+        GenericResponse<?> actualResponse = resourceManagementService.updateResourceStatus(
+                new ResourceManagementRequest(ARCHIVE, FOLDER, ids, TRUE));
+
+        assertThat(actualResponse.getData()).isEqualTo(List.of(
+                new ResourceStatusResultDto(ID_1, Constants.UPDATE_STATUS.FAILED, null, "timed out")));
+        assertFalse(folderMetadata.isArchive());
+        verifyNoInteractions(suggestionService);
+    }
+
+    @Test
+    void testUpdateResourceStatusRestoresDeletedRecordsFromTheTrash() {
+        ids = List.of(ID_1, ID_2);
+        FileMetadata deleted = new FileMetadata(DOCUMENT, DIRECTORY_PATH, tempDir.resolve(".trash/files/" + ID_1).toString());
+        deleted.setId(ID_1);
+        deleted.setTrash(true);
+        deleted.setTrashedFrom(tempDir.resolve(FILE_TXT).toString());
+        FileMetadata flagged = new FileMetadata(DOCUMENT, DIRECTORY_PATH, DIRECTORY_PATH);
+        flagged.setId(ID_2);
+        flagged.setTrash(true);
+        when(resourceStatusDao.findByIds(ids, FileMetadata.class)).thenReturn(List.of(deleted, flagged));
+
+        resourceManagementService.updateResourceStatus(new ResourceManagementRequest(TRASH, DOCUMENT, ids, false));
+
+        // the deleted file has its content moved back, the flagged one only has its flag cleared
+        verify(trashService).restoreFile(deleted);
+        verify(resourceStatusDao).setFlag(Set.of(ID_2), "isTrash", false, FileMetadata.class);
+        verify(suggestionService).addFile(flagged);
+        verify(suggestionService, never()).addFile(deleted);
+    }
+
+    @Test
+    void testUpdateResourceStatusDoesNotRestoreFilesOfATrashedFolder() {
+        ids = List.of(ID_1);
+        FileMetadata inFolder = new FileMetadata(DOCUMENT, DIRECTORY_PATH, tempDir.resolve(".trash/folders/folder/" + FILE_TXT).toString());
+        inFolder.setId(ID_1);
+        inFolder.setTrash(true);
+        inFolder.setTrashedWith("folder");
+        when(resourceStatusDao.findByIds(ids, FileMetadata.class)).thenReturn(List.of(inFolder));
+        doThrow(new UnsupportedException(ErrorCode.UNSUPPORTED_EXCEPTION, "restore the folder first"))
+                .when(trashService).restoreFile(inFolder);
+
+        GenericResponse<?> response = resourceManagementService.updateResourceStatus(new ResourceManagementRequest(TRASH, DOCUMENT, ids, false));
+
+        verify(resourceStatusDao).setFlag(Set.of(), "isTrash", false, FileMetadata.class);
+        assertThat(response.getData()).asInstanceOf(InstanceOfAssertFactories.list(ResourceStatusResultDto.class))
+                .extracting(ResourceStatusResultDto::getStatus)
+                .containsExactly(Constants.UPDATE_STATUS.FAILED);
+        assertTrue(inFolder.isTrash());
     }
 
     @Test
@@ -166,6 +281,19 @@ class ResourceManagementServiceTest {
         assertEquals(0, folderPage.getNumberOfElements());
     }
 
+    @Test
+    void testGetResourcesByCursorFiltersOnTheActionFlag() {
+        FolderMetadata folder = new FolderMetadata();
+        when(keysetPager.page(eq(Criteria.where("isArchive").is(true)), eq("cursor"), eq(0), eq(10), eq(Constants.COUNT_MODE.NONE),
+                eq(FolderMetadata.class), any())).thenReturn(new CursorPage<>(List.of(folder), "next", -1, false));
+        when(mockModelMapper.map(folder, FolderMetadataDto.class)).thenReturn(new FolderMetadataDto());
+
+        CursorPage<?> page = resourceManagementService.getResources(ARCHIVE, FOLDER, "cursor", 0, 10, Constants.COUNT_MODE.NONE);
+
+        assertEquals(1, page.getContent().size());
+        assertEquals("next", page.getNextCursor());
+    }
+
     @Test
     void testGetResources_InvalidResourceAction() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -181,18 +309,6 @@ class ResourceManagementServiceTest {
     }
 
 
-    @Test
-    void testTrashFileSuccess() throws IOException {
-        Path testFile = tempDir.resolve(FILE_TXT);
-        Files.createFile(testFile);
-
-        assertTrue(Files.exists(testFile), TEST_FILE_SHOULD_EXIST_BEFORE_DELETION_ATTEMPT);
-
-        resourceManagementService.deleteFileOrFolder(testFile.toString(), false);
-
-        assertFalse(Files.exists(testFile), TEST_FILE_SHOULD_BE_DELETED_AFTER_METHOD_CALL);
-    }
-
     @Test
     void testTrashFileNotFound() {
         when(fileMetadataRepository.findById(ID_1)).thenReturn(Optional.empty());
@@ -201,42 +317,68 @@ class ResourceManagementServiceTest {
             resourceManagementService.trashFile(ID_1);
         });
 
-        verify(fileMetadataRepository, never()).delete(any());
-        verify(folderMetadataRepository, never()).save(any());
+        verifyNoInteractions(trashService);
     }
 
     @Test
-    void testDeleteResource() throws IOException {
+    void testDeleteResource() {
         IdsRequestDto idsRequestDto = new IdsRequestDto();
         idsRequestDto.setIds(Arrays.asList(ID_1));
         idsRequestDto.setType(DOCUMENT);
 
-        Path expectedPath1 = tempDir.resolve(FILE_TXT);
-        Files.createFile(expectedPath1);
-
         FileMetadata fileMetadata1 = createFileMetaDataTest(DOCUMENT);
-        fileMetadata1.setDirectoryName(expectedPath1.toString());
-
-        ArrayList<FileMetadata> metadataArrayList = new ArrayList<>();
-        metadataArrayList.add(fileMetadata1);
-        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, metadataArrayList);
-
+        fileMetadata1.setId(ID_1);
         when(fileMetadataRepository.findById(anyString())).thenReturn(Optional.of(fileMetadata1));
-        when(folderMetadataRepository.findByFolderPath(anyString())).thenReturn(Optional.of(folderMetadata));
-        when(folderMetadataRepository.save(any())).thenReturn(folderMetadata);
-        doNothing().when(fileMetadataRepository).delete(any());
         resourceManagementService.deleteResource(idsRequestDto);
         verify(fileMetadataRepository, times(1)).findById(anyString());
+        verify(trashService).trashFile(fileMetadata1);
 
+        // deleted folders go to the trash as well
         idsRequestDto.setType(FOLDER);
-        Path expectedPath = tempDir.resolve(DIRECTORY_PATH);
-        Files.createDirectories(expectedPath);
-        Files.createFile(tempDir.resolve(expectedPath).resolve(FILE_TXT));
-        folderMetadata.setFolderPath(expectedPath.toString());
-        when(folderMetadataRepository.findById(anyString())).thenReturn(Optional.of(folderMetadata));
-        doNothing().when(folderMetadataRepository).delete(any());
+        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, List.of());
+        when(folderMetadataRepository.findById(ID_1)).thenReturn(Optional.of(folderMetadata));
         resourceManagementService.deleteResource(idsRequestDto);
+        verify(trashService).trashFolder(folderMetadata);
+        verify(fileMetadataRepository, never()).delete(any());
+        verify(folderMetadataRepository, never()).delete(any());
+    }
+
+    @Test
+    void testRestoreResource() {
+        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, List.of());
+        when(folderMetadataRepository.findById(ID_1)).thenReturn(Optional.of(folderMetadata));
+
+        resourceManagementService.restoreResource(new IdsRequestDto(List.of(ID_1), FOLDER));
+
+        verify(trashService).restoreFolder(folderMetadata);
+    }
+
+    @Test
+    void testPurgeResource() {
+        FileMetadata fileMetadata = createFileMetaDataTest(DOCUMENT);
+        fileMetadata.setTrash(true);
+        when(fileMetadataRepository.findById(ID_1)).thenReturn(Optional.of(fileMetadata));
+        assertEquals(List.of(), resourceManagementService.purgeResource(new IdsRequestDto(List.of(ID_1), DOCUMENT)));
+        verify(trashService).purgeFile(fileMetadata);
+
+        // folders are deleted in the background
+        FolderMetadata folderMetadata = createFolderMetadataTest(FOLDER, List.of());
+        folderMetadata.setTrash(true);
+        when(folderMetadataRepository.findById(ID_1)).thenReturn(Optional.of(folderMetadata));
+        FolderDeletionJobDto job = new FolderDeletionJobDto();
+        job.setId("job");
+        when(trashService.purgeFolder(folderMetadata)).thenReturn(job);
+        assertEquals(List.of(job), resourceManagementService.purgeResource(new IdsRequestDto(List.of(ID_1), FOLDER)));
+    }
+
+    @Test
+    void testPurgeResourceOnlyPurgesTheTrash() {
+        FileMetadata fileMetadata = createFileMetaDataTest(DOCUMENT);
+        when(fileMetadataRepository.findById(ID_1)).thenReturn(Optional.of(fileMetadata));
 
+        assertThrows(UnsupportedException.class,
+                () -> resourceManagementService.purgeResource(new IdsRequestDto(List.of(ID_1), DOCUMENT)));
+        verify(trashService, never()).purgeFile(any());
     }
 
     private FolderMetadata createFolderMetadataTest(String folderName, List<FileMetadata> fileMetaDataDtos) {
@@ -244,7 +386,7 @@ class ResourceManagementServiceTest {
         folderMetadata.setFolderName(folderName);
         folderMetadata.setFolderPath(DIRECTORY_PATH);
         folderMetadata.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
-        folderMetadata.setDocuments(fileMetaDataDtos);
+        folderMetadata.setDocumentIds(fileMetaDataDtos.stream().map(FileMetadata::getId).toList());
         return folderMetadata;
     }
 
@@ -0,0 +1,72 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SearchKeysMigrationTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Test
+    void testMigrateFillsKeysInBatches() {
+        int files = SearchKeysMigration.BATCH_SIZE + 1;
+        when(mongoTemplate.stream(any(Query.class), eq(FileMetadata.class))).thenReturn(IntStream.range(0, files)
+                .mapToObj(i -> {
+                    FileMetadata file = new FileMetadata("File" + i + ".pdf", "root", null);
+                    file.setId(String.valueOf(i));
+                    return file;
+                }));
+        FolderMetadata folder = new FolderMetadata();
+        folder.setId("f");
+        folder.setFolderName("Invoices");
+        folder.setFolderPath("root/Invoices");
+        when(mongoTemplate.stream(any(Query.class), eq(FolderMetadata.class))).thenReturn(Stream.of(folder));
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulkOperations);
+
+        int migrated = new SearchKeysMigration(new MockEnvironment(), mongoTemplate).migrate();
+
+        assertEquals(files + 1, migrated);
+        verify(bulkOperations, times(3)).execute();
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(files + 1)).updateOne(any(Query.class), updates.capture());
+        Document first = (Document) updates.getAllValues().get(0).getUpdateObject().get("$set");
+        assertEquals("file0.pdf", first.get("fileNameLower"));
+        Document last = (Document) updates.getAllValues().get(files).getUpdateObject().get("$set");
+        assertEquals("root/invoices", last.get("folderPathLower"));
+    }
+
+    @Test
+    void testRunDoesNothingWhenDisabled() {
+        MockEnvironment environment = new MockEnvironment().withProperty("idocx.migration.search-keys.enabled", "false");
+
+        new SearchKeysMigration(environment, mongoTemplate).run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
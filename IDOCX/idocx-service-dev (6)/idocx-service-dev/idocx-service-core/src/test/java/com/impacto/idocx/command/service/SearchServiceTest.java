@@ -1,6 +1,10 @@
 package com.impacto.idocx.command.service;
 
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.DocumentContentDao;
 import com.impacto.idocx.command.dao.SearchDao;
+import com.impacto.idocx.command.dtos.ContentSearchResultDto;
+import com.impacto.idocx.command.entity.DocumentContent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.Collections;
 import java.util.List;
@@ -15,6 +20,8 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
@@ -24,12 +31,16 @@ class SearchServiceTest {
 
     @Mock
     private SearchDao mockSearchDao;
+    @Mock
+    private DocumentContentDao mockDocumentContentDao;
+    @Mock
+    private SuggestionService mockSuggestionService;
 
     private SearchService searchServiceUnderTest;
 
     @BeforeEach
     void setUp() {
-        searchServiceUnderTest = new SearchService(mockSearchDao);
+        searchServiceUnderTest = new SearchService(mockSearchDao, mockDocumentContentDao, mockSuggestionService);
     }
 
     @Test
@@ -62,4 +73,53 @@ class SearchServiceTest {
         verify(mockSearchDao).search("searchOn", "field", "operator", "workspace", "filter", "value", 0, 0);
 
     }
+
+    @Test
+    void testSearchContentReturnsRankedResultsWithSnippets() {
+        DocumentContent content = new DocumentContent();
+        content.setId("1");
+        content.setFileName("march.pdf");
+        content.setFilePath("root/Invoices");
+        content.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
+        content.setText("Invoice number 42 for consulting services");
+        content.setScore(1.5f);
+        doReturn(new PageImpl<>(List.of(content))).when(mockDocumentContentDao)
+                .search("invoice", Constants.WORKSPACE_TYPE.AUTOWORKSPACE, PageRequest.of(0, 10));
+
+        Page<ContentSearchResultDto> result = searchServiceUnderTest.searchContent("invoice", "autoworkspace", 0, 10);
+
+        ContentSearchResultDto hit = result.getContent().get(0);
+        assertEquals("1", hit.getId());
+        assertEquals(1.5f, hit.getScore());
+        assertEquals(List.of("<em>Invoice</em> number 42 for consulting services"), hit.getSnippets());
+    }
+
+    @Test
+    void testSearchContentAcrossWorkspaces() {
+        doReturn(new PageImpl<>(Collections.emptyList())).when(mockDocumentContentDao)
+                .search("invoice", null, PageRequest.of(0, 10));
+
+        Page<ContentSearchResultDto> result = searchServiceUnderTest.searchContent("invoice", "BOTH", 0, 10);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testSnippetsHighlightWordPrefixesAndEscapeHtml() {
+        String text = "x".repeat(200) + " the <b>invoices</b> are due " + "y".repeat(200) + " final invoice";
+
+        List<String> snippets = SearchService.snippets(text, SearchService.highlightPattern("\"invoice\" -draft"));
+
+        assertEquals(2, snippets.size());
+        assertTrue(snippets.get(0).contains("&lt;b&gt;<em>invoices</em>&lt;/b&gt;"));
+        assertTrue(snippets.get(0).startsWith("..."));
+        assertTrue(snippets.get(1).endsWith("final <em>invoice</em>"));
+    }
+
+    @Test
+    void testSnippetsIgnoreMidWordMatchesAndExcludedTerms() {
+        assertTrue(SearchService.snippets("preinvoice only", SearchService.highlightPattern("invoice")).isEmpty());
+        assertNull(SearchService.highlightPattern("-draft"));
+        assertTrue(SearchService.snippets(null, SearchService.highlightPattern("invoice")).isEmpty());
+    }
 }
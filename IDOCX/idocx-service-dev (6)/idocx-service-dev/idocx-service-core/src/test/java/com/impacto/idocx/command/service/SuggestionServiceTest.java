@@ -0,0 +1,100 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dtos.SuggestionDto;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SuggestionServiceTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void testRebuildLoadsFileAndFolderNames() {
+        when(mongoTemplate.stream(any(Query.class), eq(FileMetadata.class))).thenReturn(Stream.of(
+                file("Invoice.pdf", "invoices", Constants.WORKSPACE_TYPE.AUTOWORKSPACE),
+                file("invoice.pdf", null, Constants.WORKSPACE_TYPE.MANUALWORKSPACE),
+                file("Report.pdf", null, null)));
+        when(mongoTemplate.stream(any(Query.class), eq(FolderMetadata.class))).thenReturn(Stream.of(
+                folder("Invoices 2024", Constants.WORKSPACE_TYPE.MANUALWORKSPACE)));
+        SuggestionService suggestionService = new SuggestionService(new MockEnvironment(), mongoTemplate);
+
+        suggestionService.run(new DefaultApplicationArguments());
+
+        // the same name in both workspaces is one suggestion
+        assertEquals(List.of(new SuggestionDto("Invoice.pdf", Constants.SUGGESTION_TYPE.FILE, 2),
+                        new SuggestionDto("invoices", Constants.SUGGESTION_TYPE.TAG, 1),
+                        new SuggestionDto("Invoices 2024", Constants.SUGGESTION_TYPE.FOLDER, 1)),
+                suggestionService.suggest("inv", Constants.WORKSPACE_TYPE.BOTH, null, 10));
+        assertEquals(List.of(new SuggestionDto("invoice.pdf", Constants.SUGGESTION_TYPE.FILE, 1),
+                        new SuggestionDto("Invoices 2024", Constants.SUGGESTION_TYPE.FOLDER, 1)),
+                suggestionService.suggest("INV", Constants.WORKSPACE_TYPE.MANUALWORKSPACE, null, 10));
+        assertEquals(List.of(new SuggestionDto("invoices", Constants.SUGGESTION_TYPE.TAG, 1)),
+                suggestionService.suggest("inv", null, Constants.SUGGESTION_TYPE.TAG, 10));
+        // a record without a workspace is not suggested
+        assertTrue(suggestionService.suggest("rep", null, null, 10).isEmpty());
+    }
+
+    @Test
+    void testAddAndRemoveKeepSuggestionsCurrent() {
+        SuggestionService suggestionService = new SuggestionService(new MockEnvironment(), mongoTemplate);
+        FileMetadata file = file("Budget.xlsx", "finance", Constants.WORKSPACE_TYPE.MANUALWORKSPACE);
+
+        suggestionService.addFile(file);
+        assertEquals(1, suggestionService.suggest("bud", null, null, 10).size());
+
+        suggestionService.removeFile(file);
+        file.setFileName("Forecast.xlsx");
+        suggestionService.addFile(file);
+        assertTrue(suggestionService.suggest("bud", null, null, 10).isEmpty());
+        assertEquals(List.of(new SuggestionDto("finance", Constants.SUGGESTION_TYPE.TAG, 1),
+                        new SuggestionDto("Forecast.xlsx", Constants.SUGGESTION_TYPE.FILE, 1)),
+                suggestionService.suggest("f", null, null, 10));
+        assertEquals(1, suggestionService.suggest("f", null, null, 1).size());
+    }
+
+    @Test
+    void testDisabledDoesNothing() {
+        SuggestionService suggestionService = new SuggestionService(
+                new MockEnvironment().withProperty("idocx.search.suggest.enabled", "false"), mongoTemplate);
+
+        suggestionService.run(new DefaultApplicationArguments());
+        suggestionService.addFolder(folder("Contracts", Constants.WORKSPACE_TYPE.AUTOWORKSPACE));
+
+        verifyNoInteractions(mongoTemplate);
+        assertTrue(suggestionService.suggest("con", null, null, 10).isEmpty());
+    }
+
+    private static FileMetadata file(String fileName, String tag, Constants.WORKSPACE_TYPE workSpaceType) {
+        FileMetadata file = new FileMetadata(fileName, "root", null);
+        file.setTag(tag);
+        file.setWorkSpaceType(workSpaceType);
+        return file;
+    }
+
+    private static FolderMetadata folder(String folderName, Constants.WORKSPACE_TYPE workSpaceType) {
+        FolderMetadata folder = new FolderMetadata();
+        folder.setFolderName(folderName);
+        folder.setWorkSpaceType(workSpaceType);
+        return folder;
+    }
+}
@@ -0,0 +1,87 @@
+package com.impacto.idocx.command.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionTrieTest {
+
+    @Test
+    void testSuggestMatchesPrefixIgnoringCase() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.add("Invoice.pdf");
+        trie.add("inventory.xlsx");
+        trie.add("Report.docx");
+
+        assertEquals(List.of("inventory.xlsx", "Invoice.pdf"), values(trie.suggest("IN", 10)));
+        assertEquals(List.of("Invoice.pdf"), values(trie.suggest("invo", 10)));
+        assertEquals(List.of("Invoice.pdf"), values(trie.suggest("invoice.pdf", 10)));
+        assertTrue(trie.suggest("invoices", 10).isEmpty());
+        assertTrue(trie.suggest("x", 10).isEmpty());
+    }
+
+    @Test
+    void testSuggestRanksByCountThenName() {
+        SuggestionTrie trie = new SuggestionTrie(2);
+        trie.add("b");
+        trie.add("a");
+        trie.add("c");
+        trie.add("c");
+
+        List<SuggestionTrie.Suggestion> suggestions = trie.suggest("", 10);
+
+        // only the top two are kept per node
+        assertEquals(List.of(new SuggestionTrie.Suggestion("c", 2), new SuggestionTrie.Suggestion("a", 1)), suggestions);
+        assertEquals(1, trie.suggest("", 1).size());
+    }
+
+    @Test
+    void testSplitEdgeKeepsBothNames() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.add("contract");
+        trie.add("con");
+
+        assertEquals(List.of("con", "contract"), values(trie.suggest("co", 10)));
+        assertEquals(List.of("contract"), values(trie.suggest("cont", 10)));
+    }
+
+    @Test
+    void testRemoveCountsDownAndPrunes() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.add("plan");
+        trie.add("plan");
+        trie.add("planet");
+        trie.add("plain");
+
+        trie.remove("plan");
+        assertEquals(List.of(new SuggestionTrie.Suggestion("plain", 1), new SuggestionTrie.Suggestion("plan", 1),
+                new SuggestionTrie.Suggestion("planet", 1)), trie.suggest("pl", 10));
+
+        trie.remove("PLAN");
+        trie.remove("plain");
+        assertEquals(List.of("planet"), values(trie.suggest("p", 10)));
+        assertEquals(List.of("planet"), values(trie.suggest("plane", 10)));
+
+        // names that were never added are ignored
+        trie.remove("pla");
+        trie.remove("planets");
+        trie.remove("planet");
+        assertTrue(trie.suggest("", 10).isEmpty());
+    }
+
+    @Test
+    void testClear() {
+        SuggestionTrie trie = new SuggestionTrie(10);
+        trie.add("a");
+        trie.clear();
+
+        assertTrue(trie.suggest("", 10).isEmpty());
+    }
+
+    private static List<String> values(List<SuggestionTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestionTrie.Suggestion::value).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.MetadataCache;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.exceptions.ResourceNotFoundException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ThumbnailServiceTest {
+    public static final String ID = "65f1c0ffee";
+
+    @TempDir
+    Path tempDir;
+
+    private PDFRenderingService pdfRenderingService;
+    private SimpleMeterRegistry meterRegistry;
+    private ThumbnailService thumbnailService;
+    private FileMetadata fileMetadata;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File file = tempDir.resolve("landscape.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(new PDRectangle(842, 595)));
+            document.save(file);
+        }
+        fileMetadata = new FileMetadata();
+        fileMetadata.setId(ID);
+        fileMetadata.setExtension(".pdf");
+        fileMetadata.setDirectoryName(file.getAbsolutePath());
+
+        MetadataCache metadataCache = mock(MetadataCache.class);
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
+
+        MockEnvironment environment = new MockEnvironment();
+        meterRegistry = new SimpleMeterRegistry();
+        PdfDocumentLoader pdfDocumentLoader = new PdfDocumentLoader(environment);
+        pdfRenderingService = new PDFRenderingService(environment, pdfDocumentLoader);
+        PDFConversionsService pdfConversionsService = new PDFConversionsService(metadataCache, pdfRenderingService,
+                new RenderedPageCache(environment, meterRegistry), pdfDocumentLoader);
+        thumbnailService = new ThumbnailService(environment, pdfConversionsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pdfRenderingService.shutdown();
+    }
+
+    @Test
+    void testGetThumbnailScalesToWidth() throws IOException {
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(thumbnailService.getThumbnail(ID, 1, 120)));
+
+        assertEquals(120, thumbnail.getWidth());
+        assertEquals(85, thumbnail.getHeight(), 1);
+    }
+
+    @Test
+    void testGetThumbnailUsesDefaultWidth() throws IOException {
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(thumbnailService.getThumbnail(ID, 1, null)));
+
+        assertEquals(150, thumbnail.getWidth());
+    }
+
+    @Test
+    void testPregeneratedThumbnailIsServedFromCache() throws IOException {
+        thumbnailService.pregenerate(fileMetadata);
+        thumbnailService.getThumbnail(ID, 1, null);
+
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(1, meterRegistry.get("idocx.render.cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void testPregenerateSkipsNonPdfFiles() {
+        fileMetadata.setExtension(".txt");
+
+        thumbnailService.pregenerate(fileMetadata);
+
+        assertEquals(0, meterRegistry.get("idocx.render.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testGetThumbnailPageNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> thumbnailService.getThumbnail(ID, 5, null));
+    }
+
+    @Test
+    void testGetThumbnailRejectsInvalidWidth() {
+        assertThrows(UnsupportedException.class, () -> thumbnailService.getThumbnail(ID, 1, 10_000));
+    }
+}
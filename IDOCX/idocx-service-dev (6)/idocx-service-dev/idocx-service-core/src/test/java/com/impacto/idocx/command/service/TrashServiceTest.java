@@ -0,0 +1,253 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.dao.DocumentContentDao;
+import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.FolderMetadataDao;
+import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dao.ResourceStatusDao;
+import com.impacto.idocx.command.entity.FileMetadata;
+import com.impacto.idocx.command.entity.FolderMetadata;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrashServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private FileMetadataRepository fileMetadataRepository;
+    private FolderMetadataRepository folderMetadataRepository;
+    private FolderMetadataDao folderMetadataDao;
+    private FolderTreeDao folderTreeDao;
+    private DocumentContentDao documentContentDao;
+    private ContentStore contentStore;
+    private ContentIndexService contentIndexService;
+    private SuggestionService suggestionService;
+    private FolderDeletionService folderDeletionService;
+    private RenderedPageCache renderedPageCache;
+    private TrashService trashService;
+
+    @BeforeEach
+    void setUp() {
+        fileMetadataRepository = mock(FileMetadataRepository.class);
+        folderMetadataRepository = mock(FolderMetadataRepository.class);
+        folderMetadataDao = mock(FolderMetadataDao.class);
+        folderTreeDao = mock(FolderTreeDao.class);
+        when(folderTreeDao.streamSubtreeFiles(anyString())).thenAnswer(invocation -> Stream.empty());
+        when(folderTreeDao.streamSubtreeFolders(anyString())).thenAnswer(invocation -> Stream.empty());
+        when(folderTreeDao.streamFilesTrashedWith(anyString())).thenAnswer(invocation -> Stream.empty());
+        when(folderTreeDao.streamFoldersTrashedWith(anyString())).thenAnswer(invocation -> Stream.empty());
+        documentContentDao = mock(DocumentContentDao.class);
+        contentStore = mock(ContentStore.class);
+        contentIndexService = mock(ContentIndexService.class);
+        suggestionService = mock(SuggestionService.class);
+        folderDeletionService = mock(FolderDeletionService.class);
+        renderedPageCache = mock(RenderedPageCache.class);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.trash.retention-hours", "24")
+                .withProperty("idocx.trash.purge-batch-size", "2")
+                .withProperty("idocx.background-io.ops-per-second", "0");
+        trashService = new TrashService(environment, fileMetadataRepository, folderMetadataRepository, folderMetadataDao,
+                folderTreeDao, mock(ResourceStatusDao.class), documentContentDao, contentStore, contentIndexService,
+                suggestionService, folderDeletionService, renderedPageCache, new IoThrottle(environment));
+    }
+
+    @Test
+    void testTrashFileMovesItToTheTrashArea() throws IOException {
+        Path content = Files.createDirectories(tempDir.resolve("root/Invoices")).resolve("a.txt");
+        Files.writeString(content, "text");
+        FileMetadata file = storedFile("file", content);
+
+        trashService.trashFile(file);
+
+        Path trashed = tempDir.resolve(".trash/files/file");
+        assertFalse(Files.exists(content));
+        assertEquals("text", Files.readString(trashed));
+        assertTrue(file.isTrash());
+        assertNotNull(file.getTrashedAt());
+        assertEquals(content.toString(), file.getTrashedFrom());
+        assertTrue(trashService.isInTrash(file.getDirectoryName()));
+        verify(fileMetadataRepository).save(file);
+        verify(documentContentDao).setTrashed(List.of("file"), true);
+        verify(suggestionService).removeFile(file);
+    }
+
+    @Test
+    void testRestoreFileMovesItBack() throws IOException {
+        Path content = Files.createDirectories(tempDir.resolve("root/Invoices")).resolve("a.txt");
+        Files.writeString(content, "text");
+        FileMetadata file = storedFile("file", content);
+        trashService.trashFile(file);
+
+        trashService.restoreFile(file);
+
+        assertEquals("text", Files.readString(content));
+        assertEquals(content.toString(), file.getDirectoryName());
+        assertFalse(file.isTrash());
+        assertNull(file.getTrashedAt());
+        assertNull(file.getTrashedFrom());
+        verify(documentContentDao).setTrashed(List.of("file"), false);
+        verify(suggestionService).addFile(file);
+    }
+
+    @Test
+    void testRestoreFileOfATrashedFolder() throws IOException {
+        Path content = Files.createDirectories(tempDir.resolve("root/Invoices")).resolve("a.txt");
+        Files.writeString(content, "text");
+        FileMetadata file = storedFile("file", content);
+        trashService.trashFile(file);
+        Files.delete(content.getParent());
+
+        assertThrows(UnsupportedException.class, () -> trashService.restoreFile(file));
+        assertTrue(file.isTrash());
+    }
+
+    @Test
+    void testTrashFileTrashedWithItsFolderStaysInTheFolder() throws IOException {
+        Path content = Files.createDirectories(tempDir.resolve(".trash/folders/folder")).resolve("a.txt");
+        Files.writeString(content, "text");
+        FileMetadata file = new FileMetadata("a.txt", "root/Invoices", content.toString());
+        file.setId("file");
+        file.setTrash(true);
+        file.setTrashedWith("folder");
+
+        trashService.trashFile(file);
+
+        assertTrue(Files.exists(content));
+        assertEquals(content.toString(), file.getDirectoryName());
+        assertNull(file.getTrashedFrom());
+        verify(fileMetadataRepository, never()).save(file);
+    }
+
+    @Test
+    void testRestoreFileTrashedWithItsFolder() {
+        FileMetadata file = new FileMetadata("a.txt", "root/Invoices", tempDir.resolve(".trash/folders/folder/a.txt").toString());
+        file.setId("file");
+        file.setTrash(true);
+        file.setTrashedWith("folder");
+
+        assertThrows(UnsupportedException.class, () -> trashService.restoreFile(file));
+        assertTrue(file.isTrash());
+        verify(fileMetadataRepository, never()).save(file);
+    }
+
+    @Test
+    void testTrashAndRestoreFolderRenameTheDirectory() throws IOException {
+        Path directory = Files.createDirectories(tempDir.resolve("root/Invoices/2024"));
+        Files.writeString(directory.resolve("a.txt"), "text");
+        FolderMetadata folder = new FolderMetadata();
+        folder.setId("folder");
+        folder.setFolderPath("root/Invoices");
+        Path stored = tempDir.resolve("root/Invoices").toAbsolutePath();
+        Path trashed = tempDir.resolve(".trash/folders/folder").toAbsolutePath();
+
+        trashService.trashFolder(folder);
+
+        assertFalse(Files.exists(stored));
+        assertEquals("text", Files.readString(trashed.resolve("2024/a.txt")));
+        verify(folderTreeDao).trashSubtree(eq("folder"), eq("root/Invoices"), eq(stored.toString()), eq(trashed.toString()),
+                any(LocalDateTime.class));
+
+        FileMetadata restored = new FileMetadata("a.txt", "root/Invoices/2024", trashed.resolve("2024/a.txt").toString());
+        restored.setId("file");
+        when(folderTreeDao.streamFilesTrashedWith("folder")).thenAnswer(invocation -> Stream.of(restored));
+        folder.setTrash(true);
+        folder.setTrashedFrom(stored.toString());
+        folder.setTrashedWith("folder");
+
+        trashService.restoreFolder(folder);
+
+        assertEquals("text", Files.readString(stored.resolve("2024/a.txt")));
+        assertFalse(Files.exists(trashed));
+        verify(folderTreeDao).restoreSubtree("folder", trashed.toString(), stored.toString());
+        verify(documentContentDao).setTrashed(List.of("file"), false);
+        verify(suggestionService).addFile(restored);
+    }
+
+    @Test
+    void testPurgeFileReleasesBlobInsteadOfDeleting() {
+        FileMetadata file = new FileMetadata("c.pdf", "root/Invoices", "/data/.cas/ab/cd/abcd");
+        file.setId("file");
+        when(contentStore.releaseBlob(file.getDirectoryName())).thenReturn(true);
+
+        trashService.purgeFile(file);
+
+        verify(fileMetadataRepository).delete(file);
+        verify(folderMetadataDao).removeDocumentIds("root/Invoices", List.of("file"));
+        verify(contentIndexService).remove(List.of("file"));
+        verify(renderedPageCache).invalidate("file");
+    }
+
+    @Test
+    void testPurgeExpiredWorksInBatches() throws IOException {
+        Path trashedFiles = Files.createDirectories(tempDir.resolve(".trash/files"));
+        List<FileMetadata> expired = List.of(trashedFile(trashedFiles, "1"), trashedFile(trashedFiles, "2"), trashedFile(trashedFiles, "3"));
+        when(fileMetadataRepository.findByIsTrashTrueAndTrashedAtBefore(any(LocalDateTime.class), eq(PageRequest.of(0, 2))))
+                .thenReturn(expired.subList(0, 2))
+                .thenReturn(expired.subList(2, 3));
+        FolderMetadata queued = trashedFolder("queued");
+        FolderMetadata folder = trashedFolder("folder");
+        when(folderMetadataRepository.findByIsTrashTrueAndTrashedFromIsNotNullAndTrashedAtBefore(any(LocalDateTime.class))).thenReturn(List.of(queued, folder));
+        when(folderDeletionService.isPending("queued")).thenReturn(true);
+
+        trashService.purgeExpired();
+
+        for (FileMetadata file : expired) {
+            verify(fileMetadataRepository).delete(file);
+            assertFalse(Files.exists(Path.of(file.getDirectoryName())));
+        }
+        verify(folderDeletionService).submit(folder, tempDir.resolve(".trash/folders/folder").toAbsolutePath(), true);
+        verify(folderDeletionService, never()).submit(eq(queued), any(), anyBoolean());
+    }
+
+    private static FileMetadata storedFile(String id, Path content) {
+        FileMetadata file = new FileMetadata(content.getFileName().toString(), "root/Invoices", content.toString());
+        file.setId(id);
+        return file;
+    }
+
+    private static FileMetadata trashedFile(Path trashedFiles, String id) throws IOException {
+        Path content = Files.writeString(trashedFiles.resolve(id), "text");
+        FileMetadata file = storedFile(id, content);
+        file.setTrash(true);
+        file.setTrashedAt(LocalDateTime.now().minusDays(2));
+        file.setTrashedFrom("root/Invoices/" + id);
+        return file;
+    }
+
+    private static FolderMetadata trashedFolder(String id) {
+        FolderMetadata folder = new FolderMetadata();
+        folder.setId(id);
+        folder.setFolderPath("root/" + id);
+        folder.setTrash(true);
+        folder.setTrashedFrom("root/" + id);
+        return folder;
+    }
+}
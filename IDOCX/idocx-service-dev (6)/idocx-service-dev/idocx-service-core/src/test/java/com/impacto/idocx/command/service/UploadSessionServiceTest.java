@@ -0,0 +1,292 @@
+package com.impacto.idocx.command.service;
+
+import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.common.GenericResponse;
+import com.impacto.idocx.command.dao.UploadSessionDao;
+import com.impacto.idocx.command.dao.UploadSessionRepository;
+import com.impacto.idocx.command.dtos.FileMetaDataDto;
+import com.impacto.idocx.command.dtos.UploadSessionDto;
+import com.impacto.idocx.command.dtos.UploadSessionRequestDto;
+import com.impacto.idocx.command.entity.UploadSession;
+import com.impacto.idocx.command.exceptions.InvalidChunkException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
+import com.impacto.idocx.command.exceptions.UploadSessionStateException;
+import com.impacto.idocx.command.model.FileUploadRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.modelmapper.ModelMapper;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadSessionServiceTest {
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private UploadSessionRepository uploadSessionRepository;
+    private WorkSpaceStorageService workSpaceStorageService;
+    private UploadSessionService uploadSessionService;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            if (session.getId() == null) session.setId("upload-" + ids.incrementAndGet());
+            sessions.put(session.getId(), session);
+            return session;
+        });
+        when(uploadSessionRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))));
+
+        UploadSessionDao uploadSessionDao = mock(UploadSessionDao.class);
+        when(uploadSessionDao.markChunkReceived(anyString(), anyInt())).thenAnswer(invocation -> {
+            UploadSession session = sessions.get(invocation.<String>getArgument(0));
+            if (session.getStatus() != Constants.UPLOAD_STATUS.OPEN) return null;
+            if (!session.getReceivedChunks().contains(invocation.<Integer>getArgument(1)))
+                session.getReceivedChunks().add(invocation.getArgument(1));
+            return session;
+        });
+        when(uploadSessionDao.transition(anyString(), any(), any())).thenAnswer(invocation -> {
+            UploadSession session = sessions.get(invocation.<String>getArgument(0));
+            if (session.getStatus() != invocation.getArgument(1)) return null;
+            session.setStatus(invocation.getArgument(2));
+            return session;
+        });
+
+        workSpaceStorageService = mock(WorkSpaceStorageService.class);
+        uploadSessionService = new UploadSessionService(new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.upload.chunk-size", "8"),
+                uploadSessionRepository, uploadSessionDao, workSpaceStorageService, new ModelMapper());
+    }
+
+    private UploadSessionRequestDto request(long totalSize) {
+        UploadSessionRequestDto request = new UploadSessionRequestDto();
+        request.setFileName("scan.pdf");
+        request.setFilePath("abc/Workspace");
+        request.setWorkspaceType("AUTOWORKSPACE");
+        request.setTotalSize(totalSize);
+        return request;
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private GenericResponse<UploadSessionDto> sendChunk(String sessionId, int index) throws Exception {
+        byte[] chunk = Arrays.copyOfRange(CONTENT, index * 8, Math.min(CONTENT.length, index * 8 + 8));
+        return uploadSessionService.writeChunk(sessionId, index, sha256(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    @Test
+    void testOpenSessionPreallocatesTargetFile() throws Exception {
+        UploadSessionDto session = uploadSessionService.openSession(request(CONTENT.length)).getData();
+
+        assertEquals(3, session.getTotalChunks());
+        assertEquals(8, session.getChunkSize());
+        assertEquals(Constants.UPLOAD_STATUS.OPEN, session.getStatus());
+        assertEquals(CONTENT.length, Files.size(uploadSessionService.stagingFile(session.getId())));
+    }
+
+    @Test
+    void testChunksInAnyOrderAreCommitted() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        Path stagingFile = uploadSessionService.stagingFile(sessionId);
+        FileMetaDataDto stored = new FileMetaDataDto();
+        stored.setId("doc-1");
+        when(workSpaceStorageService.storeUploadedFile(any(), eq("scan.pdf"), eq(stagingFile))).thenAnswer(invocation -> {
+            assertArrayEquals(CONTENT, Files.readAllBytes(stagingFile));
+            return stored;
+        });
+
+        sendChunk(sessionId, 2);
+        sendChunk(sessionId, 0);
+        assertEquals(List.of(0, 2), uploadSessionService.getSession(sessionId).getData().getReceivedChunks());
+        assertThrows(UploadSessionStateException.class, () -> uploadSessionService.commit(sessionId));
+
+        sendChunk(sessionId, 1);
+        assertEquals(stored, uploadSessionService.commit(sessionId).getData());
+
+        UploadSession session = sessions.get(sessionId);
+        assertEquals(Constants.UPLOAD_STATUS.COMMITTED, session.getStatus());
+        assertEquals("doc-1", session.getDocumentId());
+        ArgumentCaptor<FileUploadRequest> uploadRequest = ArgumentCaptor.forClass(FileUploadRequest.class);
+        verify(workSpaceStorageService).storeUploadedFile(uploadRequest.capture(), eq("scan.pdf"), eq(stagingFile));
+        assertEquals("abc/Workspace", uploadRequest.getValue().getFilePath());
+        assertThrows(UploadSessionStateException.class, () -> sendChunk(sessionId, 0));
+        assertThrows(UploadSessionStateException.class, () -> uploadSessionService.commit(sessionId));
+    }
+
+    @Test
+    void testChunkWithWrongChecksumIsNotRecorded() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        byte[] chunk = Arrays.copyOfRange(CONTENT, 0, 8);
+
+        assertThrows(InvalidChunkException.class,
+                () -> uploadSessionService.writeChunk(sessionId, 0, sha256("tampered".getBytes()), new ByteArrayInputStream(chunk)));
+        assertTrue(sessions.get(sessionId).getReceivedChunks().isEmpty());
+
+        sendChunk(sessionId, 0);
+        assertEquals(List.of(0), sessions.get(sessionId).getReceivedChunks());
+    }
+
+    @Test
+    void testResendOfReceivedChunkIsIgnored() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        sendChunk(sessionId, 0);
+        byte[] tamperedResend = "XXXXXXXX".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayInputStream body = new ByteArrayInputStream(tamperedResend);
+
+        UploadSessionDto session = uploadSessionService.writeChunk(sessionId, 0, sha256(tamperedResend), body).getData();
+
+        assertEquals(List.of(0), session.getReceivedChunks());
+        assertEquals(tamperedResend.length, body.available());
+        byte[] staged = Files.readAllBytes(uploadSessionService.stagingFile(sessionId));
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 0, 8), Arrays.copyOfRange(staged, 0, 8));
+        try (Stream<Path> files = Files.list(tempDir.resolve(".uploads"))) {
+            assertEquals(List.of(uploadSessionService.stagingFile(sessionId)), files.toList());
+        }
+    }
+
+    @Test
+    void testChunkCannotBeWrittenTwiceAtOnce() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        byte[] chunk = Arrays.copyOfRange(CONTENT, 0, 8);
+        InputStream body = new SequenceInputStream(new InputStream() {
+            @Override
+            public int read() {
+                assertThrows(UploadSessionStateException.class, () -> sendChunk(sessionId, 0));
+                return -1;
+            }
+        }, new ByteArrayInputStream(chunk));
+
+        uploadSessionService.writeChunk(sessionId, 0, sha256(chunk), body);
+
+        assertEquals(List.of(0), sessions.get(sessionId).getReceivedChunks());
+    }
+
+    @Test
+    void testChunksAreRejectedOnceCommitStarted() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        for (int i = 0; i < 3; i++)
+            sendChunk(sessionId, i);
+        when(workSpaceStorageService.storeUploadedFile(any(), any(), any())).thenAnswer(invocation -> {
+            assertThrows(UploadSessionStateException.class, () -> sendChunk(sessionId, 0));
+            return new FileMetaDataDto();
+        });
+
+        uploadSessionService.commit(sessionId);
+
+        verify(workSpaceStorageService).storeUploadedFile(any(), any(), any());
+    }
+
+    @Test
+    void testFailedCommitFailsTheSession() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        for (int i = 0; i < 3; i++)
+            sendChunk(sessionId, i);
+        when(workSpaceStorageService.storeUploadedFile(any(), any(), any())).thenThrow(new IllegalStateException("disk full"));
+
+        assertThrows(IllegalStateException.class, () -> uploadSessionService.commit(sessionId));
+
+        assertEquals(Constants.UPLOAD_STATUS.FAILED, sessions.get(sessionId).getStatus());
+        assertFalse(Files.exists(uploadSessionService.stagingFile(sessionId)));
+        assertThrows(UploadSessionStateException.class, () -> sendChunk(sessionId, 0));
+        assertThrows(UploadSessionStateException.class, () -> uploadSessionService.commit(sessionId));
+    }
+
+    @Test
+    void testChunkWithWrongLengthIsRejected() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        byte[] shortChunk = Arrays.copyOfRange(CONTENT, 0, 5);
+        byte[] longChunk = Arrays.copyOfRange(CONTENT, 16, 20);
+
+        assertThrows(InvalidChunkException.class,
+                () -> uploadSessionService.writeChunk(sessionId, 0, sha256(shortChunk), new ByteArrayInputStream(shortChunk)));
+        assertThrows(InvalidChunkException.class,
+                () -> uploadSessionService.writeChunk(sessionId, 2, sha256(CONTENT), new ByteArrayInputStream(CONTENT)));
+        assertThrows(InvalidChunkException.class,
+                () -> uploadSessionService.writeChunk(sessionId, 3, sha256(longChunk), new ByteArrayInputStream(longChunk)));
+    }
+
+    @Test
+    void testOpenSessionRejectsInvalidRequests() {
+        UploadSessionRequestDto traversal = request(10);
+        traversal.setFileName("../escape.pdf");
+        UploadSessionRequestDto zeroChunkSize = request(10);
+        zeroChunkSize.setChunkSize(0L);
+        UploadSessionRequestDto tooManyChunks = request(100_000);
+        tooManyChunks.setChunkSize(1L);
+
+        assertThrows(UnsupportedException.class, () -> uploadSessionService.openSession(traversal));
+        assertThrows(UnsupportedException.class, () -> uploadSessionService.openSession(request(0)));
+        assertThrows(UnsupportedException.class, () -> uploadSessionService.openSession(zeroChunkSize));
+        assertThrows(UnsupportedException.class, () -> uploadSessionService.openSession(tooManyChunks));
+        verify(uploadSessionRepository, never()).save(any());
+    }
+
+    @Test
+    void testPurgeExpiredSessionsDeletesStagedFile() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        UploadSession session = sessions.get(sessionId);
+        session.setCreatedAt(LocalDateTime.now().minusDays(2));
+        when(uploadSessionRepository.findByStatusInAndCreatedAtBefore(eq(List.of(Constants.UPLOAD_STATUS.OPEN)), any()))
+                .thenReturn(List.of(session));
+
+        uploadSessionService.purgeExpiredSessions();
+
+        assertFalse(Files.exists(uploadSessionService.stagingFile(sessionId)));
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    void testPurgeExpiredSessionsIncludesInterruptedCommits() throws Exception {
+        String sessionId = uploadSessionService.openSession(request(CONTENT.length)).getData().getId();
+        UploadSession session = sessions.get(sessionId);
+        session.setStatus(Constants.UPLOAD_STATUS.COMMITTING);
+        session.setStatusChangedAt(LocalDateTime.now().minusDays(2));
+        when(uploadSessionRepository.findByStatusInAndStatusChangedAtBefore(
+                eq(List.of(Constants.UPLOAD_STATUS.COMMITTING, Constants.UPLOAD_STATUS.FAILED)), any()))
+                .thenReturn(List.of(session));
+
+        uploadSessionService.purgeExpiredSessions();
+
+        assertFalse(Files.exists(uploadSessionService.stagingFile(sessionId)));
+        verify(uploadSessionRepository).delete(session);
+    }
+}
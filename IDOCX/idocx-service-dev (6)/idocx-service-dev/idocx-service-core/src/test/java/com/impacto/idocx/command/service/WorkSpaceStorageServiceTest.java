@@ -1,8 +1,15 @@
 package com.impacto.idocx.command.service;
 
 import com.impacto.idocx.command.common.Constants;
+import com.impacto.idocx.command.dao.ContentBlobDao;
 import com.impacto.idocx.command.dao.FileMetadataRepository;
+import com.impacto.idocx.command.dao.FolderMetadataDao;
 import com.impacto.idocx.command.dao.FolderMetadataRepository;
+import com.impacto.idocx.command.dao.FolderTreeDao;
+import com.impacto.idocx.command.dao.KeysetPager;
+import com.impacto.idocx.command.dao.MetadataBulkDao;
+import com.impacto.idocx.command.dao.MetadataCache;
+import com.impacto.idocx.command.dtos.FileIngestResultDto;
 import com.impacto.idocx.command.dtos.FileMetaDataDto;
 import com.impacto.idocx.command.dtos.FolderMetadataDto;
 import com.impacto.idocx.command.dtos.FolderRequestDto;
@@ -10,7 +17,10 @@ import com.impacto.idocx.command.entity.FileMetadata;
 import com.impacto.idocx.command.entity.FolderMetadata;
 import com.impacto.idocx.command.exceptions.ErrorCode;
 import com.impacto.idocx.command.exceptions.FileNotFoundException;
+import com.impacto.idocx.command.exceptions.FileReadingException;
+import com.impacto.idocx.command.exceptions.UnsupportedException;
 import com.impacto.idocx.command.model.FileUploadRequest;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,11 +28,11 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
 import org.springframework.core.env.Environment;
-import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -31,18 +41,25 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -67,6 +84,18 @@ public class WorkSpaceStorageServiceTest {
     private Environment environmentMock;
     private FolderMetadataRepository folderMetadatarepository;
     private ModelMapper modelMapper;
+    private RenderedPageCache renderedPageCache;
+    private ThumbnailService thumbnailService;
+    private ContentStore contentStore;
+    private FileIngestionPipeline fileIngestionPipeline;
+    private MetadataBulkDao metadataBulkDao;
+    private FolderMetadataDao folderMetadataDao;
+    private FolderTreeDao folderTreeDao;
+    private ContentIndexService contentIndexService;
+    private KeysetPager keysetPager;
+    private SuggestionService suggestionService;
+    private TrashService trashService;
+    private MetadataCache metadataCache;
     private MultipartFile file1;
     private MultipartFile file2;
     private List<MultipartFile> files;
@@ -81,13 +110,33 @@ public class WorkSpaceStorageServiceTest {
         when(environmentMock.getProperty("file.storage.location")).thenReturn(tempDir.toString());
         folderMetadatarepository = mock(FolderMetadataRepository.class);
         modelMapper = mock(ModelMapper.class);
-        workSpaceStorageService = new WorkSpaceStorageService(environmentMock, fileMetadataRepository, folderMetadatarepository, modelMapper);
+        renderedPageCache = mock(RenderedPageCache.class);
+        thumbnailService = mock(ThumbnailService.class);
+        contentStore = mock(ContentStore.class);
+        fileIngestionPipeline = new FileIngestionPipeline(new MockEnvironment());
+        metadataBulkDao = mock(MetadataBulkDao.class);
+        folderMetadataDao = mock(FolderMetadataDao.class);
+        folderTreeDao = mock(FolderTreeDao.class);
+        contentIndexService = mock(ContentIndexService.class);
+        keysetPager = mock(KeysetPager.class);
+        suggestionService = mock(SuggestionService.class);
+        trashService = mock(TrashService.class);
+        metadataCache = mock(MetadataCache.class);
+        workSpaceStorageService = new WorkSpaceStorageService(environmentMock, fileMetadataRepository, folderMetadatarepository, modelMapper,
+                renderedPageCache, thumbnailService, contentStore, fileIngestionPipeline, metadataBulkDao, folderMetadataDao,
+                folderTreeDao, contentIndexService, keysetPager, suggestionService, trashService,
+                metadataCache);
         fileUploadRequest = mock(FileUploadRequest.class);
         file1 = new MockMultipartFile(FILE, FILENAME, MediaType.TEXT_PLAIN_VALUE, FILE_CONTENT.getBytes());
         file2 = new MockMultipartFile(FILE, FILENAME, MediaType.TEXT_PLAIN_VALUE, FILE_CONTENT.getBytes());
         files = Arrays.asList(file1, file2);
     }
 
+    @AfterEach
+    void tearDown() {
+        fileIngestionPipeline.shutdown();
+    }
+
     @Test
     void testCreateDirectory() {
         String directoryName = "testDir";
@@ -134,14 +183,98 @@ public class WorkSpaceStorageServiceTest {
 
     @Test
     void testStore() {
+        List<FileMetadata> upserted = captureUpserts();
+        List<FileIngestResultDto> results = workSpaceStorageService.store(createFileUploadRequestTest());
+
+        // both files carry the same name, the later one wins in a single bulk write
+        verify(metadataBulkDao, times(1)).upsertFiles(anyList());
+        assertEquals(1, upserted.size());
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == Constants.INGEST_STATUS.STORED));
+        assertTrue(results.stream().allMatch(result -> upserted.get(0).getId().equals(result.getId())));
+        verify(folderMetadataDao).addDocumentIds(eq(DIRECTORY_PATH), any(), eq(Constants.WORKSPACE_TYPE.AUTOWORKSPACE),
+                argThat(documentIds -> documentIds.size() == 1));
+        verify(suggestionService).addFile(upserted.get(0));
+    }
+
+    @Test
+    void testStoreOverATrashedFileTakesItOutOfTheTrash() throws IOException {
+        Path trashed = Files.createDirectories(tempDir.resolve(".trash/files")).resolve("id-1");
+        Files.writeString(trashed, "old");
+        FileMetadata existing = new FileMetadata(FILENAME, DIRECTORY_PATH, trashed.toString());
+        existing.setId("id-1");
+        existing.setTrash(true);
+        existing.setTrashedAt(LocalDateTime.now());
+        existing.setTrashedFrom(tempDir.resolve(DIRECTORY_PATH).resolve(FILENAME).toString());
+        when(metadataBulkDao.findByFilePathAndFileNames(eq(DIRECTORY_PATH), anyCollection())).thenReturn(List.of(existing));
+        when(trashService.isInTrash(trashed.toString())).thenReturn(true);
+        List<FileMetadata> upserted = captureUpserts();
+
         workSpaceStorageService.store(createFileUploadRequestTest());
-        verify(fileMetadataRepository, times(2)).save(any());
+
+        assertEquals(List.of(existing), upserted);
+        assertFalse(existing.isTrash());
+        assertNull(existing.getTrashedAt());
+        assertNull(existing.getTrashedFrom());
+        assertFalse(Files.exists(trashed));
+        verify(suggestionService).addFile(existing);
+    }
+
+    @Test
+    void testStoreWritesAllMetadataInOneBatch() {
+        List<FileMetadata> upserted = captureUpserts();
+        FileUploadRequest fileUploadRequest = createFileUploadRequestTest();
+        List<MultipartFile> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+            batch.add(new MockMultipartFile(FILE, "file" + i + ".txt", MediaType.TEXT_PLAIN_VALUE, (FILE_CONTENT + i).getBytes()));
+        fileUploadRequest.setFiles(batch);
+
+        List<FileIngestResultDto> results = workSpaceStorageService.store(fileUploadRequest);
+
+        assertEquals(25, upserted.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == Constants.INGEST_STATUS.STORED));
+        verify(metadataBulkDao, times(1)).findByFilePathAndFileNames(eq(DIRECTORY_PATH), anyCollection());
+        verify(metadataBulkDao, times(1)).upsertFiles(anyList());
+        verify(folderMetadataDao, times(1)).addDocumentIds(eq(DIRECTORY_PATH), any(), any(), argThat(documentIds -> documentIds.size() == 25));
+        verify(fileMetadataRepository, never()).save(any());
+        verify(folderMetadatarepository, never()).save(any());
     }
 
     @Test
-    void testStoreWithEmptyFile() {
+    void testStoreReportsRecordsTheBulkWriteRejected() {
         FileUploadRequest fileUploadRequest = createFileUploadRequestTest();
-        fileUploadRequest.setFiles(Arrays.asList(new MockMultipartFile(FILE, FILENAME, MediaType.TEXT_PLAIN_VALUE, "".getBytes())));
+        fileUploadRequest.setFiles(List.of(
+                new MockMultipartFile(FILE, "a.txt", MediaType.TEXT_PLAIN_VALUE, "a".getBytes()),
+                new MockMultipartFile(FILE, "b.txt", MediaType.TEXT_PLAIN_VALUE, "b".getBytes())));
+        when(metadataBulkDao.upsertFiles(anyList())).thenReturn(Map.of(0, "E11000 duplicate key"));
+
+        List<FileIngestResultDto> results = workSpaceStorageService.store(fileUploadRequest);
+
+        assertEquals(Constants.INGEST_STATUS.FAILED, results.get(0).getStatus());
+        assertEquals("E11000 duplicate key", results.get(0).getMessage());
+        assertEquals(Constants.INGEST_STATUS.STORED, results.get(1).getStatus());
+        verify(folderMetadataDao).addDocumentIds(eq(DIRECTORY_PATH), any(), any(),
+                argThat(documentIds -> documentIds.size() == 1 && documentIds.contains(results.get(1).getId())));
+    }
+
+    private List<FileMetadata> captureUpserts() {
+        List<FileMetadata> upserted = new ArrayList<>();
+        when(metadataBulkDao.upsertFiles(anyList())).thenAnswer(invocation -> {
+            List<FileMetadata> records = invocation.getArgument(0);
+            for (FileMetadata record : records) {
+                if (record.getId() == null)
+                    record.setId("id-" + upserted.size());
+                upserted.add(record);
+            }
+            return Map.of();
+        });
+        return upserted;
+    }
+
+    @Test
+    void testStoreWithoutFiles() {
+        FileUploadRequest fileUploadRequest = createFileUploadRequestTest();
+        fileUploadRequest.setFiles(Collections.emptyList());
 
         FileNotFoundException exception = assertThrows(FileNotFoundException.class,
                 () -> workSpaceStorageService.store(fileUploadRequest));
@@ -151,106 +284,176 @@ public class WorkSpaceStorageServiceTest {
     }
 
     @Test
-    void testProcessFileMetadata() {
+    void testStoreWithEmptyFileReportsFailureAndStoresTheRest() throws Exception {
+        FileUploadRequest fileUploadRequest = createFileUploadRequestTest();
+        MultipartFile emptyFile = new MockMultipartFile(FILE, "empty.txt", MediaType.TEXT_PLAIN_VALUE, "".getBytes());
+        MultipartFile goodFile = new MockMultipartFile(FILE, FILENAMEWITHEXTENSION, MediaType.TEXT_PLAIN_VALUE, FILE_CONTENT.getBytes());
+        fileUploadRequest.setFiles(Arrays.asList(emptyFile, goodFile));
+        List<FileMetadata> upserted = captureUpserts();
+
+        List<FileIngestResultDto> results = workSpaceStorageService.store(fileUploadRequest);
+
+        assertEquals(2, results.size());
+        assertEquals(Constants.INGEST_STATUS.FAILED, results.get(0).getStatus());
+        assertEquals("File is empty: empty.txt", results.get(0).getMessage());
+        assertEquals(Constants.INGEST_STATUS.STORED, results.get(1).getStatus());
+        assertEquals(sha256(FILE_CONTENT), results.get(1).getContentHash());
+        assertEquals(FILE_CONTENT.length(), results.get(1).getSize());
+        assertEquals(FILE_CONTENT, Files.readString(tempDir.resolve(DIRECTORY_PATH).resolve(FILENAMEWITHEXTENSION)));
+        try (var staged = Files.list(tempDir.resolve(DIRECTORY_PATH))) {
+            assertEquals(1, staged.count());
+        }
+        assertEquals(1, upserted.size());
+    }
+
+    @Test
+    void testProcessFileMetadata() throws Exception {
         String directoryName = "testDirectory";
         String fileName = "testFile.txt";
 
         FileMetadata existingMetadata = new FileMetadata();
+        existingMetadata.setId(ID);
+        existingMetadata.setFileName(fileName);
         existingMetadata.setDirectoryName("differentDirectory");
-        when(fileMetadataRepository.findByFileNameAndFilePath(eq(fileName), anyString()))
-                .thenReturn(Optional.of(existingMetadata));
+        when(metadataBulkDao.findByFilePathAndFileNames(eq("testFilePath"), anyCollection()))
+                .thenReturn(List.of(existingMetadata));
         when(fileUploadRequest.getWorkspaceType()).thenReturn(AUTOWORKSPACE);
 
-        FolderMetadata folderMetadata = new FolderMetadata();
-        folderMetadata.setDocuments(new ArrayList<>());
-        when(folderMetadatarepository.findByFolderPath(anyString())).thenReturn(Optional.of(folderMetadata));
-
         MockMultipartFile mockFile = new MockMultipartFile("file", "testFile.txt", "text/plain", "Test content".getBytes());
         when(fileUploadRequest.getFiles()).thenReturn(Collections.singletonList(mockFile));
         when(fileUploadRequest.getFilePath()).thenReturn("testFilePath");
 
         workSpaceStorageService.store(fileUploadRequest);
 
-        verify(fileMetadataRepository).findByFileNameAndFilePath(eq(fileName), anyString());
-        verify(fileMetadataRepository).save(existingMetadata);
+        verify(metadataBulkDao).upsertFiles(List.of(existingMetadata));
+        verify(renderedPageCache).invalidate(ID);
+        verify(thumbnailService).pregenerate(existingMetadata);
+        verify(contentIndexService).index(existingMetadata);
+        assertEquals(sha256("Test content"), existingMetadata.getContentHash());
+        assertEquals(12, existingMetadata.getSize());
+
+        verify(folderMetadataDao).addDocumentIds(eq("testFilePath"), any(), eq(Constants.WORKSPACE_TYPE.AUTOWORKSPACE),
+                eq(List.of(ID)));
+    }
 
-        verify(folderMetadatarepository).findByFolderPath(anyString());
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes()));
     }
 
     @Test
-    void testCreateExtension() {
-        String extension = workSpaceStorageService.createExtension(FILENAMEWITHEXTENSION);
-        assertEquals(".txt", extension);
-        extension = workSpaceStorageService.createExtension(DOC);
-        assertEquals("", extension);
+    void testStoreUploadedFileMovesStagedFile() throws Exception {
+        Path stagedFile = Files.writeString(tempDir.resolve("staged.part"), FILE_CONTENT);
+        FileUploadRequest uploadRequest = createFileUploadRequestTest();
+        when(modelMapper.map(any(FileMetadata.class), eq(FileMetaDataDto.class))).thenAnswer(invocation -> {
+            FileMetadata metadata = invocation.getArgument(0);
+            FileMetaDataDto dto = new FileMetaDataDto();
+            dto.setFileName(metadata.getFileName());
+            dto.setContentHash(metadata.getContentHash());
+            dto.setSize(metadata.getSize());
+            return dto;
+        });
+
+        FileMetaDataDto stored = workSpaceStorageService.storeUploadedFile(uploadRequest, FILENAMEWITHEXTENSION, stagedFile);
+
+        assertFalse(Files.exists(stagedFile));
+        assertEquals(FILE_CONTENT, Files.readString(tempDir.resolve(DIRECTORY_PATH).resolve(FILENAMEWITHEXTENSION)));
+        assertEquals(FILENAMEWITHEXTENSION, stored.getFileName());
+        assertEquals(sha256(FILE_CONTENT), stored.getContentHash());
+        assertEquals(FILE_CONTENT.length(), stored.getSize());
+        verify(thumbnailService).pregenerate(any(FileMetadata.class));
     }
 
     @Test
-    void testCreateExtensionWithFileWithMultipleLeadingDots() {
-        String extension = workSpaceStorageService.createExtension("...file.docx");
-        assertEquals(".docx", extension);
+    void testStoreWithContentStoreKeepsOneCopyOfIdenticalUploads() throws Exception {
+        ContentBlobDao contentBlobDao = mock(ContentBlobDao.class);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file.storage.location", tempDir.toString())
+                .withProperty("idocx.storage.cas-enabled", "true");
+        ContentStore casStore = new ContentStore(environment, contentBlobDao);
+        WorkSpaceStorageService casStorageService = new WorkSpaceStorageService(environment, fileMetadataRepository, folderMetadatarepository,
+                modelMapper, renderedPageCache, thumbnailService, casStore, fileIngestionPipeline, metadataBulkDao,
+                folderMetadataDao, folderTreeDao, contentIndexService, keysetPager, suggestionService, trashService,
+                metadataCache);
+        List<FileMetadata> saved = captureUpserts();
+
+        FileUploadRequest first = createFileUploadRequestTest();
+        first.setFiles(List.of(file1));
+        casStorageService.store(first);
+        FileUploadRequest second = createFileUploadRequestTest();
+        second.setFilePath("abc/Workpace/Other");
+        second.setFiles(List.of(file2));
+        casStorageService.store(second);
+
+        String hash = sha256(FILE_CONTENT);
+        Path blob = casStore.blobPath(hash);
+        assertEquals(2, saved.size());
+        assertEquals(blob.toString(), saved.get(0).getDirectoryName());
+        assertEquals(blob.toString(), saved.get(1).getDirectoryName());
+        assertEquals(FILE_CONTENT, Files.readString(blob));
+        assertFalse(Files.exists(tempDir.resolve(DIRECTORY_PATH).resolve(FILENAME)));
+        try (var leftovers = Files.list(tempDir.resolve(".cas/tmp"))) {
+            assertEquals(0, leftovers.count());
+        }
+        verify(contentBlobDao, times(2)).acquire(hash, FILE_CONTENT.length());
     }
 
     @Test
-    void testLoadFileAsResource() throws IOException {
-        String documentId = "testDocumentId";
-        String directoryName = createTemporaryDirectory().getAbsolutePath();
+    void testGetFileForDownload() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("download.txt"), FILE_CONTENT);
+        FileMetadata fileMetadata = new FileMetadata("download.txt", "testFilePath", file.toString());
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
 
-        FileMetadata fileMetadata = new FileMetadata("testFileName", "testFilePath", directoryName);
-        when(fileMetadataRepository.findById(documentId)).thenReturn(Optional.of(fileMetadata));
+        assertEquals(fileMetadata, workSpaceStorageService.getFileForDownload(ID));
+    }
 
-        Resource resource = workSpaceStorageService.loadFileAsResource(documentId);
+    @Test
+    void testGetFileForDownloadMissingOnDisk() {
+        FileMetadata fileMetadata = new FileMetadata("missing.txt", "testFilePath", tempDir.resolve("missing.txt").toString());
+        when(metadataCache.findFile(ID)).thenReturn(Optional.of(fileMetadata));
 
-        assertNotNull(resource);
-        assertTrue(resource.exists());
-        assertTrue(resource.isReadable());
+        assertThrows(FileReadingException.class, () -> workSpaceStorageService.getFileForDownload(ID));
     }
 
     @Test
-    void testGetDestinationFile1() {
-        Path expectedPath = tempDir.resolve(DIRECTORY_PATH).resolve(FILENAME);
-        Path destinationFile = workSpaceStorageService.getDestinationFile(DIRECTORY_PATH, file1);
-        assertEquals(expectedPath, destinationFile);
+    void testCreateExtension() {
+        String extension = workSpaceStorageService.createExtension(FILENAMEWITHEXTENSION);
+        assertEquals(".txt", extension);
+        extension = workSpaceStorageService.createExtension(DOC);
+        assertEquals("", extension);
     }
 
     @Test
-    void testGetDestinationFile2() throws IOException {
-        String directoryName = "testDirectory";
-        String fileName = "testFile.txt";
-        MockMultipartFile file = new MockMultipartFile("file", fileName, "text/plain", "Hello, World!".getBytes());
-        Path expectedPath = tempDir.resolve(directoryName).resolve(fileName);
-
-        Path actualPath = workSpaceStorageService.getDestinationFile(directoryName, file);
+    void testCreateExtensionWithFileWithMultipleLeadingDots() {
+        String extension = workSpaceStorageService.createExtension("...file.docx");
+        assertEquals(".docx", extension);
+    }
 
-        assertEquals(expectedPath, actualPath);
+    @Test
+    void testGetDestinationFile() {
+        Path expectedPath = tempDir.resolve(DIRECTORY_PATH).resolve(FILENAME);
+        Path destinationFile = workSpaceStorageService.getDestinationFile(DIRECTORY_PATH, FILENAME);
+        assertEquals(expectedPath, destinationFile);
     }
 
     @Test
     void testGetAllFolderStructure() {
-        List<FolderMetadata> folderMetadataList = Arrays.asList(
-                createFolderMetadataTest(FOLDER_NAME + 1, List.of()),
-                createFolderMetadataTest(FOLDER_NAME + 2, List.of())
-        );
+        FolderMetadataDto first = createFolderMetadataDtoTest(FOLDER_NAME + 1);
+        first.setDocumentCount(3);
+        FolderMetadataDto second = createFolderMetadataDtoTest(FOLDER_NAME + 2);
+        List<FolderMetadataDto> expected = List.of(first, second);
 
-        when(folderMetadatarepository.findByWorkSpaceTypeAndIsTrashFalseAndIsArchiveFalse(AUTOWORKSPACE)).thenReturn(folderMetadataList);
-        List<FolderMetadataDto> result = workSpaceStorageService.getAllFolderStructure(AUTOWORKSPACE);
-        List<FolderMetadataDto> expected = folderMetadataList.stream()
-                .map(folderMetadata -> modelMapper.map(folderMetadata, FolderMetadataDto.class))
-                .collect(Collectors.toList());
+        when(folderMetadataDao.findFolderSummaries(AUTOWORKSPACE)).thenReturn(expected);
+        List<FolderMetadataDto> result = workSpaceStorageService.getAllFolderStructure(AUTOWORKSPACE.toLowerCase());
 
         assertEquals(expected, result);
+        verify(folderMetadatarepository, never()).findByWorkSpaceTypeAndIsTrashFalseAndIsArchiveFalse(anyString());
     }
 
     @Test
     void testUpdateFolderName() throws IOException {
         String newFolderName = "newName";
         FileMetadata fileMetadata1 = createFileMetadataTest(FILENAME + 1);
-        FileMetadata fileMetadata2 = createFileMetadataTest(FILENAME + 2);
-        List<FileMetadata> fileMetadataList = Arrays.asList(fileMetadata1, fileMetadata2);
-
-        FolderMetadata folderMetadata1 = createFolderMetadataTest(FOLDER_NAME + 1, fileMetadataList);
-        FolderMetadata folderMetadata2 = createFolderMetadataTest(FOLDER_NAME + 2, fileMetadataList);
-        List<FolderMetadata> folderMetadataList = Arrays.asList(folderMetadata1, folderMetadata2);
+        FolderMetadata folderMetadata1 = createFolderMetadataTest(FOLDER_NAME + 1, List.of(fileMetadata1));
 
         FolderMetadataDto folderMetadataDto1 = createFolderMetadataDtoTest(FOLDER_NAME);
 
@@ -258,17 +461,22 @@ public class WorkSpaceStorageServiceTest {
         Files.createDirectories(dir);
 
 
-        when(folderMetadatarepository.findById(anyString())).thenReturn(Optional.of(folderMetadata1));
-        when(fileMetadataRepository.findAllByWorkSpaceType(anyString())).thenReturn(fileMetadataList);
-        when(fileMetadataRepository.saveAll(any())).thenReturn(fileMetadataList);
-        when(folderMetadatarepository.findAllByWorkSpaceType(any())).thenReturn(folderMetadataList);
-        when(folderMetadatarepository.saveAll(any())).thenReturn(folderMetadataList);
+        String oldPath = folderMetadata1.getFolderPath();
+        String newPath = oldPath.substring(0, oldPath.lastIndexOf('/') + 1) + newFolderName;
+
+        when(metadataCache.findFolder(anyString())).thenReturn(Optional.of(folderMetadata1));
         when(modelMapper.map(any(), any())).thenReturn(folderMetadataDto1);
 
         FolderMetadataDto actualResult = workSpaceStorageService.updateFolderName(ID, newFolderName);
 
         assertEquals(folderMetadataDto1.getFolderName(), actualResult.getFolderName());
         assertEquals(folderMetadataDto1.getFolderPath(), actualResult.getFolderPath());
+        assertTrue(Files.isDirectory(tempDir.resolve(newPath)));
+        verify(folderTreeDao).moveSubtree(folderMetadata1.getId(), oldPath, newPath,
+                tempDir.resolve(oldPath).toAbsolutePath().toString(), tempDir.resolve(newPath).toAbsolutePath().toString());
+        // only the renamed subtree is rewritten, the workspace is never loaded
+        verify(fileMetadataRepository, never()).findAllByWorkSpaceType(anyString());
+        verify(folderMetadatarepository, never()).saveAll(any());
     }
 
     @Test
@@ -310,16 +518,8 @@ public class WorkSpaceStorageServiceTest {
         fileMetadataDto.setFileName(newFileName);
         fileMetadataDto.setFilePath(filePath);
 
-        when(fileMetadataRepository.findById(id)).thenReturn(Optional.of(fileMetadata));
+        when(metadataCache.findFile(id)).thenReturn(Optional.of(fileMetadata));
 
-        FolderMetadata folderMetadata = new FolderMetadata();
-        List<FileMetadata> documents = new ArrayList<>();
-        documents.add(fileMetadata);
-        folderMetadata.setDocuments(documents);
-        folderMetadata.setId("mockFolderId");
-        folderMetadata.setFolderPath("/path/to/file");
-        when(folderMetadatarepository.findByFolderPath(filePath)).thenReturn(Optional.of(folderMetadata));
-        when(folderMetadatarepository.save(any(FolderMetadata.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(fileMetadataRepository.save(fileMetadata)).thenAnswer(invocation -> invocation.getArgument(0));
         when(modelMapper.map(any(), any())).thenReturn(fileMetadataDto);
 
@@ -328,6 +528,9 @@ public class WorkSpaceStorageServiceTest {
         assertNotNull(result);
         assertEquals(newFileName, result.getFileName());
         assertTrue(Files.exists(Paths.get(filePath, newFileName)));
+        verify(contentIndexService).index(fileMetadata);
+        verify(suggestionService).removeFile(fileMetadata);
+        verify(suggestionService).addFile(fileMetadata);
     }
 
     @Test
@@ -363,13 +566,28 @@ public class WorkSpaceStorageServiceTest {
         assertNull(result);
     }
 
+    @Test
+    void testStoreIntoATrashedFolderIsRefused() {
+        when(folderMetadataDao.isInTrash(DIRECTORY_PATH)).thenReturn(true);
+        FolderRequestDto folderRequestDto = new FolderRequestDto();
+        folderRequestDto.setFolderPath(DIRECTORY_PATH + "/Sub");
+        folderRequestDto.setFolderName("Sub");
+        when(folderMetadataDao.isInTrash(DIRECTORY_PATH + "/Sub")).thenReturn(true);
+
+        assertThrows(UnsupportedException.class, () -> workSpaceStorageService.store(createFileUploadRequestTest()));
+        assertThrows(UnsupportedException.class, () -> workSpaceStorageService.generateDirectory(folderRequestDto));
+
+        assertFalse(Files.exists(tempDir.resolve(DIRECTORY_PATH)));
+        verify(metadataBulkDao, never()).upsertFiles(anyList());
+    }
+
     @Test
     void testGenerateDirectory_FolderAlreadyExists_ExceptionThrown() {
         FolderRequestDto folderRequestDto = new FolderRequestDto();
         folderRequestDto.setFolderPath("/existing/path");
         folderRequestDto.setFolderName("ExistingFolder");
 
-        when(folderMetadatarepository.findByFolderPath(anyString()))
+        when(metadataCache.findFolderByPath(anyString()))
                 .thenReturn(Optional.of(new FolderMetadata()));
 
         assertThrows(RuntimeException.class, () -> workSpaceStorageService.generateDirectory(folderRequestDto));
@@ -384,15 +602,6 @@ public class WorkSpaceStorageServiceTest {
     }
 
 
-    private File createTemporaryDirectory() {
-        try {
-            return File.createTempFile("temp", Long.toString(System.nanoTime()));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create temporary directory", e);
-        }
-    }
-
-
     private FileMetadata createFileMetadataTest(String fileName) {
         FileMetadata fileMetadata = new FileMetadata();
         fileMetadata.setId(ID);
@@ -419,7 +628,7 @@ public class WorkSpaceStorageServiceTest {
         folderMetadata.setFolderName(FolderName);
         folderMetadata.setFolderPath(DIRECTORY_PATH + "/" + FolderName);
         folderMetadata.setWorkSpaceType(Constants.WORKSPACE_TYPE.AUTOWORKSPACE);
-        folderMetadata.setDocuments(fileMetadataList);
+        folderMetadata.setDocumentIds(fileMetadataList.stream().map(FileMetadata::getId).toList());
         return folderMetadata;
     }
 